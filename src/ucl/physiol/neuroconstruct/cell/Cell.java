@@ -55,6 +55,18 @@ public class Cell implements Serializable
 
     private static transient ClassLogger logger = new ClassLogger("Cell");
 
+    /*
+     * Incremented whenever the morphology of this cell changes, so FlatMorphology snapshots
+     * made before the change are no longer used
+     */
+    private transient volatile long morphologyModCount = 0;
+
+    /*
+     * Snapshot of the segments, made on request and replaced after the morphology changes.
+     * No set method, so XMLEncoder ignores it
+     */
+    private transient volatile FlatMorphology flatMorphology = null;
+
     /**
      * A short description of the cell type...
      */
@@ -483,6 +495,7 @@ public class Cell implements Serializable
         //newSegment.setFirstSectionSegment(isFirstSection);
 
         allSegments.add(newSegment);
+        morphologyEdited();
         segmentSection.addToGroup(Section.DENDRITIC_GROUP);
 
         return newSegment;
@@ -581,6 +594,7 @@ public class Cell implements Serializable
 
 
         allSegments.add(newSegment);
+        morphologyEdited();
         segmentSection.addToGroup(Section.AXONAL_GROUP);
         return newSegment;
     }
@@ -627,6 +641,7 @@ public class Cell implements Serializable
         }
 */
         allSegments.add(newSegment);
+        morphologyEdited();
         section.addToGroup(Section.SOMA_GROUP);
         newSegment.setFiniteVolume(true);
 
@@ -667,6 +682,7 @@ public class Cell implements Serializable
         //rootSegment.setFirstSectionSegment(true);
 
         allSegments.add(rootSegment);
+        morphologyEdited();
         section.addToGroup(Section.SOMA_GROUP);
         rootSegment.setFiniteVolume(true);
         return rootSegment;
@@ -802,8 +818,61 @@ public class Cell implements Serializable
     }
 
 
+    /**
+     * Should be called after the segments of a cell are changed other than through the set methods of
+     * Segment and Section or the add...Segment methods here, e.g. reordering the Vector of all segments
+     */
+    public synchronized void morphologyEdited()
+    {
+        morphologyModCount++;
+    }
+
+    public long getMorphologyModCount()
+    {
+        return morphologyModCount;
+    }
+
+    /**
+     * Gets a snapshot of the morphology, creating a new one if the segments have changed since the
+     * last one was made. Should be called once before many queries on an unchanging cell, e.g. when
+     * generating connections
+     */
+    public synchronized FlatMorphology getFlatMorphology()
+    {
+        FlatMorphology current = getCurrentFlatMorphology();
+
+        if (current == null)
+        {
+            current = new FlatMorphology(this, morphologyModCount);
+            flatMorphology = current;
+        }
+        return current;
+    }
+
+    /**
+     * Gets the last snapshot of the morphology if it's still up to date, null otherwise. Doesn't create
+     * a new one, so it's safe to use in methods which may be called between edits of the cell
+     */
+    public FlatMorphology getCurrentFlatMorphology()
+    {
+        FlatMorphology current = flatMorphology;
+
+        if (current != null && current.isValidFor(allSegments, morphologyModCount))
+            return current;
+
+        return null;
+    }
+
     public Segment getSegmentWithId(int id)
     {
+        FlatMorphology flat = getCurrentFlatMorphology();
+
+        if (flat != null)
+        {
+            int index = flat.getIndexOfSegmentId(id);
+            return index < 0 ? null : flat.getSegment(index);
+        }
+
         // do this quick check first. This will be the case if the ids are simply incremented
         // when new segments are added. This will fail if segments have been deleted.
         
@@ -2124,8 +2193,8 @@ public class Cell implements Serializable
             Segment oldSegment = allSegments.elementAt(i);
             Segment newSegment = (Segment)oldSegment.clone();
 
-            logger.logComment("Old segment: "+ oldSegment);
-            logger.logComment("Old segment section: "+ oldSegment.getSection());
+            logger.logComment("Old segment: {}", oldSegment);
+            logger.logComment("Old segment section: {}", oldSegment.getSection());
 
 
             if (oldSegment.isFirstSectionSegment())
@@ -2148,8 +2217,8 @@ public class Cell implements Serializable
             newSegments.add(newSegment);
             newSegmentsVsOldSegments.put(oldSegment, newSegment);
 
-            logger.logComment("Cloned segment: "+ newSegment);
-            logger.logComment("Cloned segment section: "+ newSegment.getSection());
+            logger.logComment("Cloned segment: {}", newSegment);
+            logger.logComment("Cloned segment section: {}", newSegment.getSection());
         }
 
         logger.logComment("Cloned sections: "+ newSegments.size());
@@ -2453,6 +2522,7 @@ public class Cell implements Serializable
     public void setAllSegments(Vector<Segment> allSegments)
     {
         this.allSegments = allSegments;
+        morphologyEdited();
     }
 
     public void setInstanceName(String instanceName)
@@ -0,0 +1,464 @@
+/**
+ *  neuroConstruct
+ *  Software for developing large scale 3D networks of biologically realistic neurons
+ *
+ *  Copyright (c) 2009 Padraig Gleeson
+ *  UCL Department of Neuroscience, Physiology and Pharmacology
+ *
+ *  Development of this software was made possible with funding from the
+ *  Medical Research Council and the Wellcome Trust
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+
+package ucl.physiol.neuroconstruct.cell;
+
+import java.util.*;
+import javax.vecmath.*;
+
+/**
+ * An immutable snapshot of the morphology of a Cell, with the segment information held
+ * in flat arrays in the order of Cell.getAllSegments(). Start points, path lengths etc.
+ * are worked out once when the snapshot is made, rather than by walking up the parent
+ * segments on each request. Use Cell.getFlatMorphology() to get an up to date snapshot.
+ *
+ * @author Padraig Gleeson
+ *
+ */
+
+public class FlatMorphology
+{
+    private final Vector<Segment> segments;
+
+    private final int numSegments;
+
+    /*
+     * Value of the cell's getMorphologyModCount() when this was created
+     */
+    private final long modCount;
+
+    private final int[] segmentIds;
+
+    /*
+     * Index in the arrays of each segment id, when the ids are reasonably dense
+     */
+    private int[] indexOfId = null;
+    private HashMap<Integer, Integer> indexOfIdMap = null;
+
+    private final float[] startX;
+    private final float[] startY;
+    private final float[] startZ;
+
+    private final float[] endX;
+    private final float[] endY;
+    private final float[] endZ;
+
+    private final float[] startRadii;
+    private final float[] radii;
+
+    private final float[] lengths;
+
+    private final int[] parentIndices;
+    private final float[] fractsAlongParent;
+
+    private final float[] distancesFromSoma;
+    private final float[] pathLengthsFromRoot;
+
+    private final boolean[] spherical;
+    private final boolean[] finiteVolume;
+
+    /*
+     * Min x, y, z and max x, y, z of the start and end points, +/- the (end) radius, as
+     * CellTopologyHelper.getMinXExtent() etc.
+     */
+    private final float[] extents = new float[]{Float.MAX_VALUE, Float.MAX_VALUE, Float.MAX_VALUE,
+                                                -Float.MAX_VALUE, -Float.MAX_VALUE, -Float.MAX_VALUE};
+
+    /*
+     * Furthest any part of the cell is from the cell origin
+     */
+    private float maxDistanceFromOrigin = 0;
+
+    private final ArrayList<String> groupNames = new ArrayList<String>();
+    private final HashMap<String, BitSet> groupMembers = new HashMap<String, BitSet>();
+
+
+    FlatMorphology(Cell cell, long modCount)
+    {
+        this.segments = cell.getAllSegments();
+        this.modCount = modCount;
+
+        numSegments = segments.size();
+
+        segmentIds = new int[numSegments];
+        startX = new float[numSegments];
+        startY = new float[numSegments];
+        startZ = new float[numSegments];
+        endX = new float[numSegments];
+        endY = new float[numSegments];
+        endZ = new float[numSegments];
+        startRadii = new float[numSegments];
+        radii = new float[numSegments];
+        lengths = new float[numSegments];
+        parentIndices = new int[numSegments];
+        fractsAlongParent = new float[numSegments];
+        distancesFromSoma = new float[numSegments];
+        pathLengthsFromRoot = new float[numSegments];
+        spherical = new boolean[numSegments];
+        finiteVolume = new boolean[numSegments];
+
+        IdentityHashMap<Segment, Integer> indices = new IdentityHashMap<Segment, Integer>(numSegments*2);
+
+        int maxId = -1;
+        int minId = 0;
+
+        for (int i = 0; i < numSegments; i++)
+        {
+            Segment seg = segments.elementAt(i);
+            indices.put(seg, i);
+
+            // Edits to the segment or its section from now on mark this snapshot as out of date.
+            // setMorphologyOwner() is package private in both, so XMLEncoder, which saves any
+            // public get/set pair, doesn't treat the owner as a property and write it to the cell file
+            seg.setMorphologyOwner(cell);
+            if (seg.getSection() != null) seg.getSection().setMorphologyOwner(cell);
+
+            segmentIds[i] = seg.getSegmentId();
+            maxId = Math.max(maxId, segmentIds[i]);
+            minId = Math.min(minId, segmentIds[i]);
+
+            Point3f start = seg.getStartPointPosition();
+            Point3f end = seg.getEndPointPosition();
+
+            // As when the segment has no parent
+            if (start == null) start = new Point3f(Float.NaN, Float.NaN, Float.NaN);
+
+            startX[i] = start.x;
+            startY[i] = start.y;
+            startZ[i] = start.z;
+            endX[i] = end.x;
+            endY[i] = end.y;
+            endZ[i] = end.z;
+
+            startRadii[i] = seg.getSegmentStartRadius();
+            radii[i] = seg.getRadius();
+            lengths[i] = seg.getSegmentLength();
+            fractsAlongParent[i] = seg.getFractionAlongParent();
+            spherical[i] = seg.isSpherical();
+            finiteVolume[i] = seg.isFiniteVolume();
+
+            includeInExtents(start, radii[i]);
+            includeInExtents(end, radii[i]);
+
+            if (seg.getSection() == null) continue;
+
+            for (String group: seg.getGroups())
+            {
+                BitSet members = groupMembers.get(group);
+                if (members == null)
+                {
+                    members = new BitSet(numSegments);
+                    groupMembers.put(group, members);
+                    groupNames.add(group);
+                }
+                members.set(i);
+            }
+        }
+
+        if (minId >= 0 && maxId < numSegments * 4 + 16)
+        {
+            indexOfId = new int[maxId + 1];
+            Arrays.fill(indexOfId, -1);
+        }
+        else
+        {
+            indexOfIdMap = new HashMap<Integer, Integer>(numSegments*2);
+        }
+
+        // Going backwards so the first segment with an id is the one found, as in Cell.getSegmentWithId()
+        for (int i = numSegments - 1; i >= 0; i--)
+        {
+            if (indexOfId != null)
+                indexOfId[segmentIds[i]] = i;
+            else
+                indexOfIdMap.put(segmentIds[i], i);
+        }
+
+        for (int i = 0; i < numSegments; i++)
+        {
+            Segment parent = segments.elementAt(i).getParentSegment();
+            Integer parentIndex = parent == null ? null : indices.get(parent);
+
+            parentIndices[i] = parentIndex == null ? -1 : parentIndex;
+        }
+
+        boolean[] done = new boolean[numSegments];
+
+        for (int i = 0; i < numSegments; i++)
+        {
+            calcPathLengthFromRoot(i, done);
+            distancesFromSoma[i] = calcDistanceFromSoma(i);
+        }
+    }
+
+    private void includeInExtents(Point3f point, float radius)
+    {
+        // Comparisons rather than Math.min/max, so NaN points are skipped as in getMinXExtent() etc.
+        if (point.x - radius < extents[0]) extents[0] = point.x - radius;
+        if (point.y - radius < extents[1]) extents[1] = point.y - radius;
+        if (point.z - radius < extents[2]) extents[2] = point.z - radius;
+        if (point.x + radius > extents[3]) extents[3] = point.x + radius;
+        if (point.y + radius > extents[4]) extents[4] = point.y + radius;
+        if (point.z + radius > extents[5]) extents[5] = point.z + radius;
+
+        float dist = (float)Math.sqrt(point.x*point.x + point.y*point.y + point.z*point.z) + Math.abs(radius);
+        if (dist > maxDistanceFromOrigin) maxDistanceFromOrigin = dist;
+    }
+
+    /*
+     * Same summation as Segment.getDistanceFromSoma(), so the values are identical
+     */
+    private float calcDistanceFromSoma(int index)
+    {
+        if (isSoma(index)) return 0;
+
+        float fraction = fractsAlongParent[index];
+        float somaDistance = 0;
+
+        int next = index;
+
+        while (parentIndices[next] >= 0 && !isSoma(parentIndices[next]))
+        {
+            next = parentIndices[next];
+            somaDistance = somaDistance + fraction * lengths[next];
+            fraction = fractsAlongParent[next];
+        }
+        return somaDistance;
+    }
+
+    private float calcPathLengthFromRoot(int index, boolean[] done)
+    {
+        if (done[index]) return pathLengthsFromRoot[index];
+
+        // Iterative, as unbranched dendrites can be very long...
+        ArrayList<Integer> toDo = new ArrayList<Integer>();
+        int next = index;
+
+        while (next >= 0 && !done[next])
+        {
+            toDo.add(next);
+            next = parentIndices[next];
+        }
+
+        for (int j = toDo.size() - 1; j >= 0; j--)
+        {
+            int i = toDo.get(j);
+            int parent = parentIndices[i];
+
+            if (parent < 0)
+                pathLengthsFromRoot[i] = 0;
+            else
+                pathLengthsFromRoot[i] = pathLengthsFromRoot[parent] + fractsAlongParent[i] * lengths[parent];
+
+            done[i] = true;
+        }
+        return pathLengthsFromRoot[index];
+    }
+
+    /**
+     * True if the snapshot still reflects the segments of this cell
+     */
+    boolean isValidFor(Vector<Segment> cellSegments, long currentModCount)
+    {
+        return cellSegments == segments &&
+               cellSegments.size() == numSegments &&
+               currentModCount == modCount;
+    }
+
+    public int getNumSegments()
+    {
+        return numSegments;
+    }
+
+    /**
+     * Gets the index in the arrays (and in Cell.getAllSegments()) of the segment with this id,
+     * or -1 if there is no such segment
+     */
+    public int getIndexOfSegmentId(int segmentId)
+    {
+        if (indexOfId != null)
+        {
+            if (segmentId < 0 || segmentId >= indexOfId.length) return -1;
+            return indexOfId[segmentId];
+        }
+        Integer index = indexOfIdMap.get(segmentId);
+        return index == null ? -1 : index;
+    }
+
+    public Segment getSegment(int index)
+    {
+        return segments.elementAt(index);
+    }
+
+    public int getSegmentId(int index)
+    {
+        return segmentIds[index];
+    }
+
+    public int getParentIndex(int index)
+    {
+        return parentIndices[index];
+    }
+
+    public float getFractionAlongParent(int index)
+    {
+        return fractsAlongParent[index];
+    }
+
+    public float getStartRadius(int index)
+    {
+        return startRadii[index];
+    }
+
+    public float getRadius(int index)
+    {
+        return radii[index];
+    }
+
+    public float getLength(int index)
+    {
+        return lengths[index];
+    }
+
+    public boolean isSpherical(int index)
+    {
+        return spherical[index];
+    }
+
+    public boolean isFiniteVolume(int index)
+    {
+        return finiteVolume[index];
+    }
+
+    /**
+     * Distance from the soma to the start of the segment, as Segment.getDistanceFromSoma()
+     */
+    public float getDistanceFromSoma(int index)
+    {
+        return distancesFromSoma[index];
+    }
+
+    /**
+     * Length along the segments from the root segment to the start of the segment
+     */
+    public float getPathLengthFromRoot(int index)
+    {
+        return pathLengthsFromRoot[index];
+    }
+
+    public Point3f getStartPoint(int index, Point3f result)
+    {
+        result.set(startX[index], startY[index], startZ[index]);
+        return result;
+    }
+
+    public Point3f getEndPoint(int index, Point3f result)
+    {
+        result.set(endX[index], endY[index], endZ[index]);
+        return result;
+    }
+
+    /**
+     * Position of the point the fraction along the segment, relative to the cell origin,
+     * calculated as in CellTopologyHelper.convertSegmentDisplacement(). Spherical segments
+     * give their centre.
+     */
+    public Point3f getPointAlong(int index, float fractAlong, Point3f result)
+    {
+        if (spherical[index])
+        {
+            result.set(endX[index], endY[index], endZ[index]);
+            return result;
+        }
+        result.set(startX[index] + fractAlong * (endX[index] - startX[index]),
+                   startY[index] + fractAlong * (endY[index] - startY[index]),
+                   startZ[index] + fractAlong * (endZ[index] - startZ[index]));
+        return result;
+    }
+
+    /**
+     * Smallest x (dim 0), y (1) or z (2) value of any segment, including its radius
+     */
+    public float getMinExtent(int dim)
+    {
+        return extents[dim];
+    }
+
+    /**
+     * Largest x (dim 0), y (1) or z (2) value of any segment, including its radius
+     */
+    public float getMaxExtent(int dim)
+    {
+        return extents[3 + dim];
+    }
+
+    /**
+     * Radius of a sphere around the cell origin which contains all of the segments
+     */
+    public float getMaxDistanceFromOrigin()
+    {
+        return maxDistanceFromOrigin;
+    }
+
+    private boolean isSoma(int index)
+    {
+        BitSet soma = groupMembers.get(Section.SOMA_GROUP);
+        return soma != null && soma.get(index);
+    }
+
+    public List<String> getGroupNames()
+    {
+        return Collections.unmodifiableList(groupNames);
+    }
+
+    public boolean isInGroup(int index, String group)
+    {
+        BitSet members = groupMembers.get(group);
+        return members != null && members.get(index);
+    }
+
+    /**
+     * Gets a copy of the set of indices of the segments in the group
+     */
+    public BitSet getSegmentIndicesInGroup(String group)
+    {
+        BitSet members = groupMembers.get(group);
+        return members == null ? new BitSet() : (BitSet)members.clone();
+    }
+
+    public int getNumSegmentsInGroup(String group)
+    {
+        BitSet members = groupMembers.get(group);
+        return members == null ? 0 : members.cardinality();
+    }
+
+    @Override
+    public String toString()
+    {
+        return "FlatMorphology of "+numSegments+" segments in "+groupNames.size()+" groups";
+    }
+
+}
@@ -93,6 +93,11 @@ public class Section implements Serializable
     private String comment = null;
 
 
+    /*
+     * The cell whose FlatMorphology includes this section, which is told of any change to it
+     */
+    private transient Cell morphologyOwner = null;
+
     /**
      * This needs to be public for XMLEncoder. DON'T USE IT ON ITS OWN!
      */
@@ -228,16 +233,19 @@ public class Section implements Serializable
 
     public void setStartPointPositionX(float val)
     {
+        morphologyEdited();
         this.startPointPosition.x = val;
     }
 
     public void setStartPointPositionY(float val)
     {
+        morphologyEdited();
         this.startPointPosition.y = val;
     }
 
     public void setStartPointPositionZ(float val)
     {
+        morphologyEdited();
         this.startPointPosition.z = val;
     }
     
@@ -245,6 +253,7 @@ public class Section implements Serializable
     
     public void setStartPointPositionX(float val, boolean round)
     {
+        morphologyEdited();
         if (round) 
             val = Segment.round(val);
         this.startPointPosition.x = val;
@@ -252,6 +261,7 @@ public class Section implements Serializable
 
     public void setStartPointPositionY(float val, boolean round)
     {
+        morphologyEdited();
         if (round) 
             val = Segment.round(val);
         this.startPointPosition.y = val;
@@ -259,6 +269,7 @@ public class Section implements Serializable
 
     public void setStartPointPositionZ(float val, boolean round)
     {
+        morphologyEdited();
         if (round) 
             val = Segment.round(val);
         this.startPointPosition.z = val;
@@ -387,6 +398,7 @@ public class Section implements Serializable
      */
     public void addToGroup(String group)
     {
+        morphologyEdited();
         if (group.equals(SOMA_GROUP))
         {
             groups.remove(DENDRITIC_GROUP);
@@ -409,6 +421,7 @@ public class Section implements Serializable
 
     public void removeFromGroup(String group)
     {
+        morphologyEdited();
         groups.remove(group);
     }
 
@@ -442,11 +455,27 @@ public class Section implements Serializable
 
     public void setStartRadius(float startRadius)
     {
+        morphologyEdited();
         this.startRadius = startRadius;
     }
 
 
 
+    /*
+     * Called by FlatMorphology for the section of each segment in a snapshot, as the start point and
+     * radius here are used for the first segment of the section
+     */
+    void setMorphologyOwner(Cell cell)
+    {
+        this.morphologyOwner = cell;
+    }
+
+    private void morphologyEdited()
+    {
+        Cell owner = morphologyOwner;
+        if (owner != null) owner.morphologyEdited();
+    }
+
     public static void main(String[] args)
     {/*
         Section s1 = new Section("s1");
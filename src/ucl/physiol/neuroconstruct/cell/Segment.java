@@ -124,6 +124,11 @@ public class Segment implements Serializable
     
     // Used during rotations etc. to prevent x = 10.00001 etc.
     private static final float roundingError = 8e-4f;
+
+    /*
+     * The cell whose FlatMorphology includes this segment, which is told of any change to it
+     */
+    private transient Cell morphologyOwner = null;
     
     /**
      * This needs to be public for XMLEncoder. DON'T USE IT ON ITS OWN!
@@ -388,6 +393,7 @@ public class Segment implements Serializable
 
     public void setRadius(float radius)
     {
+        morphologyEdited();
         this.radius = radius;
     }
 
@@ -638,6 +644,21 @@ public class Segment implements Serializable
 
 
 
+    /*
+     * Called by FlatMorphology when a snapshot including this segment is made, so that changes to the
+     * end point, radius, etc. invalidate it
+     */
+    void setMorphologyOwner(Cell cell)
+    {
+        this.morphologyOwner = cell;
+    }
+
+    private void morphologyEdited()
+    {
+        Cell owner = morphologyOwner;
+        if (owner != null) owner.morphologyEdited();
+    }
+
     public static void main(String[] args)
     {
         Section sec = new Section("sec1");
@@ -727,6 +748,7 @@ public class Segment implements Serializable
 
     public void setFiniteVolume(boolean finiteVolume)
     {
+        morphologyEdited();
         //this.edited = true;
         this.finiteVolume = finiteVolume;
     }
@@ -755,18 +777,21 @@ public class Segment implements Serializable
      */
     public void setEndPointPositionX(float val)
     {
+        morphologyEdited();
         //this.edited = true;
         this.endPointPosition.x = val;
     }
 
     public void setEndPointPositionY(float val)
     {
+        morphologyEdited();
         //this.edited = true;
         this.endPointPosition.y = val;
     }
 
     public void setEndPointPositionZ(float val)
     {
+        morphologyEdited();
         //this.edited = true;
         this.endPointPosition.z = val;
     }
@@ -788,6 +813,7 @@ public class Segment implements Serializable
     
     public void setEndPointPositionX(float val, boolean round)
     {
+        morphologyEdited();
         if (round) 
             val = round(val);
         this.endPointPosition.x = val;
@@ -795,6 +821,7 @@ public class Segment implements Serializable
 
     public void setEndPointPositionY(float val, boolean round)
     {
+        morphologyEdited();
         if (round) 
             val = round(val);
         this.endPointPosition.y = val;
@@ -802,6 +829,7 @@ public class Segment implements Serializable
 
     public void setEndPointPositionZ(float val, boolean round)
     {
+        morphologyEdited();
         if (round) 
             val = round(val);
         this.endPointPosition.z = val;
@@ -826,6 +854,7 @@ public class Segment implements Serializable
 
     public void setParentSegment(Segment parentSegment)
     {
+        morphologyEdited();
         this.parentSegment = parentSegment;
     }
 
@@ -835,6 +864,7 @@ public class Segment implements Serializable
     }
     public void setSegmentId(int segmentId)
     {
+        morphologyEdited();
         //this.edited = true;
         this.segmentId = segmentId;
     }
@@ -981,6 +1011,7 @@ public class Segment implements Serializable
     }
     public void setSection(Section section)
     {
+        morphologyEdited();
         //this.edited = true;
         this.section = section;
     }
@@ -990,6 +1021,7 @@ public class Segment implements Serializable
     }
     public void setFractionAlongParent(float fractionAlongParent)
     {
+        morphologyEdited();
         //this.edited = true;
         this.fractionAlongParent = fractionAlongParent;
     }
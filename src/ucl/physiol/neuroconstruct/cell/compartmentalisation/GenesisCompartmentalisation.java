@@ -194,6 +194,7 @@ public class GenesisCompartmentalisation extends MorphCompartmentalisation
                         secSeg.setFractionAlongParent(1);
 
                         newCell.getAllSegments().add(secSeg);
+                        newCell.morphologyEdited();
                         endSeg = secSeg;
                     }
 
@@ -247,6 +248,7 @@ public class GenesisCompartmentalisation extends MorphCompartmentalisation
                     {
                         Segment nextSeg = segsHere.get(segIndex);
                         newCell.getAllSegments().remove(nextSeg); // remove all except first...
+                        newCell.morphologyEdited();
                     }
 
                     logger.logComment("       firstSeg: " + firstSeg);
@@ -675,6 +677,7 @@ public class GenesisCompartmentalisation extends MorphCompartmentalisation
                 newSeg.setFractionAlongParent(1);
             }
             cell.getAllSegments().add(newSeg);
+            cell.morphologyEdited();
 
             logger.logComment("cell.getAllSegments() SIZE: " + cell.getAllSegments().size());
 
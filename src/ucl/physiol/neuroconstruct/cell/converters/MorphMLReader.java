@@ -422,6 +422,7 @@ public class MorphMLReader extends XMLFilterImpl
              }
 
              cell.getAllSegments().add(newSeg);
+             cell.morphologyEdited();
 
              this.segments.put(new Integer(id), newSeg);
 
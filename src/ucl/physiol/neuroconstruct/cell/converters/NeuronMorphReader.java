@@ -834,6 +834,7 @@ public class NeuronMorphReader extends FormatImporter
                         int indexToSwap = segs.indexOf(newSegment);
                         cell.getAllSegments().setElementAt(newSegment, indexOfValidSegments);
                         cell.getAllSegments().setElementAt(segAtIndex, indexToSwap);
+                        cell.morphologyEdited();
                     }
                     indexOfValidSegments++;
                     logger.logComment("Done updating ids");
@@ -862,6 +863,7 @@ public class NeuronMorphReader extends FormatImporter
                         Segment segAtIndex = cell.getAllSegments().elementAt(indexOfValidSegments);
                         int indexToSwap = cell.getAllSegments().indexOf(newSegment);
                         cell.getAllSegments().setElementAt(newSegment, indexOfValidSegments);
+                        cell.morphologyEdited();
                         segs.setElementAt(segAtIndex, indexToSwap);
                     }
                     indexOfValidSegments++;
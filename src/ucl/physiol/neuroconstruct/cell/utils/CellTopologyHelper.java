@@ -61,8 +61,21 @@ public class CellTopologyHelper
 
     public static final String CELLS_ARE_IDENTICAL = "** Cells are identical **";
 
-    CachedSynLocInfo cachedPostSynLocInfo = null;
-    CachedSynLocInfo cachedPreSynLocInfo = null;
+    /*
+     * Segments which can hold synapses, for each combination of cell type, synapse types and
+     * allowed pre/post locations asked for. Shared by all generator threads
+     */
+    private static Map<String, CachedSynLocInfo> synLocInfoCache
+        = Collections.synchronizedMap(new LinkedHashMap<String, CachedSynLocInfo>(16, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedSynLocInfo> eldest)
+            {
+                return size() > MAX_CACHED_SYN_LOC_INFOS;
+            }
+        });
+
+    private static final int MAX_CACHED_SYN_LOC_INFOS = 256;
 
     static
     {
@@ -82,572 +95,489 @@ public class CellTopologyHelper
                                                                                String[] synapseType,
                                                                                PrePostAllowedLocs pp)
     {
-        float totalLengthOfValidSegments = 0;
-        Vector<Integer> idsOfPossibleSegments = new Vector<Integer>();
-        Vector<Float> lensOfPossibleSegments = new Vector<Float>();
-        
-        PostSynapticTerminalLocation postSynTerm = null;
-                       
-        if (!(cachedPostSynLocInfo!=null && cachedPostSynLocInfo.isApplicable(cell.getInstanceName(), synapseType))) 
-        {
-            cachedPostSynLocInfo=null;
-            Vector<Segment> allSegments = cell.getAllSegments();
+        SegmentLocation loc = getPossibleSynapticTerminal(cell, synapseType, false,
+                                                          pp.isAxonsAllowedPost(),
+                                                          pp.isSomaAllowedPost(),
+                                                          pp.isDendritesAllowedPost());
+        if (loc == null) return null;
 
-            Vector<String> groupsWithSynapse = cell.getGroupsWithSynapse(synapseType[0]); // get first lot
+        return new PostSynapticTerminalLocation(loc.getSegmentId(), loc.getFractAlong());
+    }
 
-            if (synapseType.length>1)
-            {
-                for (int remainingSynIndex = 0; remainingSynIndex < synapseType.length; remainingSynIndex++)
-                {
-                    Vector remainingSynGroups = cell.getGroupsWithSynapse(synapseType[remainingSynIndex]);
+    /**
+     * Search through the segments on a cell looking for the ones which
+     * support the specific synapse types...
+     *
+     * @param cell The cell in question
+     * @param synapseTypes String[] with synapse type name
+     * @return The location of the synapse or null if not supported
+     */
 
-                    for (int includedGroups = 0; includedGroups < groupsWithSynapse.size(); includedGroups++)
-                    {
-                            String includedGroup = groupsWithSynapse.elementAt(includedGroups);
-                            if (!remainingSynGroups.contains(includedGroup))
-                                groupsWithSynapse.remove(includedGroup);
-                    }
-                }
-            }
+    public PreSynapticTerminalLocation getPossiblePreSynapticTerminal(Cell cell, 
+                                                                      String[] synapseTypes,
+                                                                      PrePostAllowedLocs pp)
+    {
+        SegmentLocation loc = getPossibleSynapticTerminal(cell, synapseTypes, true,
+                                                          pp.isAxonsAllowedPre(),
+                                                          pp.isSomaAllowedPre(),
+                                                          pp.isDendritesAllowedPre());
+        if (loc == null) return null;
 
+        return new PreSynapticTerminalLocation(loc.getSegmentId(), loc.getFractAlong());
+    }
 
-            logger.logComment(cell.getInstanceName() + " being asked for pre-synaptic point of type " + synapseType +
-                              " among my segments");
 
-            logger.logComment("groupsWithSynapse: "+ groupsWithSynapse);
+    private static SegmentLocation getPossibleSynapticTerminal(Cell cell,
+                                                               String[] synapseTypes,
+                                                               boolean pre,
+                                                               boolean axonsAllowed,
+                                                               boolean somaAllowed,
+                                                               boolean dendritesAllowed)
+    {
+        Vector<Segment> allSegments = cell.getAllSegments();
 
+        if (allSegments.isEmpty())
+        {
+            return null;
+        }
 
-            logger.logComment(cell.getInstanceName() + " being asked for post-synaptic point of type " + synapseType +
-                              " among my segments");
+        Vector<String> groupsWithSynapse = getGroupsWithAllSynapses(cell, synapseTypes);
 
-            if (allSegments.isEmpty())
-            {
-                return null;
-            }
+        // Quick return if just a 1 seg cell 
+        if (allSegments.size()==1 && 
+            allSegments.get(0).isSomaSegment() &&
+            somaAllowed &&
+            (groupsWithSynapse.contains(Section.ALL) ||
+             groupsWithSynapse.contains(Section.SOMA_GROUP)))
+        {
+            float fract = ProjectManager.getRandomGenerator().nextFloat();
+            if (allSegments.get(0).isSpherical()) fract = 0.5f;
 
-            // Quick return if just a 1 seg cell 
-            if (allSegments.size()==1 && 
-                allSegments.get(0).isSomaSegment() &&
-                pp.isSomaAllowedPost() &&
-                (groupsWithSynapse.contains(Section.ALL) ||
-                 groupsWithSynapse.contains(Section.SOMA_GROUP)))
-            {
+            return new SegmentLocation(allSegments.get(0).getSegmentId(), fract);
+        }
 
-                float fract = ProjectManager.getRandomGenerator().nextFloat();
-                if (allSegments.get(0).isSpherical()) fract = 0.5f;
+        CachedSynLocInfo info = getSynLocInfo(cell, synapseTypes, groupsWithSynapse, pre,
+                                               axonsAllowed, somaAllowed, dendritesAllowed);
 
-                postSynTerm = new PostSynapticTerminalLocation(allSegments.get(0).getSegmentId(), fract);
+        return info.chooseLocation(ProjectManager.getRandomGenerator());
+    }
 
-                return postSynTerm;
-            }
 
+    /*
+     * Groups which have all of the synapse types
+     */
+    private static Vector<String> getGroupsWithAllSynapses(Cell cell, String[] synapseTypes)
+    {
+        Vector<String> groupsWithSynapse = new Vector<String>(cell.getGroupsWithSynapse(synapseTypes[0]));
 
-                //Vector<Integer> idsOfPossibleSegments = new Vector<Integer>();
+        for (int remainingSynIndex = 1; remainingSynIndex < synapseTypes.length; remainingSynIndex++)
+        {
+            groupsWithSynapse.retainAll(cell.getGroupsWithSynapse(synapseTypes[remainingSynIndex]));
+        }
+        return groupsWithSynapse;
+    }
 
-                for (int i = 0; i < allSegments.size(); i++)
-                {
-                    Segment dend = allSegments.elementAt(i);
-                    Vector groups = dend.getGroups();
-                    if ((pp.isAxonsAllowedPost() && groups.contains(Section.AXONAL_GROUP)) || 
-                        (pp.isSomaAllowedPost() && groups.contains(Section.SOMA_GROUP)) ||
-                        (pp.isDendritesAllowedPost() && groups.contains(Section.DENDRITIC_GROUP)))
-                    {
-                        for (int j = 0; j < groups.size(); j++)
-                        {
-                            if (groupsWithSynapse.contains( (String) groups.elementAt(j)))
-                            {
-                                if (!idsOfPossibleSegments.contains(new Integer(dend.getSegmentId())))
-                                {
-                                    idsOfPossibleSegments.add(dend.getSegmentId());
-                                }
-                            }
-                        }
-                    }
-                }
 
-                logger.logComment("Have found " + idsOfPossibleSegments.size() + " possible segments: " +
-                                  idsOfPossibleSegments);
+    private static CachedSynLocInfo getSynLocInfo(Cell cell,
+                                                  String[] synapseTypes,
+                                                  Vector<String> groupsWithSynapse,
+                                                  boolean pre,
+                                                  boolean axonsAllowed,
+                                                  boolean somaAllowed,
+                                                  boolean dendritesAllowed)
+    {
+        StringBuffer key = new StringBuffer(pre ? "pre:" : "post:");
+        key.append(cell.getInstanceName());
+        for (String synapseType: synapseTypes)
+        {
+            key.append(':').append(synapseType);
+        }
+        key.append(axonsAllowed ? ":a" : ":-").append(somaAllowed ? "s" : "-").append(dendritesAllowed ? "d" : "-");
 
-                if (idsOfPossibleSegments.isEmpty())
-                {
-                    return null;
-                }
-                lensOfPossibleSegments.setSize(idsOfPossibleSegments.size());
+        String cacheKey = key.toString();
 
-                for (int o = 0; o < idsOfPossibleSegments.size(); o++)
-                {
-                    int nextId = ( idsOfPossibleSegments.elementAt(o)).intValue();
-                    Segment segment = cell.getSegmentWithId(nextId);
-                    float length = segment.getSegmentLength();
-                    lensOfPossibleSegments.setElementAt(length, o);
+        CachedSynLocInfo info = synLocInfoCache.get(cacheKey);
 
-                    logger.logComment("Looking at segment: " + segment + ", id: " + nextId + ", length: " + length);
-                    totalLengthOfValidSegments += length;
-                }
-                
-                cachedPostSynLocInfo = new CachedSynLocInfo(cell.getInstanceName(), synapseType, idsOfPossibleSegments, lensOfPossibleSegments, totalLengthOfValidSegments);
-                logger.logComment("Regenerated cachedPostSynLocInfo..");
-            }
-            else
-            {
-                totalLengthOfValidSegments = cachedPostSynLocInfo.totalLengthOfValidSegments;
-                idsOfPossibleSegments = cachedPostSynLocInfo.idsOfPossibleSegments;
-                lensOfPossibleSegments = cachedPostSynLocInfo.lensOfPossibleSegments;
-                cachedPostSynLocInfo.stillValid();
-                
-                if (idsOfPossibleSegments.size()==1 && lensOfPossibleSegments.size()==1)
-                {
-                    float fract = -1;
-                    if (lensOfPossibleSegments.get(0)==0) 
-                        fract = 0.5f;
-                    else
-                        fract = ProjectManager.getRandomGenerator().nextFloat();
+        if (info == null || !info.isApplicable(cell, groupsWithSynapse))
+        {
+            info = new CachedSynLocInfo(cell, groupsWithSynapse, axonsAllowed, somaAllowed, dendritesAllowed);
+            synLocInfoCache.put(cacheKey, info);
 
-                    postSynTerm = new PostSynapticTerminalLocation(idsOfPossibleSegments.get(0), fract);
+            logger.logComment("Regenerated synapse location info for {}: {}", cacheKey, info);
+        }
+        return info;
+    }
 
-                    return postSynTerm;
-                }
-                logger.logComment("Reusing post details..");
-            }
-        
-        
-            float chosenDistAlongAll = totalLengthOfValidSegments * (ProjectManager.getRandomGenerator().nextFloat());
+    /**
+     * The segments of a cell which can hold a given set of synapses, with the cumulative lengths of
+     * the segments, so that a point chosen uniformly along their total length can be found by a
+     * binary search. Immutable after creation, so can be shared between threads.
+     */
+    public static class CachedSynLocInfo
+    {
+        private final Cell cell;
+        private final FlatMorphology morphology;
+        private final Vector<String> groupsWithSynapse;
 
-            logger.logComment("Total length: " + totalLengthOfValidSegments +
-                              ", chosen point :" + chosenDistAlongAll + " along...");
+        /*
+         * Index in the FlatMorphology and id of each possible segment
+         */
+        private final int[] indicesOfPossibleSegments;
+        private final int[] idsOfPossibleSegments;
+        private final float[] lensOfPossibleSegments;
+        private final float[] cumulativeLengths;
+        private final float totalLengthOfValidSegments;
 
-            float distChecked = 0;
-            int numSegmentsChecked = 0;
-            boolean pointFound = false;
-            float fractionAlongChosenSegment = 0;
-            int nextIdToCheck = 0;
+        private SegmentBoundingVolumeTree closestPointTree = null;
 
-            if (totalLengthOfValidSegments == 0)
-            {
-                logger.logComment("Probably synaptic connection on soma...");
-                nextIdToCheck = ( idsOfPossibleSegments.elementAt(numSegmentsChecked)).intValue();
-                fractionAlongChosenSegment = 0.5f;
-            }
-            else
+        CachedSynLocInfo(Cell cell,
+                         Vector<String> groupsWithSynapse,
+                         boolean axonsAllowed,
+                         boolean somaAllowed,
+                         boolean dendritesAllowed)
+        {
+            this.cell = cell;
+            this.morphology = cell.getFlatMorphology();
+            this.groupsWithSynapse = groupsWithSynapse;
+
+            int numSegments = morphology.getNumSegments();
+
+            int[] possibleIndices = new int[numSegments];
+            int num = 0;
+            HashSet<Integer> idsFound = new HashSet<Integer>();
+
+            for (int i = 0; i < numSegments; i++)
             {
-                while (!pointFound && numSegmentsChecked <= idsOfPossibleSegments.size())
+                if ((axonsAllowed && morphology.isInGroup(i, Section.AXONAL_GROUP)) ||
+                    (somaAllowed && morphology.isInGroup(i, Section.SOMA_GROUP)) ||
+                    (dendritesAllowed && morphology.isInGroup(i, Section.DENDRITIC_GROUP)))
                 {
-                    nextIdToCheck = ( idsOfPossibleSegments.elementAt(numSegmentsChecked)).intValue();
-
-                    //Segment segment = cell.getSegmentWithId(nextIdToCheck);
-                    float length = lensOfPossibleSegments.get(numSegmentsChecked);
-                    if ( (distChecked + length) > chosenDistAlongAll)
-                    {
-                        pointFound = true;
-                        fractionAlongChosenSegment = (chosenDistAlongAll - distChecked) / length;
-                    }
-                    else
+                    for (String group: groupsWithSynapse)
                     {
-                        distChecked += length;
-                        numSegmentsChecked++;
+                        if (morphology.isInGroup(i, group))
+                        {
+                            if (idsFound.add(morphology.getSegmentId(i)))
+                            {
+                                possibleIndices[num++] = i;
+                            }
+                            break;
+                        }
                     }
                 }
             }
-            postSynTerm
-                = new PostSynapticTerminalLocation(nextIdToCheck,
-                                                   fractionAlongChosenSegment);
 
-            return postSynTerm;
-        
+            indicesOfPossibleSegments = Arrays.copyOf(possibleIndices, num);
+            idsOfPossibleSegments = new int[num];
+            lensOfPossibleSegments = new float[num];
+            cumulativeLengths = new float[num];
 
-    }
-    
-    public class CachedSynLocInfo
-    {
-        Vector<Integer> idsOfPossibleSegments = new Vector<Integer>();
-        Vector<Float> lensOfPossibleSegments = new Vector<Float>();
-        float totalLengthOfValidSegments = 0;
-        long timeCached = -1;
-        String myCellName = null;
-        String[] mySynapseType = null;
-        
-        public boolean isApplicable(String cellName, String[] synapseType)
-        {
-            if (!myCellName.equals(cellName))
-                return false;
-            if (System.currentTimeMillis()-timeCached >600) // wear out quickly...
-                return false;
-            if (mySynapseType.length!=synapseType.length)
-                return false;
-            for(int i=0;i<mySynapseType.length;i++)
+            float totalLength = 0;
+
+            for (int i = 0; i < num; i++)
             {
-                if (!mySynapseType[i].equals(synapseType[i]))
-                    return false;
+                int index = indicesOfPossibleSegments[i];
+
+                idsOfPossibleSegments[i] = morphology.getSegmentId(index);
+                lensOfPossibleSegments[i] = morphology.getLength(index);
+
+                totalLength += lensOfPossibleSegments[i];
+                cumulativeLengths[i] = totalLength;
             }
-            
-            return true;
+            totalLengthOfValidSegments = totalLength;
         }
-        
-        private CachedSynLocInfo(){};
-        
-        public void stillValid()
+
+        /**
+         * True if the cell, its morphology and the groups with the synapses are unchanged
+         */
+        boolean isApplicable(Cell cell, Vector<String> groupsWithSynapse)
         {
-            timeCached = System.currentTimeMillis();
+            return this.cell == cell &&
+                   morphology == cell.getCurrentFlatMorphology() &&
+                   this.groupsWithSynapse.equals(groupsWithSynapse);
         }
-        
-        public CachedSynLocInfo(String cellName, 
-                                String[] synapseType, 
-                                Vector<Integer> idsOfPossibleSegments, 
-                                Vector<Float> lensOfPossibleSegments,
-                                float totalLengthOfValidSegments)
-        {
-            this.myCellName = cellName;
-            this.mySynapseType = synapseType;
-            this.idsOfPossibleSegments = idsOfPossibleSegments;
-            this.lensOfPossibleSegments = lensOfPossibleSegments;
-            this.totalLengthOfValidSegments = totalLengthOfValidSegments;
-            timeCached = System.currentTimeMillis();
-                
+
+        public int getNumPossibleSegments()
+        {
+            return idsOfPossibleSegments.length;
         }
-            
-    }
 
-    /**
-     * Search through the segments on a cell looking for the ones which
-     * support the specific synapse types...
-     *
-     * @param cell The cell in question
-     * @param synapseTypes String[] with synapse type name
-     * @return The location of the synapse or null if not supported
-     */
+        public float getTotalLengthOfValidSegments()
+        {
+            return totalLengthOfValidSegments;
+        }
 
-    public PreSynapticTerminalLocation getPossiblePreSynapticTerminal(Cell cell, 
-                                                                      String[] synapseTypes,
-                                                                      PrePostAllowedLocs pp)
-    {
-        
-        float totalLengthOfValidSegments = 0;
-        Vector<Integer> idsOfPossibleSegments = new Vector<Integer>();
-        Vector<Float> lensOfPossibleSegments = new Vector<Float>();
-            
-        if (!(cachedPreSynLocInfo!=null && cachedPreSynLocInfo.isApplicable(cell.getInstanceName(), synapseTypes))) 
+        /**
+         * Finds the point on the possible segments closest to extPoint (relative to the cell origin),
+         * or null if there are none
+         */
+        SegmentLocation findClosestLocation(Point3f extPoint)
         {
-            cachedPreSynLocInfo =null;
-            Vector<Segment> allSegments = cell.getAllSegments();
+            float[] fractAlong = new float[1];
 
-            Vector<String> groupsWithSynapse = cell.getGroupsWithSynapse(synapseTypes[0]); // get first lot
-            String typesInfo = "";
+            int index = getClosestPointTree().findClosest(extPoint, fractAlong);
 
-            if (synapseTypes.length>1)
-            {
-                for (int remainingSynIndex = 0; remainingSynIndex < synapseTypes.length; remainingSynIndex++)
-                {
-                    
-                    typesInfo = typesInfo+" "+synapseTypes[remainingSynIndex];
-                    Vector remainingSynGroups = cell.getGroupsWithSynapse(synapseTypes[remainingSynIndex]);
+            if (index < 0) return null;
 
-                    for (int includedGroups = 0; includedGroups < groupsWithSynapse.size(); includedGroups++)
-                    {
-                            String includedGroup = groupsWithSynapse.elementAt(includedGroups);
-                            if (!remainingSynGroups.contains(includedGroup))
-                                groupsWithSynapse.remove(includedGroup);
-                    }
-                }
-            }
-            else
-            {
-                typesInfo = synapseTypes[0];
-            }
+            return new SegmentLocation(idsOfPossibleSegments[index], fractAlong[0]);
+        }
 
+        private synchronized SegmentBoundingVolumeTree getClosestPointTree()
+        {
+            if (closestPointTree == null)
+            {
+                closestPointTree = new SegmentBoundingVolumeTree(morphology, indicesOfPossibleSegments);
 
-            logger.logComment(cell.getInstanceName() + " being asked for pre-synaptic point of type " + typesInfo +
-                              " among my segments");
+                logger.logComment("Created: {}", closestPointTree);
+            }
+            return closestPointTree;
+        }
 
-            logger.logComment("groupsWithSynapse: "+ groupsWithSynapse);
+        /**
+         * Picks a point uniformly along the total length of the possible segments, or null if there are none
+         */
+        SegmentLocation chooseLocation(Random random)
+        {
+            int num = idsOfPossibleSegments.length;
 
+            if (num == 0)
+            {
+                return null;
+            }
 
-            // Quick return if just a 1 seg cell 
-            if (allSegments.size()==1 && 
-                allSegments.get(0).isSomaSegment() &&
-                pp.isSomaAllowedPre() &&
-                (groupsWithSynapse.contains(Section.ALL) ||
-                 groupsWithSynapse.contains(Section.SOMA_GROUP)))
+            if (num == 1)
             {
-                //idsOfPossibleSegments.add(allSegments.get(0).getSegmentId());
+                float fract = lensOfPossibleSegments[0] == 0 ? 0.5f : random.nextFloat();
 
-                float fract = ProjectManager.getRandomGenerator().nextFloat();
-                if (allSegments.get(0).isSpherical()) fract = 0.5f;
+                return new SegmentLocation(idsOfPossibleSegments[0], fract);
+            }
 
-                PreSynapticTerminalLocation preSynTerm = new PreSynapticTerminalLocation(allSegments.get(0).getSegmentId(),
-                        fract);
+            float chosenDistAlongAll = totalLengthOfValidSegments * random.nextFloat();
 
-                return preSynTerm;
-            }
-            else
+            if (totalLengthOfValidSegments == 0)
             {
-                for (int i = 0; i < allSegments.size(); i++)
-                {
-                    Segment possSeg = allSegments.elementAt(i);
-                    Vector groups = possSeg.getGroups();
-
-                    if ((pp.isAxonsAllowedPre() && groups.contains(Section.AXONAL_GROUP)) || 
-                        (pp.isSomaAllowedPre() && groups.contains(Section.SOMA_GROUP)) ||
-                        (pp.isDendritesAllowedPre() && groups.contains(Section.DENDRITIC_GROUP)))
-                    {
-                        for (int j = 0; j < groups.size(); j++)
-                        {
-                            if (groupsWithSynapse.contains( (String) groups.elementAt(j)))
-                            {
-                                logger.logComment("seg is candidate: "+ possSeg);
-                                if (!idsOfPossibleSegments.contains(possSeg.getSegmentId()))
-                                {
-                                    idsOfPossibleSegments.add(possSeg.getSegmentId());
-                                }
-                            }
-                        }
-                    }
-                    else
-                    {
-                       logger.logComment("seg is not candidate: "+ possSeg);
-                    }
-                }
+                logger.logComment("Probably synaptic connection on soma...");
+                return new SegmentLocation(idsOfPossibleSegments[0], 0.5f);
             }
 
-            logger.logComment("Have found " + idsOfPossibleSegments.size() + " possible segments: " +
-                              idsOfPossibleSegments);
+            // First segment whose far end is beyond the chosen point
+            int low = 0;
+            int high = num - 1;
 
-            if (idsOfPossibleSegments.size() == 0)
+            while (low < high)
             {
-                return null;
+                int mid = (low + high) >>> 1;
+
+                if (cumulativeLengths[mid] > chosenDistAlongAll)
+                    high = mid;
+                else
+                    low = mid + 1;
             }
-            lensOfPossibleSegments.setSize(idsOfPossibleSegments.size());
-            
-            for (int o = 0; o < idsOfPossibleSegments.size(); o++)
+
+            // Rounding can leave the chosen point at the very end, so use the last segment with any length
+            while (low > 0 && lensOfPossibleSegments[low] == 0)
             {
-                int nextId = ( idsOfPossibleSegments.elementAt(o)).intValue();
-                Segment segment = cell.getSegmentWithId(nextId);
-                float length = segment.getSegmentLength();
-                lensOfPossibleSegments.setElementAt(length, o);
-                
-                logger.logComment("Looking at segment: " + segment + ", id: " + nextId + ", length: " + length);
-                totalLengthOfValidSegments += length;
+                low--;
             }
-        
-            cachedPreSynLocInfo = new CachedSynLocInfo(cell.getInstanceName(), synapseTypes, idsOfPossibleSegments, lensOfPossibleSegments, totalLengthOfValidSegments);
-            logger.logComment("Regenerated cachedPreSynLocInfo..");
-        }
-        else
-        {
-            totalLengthOfValidSegments = cachedPreSynLocInfo.totalLengthOfValidSegments;
-            idsOfPossibleSegments = cachedPreSynLocInfo.idsOfPossibleSegments;
-            lensOfPossibleSegments = cachedPreSynLocInfo.lensOfPossibleSegments;
-            cachedPreSynLocInfo.stillValid();
-            
 
-            if (idsOfPossibleSegments.size()==1 && lensOfPossibleSegments.size()==1)
-            {
-                float fract = -1;
-                if (lensOfPossibleSegments.get(0)==0) 
-                    fract = 0.5f;
-                else
-                    fract = ProjectManager.getRandomGenerator().nextFloat();
+            float distChecked = low == 0 ? 0 : cumulativeLengths[low - 1];
+            float fract = (chosenDistAlongAll - distChecked) / lensOfPossibleSegments[low];
 
-                PreSynapticTerminalLocation preSynTerm = new PreSynapticTerminalLocation(idsOfPossibleSegments.get(0), fract);
+            return new SegmentLocation(idsOfPossibleSegments[low], Math.min(fract, 1));
+        }
 
-                return preSynTerm;
-            }
-            
-            logger.logComment("Reusing details..");
+        @Override
+        public String toString()
+        {
+            return idsOfPossibleSegments.length+" possible segments, total length: "+totalLengthOfValidSegments;
         }
+    }
 
-        float chosenDistAlongAll = totalLengthOfValidSegments * (ProjectManager.getRandomGenerator().nextFloat());
+    /*
+     * The cell numbers last asked for when all cells in a group are allowed
+     */
+    private static volatile AllCellNumbers cachedAllCellNumbers = null;
 
-        logger.logComment("Total length: " + totalLengthOfValidSegments +
-                          ", chosen point :" + chosenDistAlongAll + " along...");
+    /*
+     * Box around the start cell which can contain allowed finish cells, for the last
+     * start & finish cell types and MaxMinLength asked for
+     */
+    private static volatile ConnectionBox cachedConnectionBox = null;
 
-        float distChecked = 0;
-        int numSegmentsChecked = 0;
-        boolean pointFound = false;
-        float fractionAlongChosenSegment = 0;
-        int nextIdToCheck = 0;
+    private static class AllCellNumbers
+    {
+        final String cellGroup;
+        final CellPositionIndex index;
+        final int[] cellNumbers;
 
-        if (totalLengthOfValidSegments == 0)
+        AllCellNumbers(String cellGroup, CellPositionIndex index)
         {
-            logger.logComment("Probably synaptic connection on soma...");
-            nextIdToCheck = ( idsOfPossibleSegments.elementAt(numSegmentsChecked)).intValue();
-            fractionAlongChosenSegment = 0.5f;
+            this.cellGroup = cellGroup;
+            this.index = index;
+            this.cellNumbers = index.getAllCellNumbers();
         }
-        else
+    }
+
+    private static class ConnectionBox
+    {
+        final Cell startCell;
+        final Cell finishCell;
+        final float minLength;
+        final float maxLength;
+        final String dimension;
+        final RectangularBox cellBox;
+
+        ConnectionBox(Cell startCell, Cell finishCell, MaxMinLength maxMin, RectangularBox cellBox)
         {
-            while (!pointFound && numSegmentsChecked <= idsOfPossibleSegments.size())
-            {
-                nextIdToCheck = ( idsOfPossibleSegments.elementAt(numSegmentsChecked)).intValue();
-                //Segment segment = cell.getSegmentWithId(nextIdToCheck);
-                float length = lensOfPossibleSegments.get(numSegmentsChecked);
-                if ( (distChecked + length) > chosenDistAlongAll)
-                {
-                    pointFound = true;
-                    fractionAlongChosenSegment = (chosenDistAlongAll - distChecked) / length;
-                }
-                else
-                {
-                    distChecked += length;
-                    numSegmentsChecked++;
-                }
-            }
+            this.startCell = startCell;
+            this.finishCell = finishCell;
+            this.minLength = maxMin.getMinLength();
+            this.maxLength = maxMin.getMaxLength();
+            this.dimension = maxMin.getDimension();
+            this.cellBox = cellBox;
         }
-        PreSynapticTerminalLocation preSynTerm = new PreSynapticTerminalLocation(nextIdToCheck,
-            fractionAlongChosenSegment);
-
-        return preSynTerm;
 
+        boolean isFor(Cell startCell, Cell finishCell, MaxMinLength maxMin)
+        {
+            return this.startCell == startCell &&
+                   this.finishCell == finishCell &&
+                   minLength == maxMin.getMinLength() &&
+                   maxLength == maxMin.getMaxLength() &&
+                   dimension.equals(maxMin.getDimension());
+        }
     }
-    
-    private static int[] cachedAllCellIds = null;
-    private static String cachedFinishCellGroup = null;
-    private static MaxMinLength cachedMaxMinLength = null;
-    private static Point3f cachedStartPos = null;
-    private static String cachedStartCellType = null;
-    private static RectangularBox cachedCellBoundBox = null;
-    
-    
+
+
+    /**
+     * Gets the numbers of the cells in the finish cell group which may be close enough to the start cell
+     * to satisfy the MaxMinLength. Note: this creates a new index of the positions on each call,
+     * so use the version taking a CellPositionIndex when calling for many start cells.
+     */
     public static int[] getAllowedPostCellIds(Cell startCell,
                                               Cell finishCell,
                                               Point3f startCellPos, 
                                               MaxMinLength maxMin, 
                                               String finishCellGroup, 
                                               ArrayList<PositionRecord> finishPosRecords)
+    {
+        return getAllowedPostCellIds(startCell,
+                                     finishCell,
+                                     startCellPos,
+                                     maxMin,
+                                     finishCellGroup,
+                                     new CellPositionIndex(finishPosRecords));
+    }
+
+    /**
+     * Gets the numbers of the cells in the finish cell group which may be close enough to the start cell
+     * to satisfy the MaxMinLength, in the order of the position records. The box searched is grown by the
+     * finish cell's extent as well as the max length, and is used for finish cells with more than one
+     * segment too (earlier versions gave every cell in the group for these), so the candidates, and so a
+     * network generated from a given random seed, can differ from those of earlier versions.
+     *
+     * @param finishPosIndex Index of the positions in the finish cell group, e.g. from
+     * GeneratedCellPositions.getPositionIndex()
+     */
+    public static int[] getAllowedPostCellIds(Cell startCell,
+                                              Cell finishCell,
+                                              Point3f startCellPos, 
+                                              MaxMinLength maxMin, 
+                                              String finishCellGroup, 
+                                              CellPositionIndex finishPosIndex)
     {
         boolean maxMinIncludesAll = maxMin.getMinLength()==0 && maxMin.getMaxLength()==Float.MAX_VALUE;
         
-        if (maxMinIncludesAll &&
-            finishCellGroup.equals(cachedFinishCellGroup) &&
-            finishPosRecords.size() == cachedAllCellIds.length)
+        if (maxMinIncludesAll)
         {
-            return cachedAllCellIds;
-        }
-        
-        int[] allowedFinishCells = null;
-        
-        if (maxMinIncludesAll || finishCell.getAllSegments().size()>1)  // TODO: deal with case where post cell size is taken into account...
-        {
-            allowedFinishCells = new int[finishPosRecords.size()];
+            AllCellNumbers cached = cachedAllCellNumbers;
 
-            for(int i=0;i<finishPosRecords.size();i++)
+            if (cached == null || cached.index != finishPosIndex || !cached.cellGroup.equals(finishCellGroup))
             {
-                allowedFinishCells[i] = finishPosRecords.get(i).cellNumber;
+                cached = new AllCellNumbers(finishCellGroup, finishPosIndex);
+                cachedAllCellNumbers = cached;
             }
+            return cached.cellNumbers;
+        }
+
+        RectangularBox cellBox = null;
+
+        ConnectionBox cachedBox = cachedConnectionBox;
+
+        if (cachedBox != null && cachedBox.isFor(startCell, finishCell, maxMin))
+        {
+            cellBox = cachedBox.cellBox;
         }
         else
         {
-            RectangularBox cellBox = null;
-            
-            if(cachedStartCellType!=null && cachedStartCellType.equals(startCell.getInstanceName()))
+            startCell.getFlatMorphology();
+            cellBox = getSurroundingBox(startCell, false, false);
+
+            /*
+             * The distance is measured to a point on the finish cell, which may be anywhere within
+             * the finish cell's extent from its position, so the box is grown by that too
+             */
+            float reach = maxMin.getMaxLength() + finishCell.getFlatMorphology().getMaxDistanceFromOrigin();
+
+            if (maxMin.getDimension().equals(MaxMinLength.RADIAL) ||
+               (maxMin.getDimension().equals(MaxMinLength.SOMA)) ||
+                maxMin.getDimension().equals(MaxMinLength.X_DIR))
             {
-                cellBox = cachedCellBoundBox;
+                cellBox.setParameter(RectangularBox.X_PARAM, cellBox.getLowestXValue() - reach);
+                cellBox.setParameter(RectangularBox.WIDTH_PARAM, cellBox.getXExtent() + 2*reach);
             }
-            else
+            if (maxMin.getDimension().equals(MaxMinLength.RADIAL) ||
+               (maxMin.getDimension().equals(MaxMinLength.SOMA)) ||
+                maxMin.getDimension().equals(MaxMinLength.Y_DIR))
             {
-                float maxX = CellTopologyHelper.getMaxXExtent(startCell, false, false);
-                float maxY = CellTopologyHelper.getMaxYExtent(startCell, false, false);
-                float maxZ = CellTopologyHelper.getMaxZExtent(startCell, false, false);
-                float minX = CellTopologyHelper.getMinXExtent(startCell, false, false);
-                float minY = CellTopologyHelper.getMinYExtent(startCell, false, false);
-                float minZ = CellTopologyHelper.getMinZExtent(startCell, false, false);
-
-                cellBox = new RectangularBox(minX, minY, minZ, maxX-minX, maxY-minY, maxZ-minZ);
-
-                if (maxMin.getDimension().equals(MaxMinLength.RADIAL) ||
-                   (maxMin.getDimension().equals(MaxMinLength.SOMA)) ||
-                    maxMin.getDimension().equals(MaxMinLength.X_DIR))
-                {
-                    cellBox.setParameter(RectangularBox.X_PARAM, cellBox.getLowestXValue() - maxMin.getMaxLength());
-                    cellBox.setParameter(RectangularBox.WIDTH_PARAM, cellBox.getXExtent() + 2*maxMin.getMaxLength());
-                }
-                if (maxMin.getDimension().equals(MaxMinLength.RADIAL) ||
-                   (maxMin.getDimension().equals(MaxMinLength.SOMA)) ||
-                    maxMin.getDimension().equals(MaxMinLength.Y_DIR))
-                {
-                    cellBox.setParameter(RectangularBox.Y_PARAM, cellBox.getLowestYValue() - maxMin.getMaxLength());
-                    cellBox.setParameter(RectangularBox.HEIGHT_PARAM, cellBox.getYExtent() + 2*maxMin.getMaxLength());
-                }
-                if (maxMin.getDimension().equals(MaxMinLength.RADIAL) ||
-                   (maxMin.getDimension().equals(MaxMinLength.SOMA)) ||
-                    maxMin.getDimension().equals(MaxMinLength.Z_DIR))
-                {
-                    cellBox.setParameter(RectangularBox.Z_PARAM, cellBox.getLowestZValue() - maxMin.getMaxLength());
-                    cellBox.setParameter(RectangularBox.DEPTH_PARAM, cellBox.getZExtent() + 2*maxMin.getMaxLength());
-                }
-                
-                
-                if (maxMin.getDimension().equals(MaxMinLength.X_DIR))
-                {
-                    cellBox.setParameter(RectangularBox.Y_PARAM, Float.MAX_VALUE*-1);
-                    cellBox.setParameter(RectangularBox.HEIGHT_PARAM, Float.MAX_VALUE);
-                    cellBox.setParameter(RectangularBox.Z_PARAM, Float.MAX_VALUE*-1);
-                    cellBox.setParameter(RectangularBox.DEPTH_PARAM, Float.MAX_VALUE);
-                }
-                
-                if (maxMin.getDimension().equals(MaxMinLength.Y_DIR))
-                {
-                    cellBox.setParameter(RectangularBox.X_PARAM, Float.MAX_VALUE*-1);
-                    cellBox.setParameter(RectangularBox.WIDTH_PARAM, Float.MAX_VALUE);
-                    cellBox.setParameter(RectangularBox.Z_PARAM, Float.MAX_VALUE*-1);
-                    cellBox.setParameter(RectangularBox.DEPTH_PARAM, Float.MAX_VALUE);
-                }
-                
-                if (maxMin.getDimension().equals(MaxMinLength.Z_DIR))
-                {
-                    cellBox.setParameter(RectangularBox.X_PARAM, Float.MAX_VALUE*-1);
-                    cellBox.setParameter(RectangularBox.WIDTH_PARAM, Float.MAX_VALUE);
-                    cellBox.setParameter(RectangularBox.Y_PARAM, Float.MAX_VALUE*-1);
-                    cellBox.setParameter(RectangularBox.HEIGHT_PARAM, Float.MAX_VALUE);
-                }               
-
-                cachedStartCellType = startCell.getInstanceName();
-                cachedCellBoundBox = cellBox;
+                cellBox.setParameter(RectangularBox.Y_PARAM, cellBox.getLowestYValue() - reach);
+                cellBox.setParameter(RectangularBox.HEIGHT_PARAM, cellBox.getYExtent() + 2*reach);
+            }
+            if (maxMin.getDimension().equals(MaxMinLength.RADIAL) ||
+               (maxMin.getDimension().equals(MaxMinLength.SOMA)) ||
+                maxMin.getDimension().equals(MaxMinLength.Z_DIR))
+            {
+                cellBox.setParameter(RectangularBox.Z_PARAM, cellBox.getLowestZValue() - reach);
+                cellBox.setParameter(RectangularBox.DEPTH_PARAM, cellBox.getZExtent() + 2*reach);
             }
-                
-            int[] tempPosRecs = new int[finishPosRecords.size()]; // set to max temp
-
-            int countGoodPos = 0;
             
-            RectangularBox connBoundBox = (RectangularBox)cellBox.getTranslatedRegion(new Vector3f(startCellPos));
-
-            float minX = connBoundBox.getLowestXValue();
-            float minY = connBoundBox.getLowestYValue();
-            float minZ = connBoundBox.getLowestZValue();
-            float maxX = connBoundBox.getHighestXValue();
-            float maxY = connBoundBox.getHighestYValue();
-            float maxZ = connBoundBox.getHighestZValue();
             
-            for(PositionRecord pos: finishPosRecords)
-            {
-                if (pos.x_pos >= minX &&
-                    pos.x_pos <= maxX &&
-                    pos.y_pos >= minY &&
-                    pos.y_pos <= maxY &&
-                    pos.z_pos >= minZ &&
-                    pos.z_pos <= maxZ)
-                {
-                    tempPosRecs[countGoodPos] = pos.cellNumber;
-                    countGoodPos++;
-                }
-                else
-                {
-                    logger.logComment("No good point: "+pos+" for start cell: "+ startCellPos);
-                }
+            if (maxMin.getDimension().equals(MaxMinLength.X_DIR))
+            {
+                cellBox.setParameter(RectangularBox.Y_PARAM, Float.MAX_VALUE*-1);
+                cellBox.setParameter(RectangularBox.HEIGHT_PARAM, Float.MAX_VALUE);
+                cellBox.setParameter(RectangularBox.Z_PARAM, Float.MAX_VALUE*-1);
+                cellBox.setParameter(RectangularBox.DEPTH_PARAM, Float.MAX_VALUE);
             }
-
-            allowedFinishCells = new int[countGoodPos];
-
-            for(int i=0;i<countGoodPos;i++)
+            
+            if (maxMin.getDimension().equals(MaxMinLength.Y_DIR))
             {
-                allowedFinishCells[i] = tempPosRecs[i];
+                cellBox.setParameter(RectangularBox.X_PARAM, Float.MAX_VALUE*-1);
+                cellBox.setParameter(RectangularBox.WIDTH_PARAM, Float.MAX_VALUE);
+                cellBox.setParameter(RectangularBox.Z_PARAM, Float.MAX_VALUE*-1);
+                cellBox.setParameter(RectangularBox.DEPTH_PARAM, Float.MAX_VALUE);
             }
-            logger.logComment("Total finish cells: "+ finishPosRecords.size() +", but returning only: "+ countGoodPos+", box: "+ connBoundBox);
-                        
+            
+            if (maxMin.getDimension().equals(MaxMinLength.Z_DIR))
+            {
+                cellBox.setParameter(RectangularBox.X_PARAM, Float.MAX_VALUE*-1);
+                cellBox.setParameter(RectangularBox.WIDTH_PARAM, Float.MAX_VALUE);
+                cellBox.setParameter(RectangularBox.Y_PARAM, Float.MAX_VALUE*-1);
+                cellBox.setParameter(RectangularBox.HEIGHT_PARAM, Float.MAX_VALUE);
+            }               
+
+            cachedConnectionBox = new ConnectionBox(startCell, finishCell, maxMin, cellBox);
         }
-        
-        
-        cachedFinishCellGroup = finishCellGroup;
-        cachedAllCellIds = allowedFinishCells;
-        cachedMaxMinLength = maxMin;
+            
+        RectangularBox connBoundBox = (RectangularBox)cellBox.getTranslatedRegion(new Vector3f(startCellPos));
+
+        int[] allowedFinishCells = finishPosIndex.getCellNumbersInBox(connBoundBox.getLowestXValue(),
+                                                                      connBoundBox.getLowestYValue(),
+                                                                      connBoundBox.getLowestZValue(),
+                                                                      connBoundBox.getHighestXValue(),
+                                                                      connBoundBox.getHighestYValue(),
+                                                                      connBoundBox.getHighestZValue());
+
+        logger.logComment("Total finish cells: {}, but returning only: {}, box: {}",
+                          finishPosIndex.getNumberPositions(), allowedFinishCells.length, connBoundBox);
         
         return allowedFinishCells;
     }
@@ -679,6 +609,16 @@ public class CellTopologyHelper
                           + " distAlong: "
                           + displacementAlong);*/
 
+        FlatMorphology flat = cell.getCurrentFlatMorphology();
+
+        if (flat != null)
+        {
+            int index = flat.getIndexOfSegmentId(segmentId);
+
+            if (index >= 0)
+                return flat.getPointAlong(index, displacementAlong, new Point3f());
+        }
+
         Segment segment = cell.getSegmentWithId(segmentId);
 
         Point3f startPoint = segment.getStartPointPosition();
@@ -716,19 +656,19 @@ public class CellTopologyHelper
     {
         Vector allSegments = cell.getAllSegments();
         Vector<Segment> secSegments = new Vector<Segment>();
-        logger.logComment("Getting all segments in section: "+ section);
+        logger.logComment("Getting all segments in section: {}", section);
         for (int j = 0; j < allSegments.size(); j++)
         {
                 Segment nextSeg = (Segment)allSegments.elementAt(j);
                 if (nextSeg.getSection().equals(section))
                 {
-                    logger.logComment("Found segment: "+ nextSeg);
+                    logger.logComment("Found segment: {}", nextSeg);
                     boolean problem = false;
                     //secSegments.add(nextSeg);
                     for (int k = 0; k < secSegments.size();k++)
                     {
                         Segment oldSeg = (Segment)allSegments.elementAt(k);
-                    logger.logComment("Checking old seg: : "+ oldSeg);
+                    logger.logComment("Checking old seg: : {}", oldSeg);
 
                         if (oldSeg.getParentSegment()!=null && oldSeg.getParentSegment().equals(nextSeg))
                         {
@@ -823,18 +763,14 @@ public class CellTopologyHelper
                                                      Section section,
                                                      float displacementAlong)
     {
-        logger.logComment("Going to convert point on "
-                          + cell.getInstanceName()
-                          + ", section: "
-                          + section
-                          + " distAlong: "
-                          + displacementAlong);
+        logger.logComment("Going to convert point on {}, section: {} distAlong: {}",
+                          cell.getInstanceName(), section, displacementAlong);
 
         //Segment segment = cell.getSegmentWithId(segmentId);
 
         float totalLengthParentSection = getSectionLength(cell, section);
 
-        logger.logComment("totalLengthParentSection: "+ totalLengthParentSection);
+        logger.logComment("totalLengthParentSection: {}", totalLengthParentSection);
 
         if (totalLengthParentSection==0)
         {
@@ -853,7 +789,7 @@ public class CellTopologyHelper
         {
             Segment nextSeg = (Segment) allSegsInSection.elementAt(count);
             count++;
-            logger.logComment("Old totalSoFar: "+totalSoFar);
+            logger.logComment("Old totalSoFar: {}", totalSoFar);
 
             if(totalSoFar + nextSeg.getSegmentLength()>= lengthToGo)
             {
@@ -861,14 +797,14 @@ public class CellTopologyHelper
                 float distAlongSeg = lengthToGo - totalSoFar;
                 fractionAlongSegment = distAlongSeg/nextSeg.getSegmentLength();
 
-                logger.logComment("fractionAlongSegment: "+fractionAlongSegment);
+                logger.logComment("fractionAlongSegment: {}", fractionAlongSegment);
 
 
                 segmentContainingPoint = nextSeg;
             }
 
             totalSoFar = totalSoFar + nextSeg.getSegmentLength();
-            logger.logComment("New totalSoFar: "+totalSoFar);
+            logger.logComment("New totalSoFar: {}", totalSoFar);
         }
 
         Point3f point = convertSegmentDisplacement(cell,
@@ -892,6 +828,29 @@ public class CellTopologyHelper
 
     public static RectangularBox getSurroundingBox(Cell cell,  boolean somaOnly, boolean inclAxArbors)
     {
+        FlatMorphology flat = somaOnly ? null : cell.getCurrentFlatMorphology();
+
+        if (flat != null)
+        {
+            float[] min = new float[]{flat.getMinExtent(0), flat.getMinExtent(1), flat.getMinExtent(2)};
+            float[] max = new float[]{flat.getMaxExtent(0), flat.getMaxExtent(1), flat.getMaxExtent(2)};
+
+            if (inclAxArbors)
+            {
+                for (AxonalConnRegion aa : cell.getAxonalArbours())
+                {
+                    min[0] = Math.min(aa.getRegion().getLowestXValue(), min[0]);
+                    min[1] = Math.min(aa.getRegion().getLowestYValue(), min[1]);
+                    min[2] = Math.min(aa.getRegion().getLowestZValue(), min[2]);
+                    max[0] = Math.max(aa.getRegion().getHighestXValue(), max[0]);
+                    max[1] = Math.max(aa.getRegion().getHighestYValue(), max[1]);
+                    max[2] = Math.max(aa.getRegion().getHighestZValue(), max[2]);
+                }
+            }
+            return new RectangularBox(min[0], min[1], min[2],
+                                      max[0] - min[0], max[1] - min[1], max[2] - min[2]);
+        }
+
         float minX = getMinXExtent(cell, somaOnly, inclAxArbors);
         float minY = getMinYExtent(cell, somaOnly, inclAxArbors);
         float minZ = getMinZExtent(cell, somaOnly, inclAxArbors);
@@ -952,7 +911,7 @@ public class CellTopologyHelper
             totalLengthSection = totalLengthSection  + nextSeg.getSegmentLength();
         }
 
-        logger.logComment("totalLengthSection: "+ totalLengthSection);
+        logger.logComment("totalLengthSection: {}", totalLengthSection);
 
         return totalLengthSection;
     }
@@ -973,109 +932,16 @@ public class CellTopologyHelper
                                                                                       Point3f extPoint,
                                                                                       PrePostAllowedLocs pp)
     {
-        Vector allSegments = cell.getAllSegments();
-        Vector groupsWithSynapse = cell.getGroupsWithSynapse(synapseTypes[0]); // get first lot
+        CachedSynLocInfo info = getSynLocInfo(cell, synapseTypes, getGroupsWithAllSynapses(cell, synapseTypes), false,
+                                              pp.isAxonsAllowedPost(),
+                                              pp.isSomaAllowedPost(),
+                                              pp.isDendritesAllowedPost());
 
-        if (synapseTypes.length > 1)
-        {
-            for (int remainingSynIndex = 0; remainingSynIndex < synapseTypes.length; remainingSynIndex++)
-            {
-                Vector remainingSynGroups = cell.getGroupsWithSynapse(synapseTypes[remainingSynIndex]);
+        SegmentLocation closest = info.findClosestLocation(extPoint);
 
-                for (int includedGroups = 0; includedGroups < groupsWithSynapse.size(); includedGroups++)
-                {
-                    String includedGroup = (String) groupsWithSynapse.elementAt(includedGroups);
-                    if (!remainingSynGroups.contains(includedGroup))
-                        groupsWithSynapse.remove(includedGroup);
-                }
-            }
-        }
-
-
-        logger.logComment(cell.getInstanceName()
-                          + " being asked for synapse of type "
-                          +  synapseTypes[0]
-                          + ", etc among my dendritic segments, closest to: "
-                          + Utils3D.getShortStringDesc(extPoint));
-
-        Vector<Integer> idsOfPossibleSegments = new Vector<Integer>();
-
-        for (int i = 0; i < allSegments.size(); i++)
-        {
-            Segment dend = (Segment) allSegments.elementAt(i);
-            Vector groups = dend.getGroups();
-            if ((pp.isAxonsAllowedPost() && groups.contains(Section.AXONAL_GROUP)) || 
-                (pp.isSomaAllowedPost() && groups.contains(Section.SOMA_GROUP)) ||
-                (pp.isDendritesAllowedPost() && groups.contains(Section.DENDRITIC_GROUP)))
-            {
-                for (int j = 0; j < groups.size(); j++)
-                {
-                    if (groupsWithSynapse.contains( (String) groups.elementAt(j)))
-                    {
-                        if (!idsOfPossibleSegments.contains(dend.getSegmentId()))
-                        {
-                            idsOfPossibleSegments.add(dend.getSegmentId());
-                        }
-                    }
-                }
-            }
-        }
-
-        logger.logComment("Have found " + idsOfPossibleSegments.size() + " possible segments");
-
-        if (idsOfPossibleSegments.isEmpty())
-        {
-            return null;
-        }
-
-        float bestDistanceSoFar = Float.MAX_VALUE;
-
-        int idOfBest = -1;
-        float distAlongBest = -1f;
-
-        for (int o = 0; o < idsOfPossibleSegments.size(); o++)
-        {
-            int nextId = idsOfPossibleSegments.elementAt(o).intValue();
-            logger.logComment("Checking nextId: " + nextId);
-            Segment segment = cell.getSegmentWithId(nextId);
-
-            logger.logComment("Checking segment: " + segment);
-
-            Point3f closestPoint = getClosestPointOnLine(segment.getStartPointPosition(),
-                                                            segment.getEndPointPosition(),
-                                                            extPoint);
-
-            if (extPoint.distance(closestPoint) < bestDistanceSoFar)
-            {
-                bestDistanceSoFar = extPoint.distance(closestPoint);
-                idOfBest = nextId;
-
-                if (segment.getStartPointPosition().distance(segment.getEndPointPosition())==0)
-                    distAlongBest = 0;
-
-                else
-                    distAlongBest
-                    = (segment.getStartPointPosition().distance(closestPoint)) /
-                    (segment.getStartPointPosition().distance(segment.getEndPointPosition()));
-
-                logger.logComment("Best so far: "
-                                  + bestDistanceSoFar
-                                  + " idOfBest: "
-                                  + idOfBest
-                                  + " distAlongBest: "
-                                  + distAlongBest);
-
-            }
-
-        }
-
-        PostSynapticTerminalLocation postSynTerm
-            = new PostSynapticTerminalLocation(idOfBest, distAlongBest);
-
-        logger.logComment("Returning: " + postSynTerm);
-
-        return postSynTerm;
+        if (closest == null) return null;
 
+        return new PostSynapticTerminalLocation(closest.getSegmentId(), closest.getFractAlong());
     }
 
     /**
@@ -1093,131 +959,16 @@ public class CellTopologyHelper
                                                                                     Point3f extPoint,
                                                                                     PrePostAllowedLocs pp)
     {
-        Vector allSegments = cell.getAllSegments();
-
-        Vector groupsWithSynapse = cell.getGroupsWithSynapse(synapseTypes[0]); // get first lot
-
-        if (synapseTypes.length > 1)
-        {
-            for (int remainingSynIndex = 0; remainingSynIndex < synapseTypes.length; remainingSynIndex++)
-            {
-                Vector remainingSynGroups = cell.getGroupsWithSynapse(synapseTypes[remainingSynIndex]);
-
-                for (int includedGroups = 0; includedGroups < groupsWithSynapse.size(); includedGroups++)
-                {
-                    String includedGroup = (String) groupsWithSynapse.elementAt(includedGroups);
-                    if (!remainingSynGroups.contains(includedGroup))
-                        groupsWithSynapse.remove(includedGroup);
-                }
-            }
-        }
-
-
-        logger.logComment(cell.getInstanceName()
-                          + " being asked for synapse of type "
-                          + synapseTypes[0]
-                          + ", etc. among my axonal segments, closest to: "
-                          + Utils3D.getShortStringDesc(extPoint));
-
-        Vector<Integer> idsOfPossibleSegments = new Vector<Integer>();
-
-        for (int i = 0; i < allSegments.size(); i++)
-        {
-            Segment axon = (Segment) allSegments.elementAt(i);
-            Vector groups = axon.getGroups();
-            if ((pp.isAxonsAllowedPre() && groups.contains(Section.AXONAL_GROUP)) || 
-                (pp.isSomaAllowedPre() && groups.contains(Section.SOMA_GROUP)) ||
-                (pp.isDendritesAllowedPre() && groups.contains(Section.DENDRITIC_GROUP)))
-            {
-                for (int j = 0; j < groups.size(); j++)
-                {
-                    if (groupsWithSynapse.contains( (String) groups.elementAt(j)))
-                    {
-                        if (!idsOfPossibleSegments.contains(axon.getSegmentId()))
-                        {
-                            idsOfPossibleSegments.add(axon.getSegmentId());
-                        }
-                    }
-                }
-            }
-        }
-
-        logger.logComment("Have found " + idsOfPossibleSegments.size() + " possible segments");
-
-        if (idsOfPossibleSegments.size() == 0)
-        {
-            return null;
-        }
-
-        float bestDistanceSoFar = Float.MAX_VALUE;
-
-        int idOfBest = -1;
-        float distAlongBest = -1f;
+        CachedSynLocInfo info = getSynLocInfo(cell, synapseTypes, getGroupsWithAllSynapses(cell, synapseTypes), true,
+                                              pp.isAxonsAllowedPre(),
+                                              pp.isSomaAllowedPre(),
+                                              pp.isDendritesAllowedPre());
 
-        for (int o = 0; o < idsOfPossibleSegments.size(); o++)
-        {
-            int nextId = idsOfPossibleSegments.elementAt(o).intValue();
-            Segment segment = cell.getSegmentWithId(nextId);
-
-            logger.logComment("Checking segment: " + segment);
-
-            Point3f closestPoint = getClosestPointOnLine(segment.getStartPointPosition(),
-                                                            segment.getEndPointPosition(),
-                                                            extPoint);
-
-            if (extPoint.distance(closestPoint) < bestDistanceSoFar)
-            {
-                bestDistanceSoFar = extPoint.distance(closestPoint);
-                idOfBest = nextId;
-
-                if (segment.getStartPointPosition().distance(segment.getEndPointPosition())==0)
-                             distAlongBest = 0;
-
-                         else
-                distAlongBest
-                    = (segment.getStartPointPosition().distance(closestPoint)) /
-                    (segment.getStartPointPosition().distance(segment.getEndPointPosition()));
-
-                logger.logComment("Best so far: "
-                                  + bestDistanceSoFar
-                                  + " idOfBest: "
-                                  + idOfBest
-                                  + " distAlongBest: "
-                                  + distAlongBest);
-
-            }
-            /*
-                   // check end point
-                         float endPointDist = extPoint.distance(segment.getEndPointPosition());
-                         logger.logComment("end: "+ endPointDist);
-                         if (endPointDist<bestDistanceSoFar)
-                         {
-                bestDistanceSoFar = endPointDist;
-                indexOfBest = nextIndex;
-                distAlongBest = 1f;
-                logger.logComment("end is best so far...");
-                         }
-
-
-                     // check start point...
-                         float startPointDist = extPoint.distance(segment.getStartPointPosition());
-                         logger.logComment("startPointDist: "+ startPointDist);
-                         if (startPointDist<bestDistanceSoFar)
-                         {
-                bestDistanceSoFar = startPointDist;
-                indexOfBest = nextIndex;
-                distAlongBest = 0f;
-                logger.logComment("start is best so far...");
-                         }
-             */
-        }
+        SegmentLocation closest = info.findClosestLocation(extPoint);
 
-        PreSynapticTerminalLocation preSynTerm
-            = new PreSynapticTerminalLocation(idOfBest, distAlongBest);
+        if (closest == null) return null;
 
-        logger.logComment("Returning: " + preSynTerm);
-
-        return preSynTerm;
+        return new PreSynapticTerminalLocation(closest.getSegmentId(), closest.getFractAlong());
     }
 
 
@@ -1233,19 +984,18 @@ public class CellTopologyHelper
                                                             segLocation.getSegmentId(),
                                                             segLocation.getFractAlong());
 
-        logger.logComment("relativePointSegLoc: " +
-                          Utils3D.getShortStringDesc(relativePointSegLoc));
+        if (logger.isLoggingComments())
+            logger.logComment("relativePointSegLoc: " + Utils3D.getShortStringDesc(relativePointSegLoc));
 
-        Point3f cellPosition
+        Point3f segLocAbsolutePosition
             = project.generatedCellPositions.getOneCellPosition(cellGroup,
-                                                                cellNum);
-
-        Point3f segLocAbsolutePosition = new Point3f(cellPosition);
+                                                                cellNum,
+                                                                new Point3f());
 
         segLocAbsolutePosition.add(relativePointSegLoc);
 
-        logger.logComment("segLocAbsolutePosition: " +
-                          Utils3D.getShortStringDesc(segLocAbsolutePosition));
+        if (logger.isLoggingComments())
+            logger.logComment("segLocAbsolutePosition: " + Utils3D.getShortStringDesc(segLocAbsolutePosition));
 
         return segLocAbsolutePosition;
 
@@ -1257,6 +1007,20 @@ public class CellTopologyHelper
      * Note not just perpendicularly closest, has to be to point ON the line
      */
     private static Point3f getClosestPointOnLine(Point3f startPoint, Point3f endPoint, Point3f extPoint)
+    {
+        return getClosestPointOnLine(startPoint, endPoint, extPoint, new Point3f(), new Vector3f(), new Vector3f());
+    }
+
+    /**
+     * As getClosestPointOnLine(Point3f, Point3f, Point3f), using the objects passed in rather than creating
+     * new ones. Returns startPoint, endPoint or result
+     */
+    static Point3f getClosestPointOnLine(Point3f startPoint,
+                                         Point3f endPoint,
+                                         Point3f extPoint,
+                                         Point3f result,
+                                         Vector3f lineRelToOrigin,
+                                         Vector3f extPointRelToOrigin)
     {
         if (startPoint.equals(endPoint)) return startPoint;
 
@@ -1264,10 +1028,6 @@ public class CellTopologyHelper
         float lengthToStartSquared = extPoint.distanceSquared(startPoint);
         float lengthToEndSquared = extPoint.distanceSquared(endPoint);
 
-        logger.logComment("lengthSquared: " + lengthSquared +
-                          ", lengthToStartSquared: " + lengthToStartSquared +
-                          ", lengthToEndSquared: " + lengthToEndSquared);
-
         // if it's "behind" the start point...
         if (lengthToEndSquared >= lengthToStartSquared + lengthSquared)
         {
@@ -1284,21 +1044,21 @@ public class CellTopologyHelper
         else
         {
             logger.logComment("Closest to point between start and end");
-            Vector3f lineRelToOrigin = new Vector3f(endPoint);
+            lineRelToOrigin.set(endPoint);
             lineRelToOrigin.sub(startPoint);
 
-            Vector3f extPointRelToOrigin = new Vector3f(extPoint);
+            extPointRelToOrigin.set(extPoint);
             extPointRelToOrigin.sub(startPoint);
 
-            Vector3f unitVecParallelLine = new Vector3f(lineRelToOrigin);
+            Vector3f unitVecParallelLine = lineRelToOrigin;
             unitVecParallelLine.normalize();
 
             float projectionExtPoint = extPointRelToOrigin.dot(unitVecParallelLine);
 
-            Vector3f pointOnLine = new Vector3f(unitVecParallelLine);
-            pointOnLine.scale(projectionExtPoint);
-            pointOnLine.add(startPoint);
-            return new Point3f(pointOnLine);
+            result.set(unitVecParallelLine);
+            result.scale(projectionExtPoint);
+            result.add(startPoint);
+            return result;
         }
 
     }
@@ -1324,12 +1084,11 @@ public class CellTopologyHelper
             sourceEndPoint.location.getSegmentId(),
             sourceEndPoint.location.getFractAlong());
 
-        Point3f sourceCellPosition
+        Point3f sourceSynapsePosition
             = project.generatedCellPositions.getOneCellPosition(
             sourceCellGroup,
-            sourceEndPoint.cellNumber);
-
-        Point3f sourceSynapsePosition = new Point3f(sourceCellPosition);
+            sourceEndPoint.cellNumber,
+            new Point3f());
         sourceSynapsePosition.add(relativePointSource);
 
 
@@ -1339,12 +1098,11 @@ public class CellTopologyHelper
             targetEndPoint.location.getSegmentId(),
             targetEndPoint.location.getFractAlong());
 
-        Point3f targetCellPosition
+        Point3f targetSynapsePosition
             = project.generatedCellPositions.getOneCellPosition(
             targetCellGroup,
-            targetEndPoint.cellNumber);
-
-        Point3f targetSynapsePosition = new Point3f(targetCellPosition);
+            targetEndPoint.cellNumber,
+            new Point3f());
         targetSynapsePosition.add(relativePointTarget);
         
         float dist = 0;
@@ -1397,12 +1155,8 @@ public class CellTopologyHelper
                                                      SynapticConnectionEndPoint targetEndPoint,
                                                      String dimension)
     {
-        logger.logComment("getSynapticEndpointsDistance called for: "
-                          + "sourceCellGroup: " + sourceCellGroup
-                          + ", sourceEndPoint: " + sourceEndPoint
-                          + ", targetCellGroup: " + targetCellGroup
-                          + ", targetEndPoint: " + targetEndPoint
-                          + ", dimension: " + dimension);
+        logger.logComment("getSynapticEndpointsDistance called for: sourceCellGroup: {}, sourceEndPoint: {}, targetCellGroup: {}, targetEndPoint: {}, dimension: {}",
+                          sourceCellGroup, sourceEndPoint, targetCellGroup, targetEndPoint, dimension);
 
         String sourceCellType = project.cellGroupsInfo.getCellType(sourceCellGroup);
         Cell sourceCell = project.cellManager.getCell(sourceCellType);
@@ -1413,12 +1167,11 @@ public class CellTopologyHelper
             sourceEndPoint.location.getSegmentId(),
             sourceEndPoint.location.getFractAlong());
 
-        Point3f sourceCellPosition
+        Point3f sourceSynapsePosition
             = project.generatedCellPositions.getOneCellPosition(
             sourceCellGroup,
-            sourceEndPoint.cellNumber);
-
-        Point3f sourceSynapsePosition = new Point3f(sourceCellPosition);
+            sourceEndPoint.cellNumber,
+            new Point3f());
         sourceSynapsePosition.add(relativePointSource);
 
         String targetCellType = project.cellGroupsInfo.getCellType(targetCellGroup);
@@ -1430,12 +1183,11 @@ public class CellTopologyHelper
             targetEndPoint.location.getSegmentId(),
             targetEndPoint.location.getFractAlong());
 
-        Point3f targetCellPosition
+        Point3f targetSynapsePosition
             = project.generatedCellPositions.getOneCellPosition(
             targetCellGroup,
-            targetEndPoint.cellNumber);
-
-        Point3f targetSynapsePosition = new Point3f(targetCellPosition);
+            targetEndPoint.cellNumber,
+            new Point3f());
         targetSynapsePosition.add(relativePointTarget);
 
         float dist = 0;
@@ -1447,8 +1199,8 @@ public class CellTopologyHelper
         // should be r, but just in case something else is entered...
         else dist = targetSynapsePosition.distance(sourceSynapsePosition);
 
-        logger.logComment("Dist between: " + targetSynapsePosition+" and "+sourceSynapsePosition
-                          +" in dimension: "+ dimension+" = "+dist);
+        logger.logComment("Dist between: {} and {} in dimension: {} = {}",
+                          targetSynapsePosition, sourceSynapsePosition, dimension, dist);
 
         return dist;
 
@@ -1833,7 +1585,7 @@ public class CellTopologyHelper
             
             seg = parent;
         }
-        logger.logComment("Length at: "+location+" on cell: "+ cell+" is "+totLen);
+        logger.logComment("Length at: {} on cell: {} is {}", location, cell, totLen);
         return totLen;
             
     }
@@ -1924,14 +1676,14 @@ public class CellTopologyHelper
         Vector<Segment> allSegments = cell.getAllSegments();
         Vector<Segment> allChildren = new Vector<Segment>();
 
-        logger.logComment("Get all kids called for: "+ segment);
+        logger.logComment("Get all kids called for: {}", segment);
 
         for (int i = 0; i < allSegments.size(); i++)
         {
             Segment nextSeg = allSegments.elementAt(i);
             if (nextSeg.getParentSegment()!=null && nextSeg.getParentSegment().equals(segment))
             {
-                logger.logComment("A kid is: "+ nextSeg);
+                logger.logComment("A kid is: {}", nextSeg);
                 if (onlySameSection)
                 {
                     if(nextSeg.getSection().equals(segment.getSection()))
@@ -1955,7 +1707,7 @@ public class CellTopologyHelper
      */
     public static float getFractionAlongSection(Cell cell, Segment segment, float fractionAlongSegment)
     {
-        logger.logComment("Getting fract along: " + segment);
+        logger.logComment("Getting fract along: {}", segment);
         
         if (cell.getAllSegments().size()==1) return fractionAlongSegment; // as only 1 seg & section
 
@@ -1965,7 +1717,7 @@ public class CellTopologyHelper
 
         float totalLengthSection = getSectionLength(cell, segment.getSection());
 
-        logger.logComment("totalLengthSection: "+totalLengthSection);
+        logger.logComment("totalLengthSection: {}", totalLengthSection);
 
         Segment nextParentSegment = segment.getParentSegment();
 
@@ -1973,7 +1725,7 @@ public class CellTopologyHelper
         while (nextParentSegment!=null &&
                nextParentSegment.getSection().equals(segment.getSection()))
         {
-            logger.logComment("Parent length: "+nextParentSegment.getSegmentLength());
+            logger.logComment("Parent length: {}", nextParentSegment.getSegmentLength());
             distanceToStartOfSection = distanceToStartOfSection + nextParentSegment.getSegmentLength();
             nextParentSegment = nextParentSegment.getParentSegment();
         }
@@ -2002,7 +1754,7 @@ public class CellTopologyHelper
         float totalLengthSection = getSectionLength(cell, section);
 
 
-        logger.logComment("totalLengthSection: "+totalLengthSection);
+        logger.logComment("totalLengthSection: {}", totalLengthSection);
         float totalLengthToPass = totalLengthSection*fractionAlongSection;
         float totalLenPassed = 0;
 
@@ -2014,7 +1766,7 @@ public class CellTopologyHelper
                 float lenAlongSeg = totalLengthToPass - totalLenPassed;
                 float fractAlongSeg = lenAlongSeg/segLength;
                 SegmentLocation loc = new SegmentLocation(seg.getSegmentId(), fractAlongSeg);
-                logger.logComment("loc: " + loc);
+                logger.logComment("loc: {}", loc);
                 return loc ;
             }
             totalLenPassed = totalLenPassed + segLength;
@@ -2870,16 +2622,16 @@ public class CellTopologyHelper
 
         Segment nextSeg = cell.getAllSegmentsInSection(sec).getFirst().getParentSegment();
         Section nextSecDown = nextSeg.getSection();
-        logger.logComment("totalDistance: "+totalDistance);
+        logger.logComment("totalDistance: {}", totalDistance);
 
         while (cell.getApPropSpeedForSection(nextSecDown)!=null)
         {
-                logger.logComment("nextSecDown: "+nextSecDown);
+                logger.logComment("nextSecDown: {}", nextSecDown);
             String propSpeedSeg = nextSecDown.getSectionName();
 
             while (nextSeg.getSection().getSectionName().equals(propSpeedSeg))
             {
-                logger.logComment("nextSeg: "+nextSeg);
+                logger.logComment("nextSeg: {}", nextSeg);
                 totalDistance = totalDistance + nextSeg.getSegmentLength();
                 nextSeg = nextSeg.getParentSegment();
             }
@@ -2916,17 +2668,17 @@ public class CellTopologyHelper
         Segment nextSeg = cell.getAllSegmentsInSection(sec).getFirst().getParentSegment();
         Section nextSecDown = nextSeg.getSection();
 
-        logger.logComment("totalTime: "+totalTime);
+        logger.logComment("totalTime: {}", totalTime);
 
         while (cell.getApPropSpeedForSection(nextSecDown)!=null)
         {
-            logger.logComment("nextSecDown: "+nextSecDown);
+            logger.logComment("nextSecDown: {}", nextSecDown);
             String propSpeedSeg = nextSecDown.getSectionName();
             float speed = cell.getApPropSpeedForSection(nextSecDown).getSpeed();
 
             while (nextSeg.getSection().getSectionName().equals(propSpeedSeg))
             {
-                logger.logComment("nextSeg: "+nextSeg);
+                logger.logComment("nextSeg: {}", nextSeg);
                 totalTime = totalTime + (nextSeg.getSegmentLength()/speed);
                 nextSeg = nextSeg.getParentSegment();
             }
@@ -5053,6 +4805,7 @@ public class CellTopologyHelper
 
                             cell.getAllSegments().removeElementAt(searchIndex);
                             cell.getAllSegments().insertElementAt(parentSeg, segIndex);
+                            cell.morphologyEdited();
 
                             searchIndex = cell.getAllSegments().size();
 
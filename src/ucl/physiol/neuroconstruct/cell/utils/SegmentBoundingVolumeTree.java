@@ -0,0 +1,356 @@
+/**
+ *  neuroConstruct
+ *  Software for developing large scale 3D networks of biologically realistic neurons
+ *
+ *  Copyright (c) 2009 Padraig Gleeson
+ *  UCL Department of Neuroscience, Physiology and Pharmacology
+ *
+ *  Development of this software was made possible with funding from the
+ *  Medical Research Council and the Wellcome Trust
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+
+package ucl.physiol.neuroconstruct.cell.utils;
+
+import javax.vecmath.*;
+
+import ucl.physiol.neuroconstruct.cell.*;
+
+/**
+ * Bounding volume hierarchy (a tree of axis aligned boxes) over the lines from start to end
+ * point of a list of segments, for finding the segment closest to a point without checking
+ * every segment. Immutable after creation, so can be shared between threads.
+ *
+ * @author Padraig Gleeson
+ *
+ */
+
+class SegmentBoundingVolumeTree
+{
+    private static final int MAX_SEGS_PER_LEAF = 4;
+
+    private final int numSegments;
+
+    private final Point3f[] startPoints;
+    private final Point3f[] endPoints;
+
+    /*
+     * Indices of the segments, ordered so each node covers a contiguous range
+     */
+    private final int[] order;
+
+    /*
+     * For each node: box min x,y,z & max x,y,z, first/last+1 in order, and the 2 children (-1 for leaves)
+     */
+    private float[] nodeBoxes;
+    private int[] nodeFirst;
+    private int[] nodeEnd;
+    private int[] nodeLeft;
+    private int[] nodeRight;
+    private int numNodes = 0;
+
+    private int maxDepth = 0;
+
+    private static ThreadLocal<QueryWorkspace> workspaces = new ThreadLocal<QueryWorkspace>()
+    {
+        @Override
+        protected QueryWorkspace initialValue()
+        {
+            return new QueryWorkspace();
+        }
+    };
+
+    /**
+     * @param morphology Snapshot of the cell's segments
+     * @param segmentIndices Indices in the snapshot of the segments to include. Indices returned by
+     * findClosest() are positions in this array
+     */
+    SegmentBoundingVolumeTree(FlatMorphology morphology, int[] segmentIndices)
+    {
+        this(getPoints(morphology, segmentIndices, true), getPoints(morphology, segmentIndices, false));
+    }
+
+    /**
+     * @param startPoints Start points of the segments, relative to the cell origin
+     * @param endPoints End points of the segments
+     */
+    private SegmentBoundingVolumeTree(Point3f[] startPoints, Point3f[] endPoints)
+    {
+        this.numSegments = startPoints.length;
+        this.startPoints = startPoints;
+        this.endPoints = endPoints;
+
+        order = new int[numSegments];
+        for (int i = 0; i < numSegments; i++)
+        {
+            order[i] = i;
+        }
+
+        int maxNodes = Math.max(1, 2 * numSegments);
+        nodeBoxes = new float[maxNodes * 6];
+        nodeFirst = new int[maxNodes];
+        nodeEnd = new int[maxNodes];
+        nodeLeft = new int[maxNodes];
+        nodeRight = new int[maxNodes];
+
+        if (numSegments > 0)
+        {
+            float[] centres = new float[numSegments * 3];
+            for (int i = 0; i < numSegments; i++)
+            {
+                centres[i*3] = (startPoints[i].x + endPoints[i].x) / 2;
+                centres[i*3+1] = (startPoints[i].y + endPoints[i].y) / 2;
+                centres[i*3+2] = (startPoints[i].z + endPoints[i].z) / 2;
+            }
+            buildNode(0, numSegments, centres, 1);
+        }
+    }
+
+    private static Point3f[] getPoints(FlatMorphology morphology, int[] segmentIndices, boolean start)
+    {
+        Point3f[] points = new Point3f[segmentIndices.length];
+
+        for (int i = 0; i < segmentIndices.length; i++)
+        {
+            points[i] = start ? morphology.getStartPoint(segmentIndices[i], new Point3f())
+                              : morphology.getEndPoint(segmentIndices[i], new Point3f());
+        }
+        return points;
+    }
+
+    private int buildNode(int first, int end, float[] centres, int depth)
+    {
+        int node = numNodes++;
+        maxDepth = Math.max(maxDepth, depth);
+
+        nodeFirst[node] = first;
+        nodeEnd[node] = end;
+        nodeLeft[node] = -1;
+        nodeRight[node] = -1;
+
+        float[] box = nodeBoxes;
+        int b = node * 6;
+        box[b] = box[b+1] = box[b+2] = Float.MAX_VALUE;
+        box[b+3] = box[b+4] = box[b+5] = -Float.MAX_VALUE;
+
+        float[] centreMin = new float[]{Float.MAX_VALUE, Float.MAX_VALUE, Float.MAX_VALUE};
+        float[] centreMax = new float[]{-Float.MAX_VALUE, -Float.MAX_VALUE, -Float.MAX_VALUE};
+
+        for (int i = first; i < end; i++)
+        {
+            int seg = order[i];
+            includePoint(b, startPoints[seg]);
+            includePoint(b, endPoints[seg]);
+
+            for (int dim = 0; dim < 3; dim++)
+            {
+                centreMin[dim] = Math.min(centreMin[dim], centres[seg*3+dim]);
+                centreMax[dim] = Math.max(centreMax[dim], centres[seg*3+dim]);
+            }
+        }
+
+        if (end - first <= MAX_SEGS_PER_LEAF) return node;
+
+        int splitDim = 0;
+        for (int dim = 1; dim < 3; dim++)
+        {
+            if (centreMax[dim] - centreMin[dim] > centreMax[splitDim] - centreMin[splitDim])
+                splitDim = dim;
+        }
+
+        if (centreMax[splitDim] - centreMin[splitDim] == 0) return node; // all centres coincide
+
+        int mid = (first + end) >>> 1;
+        selectMedian(first, end - 1, mid, centres, splitDim);
+
+        nodeLeft[node] = buildNode(first, mid, centres, depth + 1);
+        nodeRight[node] = buildNode(mid, end, centres, depth + 1);
+
+        return node;
+    }
+
+    private void includePoint(int b, Point3f point)
+    {
+        nodeBoxes[b] = Math.min(nodeBoxes[b], point.x);
+        nodeBoxes[b+1] = Math.min(nodeBoxes[b+1], point.y);
+        nodeBoxes[b+2] = Math.min(nodeBoxes[b+2], point.z);
+        nodeBoxes[b+3] = Math.max(nodeBoxes[b+3], point.x);
+        nodeBoxes[b+4] = Math.max(nodeBoxes[b+4], point.y);
+        nodeBoxes[b+5] = Math.max(nodeBoxes[b+5], point.z);
+    }
+
+    /*
+     * Partially sorts order[low..high] so the entry at k has the median centre along dim
+     */
+    private void selectMedian(int low, int high, int k, float[] centres, int dim)
+    {
+        while (high > low)
+        {
+            float pivot = centres[order[(low + high) >>> 1]*3 + dim];
+            int i = low;
+            int j = high;
+
+            while (i <= j)
+            {
+                while (centres[order[i]*3 + dim] < pivot) i++;
+                while (centres[order[j]*3 + dim] > pivot) j--;
+
+                if (i <= j)
+                {
+                    int temp = order[i];
+                    order[i] = order[j];
+                    order[j] = temp;
+                    i++;
+                    j--;
+                }
+            }
+            if (k <= j) high = j;
+            else if (k >= i) low = i;
+            else return;
+        }
+    }
+
+    int getNumSegments()
+    {
+        return numSegments;
+    }
+
+    /**
+     * Finds the segment with the point on its line closest to extPoint. Where several are equally
+     * close the one with the lowest index is chosen, as a search through all of them in order would.
+     *
+     * @return the index of the segment, or -1 if there are none. The fraction along the segment of the
+     * closest point is put into fractAlong[0]
+     */
+    int findClosest(Point3f extPoint, float[] fractAlong)
+    {
+        if (numSegments == 0) return -1;
+
+        QueryWorkspace ws = workspaces.get();
+        int[] stack = ws.getStack(maxDepth * 2 + 2);
+
+        float bestDistance = Float.MAX_VALUE;
+        int bestSegment = -1;
+        float bestFract = -1;
+
+        int stackSize = 0;
+        stack[stackSize++] = 0;
+
+        while (stackSize > 0)
+        {
+            int node = stack[--stackSize];
+
+            if (!mayContainCloser(node, extPoint, bestDistance)) continue;
+
+            if (nodeLeft[node] < 0)
+            {
+                for (int i = nodeFirst[node]; i < nodeEnd[node]; i++)
+                {
+                    int seg = order[i];
+
+                    Point3f closestPoint = CellTopologyHelper.getClosestPointOnLine(startPoints[seg],
+                                                                                    endPoints[seg],
+                                                                                    extPoint,
+                                                                                    ws.closestPoint,
+                                                                                    ws.lineVector,
+                                                                                    ws.extPointVector);
+                    float distance = extPoint.distance(closestPoint);
+
+                    if (distance < bestDistance || (distance == bestDistance && seg < bestSegment))
+                    {
+                        bestDistance = distance;
+                        bestSegment = seg;
+
+                        float length = startPoints[seg].distance(endPoints[seg]);
+
+                        if (length == 0)
+                            bestFract = 0;
+                        else
+                            bestFract = startPoints[seg].distance(closestPoint) / length;
+                    }
+                }
+            }
+            else
+            {
+                int left = nodeLeft[node];
+                int right = nodeRight[node];
+
+                // push the further child first, so the nearer one is searched first
+                if (boxDistanceSquared(left, extPoint) < boxDistanceSquared(right, extPoint))
+                {
+                    stack[stackSize++] = right;
+                    stack[stackSize++] = left;
+                }
+                else
+                {
+                    stack[stackSize++] = left;
+                    stack[stackSize++] = right;
+                }
+            }
+        }
+
+        fractAlong[0] = bestFract;
+        return bestSegment;
+    }
+
+    /*
+     * Allows a little for rounding, since segment distances are calculated in float
+     */
+    private boolean mayContainCloser(int node, Point3f extPoint, float bestDistance)
+    {
+        if (bestDistance == Float.MAX_VALUE) return true;
+
+        double limit = bestDistance * 1.0001 + 1e-5;
+
+        return boxDistanceSquared(node, extPoint) <= limit * limit;
+    }
+
+    private double boxDistanceSquared(int node, Point3f point)
+    {
+        int b = node * 6;
+        double dx = Math.max(0, Math.max(nodeBoxes[b] - point.x, point.x - nodeBoxes[b+3]));
+        double dy = Math.max(0, Math.max(nodeBoxes[b+1] - point.y, point.y - nodeBoxes[b+4]));
+        double dz = Math.max(0, Math.max(nodeBoxes[b+2] - point.z, point.z - nodeBoxes[b+5]));
+
+        return dx*dx + dy*dy + dz*dz;
+    }
+
+    /*
+     * Objects reused by each query on a thread
+     */
+    private static class QueryWorkspace
+    {
+        Point3f closestPoint = new Point3f();
+        Vector3f lineVector = new Vector3f();
+        Vector3f extPointVector = new Vector3f();
+
+        private int[] stack = new int[64];
+
+        int[] getStack(int size)
+        {
+            if (stack.length < size) stack = new int[size];
+            return stack;
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return "SegmentBoundingVolumeTree of "+numSegments+" segments in "+numNodes+" nodes, depth: "+maxDepth;
+    }
+
+}
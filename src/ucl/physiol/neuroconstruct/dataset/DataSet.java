@@ -32,6 +32,7 @@ import ucl.physiol.neuroconstruct.utils.*;
 import java.awt.*;
 import ucl.physiol.neuroconstruct.gui.plotter.*;
 import java.io.*;
+import java.nio.*;
 
 /**
  * Storage for the set of points to be plotted. Basically a wrapper for 2
@@ -39,6 +40,11 @@ import java.io.*;
  * the preferred graph format/colour, some comments associated with the points and
  * a reference to the file to store the data in.
  *
+ * Existing arrays can be used for the points without copying them (e.g. the times & values
+ * of a simulation trace), and read only views of the points can be got without copying. Arrays
+ * shared in either way are copied before the points are changed, so neither side sees changes
+ * made by the other.
+ *
  * @author Padraig Gleeson
  *  
  */
@@ -82,18 +88,37 @@ public class DataSet
     /**
      * Only stores String comment against (Integer) point num for points which have one
      */
-    private Hashtable<Integer, String> comments = new Hashtable<Integer, String>();
+    private TreeMap<Integer, String> comments = new TreeMap<Integer, String>();
 
     /**
-     * Quick summary on whether point has comment, to avoid looking up Hashtable every time
+     * True if xValues & yValues came from elsewhere, or views of them have been given out,
+     * so they need to be copied before being changed
      */
-    private boolean[] pointHasComment = new boolean[initialCapacity];
+    private boolean arraysShared = false;
 
     /**
      * Used if this Data Set is saved in a project
      */
     private File dataSetFile = null;
 
+    /**
+     * Incremented whenever a point is added, removed or changed
+     */
+    private int modCount = 0;
+
+    /**
+     * Indices of the (first) points with the max/min x & y values, kept up to date as points
+     * are added, and found again when needed after points are removed or changed
+     */
+    private boolean extentsValid = true;
+    private int maxXIndex = -1;
+    private int minXIndex = -1;
+    private int maxYIndex = -1;
+    private int minYIndex = -1;
+
+    private MinMaxPyramid minMaxPyramid = null;
+    private int minMaxPyramidModCount = -1;
+
     private DataSet()
     {
 
@@ -117,6 +142,38 @@ public class DataSet
         this.yLegend = yLegend;
     }
 
+    /**
+     * Creates a DataSet with the first numberPoints values in the arrays as its points. The arrays
+     * are used as they are, not copied, and are never changed by the DataSet
+     */
+    public DataSet(String refrence,
+                   String description,
+                   String xUnit,
+                   String yUnit,
+                   String xLegend,
+                   String yLegend,
+                   double[] xValues,
+                   double[] yValues,
+                   int numberPoints)
+    {
+        this(refrence, description, xUnit, yUnit, xLegend, yLegend);
+
+        if (numberPoints < 0 || numberPoints > xValues.length || numberPoints > yValues.length)
+            throw new IllegalArgumentException("Can't use "+numberPoints+" points from arrays of length "
+                                               +xValues.length+" and "+yValues.length);
+
+        this.xValues = xValues;
+        this.yValues = yValues;
+        this.numberValidPoints = numberPoints;
+        this.arraysShared = true;
+
+        extentsValid = false;
+        for (int i = 2; i < numberPoints && xValsStrictlyInc; i++)
+        {
+            xValsStrictlyInc = xValues[i] > xValues[i - 1];
+        }
+    }
+
 
     public File getDataSetFile()
     {
@@ -134,58 +191,33 @@ public class DataSet
         return nextPoint;
     }
 
+    /**
+     * @deprecated Comments are only stored for the points which have one, so there's nothing to update
+     */
+    @Deprecated
     public void updateCommentArray()
     {
-        logger.logComment("Making sure the pointHasComment array is up to date...");
-        pointHasComment = new boolean[numberValidPoints];
-
-        for (int i = 0; i < numberValidPoints; i++)
-        {
-            pointHasComment[i] = false;
-        }
-        Enumeration enumeration = comments.keys();
-
-        while (enumeration.hasMoreElements())
-        {
-
-            Integer next = (Integer) enumeration.nextElement();
-            logger.logComment("Comment found at: " + next);
-            pointHasComment[next.intValue()] = true;
-        }
-
     }
 
     public void setCommentOnPoint(int pointNum, String comment)
     {
-        if (pointNum >= pointHasComment.length)
-        {
-            // just to keep everything up to date...
-            updateCommentArray();
-        }
         logger.logComment("Setting comment: " + comment + " on point: "
                           + pointNum + " of my " + numberValidPoints + " points");
 
         if (comment.trim().length() == 0)
         {
-            comments.remove(new Integer(pointNum));
+            comments.remove(pointNum);
         }
         else
         {
-            comments.put(new Integer(pointNum), comment);
+            comments.put(pointNum, comment);
         }
-        updateCommentArray();
     }
 
     public String getComment(int pointNum)
     {
-        if (pointNum >= pointHasComment.length)
-        {
-            // just to keep everything up to date...
-            updateCommentArray();
-            return null;
-        }
-        if (!pointHasComment[pointNum])return null;
-        return comments.get(new Integer(pointNum));
+        if (comments.isEmpty()) return null;
+        return comments.get(pointNum);
     }
 
     public int getNumberPoints()
@@ -198,40 +230,90 @@ public class DataSet
      */
     public int addPoint(double x, double y)
     {
-        if (numberValidPoints == xValues.length)
-        {
-            int newCapacity = (int) (xValues.length * (1 + capacityGrowthFactor));
-            //logger.logComment("Increasing capacity to: " + newCapacity);
-            double[] tempXValues = new double[newCapacity];
-            double[] tempYValues = new double[newCapacity];
-
-            System.arraycopy(xValues, 0, tempXValues, 0, xValues.length);
-            System.arraycopy(yValues, 0, tempYValues, 0, yValues.length);
-            xValues = tempXValues;
-            yValues = tempYValues;
-        }
+        ensureCapacity(numberValidPoints + 1);
+
         xValues[numberValidPoints] = x;
         yValues[numberValidPoints] = y;
 
-        if (numberValidPoints>1)
+        pointAdded();
+
+        return numberValidPoints - 1;
+
+    }
+
+    /**
+     * Adds the points with x & y values from index start to end-1 in the arrays
+     */
+    public void addPoints(double[] xVals, double[] yVals, int start, int end)
+    {
+        if (start < 0 || end > xVals.length || end > yVals.length || start > end)
+            throw new IllegalArgumentException("Can't add points "+start+" to "+end+" from arrays of length "
+                                               +xVals.length+" and "+yVals.length);
+
+        ensureCapacity(numberValidPoints + end - start);
+
+        System.arraycopy(xVals, start, xValues, numberValidPoints, end - start);
+        System.arraycopy(yVals, start, yValues, numberValidPoints, end - start);
+
+        for (int i = start; i < end; i++)
         {
-            boolean inc = xValues[numberValidPoints] > xValues[numberValidPoints - 1];
-            xValsStrictlyInc = xValsStrictlyInc && (inc);
+            pointAdded();
+        }
+    }
 
-            if (!inc)
-            {
-                //logger.logComment("xValues["+numberValidPoints+"] <= " + "xValues["+(numberValidPoints-1)+"]");
-                //logger.logComment(xValues[numberValidPoints] +" <= " + xValues[(numberValidPoints-1)]);
-                //logger.logComment("val: "+(xValues[numberValidPoints] > xValues[numberValidPoints - 1]));
-                //logger.logComment("xValsStrictlyInc: " + xValsStrictlyInc);
-            }
+    public void addPoints(double[] xVals, double[] yVals)
+    {
+        addPoints(xVals, yVals, 0, Math.min(xVals.length, yVals.length));
+    }
+
+    /*
+     * Makes sure the arrays are the DataSet's own, with room for the number of points
+     */
+    private void ensureCapacity(int capacity)
+    {
+        if (!arraysShared && capacity <= xValues.length && capacity <= yValues.length) return;
 
+        int newCapacity = Math.max(capacity, numberValidPoints);
+
+        if (capacity > xValues.length)
+        {
+            newCapacity = Math.max(capacity, (int) (xValues.length * (1 + capacityGrowthFactor)));
         }
+        //logger.logComment("Increasing capacity to: " + newCapacity);
+        double[] tempXValues = new double[newCapacity];
+        double[] tempYValues = new double[newCapacity];
 
-        numberValidPoints++;
+        System.arraycopy(xValues, 0, tempXValues, 0, numberValidPoints);
+        System.arraycopy(yValues, 0, tempYValues, 0, numberValidPoints);
+        xValues = tempXValues;
+        yValues = tempYValues;
 
-        return numberValidPoints - 1;
+        arraysShared = false;
+    }
 
+    /*
+     * Updates the extents etc. after the values at numberValidPoints have been set
+     */
+    private void pointAdded()
+    {
+        double x = xValues[numberValidPoints];
+        double y = yValues[numberValidPoints];
+
+        if (extentsValid)
+        {
+            if (maxXIndex < 0 ? x > -1* Double.MAX_VALUE : x > xValues[maxXIndex]) maxXIndex = numberValidPoints;
+            if (minXIndex < 0 ? x < Double.MAX_VALUE : x < xValues[minXIndex]) minXIndex = numberValidPoints;
+            if (maxYIndex < 0 ? y > -1* Double.MAX_VALUE : y > yValues[maxYIndex]) maxYIndex = numberValidPoints;
+            if (minYIndex < 0 ? y < Double.MAX_VALUE : y < yValues[minYIndex]) minYIndex = numberValidPoints;
+        }
+        modCount++;
+
+        if (numberValidPoints>1)
+        {
+            xValsStrictlyInc = xValsStrictlyInc && x > xValues[numberValidPoints - 1];
+        }
+
+        numberValidPoints++;
     }
 
     public boolean areXvalsStrictlyIncreasing()
@@ -245,19 +327,29 @@ public class DataSet
 
         if (pointNum >= 0 && pointNum < numberValidPoints)
         {
-            for (int i = pointNum; i < numberValidPoints - 1; i++)
+            ensureCapacity(numberValidPoints);
+
+            System.arraycopy(xValues, pointNum + 1, xValues, pointNum, numberValidPoints - pointNum - 1);
+            System.arraycopy(yValues, pointNum + 1, yValues, pointNum, numberValidPoints - pointNum - 1);
+
+            // the comments after the point move down one
+            comments.remove(pointNum);
+
+            SortedMap<Integer, String> commentsAfter = comments.tailMap(pointNum);
+
+            if (!commentsAfter.isEmpty())
             {
-                logger.logComment("Replacing points at " + i + " with points at " + (i + 1));
-                xValues[i] = xValues[i + 1];
-                yValues[i] = yValues[i + 1];
+                TreeMap<Integer, String> moved = new TreeMap<Integer, String>();
 
-                if (pointHasComment[i + 1])
+                for (Map.Entry<Integer, String> comment: commentsAfter.entrySet())
                 {
-                    setCommentOnPoint(i, getComment(i + 1));
-                    updateCommentArray();
+                    moved.put(comment.getKey() - 1, comment.getValue());
                 }
+                commentsAfter.clear();
+                comments.putAll(moved);
             }
             numberValidPoints--;
+            pointsChanged();
 
         }
         else
@@ -310,6 +402,26 @@ public class DataSet
         throw new ValueNotPresentException();
     }
 
+    /**
+     * Gets a read only view of the x values, without copying them. Later changes to the
+     * DataSet aren't seen through the view
+     */
+    public DoubleBuffer getXValuesView()
+    {
+        arraysShared = true;
+        return DoubleBuffer.wrap(xValues, 0, numberValidPoints).asReadOnlyBuffer();
+    }
+
+    /**
+     * Gets a read only view of the y values, without copying them. Later changes to the
+     * DataSet aren't seen through the view
+     */
+    public DoubleBuffer getYValuesView()
+    {
+        arraysShared = true;
+        return DoubleBuffer.wrap(yValues, 0, numberValidPoints).asReadOnlyBuffer();
+    }
+
     public double[] getXValues()
     {
         double[] justValidPoints = new double[numberValidPoints];
@@ -348,7 +460,9 @@ public class DataSet
         if (pointNum >= numberValidPoints) throw new DataSetException("Index out of bounds: " + pointNum
                                                                      + ", only " + numberValidPoints +
                                                                      " points.");
+        ensureCapacity(numberValidPoints);
         this.xValues[pointNum] = value;
+        pointsChanged();
         recheckStrictlyInc();
     }
 
@@ -357,7 +471,76 @@ public class DataSet
         if (pointNum >= numberValidPoints)throw new DataSetException("Index out of bounds: " + pointNum
                                                                      + ", only " + numberValidPoints +
                                                                      " points.");
+        ensureCapacity(numberValidPoints);
         this.yValues[pointNum] = value;
+        pointsChanged();
+    }
+
+    private void pointsChanged()
+    {
+        modCount++;
+        extentsValid = false;
+    }
+
+    /**
+     * Changes whenever a point is added, removed or changed, so a cached summary of the points
+     * can be checked
+     */
+    public int getModCount()
+    {
+        return modCount;
+    }
+
+    /**
+     * Gets a summary of the y values for quick plotting of large data sets, made again
+     * only if the points have changed since the last call
+     */
+    public MinMaxPyramid getMinMaxPyramid()
+    {
+        if (minMaxPyramid == null || minMaxPyramidModCount != modCount)
+        {
+            minMaxPyramid = new MinMaxPyramid(xValues, yValues, numberValidPoints);
+            minMaxPyramidModCount = modCount;
+        }
+        return minMaxPyramid;
+    }
+
+    private void findExtents()
+    {
+        maxXIndex = -1;
+        minXIndex = -1;
+        maxYIndex = -1;
+        minYIndex = -1;
+
+        double maxX = -1* Double.MAX_VALUE;
+        double minX = Double.MAX_VALUE;
+        double maxY = -1* Double.MAX_VALUE;
+        double minY = Double.MAX_VALUE;
+
+        for (int i = 0; i < numberValidPoints; i++)
+        {
+            if (xValues[i] > maxX)
+            {
+                maxXIndex = i;
+                maxX = xValues[i];
+            }
+            if (xValues[i] < minX)
+            {
+                minXIndex = i;
+                minX = xValues[i];
+            }
+            if (yValues[i] > maxY)
+            {
+                maxYIndex = i;
+                maxY = yValues[i];
+            }
+            if (yValues[i] < minY)
+            {
+                minYIndex = i;
+                minY = yValues[i];
+            }
+        }
+        extentsValid = true;
     }
 
     public double[] getYValues()
@@ -407,20 +590,9 @@ public class DataSet
     {
         if (getNumberPoints()==0) return new double[]{0,0};
 
-        int index = -1;
+        if (!extentsValid) findExtents();
 
-        double maxVal = -1* Double.MAX_VALUE;
-
-        for (int i = 0; i < numberValidPoints; i++)
-        {
-            double nextVal = xValues[i];
-            if ( nextVal > maxVal)
-            {
-                index = i;
-                maxVal = nextVal;
-            }
-        }
-        return getPoint(index);
+        return getPoint(maxXIndex);
     }
 
 
@@ -428,20 +600,9 @@ public class DataSet
     {
         if (getNumberPoints()==0) return new double[]{0,0};
 
-        int index = -1;
-
-        double minVal = Double.MAX_VALUE;
+        if (!extentsValid) findExtents();
 
-        for (int i = 0; i < numberValidPoints; i++)
-        {
-            double nextVal = xValues[i];
-            if ( nextVal < minVal)
-            {
-                index = i;
-                minVal = nextVal;
-            }
-        }
-        return getPoint(index);
+        return getPoint(minXIndex);
     }
 
 
@@ -449,20 +610,9 @@ public class DataSet
     {
         if (getNumberPoints()==0) return new double[]{0,0};
 
-        int index = -1;
+        if (!extentsValid) findExtents();
 
-        double maxVal = -1* Double.MAX_VALUE;
-
-        for (int i = 0; i < numberValidPoints; i++)
-        {
-            double nextVal = yValues[i];
-            if ( nextVal > maxVal)
-            {
-                index = i;
-                maxVal = nextVal;
-            }
-        }
-        return getPoint(index);
+        return getPoint(maxYIndex);
     }
 
 
@@ -470,25 +620,12 @@ public class DataSet
     {
         if (getNumberPoints()==0) return new double[]{0,0};
 
-        int index = -1;
+        if (!extentsValid) findExtents();
 
-        double minVal = Double.MAX_VALUE;
-
-        for (int i = 0; i < numberValidPoints; i++)
-        {
-            double nextVal = yValues[i];
-            if ( nextVal < minVal)
-            {
-                index = i;
-                minVal = nextVal;
-            }
-        }
-        return getPoint(index);
+        return getPoint(minYIndex);
     }
 
 
-
-
     public String getXUnit()
     {
         return this.xUnit;
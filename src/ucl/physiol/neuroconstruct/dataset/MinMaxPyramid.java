@@ -0,0 +1,271 @@
+/**
+ *  neuroConstruct
+ *  Software for developing large scale 3D networks of biologically realistic neurons
+ * 
+ *  Copyright (c) 2009 Padraig Gleeson
+ *  UCL Department of Neuroscience, Physiology and Pharmacology
+ *
+ *  Development of this software was made possible with funding from the
+ *  Medical Research Council and the Wellcome Trust
+ *  
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *  
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+
+package ucl.physiol.neuroconstruct.dataset;
+
+/**
+ * Minimum & maximum y values of a DataSet over blocks of 16, 32, 64, ... points, so the range of
+ * y values over any run of points, or the next point above/below a threshold, can be found without
+ * checking every point. Used by the plotter to draw the points which fall in each column of pixels
+ * as a single vertical line. Reflects the points of the DataSet when it was made: use
+ * DataSet.getMinMaxPyramid() to get an up to date one.
+ *
+ * @author Padraig Gleeson
+ *
+ */
+
+public class MinMaxPyramid
+{
+    private static final int BASE_SHIFT = 4;
+    private static final int BASE_SIZE = 1 << BASE_SHIFT;
+    private static final int BASE_MASK = BASE_SIZE - 1;
+
+    private final double[] xValues;
+    private final double[] yValues;
+    private final int numPoints;
+
+    /*
+     * For level k, the min/max of the y values in blocks of BASE_SIZE*2^k points (NaNs ignored)
+     */
+    private final double[][] mins;
+    private final double[][] maxs;
+
+    private boolean xNonDecreasing = true;
+    private boolean nonFiniteValues = false;
+
+
+    /**
+     * Note: the arrays are not copied
+     */
+    MinMaxPyramid(double[] xValues, double[] yValues, int numPoints)
+    {
+        this.xValues = xValues;
+        this.yValues = yValues;
+        this.numPoints = numPoints;
+
+        for (int i = 0; i < numPoints; i++)
+        {
+            if (i > 0 && !(xValues[i] >= xValues[i - 1])) xNonDecreasing = false;
+
+            if (Double.isNaN(xValues[i]) || Double.isInfinite(xValues[i]) ||
+                Double.isNaN(yValues[i]) || Double.isInfinite(yValues[i]))
+            {
+                nonFiniteValues = true;
+            }
+        }
+
+        int numLevels = 0;
+        for (long size = BASE_SIZE; size < numPoints; size = size * 2)
+        {
+            numLevels++;
+        }
+
+        mins = new double[numLevels][];
+        maxs = new double[numLevels][];
+
+        for (int level = 0; level < numLevels; level++)
+        {
+            int numBlocks = ((numPoints - 1) >> (BASE_SHIFT + level)) + 1;
+
+            mins[level] = new double[numBlocks];
+            maxs[level] = new double[numBlocks];
+
+            for (int block = 0; block < numBlocks; block++)
+            {
+                double min = Double.POSITIVE_INFINITY;
+                double max = Double.NEGATIVE_INFINITY;
+
+                if (level == 0)
+                {
+                    int end = Math.min(numPoints, (block + 1) << BASE_SHIFT);
+
+                    for (int i = block << BASE_SHIFT; i < end; i++)
+                    {
+                        if (yValues[i] < min) min = yValues[i];
+                        if (yValues[i] > max) max = yValues[i];
+                    }
+                }
+                else
+                {
+                    int end = Math.min(mins[level - 1].length, block * 2 + 2);
+
+                    for (int sub = block * 2; sub < end; sub++)
+                    {
+                        min = Math.min(min, mins[level - 1][sub]);
+                        max = Math.max(max, maxs[level - 1][sub]);
+                    }
+                }
+                mins[level][block] = min;
+                maxs[level][block] = max;
+            }
+        }
+    }
+
+    public int getNumberPoints()
+    {
+        return numPoints;
+    }
+
+    public double getXValue(int index)
+    {
+        return xValues[index];
+    }
+
+    public double getYValue(int index)
+    {
+        return yValues[index];
+    }
+
+    /**
+     * True if each x value is greater than or equal to the one before it
+     */
+    public boolean isXNonDecreasing()
+    {
+        return xNonDecreasing;
+    }
+
+    /**
+     * True if any x or y value is NaN or infinite
+     */
+    public boolean hasNonFiniteValues()
+    {
+        return nonFiniteValues;
+    }
+
+    /*
+     * Highest level with a block starting at index which ends at or before end, or -1 if none
+     */
+    private int getLevelOfBlockAt(int index, int end)
+    {
+        if ((index & BASE_MASK) != 0) return -1;
+
+        int level = -1;
+
+        while (level + 1 < mins.length &&
+               (index & ((BASE_SIZE << (level + 1)) - 1)) == 0 &&
+               (long)index + (BASE_SIZE << (level + 1)) <= end)
+        {
+            level++;
+        }
+        return level;
+    }
+
+    /**
+     * Gets the minimum & maximum y values of the points from index start to end-1 (NaNs ignored)
+     * into result[0] and result[1]
+     */
+    public double[] getYRange(int start, int end, double[] result)
+    {
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+
+        end = Math.min(end, numPoints);
+        int i = Math.max(start, 0);
+
+        while (i < end)
+        {
+            int level = getLevelOfBlockAt(i, end);
+
+            if (level < 0)
+            {
+                if (yValues[i] < min) min = yValues[i];
+                if (yValues[i] > max) max = yValues[i];
+                i++;
+            }
+            else
+            {
+                int block = i >> (BASE_SHIFT + level);
+                min = Math.min(min, mins[level][block]);
+                max = Math.max(max, maxs[level][block]);
+                i = i + (BASE_SIZE << level);
+            }
+        }
+        result[0] = min;
+        result[1] = max;
+        return result;
+    }
+
+    /**
+     * Gets the index of the first point at or after start with a y value above the threshold,
+     * or -1 if there is none
+     */
+    public int getFirstIndexAbove(int start, double threshold)
+    {
+        return getFirstIndex(start, threshold, true);
+    }
+
+    /**
+     * Gets the index of the first point at or after start with a y value at or below the threshold,
+     * or -1 if there is none. NaNs aren't found, so check hasNonFiniteValues() first.
+     */
+    public int getFirstIndexAtOrBelow(int start, double threshold)
+    {
+        return getFirstIndex(start, threshold, false);
+    }
+
+    private int getFirstIndex(int start, double threshold, boolean above)
+    {
+        int i = Math.max(start, 0);
+
+        while (i < numPoints)
+        {
+            // skip the biggest block which can't contain one...
+            int level = getLevelOfBlockAt(i, Integer.MAX_VALUE);
+            boolean skipped = false;
+
+            for (; level >= 0; level--)
+            {
+                int block = i >> (BASE_SHIFT + level);
+
+                boolean noneInBlock = above ? maxs[level][block] <= threshold : mins[level][block] > threshold;
+
+                if (noneInBlock)
+                {
+                    i = i + (BASE_SIZE << level);
+                    skipped = true;
+                    break;
+                }
+            }
+            if (skipped) continue;
+
+            // ...or check the points one at a time to the end of the smallest block
+            int blockEnd = Math.min(numPoints, (i | BASE_MASK) + 1);
+
+            for (; i < blockEnd; i++)
+            {
+                if (above ? yValues[i] > threshold : yValues[i] <= threshold) return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "MinMaxPyramid of "+numPoints+" points in "+mins.length+" levels";
+    }
+
+}
@@ -1522,6 +1522,8 @@ public class ChannelMLEditor extends JFrame implements HyperlinkListener
                             {
                                 DataSet dsAlpha = rateData.get("alpha");
                                 DataSet dsBeta = rateData.get("beta");
+                                double[] alphaVals = dsAlpha.getYValues();
+                                double[] betaVals = dsBeta.getYValues();
 
                                 String graphRef = "Plots for tau/inf in gating complex "
                                     + gateName+" in Cell Mechanism "+ xmlMechanism.getInstanceName();
@@ -1537,7 +1539,7 @@ public class ChannelMLEditor extends JFrame implements HyperlinkListener
                                     {
                                         float nextVval = minV + ( (maxV - minV) * i / (numPoints));
 
-                                        tau.addPoint(nextVval, 1 / (dsAlpha.getYValues()[i] + dsBeta.getYValues()[i]));
+                                        tau.addPoint(nextVval, 1 / (alphaVals[i] + betaVals[i]));
                                     }
 
                                     PlotterFrame pf = PlotManager.getPlotterFrame(graphRef);
@@ -1555,7 +1557,7 @@ public class ChannelMLEditor extends JFrame implements HyperlinkListener
                                     {
                                         float nextVval = minV + ( (maxV - minV) * i / (numPoints));
 
-                                        inf.addPoint(nextVval, dsAlpha.getYValues()[i] / (dsAlpha.getYValues()[i] + dsBeta.getYValues()[i]));
+                                        inf.addPoint(nextVval, alphaVals[i] / (alphaVals[i] + betaVals[i]));
                                     }
 
                                     PlotterFrame pf = PlotManager.getPlotterFrame(graphRef);
@@ -1888,6 +1890,8 @@ public class ChannelMLEditor extends JFrame implements HyperlinkListener
                                     {
                                         DataSet dsAlpha = rateData.get("alpha");
                                         DataSet dsBeta = rateData.get("beta");
+                                        double[] alphaVals = dsAlpha.getYValues();
+                                        double[] betaVals = dsBeta.getYValues();
 
                                         String graphRef = "Plots for tau/inf in state "
                                             + gateState+" in Cell Mechanism "+ xmlMechanism.getInstanceName();
@@ -1904,7 +1908,7 @@ public class ChannelMLEditor extends JFrame implements HyperlinkListener
                                                 float nextVval = minV + ( (maxV - minV) * i / (numPoints));
 
 
-                                                tau.addPoint(nextVval, 1 / (dsAlpha.getYValues()[i] + dsBeta.getYValues()[i]));
+                                                tau.addPoint(nextVval, 1 / (alphaVals[i] + betaVals[i]));
                                             }
 
                                             PlotterFrame pf = PlotManager.getPlotterFrame(graphRef);
@@ -1922,7 +1926,7 @@ public class ChannelMLEditor extends JFrame implements HyperlinkListener
                                             {
                                                 float nextVval = minV + ( (maxV - minV) * i / (numPoints));
 
-                                                inf.addPoint(nextVval, dsAlpha.getYValues()[i] / (dsAlpha.getYValues()[i] + dsBeta.getYValues()[i]));
+                                                inf.addPoint(nextVval, alphaVals[i] / (alphaVals[i] + betaVals[i]));
                                             }
 
                                             PlotterFrame pf = PlotManager.getPlotterFrame(graphRef);
@@ -34,6 +34,9 @@ import java.awt.event.*;
 import java.util.ArrayList;
 import javax.swing.*;
 
+import javax.vecmath.*;
+
+import ucl.physiol.neuroconstruct.simulation.FieldPotentialCalculator;
 import ucl.physiol.neuroconstruct.simulation.SimulationDataException;
 import ucl.physiol.neuroconstruct.utils.*;
 import ucl.physiol.neuroconstruct.dataset.DataSet;
@@ -75,6 +78,11 @@ public class FieldPotentialFrame extends JFrame
     JTextArea jTextAreaInfo = new JTextArea();
     
     ArrayList<JCheckBox> allCellGroupCBs = new ArrayList<JCheckBox>();
+
+    JPanel jPanelElectrodes = new JPanel();
+    JTextField jTextFieldElectrodes = new JTextField(24);
+    JComboBox jComboBoxWeighting = new JComboBox(new String[]{"Uniform", "1/distance", "1/distance^2"});
+    JTextField jTextFieldMinDistance = new JTextField("10", 5);
     
     private FieldPotentialFrame()
     {
@@ -115,9 +123,23 @@ public class FieldPotentialFrame extends JFrame
         jTextAreaInfo.setBorder(BorderFactory.createEmptyBorder(6, 6,6,6));
         
         jTextAreaInfo.setText("A very simple approximation of the \"field potential\" due to network activity created by summing the\n" +
-                              "membrane potentials at the somas in the cell groups below, and inverting");
+                              "membrane potentials at the somas in the cell groups below, and inverting. If electrode positions\n" +
+                              "are given (x,y,z separated by ;), the recorded potentials of all segments are weighted by their\n" +
+                              "distance from each electrode");
         
-        jPanelMain.add(jPanelOptions, BorderLayout.CENTER);
+        JPanel jPanelCentre = new JPanel(new BorderLayout());
+        jPanelCentre.add(jPanelOptions, BorderLayout.NORTH);
+        jPanelCentre.add(jPanelElectrodes, BorderLayout.SOUTH);
+
+        jPanelElectrodes.add(new JLabel("Electrodes:"));
+        jPanelElectrodes.add(jTextFieldElectrodes);
+        jPanelElectrodes.add(new JLabel("Weighting:"));
+        jPanelElectrodes.add(jComboBoxWeighting);
+        jComboBoxWeighting.setSelectedIndex(FieldPotentialCalculator.WEIGHT_INVERSE_DISTANCE);
+        jPanelElectrodes.add(new JLabel("Min distance:"));
+        jPanelElectrodes.add(jTextFieldMinDistance);
+
+        jPanelMain.add(jPanelCentre, BorderLayout.CENTER);
         jPanelMain.add(jPanelButtons, BorderLayout.SOUTH);
         
         
@@ -203,65 +225,86 @@ public class FieldPotentialFrame extends JFrame
     {
         logger.logComment("Creating the field potential plot");
             
-        ArrayList<String> cellGroupsToAdd = new ArrayList<String>();
+        final FieldPotentialCalculator calculator = new FieldPotentialCalculator(project, simData);
         
         for (JCheckBox cb : allCellGroupCBs)
         {
             logger.logComment("Next check box: "+ cb);
             if (cb.isSelected())
-                    cellGroupsToAdd.add(cb.getText());
+                    calculator.addCellGroup(cb.getText());
         }
-        
-        String desc = "Warning!! Still in development!!";
-        
-        String name = "Very simple field potential of "+cellGroupsToAdd+" in "+simData.getSimulationName();
-        
-        DataSet ds = new DataSet(name, desc, 
-                "ms", "", "Time", "Arbitrary units");
+
         try
         {
-            double[] times = simData.getAllTimes();
-
-            double[] totals = new double[times.length];
-            
-            int numAdded = 0;
+            String electrodes = jTextFieldElectrodes.getText().trim();
 
-            for(String cellGroup: cellGroupsToAdd)
+            if (electrodes.length() > 0)
             {
-                logger.logComment("Adding all soma traces for cell group: "+ cellGroup);
-                int numInCG = project.generatedCellPositions.getNumberInCellGroup(cellGroup);
-
-                for (int i=0;i<numInCG;i++)
+                for (String electrode : electrodes.split(";"))
                 {
-                    String ref = SimulationData.getCellRef(cellGroup, i);
+                    String[] coords = electrode.split(",");
 
+                    calculator.addElectrode(new Point3f(Float.parseFloat(coords[0].trim()),
+                                                        Float.parseFloat(coords[1].trim()),
+                                                        Float.parseFloat(coords[2].trim())));
+                }
+            }
+            calculator.setMinDistance(Float.parseFloat(jTextFieldMinDistance.getText().trim()));
+        }
+        catch (RuntimeException ex)
+        {
+            GuiUtils.showErrorMessage(logger, "Please enter the electrode positions as x,y,z separated by ;", ex, this);
+            return;
+        }
+        calculator.setWeighting(jComboBoxWeighting.getSelectedIndex());
 
-                    double[] volts = simData.getVoltageAtAllTimes(ref);
+        jButtonCreate.setEnabled(false);
 
-                    for(int j=0;j<volts.length;j++)
-                    {
-                        totals[j] +=volts[j];
-                    }
-                    numAdded++;
+        // The traces are read off the event thread, as there can be a lot of them
+        Thread calcThread = new Thread("FieldPotential")
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    final DataSet[] dataSets = calculator.calculate();
 
+                    SwingUtilities.invokeLater(new Runnable()
+                    {
+                        public void run()
+                        {
+                            showDataSets(dataSets);
+                        }
+                    });
+                }
+                catch (final SimulationDataException ex)
+                {
+                    SwingUtilities.invokeLater(new Runnable()
+                    {
+                        public void run()
+                        {
+                            GuiUtils.showErrorMessage(logger, "Trouble loading cell voltage traces", ex, FieldPotentialFrame.this);
+                            jButtonCreate.setEnabled(true);
+                        }
+                    });
                 }
             }
-            
-            for(int j=0;j<totals.length;j++)
-            {
-                ds.addPoint(times[j], -1*totals[j]/(float)numAdded);
-            }
-            
-        } 
+        };
+        calcThread.setDaemon(true);
+        calcThread.start();
+    }
 
-        catch (SimulationDataException ex)
-        {
-            GuiUtils.showErrorMessage(logger, "Trouble loading cell voltage traces" , ex, this);
-        }
+    private void showDataSets(DataSet[] dataSets)
+    {
+        String name = "Field potential in "+simData.getSimulationName();
         
         PlotterFrame pf = PlotManager.getPlotterFrame(name);
         
-        pf.addDataSet(ds);
+        for (DataSet ds: dataSets)
+        {
+            pf.addDataSet(ds);
+        }
         
         GuiUtils.centreWindow(pf);
         
@@ -6861,21 +6861,15 @@ public class MainFrame extends JFrame implements ProjectEventListener, Generatio
         String primarySimDirName = projManager.getCurrentProject().simulationParameters.getReference();
 
 
-        File positionsFile = new File(genNeuronDir, SimulationData.POSITION_DATA_FILE);
-        File netConnsFile = new File(genNeuronDir, SimulationData.NETCONN_DATA_FILE);
-        File elecInputFile = new File(genNeuronDir, SimulationData.ELEC_INPUT_DATA_FILE);
-
        ///////////// if (!networkMLFile.exists())
        /////////// {
             try
             {
-                projManager.getCurrentProject().generatedCellPositions.saveToFile(positionsFile);
-                projManager.getCurrentProject().generatedNetworkConnections.saveToFile(netConnsFile);
-                projManager.getCurrentProject().generatedElecInputs.saveToFile(elecInputFile);
+                ProjectManager.saveGeneratedNetwork(projManager.getCurrentProject(), genNeuronDir);
             }
             catch (IOException ex)
             {
-                GuiUtils.showErrorMessage(logger, "Problem saving generated positions in file: "+ positionsFile.getAbsolutePath(), ex, null);
+                GuiUtils.showErrorMessage(logger, "Problem saving the generated network in: "+ genNeuronDir.getAbsolutePath(), ex, null);
                 return;
             }
        //////////////// }
@@ -7738,6 +7732,10 @@ public class MainFrame extends JFrame implements ProjectEventListener, Generatio
     
 
 
+    /**
+     * Reports from each stage of the generation, in order. The stages themselves are started by
+     * the GenerationScheduler in ProjectManager
+     */
     public void giveGenerationReport(String report, String generatorType, SimConfig simConfig)
     {
         logger.logComment("giveGenerationReport called by: "+ generatorType+ ", report: "+ report);
@@ -7752,9 +7750,7 @@ public class MainFrame extends JFrame implements ProjectEventListener, Generatio
             catch (InterruptedException ex) {
                 // go on...
             }
-            //Document doc = jEditorPaneGenerateInfo.getEditorKit().createDefaultDocument();
-            //doc.insertString(0, report, null);
-            
+
             if (projManager.getCurrentProject().generatedCellPositions.getNumberPositionRecords() == 0)
             {
                 GuiUtils.showErrorMessage(logger,
@@ -7765,18 +7761,14 @@ public class MainFrame extends JFrame implements ProjectEventListener, Generatio
             if (report.indexOf("Generation interrupted")>0)
             {
                 logger.logComment("It seems the generation of cell positions was interrupted...");
-                return;
             }
-            projManager.netConnGenerator = new MorphBasedConnGenerator(projManager.getCurrentProject(), this);
-
-            projManager.netConnGenerator.setSimConfig(simConfig);
-
-            projManager.netConnGenerator.start();
-
         }
-        else if (generatorType.equals(MorphBasedConnGenerator.myGeneratorType))
+        else if (generatorType.equals(MorphBasedConnGenerator.myGeneratorType)
+                 || generatorType.equals(VolumeBasedConnGenerator.myGeneratorType)
+                 || generatorType.equals(CompNodeGenerator.myGeneratorType)
+                 || generatorType.equals(ElecInputGenerator.myGeneratorType)
+                 || generatorType.equals(PlotSaveGenerator.myGeneratorType))
         {
-            
             String currentReport = jEditorPaneGenerateInfo.getText();
             
             if (currentReport.length()==0 || currentReport.equals(generatePleaseWait))
@@ -7790,130 +7782,18 @@ public class MainFrame extends JFrame implements ProjectEventListener, Generatio
                     // go on...
                 }
             }
-            String update = currentReport.substring(0, currentReport.lastIndexOf("</body>")) + report;
-
-            setGeneratorInfo(update + "  ");
-
-            if (report.indexOf("Generation interrupted") > 0) {
-                logger.logComment("It seems the generation of connections was interrupted...");
-                return;
-            }
-
-            projManager.arbourConnectionGenerator = new VolumeBasedConnGenerator(projManager.getCurrentProject(), this);
-
-            projManager.arbourConnectionGenerator.setSimConfig(simConfig);
-
-            projManager.arbourConnectionGenerator.start();
-
-
-
-        }
-
-        else if (simConfig.getMpiConf().isParallelOrRemote()
-                   && generatorType.equals(VolumeBasedConnGenerator.myGeneratorType))
-        {
-            String currentReport = jEditorPaneGenerateInfo.getText();
-
-            String update = currentReport.substring(0,currentReport.lastIndexOf("</body>")) // as the jEditorPane returns html...
-                                       +report;
-            
-            setGeneratorInfo(update);
-
-            if (report.indexOf("Generation interrupted")>0)
-            {
-                logger.logComment("It seems the generation of connections was interrupted...");
-                return;
-            }
-
-            projManager.compNodeGenerator = new CompNodeGenerator(projManager.getCurrentProject(), this);
-
-            projManager.compNodeGenerator.setSimConfig(simConfig);
-
-            projManager.compNodeGenerator.start();
-        }
-
-        else if ((!(simConfig.getMpiConf().isParallelOrRemote())
-                && (generatorType.equals(VolumeBasedConnGenerator.myGeneratorType))
-                || generatorType.equals(CompNodeGenerator.myGeneratorType)))
-        {
-            String currentReport = jEditorPaneGenerateInfo.getText();
-
-            String update = currentReport.substring(0,currentReport.lastIndexOf("</body>")) // as the jEditorPane returns html...
-                                       +report;
-
-            setGeneratorInfo(update);
-
-
-
-            if (report.indexOf("Generation interrupted")>0)
-            {
-                logger.logComment("It seems the generation of compute nodes was interrupted...");
-                return;
-            }
-
-
-            projManager.elecInputGenerator = new ElecInputGenerator(projManager.getCurrentProject(), this);
-
-            projManager.elecInputGenerator.setSimConfig(simConfig);
-
-            projManager.elecInputGenerator.start();
-
-        }
-
-
-        else if (generatorType.equals(ElecInputGenerator.myGeneratorType))
-        {
-            String currentReport = jEditorPaneGenerateInfo.getText();
-
             String update = currentReport.substring(0, currentReport.lastIndexOf("</body>")) // as the jEditorPane returns html...
                                        + report;
-            
-            setGeneratorInfo(update);
-
-            if (report.indexOf("Generation interrupted") > 0)
-            {
-                logger.logComment("It seems the generation of cell positions was interrupted...");
-                return;
-            }
-
-
-            projManager.plotSaveGenerator = new PlotSaveGenerator(projManager.getCurrentProject(), this);
-
-            projManager.plotSaveGenerator.setSimConfig(simConfig);
-
-            projManager.plotSaveGenerator.start();
-
-
-        }
-
-        else if (generatorType.equals(PlotSaveGenerator.myGeneratorType))
-        {
-
-            String currentReport = jEditorPaneGenerateInfo.getText();
-
-            String update = currentReport.substring(0, currentReport.lastIndexOf("</body>")) + report;
 
             setGeneratorInfo(update);
 
             if (report.indexOf("Generation interrupted") > 0)
             {
-                logger.logComment("It seems the generation of cell positions was interrupted...");
-                return;
+                logger.logComment("It seems the generation by "+generatorType+" was interrupted...");
             }
-
-            projManager.cellInitialiser = new CellInitialiser(projManager.getCurrentProject(), this);
-
-            projManager.cellInitialiser.setSimConfig(simConfig);
-
-            projManager.cellInitialiser.start();
-
-
         }
-
         else if (generatorType.equals(CellInitialiser.myGeneratorType))
         {
-
-
             this.jButtonGenerateStop.setEnabled(false);
 
             refreshTabGenerate();
@@ -7923,8 +7803,6 @@ public class MainFrame extends JFrame implements ProjectEventListener, Generatio
             logger.logComment("Don't know the type of that generation report!!: " + generatorType);
         }
 
-
-
     };
 
 
@@ -11985,18 +11863,7 @@ public class MainFrame extends JFrame implements ProjectEventListener, Generatio
             
             
 
-            if (elecInputsReadFromFile)
-            {
-                projManager.plotSaveGenerator = new PlotSaveGenerator(projManager.getCurrentProject(), this);
-                projManager.plotSaveGenerator.setSimConfig(simConfig);
-                projManager.plotSaveGenerator.start();
-            }
-            else
-            {
-                projManager.elecInputGenerator = new ElecInputGenerator(projManager.getCurrentProject(), this);
-                projManager.elecInputGenerator.setSimConfig(simConfig);
-                projManager.elecInputGenerator.start();
-            }
+            projManager.doGenerateAfterLoading(simConfig, !elecInputsReadFromFile);
 
             sourceOfCellPosnsInMemory = NETWORKML_POSITIONS;
 
@@ -12476,26 +12343,8 @@ public class MainFrame extends JFrame implements ProjectEventListener, Generatio
 
     void jButtonGenerateStop_actionPerformed(ActionEvent e)
     {
-        logger.logComment("Telling the cell posn generator to stop...");
-        projManager.cellPosnGenerator.stopGeneration();
-        if (projManager.netConnGenerator!=null)
-        {
-            logger.logComment("Telling the net conn generator to stop...");
-            this.projManager.netConnGenerator.stopGeneration();
-        }
-        if (projManager.arbourConnectionGenerator!=null)
-        {
-            logger.logComment("Telling the arbourConnectionGenerator to stop...");
-            this.projManager.arbourConnectionGenerator.stopGeneration();
-        }
-
-        if (projManager.elecInputGenerator!=null)
-        {
-            logger.logComment("Telling the elecInputGenerator to stop...");
-            this.projManager.elecInputGenerator.stopGeneration();
-        }
-
-
+        logger.logComment("Telling the generators to stop...");
+        projManager.stopGeneration();
 
         jProgressBarGenerate.setValue(0);
         jProgressBarGenerate.setString("Generation stopped");
@@ -12893,18 +12742,7 @@ public class MainFrame extends JFrame implements ProjectEventListener, Generatio
             
             
 
-            if (elecInputsReadFromFile)
-            {
-                projManager.plotSaveGenerator = new PlotSaveGenerator(projManager.getCurrentProject(), this);
-                projManager.plotSaveGenerator.setSimConfig(simConfig);
-                projManager.plotSaveGenerator.start();
-            }
-            else
-            {
-                projManager.elecInputGenerator = new ElecInputGenerator(projManager.getCurrentProject(), this);
-                projManager.elecInputGenerator.setSimConfig(simConfig);
-                projManager.elecInputGenerator.start();
-            }
+            projManager.doGenerateAfterLoading(simConfig, !elecInputsReadFromFile);
 
             sourceOfCellPosnsInMemory = NETWORKML_POSITIONS;
 
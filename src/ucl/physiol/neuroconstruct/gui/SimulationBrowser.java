@@ -78,6 +78,8 @@ public class SimulationBrowser extends JDialog
     JTable jTableSimulations = null;
     JButton jButtonDelete = new JButton();
     JButton jButtonRename = new JButton();
+    JButton jButtonConvert = new JButton();
+    JButton jButtonExport = new JButton();
 
     String subMenuNetConns = "Network Connections";
     String subMenuStimulations = "Stimulations";
@@ -223,6 +225,22 @@ public class SimulationBrowser extends JDialog
                 jButtonDelete_actionPerformed(e);
             }
         });
+        jButtonConvert.setText("Convert to binary");
+        jButtonConvert.addActionListener(new java.awt.event.ActionListener()
+        {
+            public void actionPerformed(ActionEvent e)
+            {
+                jButtonConvert_actionPerformed(e);
+            }
+        });
+        jButtonExport.setText("Export to MATLAB");
+        jButtonExport.addActionListener(new java.awt.event.ActionListener()
+        {
+            public void actionPerformed(ActionEvent e)
+            {
+                jButtonExport_actionPerformed(e);
+            }
+        });
         this.getContentPane().add(jPanelMain, BorderLayout.CENTER);
 
         jPanelMain.add(jPanelSelection,  BorderLayout.CENTER);
@@ -238,6 +256,8 @@ public class SimulationBrowser extends JDialog
         jPanelButtons.add(jButtonInfo, null);
         jPanelButtons.add(jButtonOpen, null);
         jPanelButtons.add(jButtonCompare, null);
+        jPanelButtons.add(jButtonConvert, null);
+        jPanelButtons.add(jButtonExport, null);
         jPanelButtons.add(jButtonDelete, null);
         jPanelButtons.add(jButtonCancel, null);
     }
@@ -535,6 +555,145 @@ public class SimulationBrowser extends JDialog
 
     }
 
+    void jButtonConvert_actionPerformed(ActionEvent e)
+    {
+        logger.logComment("Converting selected sims to binary trace files");
+        if(jTableSimulations.getSelectedRowCount()==0) return;
+
+        int[] selectedSims= jTableSimulations.getSelectedRows();
+
+        final SimulationData[] sims = new SimulationData[selectedSims.length];
+        for (int i = 0; i < selectedSims.length; i++)
+        {
+            sims[i] = allSims.getSimulationData(selectedSims[i]);
+        }
+
+        String message = "Convert the text data files of the "+sims.length+" selected simulation(s) to binary trace files?\n"
+            +"The binary files are read in preference to the text files. By default the values are saved as\n"
+            +"32 bit floats (4 bytes each, around a quarter of the size of the text files, to about 7 significant figures).";
+
+        JCheckBox fullPrecision = new JCheckBox("Keep full precision (64 bit values, 6 to 8 bytes each, around half the size of the text files)");
+
+        Object[] options = new Object[]
+                {"Convert, keeping the text files", "Convert, deleting the text files", "Cancel"};
+
+        int opt = JOptionPane.showOptionDialog(this, new Object[]{message, fullPrecision}, "Convert to binary",
+                                               JOptionPane.OK_CANCEL_OPTION,
+                                               JOptionPane.QUESTION_MESSAGE,
+                                               null,
+                                               options,
+                                               options[0]);
+
+        if (opt != 0 && opt != 1)
+        {
+            logger.logComment("User cancelled...");
+            return;
+        }
+        final boolean deleteTextFiles = (opt == 1);
+        final int encoding = fullPrecision.isSelected() ? BinaryTraceFile.ENCODING_DELTA_FLOAT64
+                                                        : BinaryTraceFile.ENCODING_FLOAT32;
+
+        jButtonConvert.setEnabled(false);
+
+        // Converting reads all of the data files, so is done off the event thread
+        Thread convertThread = new Thread("ConvertToBinary")
+        {
+            @Override
+            public void run()
+            {
+                int numConverted = 0;
+                try
+                {
+                    for (SimulationData simData: sims)
+                    {
+                        numConverted += simData.convertToBinaryTraceFiles(encoding, deleteTextFiles);
+                    }
+                    final int total = numConverted;
+
+                    SwingUtilities.invokeLater(new Runnable()
+                    {
+                        public void run()
+                        {
+                            GuiUtils.showInfoMessage(logger, "Converted to binary",
+                                                     "Converted "+total+" data files to binary trace files", SimulationBrowser.this);
+                            jButtonConvert.setEnabled(true);
+                        }
+                    });
+                }
+                catch (final SimulationDataException ex)
+                {
+                    SwingUtilities.invokeLater(new Runnable()
+                    {
+                        public void run()
+                        {
+                            GuiUtils.showErrorMessage(logger, "Problem converting the data files to binary", ex, SimulationBrowser.this);
+                            jButtonConvert.setEnabled(true);
+                        }
+                    });
+                }
+            }
+        };
+        convertThread.setDaemon(true);
+        convertThread.start();
+    }
+
+    void jButtonExport_actionPerformed(ActionEvent e)
+    {
+        logger.logComment("Exporting selected sims to MAT files");
+        if(jTableSimulations.getSelectedRowCount()==0) return;
+
+        int[] selectedSims= jTableSimulations.getSelectedRows();
+
+        final File[] simDirs = new File[selectedSims.length];
+        for (int i = 0; i < selectedSims.length; i++)
+        {
+            simDirs[i] = allSims.getSimulationData(selectedSims[i]).getSimulationDirectory();
+        }
+
+        jButtonExport.setEnabled(false);
+
+        // Exporting reads all of the data files, so is done off the event thread
+        Thread exportThread = new Thread("ExportSimulationData")
+        {
+            @Override
+            public void run()
+            {
+                final StringBuffer files = new StringBuffer();
+                try
+                {
+                    for (File simDir: simDirs)
+                    {
+                        files.append(SimulationDataExporter.export(simDir).getAbsolutePath()).append("\n");
+                    }
+
+                    SwingUtilities.invokeLater(new Runnable()
+                    {
+                        public void run()
+                        {
+                            GuiUtils.showInfoMessage(logger, "Exported to MATLAB",
+                                                     "Exported the simulation data to:\n"+files+"\nThe MATLAB/Octave and Igor Pro loaders "
+                                                     +"generated for these simulations will read the data from there.", SimulationBrowser.this);
+                            jButtonExport.setEnabled(true);
+                        }
+                    });
+                }
+                catch (final SimulationDataException ex)
+                {
+                    SwingUtilities.invokeLater(new Runnable()
+                    {
+                        public void run()
+                        {
+                            GuiUtils.showErrorMessage(logger, "Problem exporting the simulation data", ex, SimulationBrowser.this);
+                            jButtonExport.setEnabled(true);
+                        }
+                    });
+                }
+            }
+        };
+        exportThread.setDaemon(true);
+        exportThread.start();
+    }
+
     void jButtonRename_actionPerformed(ActionEvent e)
     {
         logger.logComment("Rename button pressed");
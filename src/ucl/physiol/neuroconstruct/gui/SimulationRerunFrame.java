@@ -101,6 +101,11 @@ public class SimulationRerunFrame extends JFrame
 
     private double[][] rerunValues = null;
 
+    /**
+     * For spike data, the DataStore is kept instead of a row of rerunValues
+     */
+    private DataStore[] rerunSpikeData = null;
+
     /**
      * CellItem is a CellSegRef or SynapseRef...
      */
@@ -939,7 +944,8 @@ public class SimulationRerunFrame extends JFrame
         try
         {
             this.rerunCellItemRefs = new String[currentCellItemRefs.size()];
-            this.rerunValues = new double[currentCellItemRefs.size()][myCurrSimData.getNumberTimeSteps()];
+            this.rerunValues = new double[currentCellItemRefs.size()][];
+            this.rerunSpikeData = new DataStore[currentCellItemRefs.size()];
 
             for (int i=0;i<currentCellItemRefs.size();i++)
             {
@@ -949,26 +955,35 @@ public class SimulationRerunFrame extends JFrame
                 if (ds.getPostSynapticObject()==null)
                 {
                     rerunCellItemRefs[i] = cellSegRef;
-                    double[] vals = ds.getDataPoints();
-                    rerunValues[i] = vals;
-                    mostNeg = Math.min(mostNeg, ds.getMinVal());
-                    mostPos = Math.max(mostPos, ds.getMaxVal());
                 }
                 else
                 {
                     rerunCellItemRefs[i] = cellSegRef+"."+ds.getPostSynapticObject().getSynRef();
-                    double[] vals = ds.getDataPoints();
-                    rerunValues[i] = vals;
-                    mostNeg = Math.min(mostNeg, ds.getMinVal());
-                    mostPos = Math.max(mostPos, ds.getMaxVal());
+                }
 
+                // Spike data is replayed from the spike times, rather than a continuous trace
+                if (ds.isSpikeTimes())
+                {
+                    rerunSpikeData[i] = ds;
                 }
+                else
+                {
+                    rerunValues[i] = ds.getDataPoints();
+                }
+                mostNeg = Math.min(mostNeg, ds.getMinVal());
+                mostPos = Math.max(mostPos, ds.getMaxVal());
 
             }
-            logger.logComment("rerunValues: "+ rerunValues[0][0]+" -> "+
-                              rerunValues[0][myCurrSimData.getNumberTimeSteps()-1]+" -> "+
-                              rerunValues[currentCellItemRefs.size()-1][0]+" -> "+
-                              rerunValues[currentCellItemRefs.size()-1][myCurrSimData.getNumberTimeSteps()-1]);
+            if (currentCellItemRefs.size()>0)
+            {
+                int lastStep = myCurrSimData.getNumberTimeSteps()-1;
+                int lastRef = currentCellItemRefs.size()-1;
+
+                logger.logComment("rerunValues: {} -> {} -> {} -> {}", getRerunValue(0, 0),
+                                  getRerunValue(0, lastStep),
+                                  getRerunValue(lastRef, 0),
+                                  getRerunValue(lastRef, lastStep));
+            }
 
             if (rerunCellItemRefs.length>2)
             {
@@ -1064,6 +1079,7 @@ public class SimulationRerunFrame extends JFrame
     {
         this.rerunCellItemRefs = null;
         this.rerunValues = null;
+        this.rerunSpikeData = null;
     }
 
 
@@ -1337,6 +1353,15 @@ public class SimulationRerunFrame extends JFrame
     }
 
 
+    private double getRerunValue(int cellSegIndex, int timeStep)
+    {
+        if (rerunValues[cellSegIndex] != null)
+            return rerunValues[cellSegIndex][timeStep];
+
+        return rerunSpikeData[cellSegIndex].getDataPoint(timeStep);
+    }
+
+
     private void updateISIs(int timeStep) throws SimulationDataException
     {
         for (int cellSegIndex = 0;cellSegIndex<this.rerunCellItemRefs.length;cellSegIndex++)
@@ -1347,7 +1372,7 @@ public class SimulationRerunFrame extends JFrame
             String cellGroupName = myCurrSimData.getCellGroup(cellOnlyReference);
             int cellNumber = SimulationData.getCellNum(cellOnlyReference);
 
-            double value = this.rerunValues[cellSegIndex][ timeStep];
+            double value = getRerunValue(cellSegIndex, timeStep);
 
             //logger.logComment("Showing " + voltage + " mV for " + cellSegReferences[j] + " at time: " +
             //                  myCurrSimData.getSimulationTime(timeStep));
@@ -1447,7 +1472,7 @@ public class SimulationRerunFrame extends JFrame
             int cellNumber = SimulationData.getCellNum(cellOnlyReference);
 
             //float value = myCurrSimData.getValueAtTimeStep(timeStep, ref, var);
-            double value = this.rerunValues[cellSegIndex][ timeStep];
+            double value = getRerunValue(cellSegIndex, timeStep);
 
             logger.logComment("Showing val "+value+" for "+ref+" at time: "+
                 myCurrSimData.getSimulationTime( timeStep));
@@ -1725,6 +1750,11 @@ public class SimulationRerunFrame extends JFrame
         return myCurrSimData.getVoltageAtAllTimes(cellSegRef);
     }
 
+    public double[] getSpikeTimes(String cellSegRef, float threshold)  throws SimulationDataException
+    {
+        return myCurrSimData.getSpikeTimes(cellSegRef, threshold);
+    }
+
     public double[] getAllTimes()  throws SimulationDataException
     {
         return myCurrSimData.getAllTimes();
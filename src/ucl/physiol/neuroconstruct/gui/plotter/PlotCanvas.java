@@ -30,6 +30,7 @@ import java.text.*;
 
 import java.awt.*;
 import java.awt.event.*;
+import java.awt.image.*;
 
 import ucl.physiol.neuroconstruct.dataset.*;
 import ucl.physiol.neuroconstruct.j3D.*;
@@ -122,6 +123,17 @@ public class PlotCanvas extends Canvas
     double mouseSelectionFinishX = -10;
     double mouseSelectionFinishY = -10;
 
+    /**
+     * Data sets with more points than this are drawn from their MinMaxPyramid where possible
+     */
+    private static final int MIN_POINTS_TO_SUMMARISE = 2000;
+
+    /**
+     * The plots as last drawn, and the state they were drawn in (see getPlotState())
+     */
+    private BufferedImage plotBuffer = null;
+    private String plotBufferState = null;
+
 
     public PlotCanvas(PlotterFrame plotFrame)
     {
@@ -1013,8 +1025,110 @@ public class PlotCanvas extends Canvas
 
 
 
+    /*
+     * Whole canvas is drawn from the buffer, so there's no need to clear it first
+     */
+    @Override
+    public void update(Graphics g)
+    {
+        paint(g);
+    }
+
+
     @Override
     public void paint(Graphics g)
+    {
+        if (plotFrame.isProblemDueToBarSpacing()) return;
+
+        int width = this.getWidth();
+        int height = this.getHeight();
+
+        if (width <= 0 || height <= 0) return;
+
+        // scale values are needed for the state, and are the same for each area
+        generateMaxMinForAxes(1, 0);
+
+        String state = getPlotState(width, height);
+
+        if (plotBuffer == null || !state.equals(plotBufferState))
+        {
+            if (plotBuffer == null || plotBuffer.getWidth() != width || plotBuffer.getHeight() != height)
+            {
+                plotBuffer = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            }
+            Graphics bufferGraphics = plotBuffer.createGraphics();
+
+            boolean completed = paintPlots(bufferGraphics);
+
+            bufferGraphics.dispose();
+
+            plotBufferState = completed ? state : null;
+        }
+        else
+        {
+            logger.logComment("Plots unchanged, so using buffer");
+        }
+
+        g.drawImage(plotBuffer, 0, 0, null);
+
+        if (selectingArea && !viewMode.equals(STACKED_VIEW))
+        {
+            g.setColor(Color.black);
+
+            int startX, finX, startY, finY;
+
+            if (getScreenPosnValForX(mouseSelectionStartX) < mouseXval)
+            {
+                startX = getScreenPosnValForX(mouseSelectionStartX);
+                finX = mouseXval - getScreenPosnValForX(mouseSelectionStartX);
+            }
+            else
+            {
+                startX = mouseXval;
+                finX = getScreenPosnValForX(mouseSelectionStartX) - mouseXval;
+            }
+            if (getScreenPosnValForY(mouseSelectionStartY, 1, 0) < mouseYval)
+            {
+                startY = getScreenPosnValForY(mouseSelectionStartY, 1, 0);
+                finY = mouseYval - getScreenPosnValForY(mouseSelectionStartY, 1, 0);
+            }
+            else
+            {
+                startY = mouseYval;
+                finY = getScreenPosnValForY(mouseSelectionStartY, 1, 0) - mouseYval;
+            }
+
+            g.drawRect(startX, startY, finX, finY);
+        }
+    }
+
+    /*
+     * Everything which affects how the plots look, so the buffer is only redrawn when needed
+     */
+    private String getPlotState(int width, int height)
+    {
+        StringBuilder sb = new StringBuilder();
+
+        sb.append(width).append(" ").append(height).append(" ").append(viewMode)
+            .append(" ").append(maxXScaleValue).append(" ").append(minXScaleValue)
+            .append(" ").append(maxYScaleValue).append(" ").append(minYScaleValue)
+            .append(" ").append(showAxes).append(showAxisNumbering).append(showAxisTicks)
+            .append(" ").append(plotFrame.isRasterised())
+            .append(" ").append(myRasterOptions.getThreshold()).append(" ").append(myRasterOptions.getPercentage());
+
+        for (DataSet dataSet: dataSets)
+        {
+            sb.append(" ").append(System.identityHashCode(dataSet)).append(":").append(dataSet.getModCount())
+                .append(":").append(dataSet.getGraphColour().getRGB()).append(":").append(dataSet.getGraphFormat());
+        }
+        return sb.toString();
+    }
+
+
+    /*
+     * Returns false if there was a problem which stopped all the plots being drawn
+     */
+    private boolean paintPlots(Graphics g)
     {
         long startTime = System.currentTimeMillis();
 
@@ -1023,8 +1137,6 @@ public class PlotCanvas extends Canvas
 
         int pointsPlotted = 0;
 
-        if (plotFrame.isProblemDueToBarSpacing()) return;
-
         setScene(g);
 
         boolean foundNaNInfinity = false;
@@ -1042,34 +1154,6 @@ public class PlotCanvas extends Canvas
             generateMaxMinForAxes(numSeparateAreas, areaNumber);
             addAxes(g, numSeparateAreas, areaNumber);
 
-            if (selectingArea && !viewMode.equals(STACKED_VIEW))
-            {
-                int startX, finX, startY, finY;
-
-                if (getScreenPosnValForX(mouseSelectionStartX) < mouseXval)
-                {
-                    startX = getScreenPosnValForX(mouseSelectionStartX);
-                    finX = mouseXval - getScreenPosnValForX(mouseSelectionStartX);
-                }
-                else
-                {
-                    startX = mouseXval;
-                    finX = getScreenPosnValForX(mouseSelectionStartX) - mouseXval;
-                }
-                if (getScreenPosnValForY(mouseSelectionStartY, numSeparateAreas, areaNumber) < mouseYval)
-                {
-                    startY = getScreenPosnValForY(mouseSelectionStartY, numSeparateAreas, areaNumber);
-                    finY = mouseYval - getScreenPosnValForY(mouseSelectionStartY, numSeparateAreas, areaNumber);
-                }
-                else
-                {
-                    startY = mouseYval;
-                    finY = getScreenPosnValForY(mouseSelectionStartY, numSeparateAreas, areaNumber) - mouseYval;
-                }
-
-                g.drawRect(startX, startY, finX, finY);
-            }
-
             int dataSetIndexStart = 0;
             int dataSetIndexEnd = dataSets.length-1;
 
@@ -1086,7 +1170,34 @@ public class PlotCanvas extends Canvas
                 logger.logComment(">>>>   Plotting data Set: "+ dataSets[dataSetIndex].getReference());
 
                 int numPoints = dataSets[dataSetIndex].getNumberPoints();
-                // double[] nextPoint = null;
+
+                String graphFormat = dataSets[dataSetIndex].getGraphFormat();
+
+                boolean linesFormat = graphFormat.equals(USE_LINES_FOR_PLOT) ||
+                                      graphFormat.equals(USE_THICK_LINES_FOR_PLOT);
+
+                if (numPoints > MIN_POINTS_TO_SUMMARISE && (linesFormat || plotFrame.isRasterised()))
+                {
+                    MinMaxPyramid pyramid = dataSets[dataSetIndex].getMinMaxPyramid();
+
+                    if (!pyramid.hasNonFiniteValues())
+                    {
+                        g.setColor(dataSets[dataSetIndex].getGraphColour());
+
+                        if (plotFrame.isRasterised())
+                        {
+                            pointsPlotted += paintSummarisedRaster(g, pyramid, numSeparateAreas, areaNumber);
+                            continue;
+                        }
+                        else if (pyramid.isXNonDecreasing())
+                        {
+                            pointsPlotted += paintSummarisedLines(g, pyramid,
+                                                                  graphFormat.equals(USE_THICK_LINES_FOR_PLOT),
+                                                                  numSeparateAreas, areaNumber);
+                            continue;
+                        }
+                    }
+                }
 
                 int lastXVal = Integer.MAX_VALUE;
                 int lastYVal = Integer.MAX_VALUE;
@@ -1202,7 +1313,7 @@ public class PlotCanvas extends Canvas
                                     GuiUtils.showErrorMessage(logger,
                                                               "The set of points are not sequential and evenly spaced, and therefore the bar chart format cannot be used.", ex, this);
                                     plotFrame.flagProblemDueToBarSpacing();
-                                    return;
+                                    return false;
                                 }
 
                                 int xValMinusHalf = getScreenPosnValForX(nextPoint[0] - (xValueSpacing / 2f));
@@ -1241,7 +1352,7 @@ public class PlotCanvas extends Canvas
                             {
                                 GuiUtils.showErrorMessage(logger, "Unknown format for graph: " +
                                                           dataSets[dataSetIndex].getGraphFormat(), null, this);
-                                return;
+                                return false;
                             }
                             lastXplotted = xVal;
                             lastYplotted = yVal;
@@ -1315,6 +1426,144 @@ public class PlotCanvas extends Canvas
                                        "Warning! Some points in these plots were infinite or undefined", null, this);
              warnedAboutNaNInfinity = true;
          }
+         return true;
+    }
+
+
+    /*
+     * Draws the line through the points as a vertical line over the range of y values in each column
+     * of pixels, joined to the last point in the previous column, which covers the same pixels as a
+     * line between each pair of points, but only needs a few lines per column. The points must be in
+     * order of x value. Returns the number of lines drawn.
+     */
+    private int paintSummarisedLines(Graphics g, MinMaxPyramid pyramid, boolean thick, int numAreas, int areaNumber)
+    {
+        int width = this.getWidth();
+        int numPoints = pyramid.getNumberPoints();
+
+        // from the last point to the left of the view to the first to the right, so lines go to the edges
+        int start = Math.max(0, getFirstIndexInColumnAfter(pyramid, -1, 0, numPoints) - 1);
+        int end = Math.min(numPoints, getFirstIndexInColumnAfter(pyramid, width - 1, start, numPoints) + 1);
+
+        double[] yRange = new double[2];
+
+        int lastXVal = Integer.MAX_VALUE;
+        int lastYVal = Integer.MAX_VALUE;
+
+        int linesDrawn = 0;
+        int i = start;
+
+        while (i < end)
+        {
+            int xVal = getScreenPosnValForX(pyramid.getXValue(i));
+
+            int next = i + 1;
+            if (xVal >= 0 && xVal < width) next = getFirstIndexInColumnAfter(pyramid, xVal, i, end);
+
+            int firstYVal = getScreenPosnValForY(pyramid.getYValue(i), numAreas, areaNumber);
+
+            if (lastXVal != Integer.MAX_VALUE)
+            {
+                drawLine(g, lastXVal, lastYVal, xVal, firstYVal, thick);
+                linesDrawn++;
+            }
+            if (next - i > 1)
+            {
+                pyramid.getYRange(i, next, yRange);
+                drawLine(g,
+                         xVal, getScreenPosnValForY(yRange[1], numAreas, areaNumber),
+                         xVal, getScreenPosnValForY(yRange[0], numAreas, areaNumber),
+                         thick);
+                linesDrawn++;
+            }
+            lastXVal = xVal;
+            lastYVal = getScreenPosnValForY(pyramid.getYValue(next - 1), numAreas, areaNumber);
+
+            i = next;
+        }
+        return linesDrawn;
+    }
+
+    /*
+     * Index of the first point from start to end-1 which is to the right of the column, or end if none.
+     * Searches outwards from start, so finding the end of a column with few points is quick
+     */
+    private int getFirstIndexInColumnAfter(MinMaxPyramid pyramid, int column, int start, int end)
+    {
+        int low = start;
+        int step = 1;
+        int high = start;
+
+        while (high < end && getScreenPosnValForX(pyramid.getXValue(high)) <= column)
+        {
+            low = high + 1;
+            high = high + step;
+            step = step * 2;
+        }
+        high = Math.min(high, end);
+
+        while (low < high)
+        {
+            int mid = (low + high) >>> 1;
+
+            if (getScreenPosnValForX(pyramid.getXValue(mid)) <= column)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+
+    private void drawLine(Graphics g, int x1, int y1, int x2, int y2, boolean thick)
+    {
+        g.drawLine(x1, y1, x2, y2);
+
+        if (thick)
+        {
+            g.drawLine(x1-1, y1-1, x2-1, y2-1);
+            g.drawLine(x1-1, y1+1, x2-1, y2+1);
+            g.drawLine(x1+1, y1-1, x2+1, y2-1);
+            g.drawLine(x1+1, y1+1, x2+1, y2+1);
+
+            g.drawLine(x1, y1-1, x2, y2-1);
+            g.drawLine(x1, y1+1, x2, y2+1);
+            g.drawLine(x1-1, y1, x2-1, y2);
+            g.drawLine(x1+1, y1, x2+1, y2);
+        }
+    }
+
+    /*
+     * Draws a raster line where the values go above the threshold, jumping over the runs of points
+     * above or below it. Returns the number of lines drawn.
+     */
+    private int paintSummarisedRaster(Graphics g, MinMaxPyramid pyramid, int numAreas, int areaNumber)
+    {
+        double topY = maxYScaleValue
+            - ( (100 - myRasterOptions.getPercentage()) / 200 *
+               (maxYScaleValue - minYScaleValue));
+
+        double bottomY = minYScaleValue
+            + ( (100 - myRasterOptions.getPercentage()) / 200 *
+               (maxYScaleValue - minYScaleValue));
+
+        int topYVal = getScreenPosnValForY(topY, numAreas, areaNumber);
+        int bottomYVal = getScreenPosnValForY(bottomY, numAreas, areaNumber);
+
+        int linesDrawn = 0;
+        int i = 0;
+
+        while ((i = pyramid.getFirstIndexAbove(i, myRasterOptions.threshold)) >= 0)
+        {
+            int xVal = getScreenPosnValForX(pyramid.getXValue(i));
+
+            g.drawLine(xVal, topYVal, xVal, bottomYVal);
+            linesDrawn++;
+
+            i = pyramid.getFirstIndexAtOrBelow(i + 1, myRasterOptions.threshold);
+
+            if (i < 0) break;
+        }
+        return linesDrawn;
     }
 
     public void setKeepDataSetColours(boolean val)
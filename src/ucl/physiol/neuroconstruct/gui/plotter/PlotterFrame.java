@@ -82,6 +82,7 @@ public class PlotterFrame extends JFrame {
     JMenuItem jMenuImportData = new JMenuItem();
     JMenuItem jMenuGenerateMatplotlib = new JMenuItem();
     JMenuItem jMenuApAnalysis = new JMenuItem();
+    JMenuItem jMenuPopulationSpikes = new JMenuItem();
     JRadioButtonMenuItem jMenuViewPointsOnly = new JRadioButtonMenuItem();
     JRadioButtonMenuItem jMenuItemViewOrigin = new JRadioButtonMenuItem();
     JRadioButtonMenuItem jMenuItemSelection = new JRadioButtonMenuItem();
@@ -185,12 +186,15 @@ public class PlotterFrame extends JFrame {
         jMenuImportData.setText("Import data from file...");
         jMenuGenerateMatplotlib.setText("Generate matplotlib files for EPS image & PDF (beta)...");
         jMenuApAnalysis.setText("AP shape analysis");
+        jMenuPopulationSpikes.setText("Population spike analysis...");
+        jMenuPopulationSpikes.setToolTipText("Synchrony, mean cross correlogram and firing statistics of the spikes in all of the Data Sets");
         jMenuTools.add(jMenuDifference);
         jMenuTools.add(jMenuAverage);
         jMenuTools.add(jMenuAddManual);
         jMenuTools.add(jMenuImportData);
         jMenuTools.add(jMenuGenerateMatplotlib);
         jMenuTools.add(jMenuApAnalysis);
+        jMenuTools.add(jMenuPopulationSpikes);
 
         jMenuDifference.addActionListener(new ActionListener() {
 
@@ -233,6 +237,13 @@ public class PlotterFrame extends JFrame {
             }
         });
 
+        this.jMenuPopulationSpikes.addActionListener(new ActionListener() {
+
+            public void actionPerformed(ActionEvent e) {
+                jMenuPopulationSpikes_actionPerformed(e);
+            }
+        });
+
 
         //jMenuHelp.setText("Help");
         jMenuItemViewOrigin.setText("Include origin");
@@ -1204,30 +1215,13 @@ public class PlotterFrame extends JFrame {
                     startTime,
                     stopTime);
 
-            ArrayList interSpikeIntervals = SpikeAnalyser.getInterSpikeIntervals(dataSet.getYValues(),
-                    dataSet.getXValues(),
-                    threshold,
+            double[] interSpikeIntervals = PopulationSpikeAnalyser.getInterSpikeIntervals(spikeTimes,
                     startTime,
                     stopTime);
 
+            double averageISI = PopulationSpikeAnalyser.getMean(interSpikeIntervals);
 
-
-            double totalISI = 0;
-
-            for (int i = 0; i < interSpikeIntervals.size(); i++) {
-                totalISI = totalISI + ((Double) interSpikeIntervals.get(i)).doubleValue();
-
-            }
-            double averageISI = totalISI / (double) interSpikeIntervals.size();
-
-            double totalDevSqrd = 0;
-
-            for (int i = 0; i < interSpikeIntervals.size(); i++) {
-                double dev = ((Double) interSpikeIntervals.get(i)).doubleValue() - averageISI;
-
-                totalDevSqrd = totalDevSqrd + (dev * dev);
-            }
-            double stdDev = Math.sqrt(totalDevSqrd / (double) interSpikeIntervals.size());
+            double stdDev = PopulationSpikeAnalyser.getStandardDeviation(interSpikeIntervals);
 
 
 
@@ -1255,6 +1249,8 @@ public class PlotterFrame extends JFrame {
 
             sb.append("Standard Deviation on ISI   : " + Utils3D.trimDouble(stdDev, 5) + " ms<br>");
 
+            sb.append("Coefficient of variation of ISI: " + Utils3D.trimDouble(stdDev / averageISI, 5) + "<br>");
+
             sb.append("Frequency based on ISI: <b>" + Utils3D.trimDouble((1 / averageISI) * 1000, 5) + " Hz</b><br><br><br>");
 
 
@@ -1648,6 +1644,9 @@ public class PlotterFrame extends JFrame {
             req = "Please enter the bin size for the ISI Histogram";
 
             float suggestedBinSize = Math.min(1, (stopTime - startTime) / 60f);
+            if (PlotterFrame.preferredSpikeValsEntered) {
+                suggestedBinSize = plotCanvas.getSpikeOptions().getIsiBinSize();
+            }
 
             logger.logComment("Suggested bin size: " + suggestedBinSize);
 
@@ -1665,6 +1664,7 @@ public class PlotterFrame extends JFrame {
                 GuiUtils.showErrorMessage(logger, "Invalid ISI Histogram bin size", ex, null);
                 return;
             }
+            plotCanvas.getSpikeOptions().setIsiBinSize(binSize);
 
 
             req = "Please enter the maximum ISI value to be plotted";
@@ -1691,12 +1691,16 @@ public class PlotterFrame extends JFrame {
 
 
 
-            ArrayList interSpikeIntervals = SpikeAnalyser.getInterSpikeIntervals(dataSet.getYValues(),
+            double[] spikeTimes = SpikeAnalyser.getSpikeTimes(dataSet.getYValues(),
                     dataSet.getXValues(),
                     threshold,
                     startTime,
                     stopTime);
 
+            double[] interSpikeIntervals = PopulationSpikeAnalyser.getInterSpikeIntervals(spikeTimes,
+                    startTime,
+                    stopTime);
+
             int numBins = Math.round((maxSize) / binSize);
 
             DataSet isiHist = new DataSet("ISI Histogram of " + dataSet.getReference(),
@@ -1706,31 +1710,18 @@ public class PlotterFrame extends JFrame {
                     "Interspike interval",
                     "Number per bin");
 
+            int[] numInBins = PopulationSpikeAnalyser.getHistogram(interSpikeIntervals, 0, binSize, numBins);
+
             for (int i = 0; i < numBins; i++) {
                 float startISI = i * binSize;
                 float endISI = (i + 1) * binSize;
 
-                int totalHere = 0;
-
-                for (int j = 0; j < interSpikeIntervals.size(); j++) {
-                    double isi = ((Double) interSpikeIntervals.get(j)).doubleValue();
-
-                    if (isi >= startISI && isi < endISI) {
-                        totalHere++;
-                    }
-                }
-                isiHist.addPoint((endISI + startISI) / 2f, totalHere);
+                isiHist.addPoint((endISI + startISI) / 2f, numInBins[i]);
 
             }
             ///check more...
-            boolean warn = false;
-            for (int j = 0; j < interSpikeIntervals.size(); j++) {
-                double isi = ((Double) interSpikeIntervals.get(j)).doubleValue();
+            boolean warn = PopulationSpikeAnalyser.getNumAtOrAbove(interSpikeIntervals, maxSize) > 0;
 
-                if (isi >= maxSize) {
-                    warn = true;
-                }
-            }
             if (warn) {
                 GuiUtils.showErrorMessage(logger, "Warning. The maximum ISI you have chosen to be plotted, "
                         + maxSize + ", is exceeded by at least one of the ISIs\n"
@@ -3016,6 +3007,8 @@ public class PlotterFrame extends JFrame {
         for (int dataSetIndex = 0; dataSetIndex < plotCanvas.dataSets.length; dataSetIndex++) {
             String desc = name + dataSetIndex;
             DataSet nextDs = plotCanvas.dataSets[dataSetIndex];
+            java.nio.DoubleBuffer nextXVals = nextDs.getXValuesView();
+            java.nio.DoubleBuffer nextYVals = nextDs.getYValuesView();
 
             // save the spiketimes for this cell in the appropriate item of the spikeTimesAoa array of arrays
             spikeTimesAoa[dataSetIndex] = SpikeAnalyser.getSpikeTimes(nextDs.getYValues(),
@@ -3046,11 +3039,11 @@ public class PlotterFrame extends JFrame {
                 double end = spikeTimesAoa[dataSetIndex][j] + (Double) interSpikeIntervalsAoa[dataSetIndex].get(j) / 2;
 
                 // iterate over the trace points for this cell and add them to this dataset if they are between beginning and end
-                for (int k = 0; k < nextDs.getXValues().length; k++) {
-                    if (nextDs.getXValues()[k] > beginning && nextDs.getXValues()[k] < end) {
-                        spikeShapes[dataSetIndex][j].addPoint(nextDs.getXValues()[k] - spikeTimesAoa[dataSetIndex][j], nextDs.getYValues()[k]);
+                for (int k = 0; k < nextXVals.limit(); k++) {
+                    if (nextXVals.get(k) > beginning && nextXVals.get(k) < end) {
+                        spikeShapes[dataSetIndex][j].addPoint(nextXVals.get(k) - spikeTimesAoa[dataSetIndex][j], nextYVals.get(k));
                     }
-                    if (nextDs.getXValues()[k] > end){
+                    if (nextXVals.get(k) > end){
                         break; //this should speed things up a bit
                     }
                 }
@@ -3065,6 +3058,214 @@ public class PlotterFrame extends JFrame {
 
 
 
+    }
+
+    void jMenuPopulationSpikes_actionPerformed(ActionEvent e) {
+
+        if (plotCanvas.getDataSets().length == 0) {
+            GuiUtils.showErrorMessage(logger, "There are no Data Sets in this Plot Frame to analyse", null, this);
+            return;
+        }
+        DataSet ds0 = plotCanvas.dataSets[0];
+        SpikeAnalysisOptions options = plotCanvas.getSpikeOptions();
+
+        ArrayList<InputRequestElement> inputs = new ArrayList<InputRequestElement>();
+
+        float suggestedThresh = -20;
+        float suggestedStart = (float) ds0.getMinX()[0];
+        float suggestedEnd = (float) ds0.getMaxX()[0];
+
+        if (PlotterFrame.preferredSpikeValsEntered) {
+            suggestedThresh = options.getThreshold();
+            suggestedStart = options.getStartTime();
+            suggestedEnd = options.getStopTime();
+        }
+
+        InputRequestElement threshInput = new InputRequestElement("threshold", "Threshold for spike", null, suggestedThresh + "", "mV");
+        inputs.add(threshInput);
+        InputRequestElement startInput = new InputRequestElement("start", "Start time from which to analyse the spiking", null, suggestedStart + "", "ms");
+        inputs.add(startInput);
+        InputRequestElement stopInput = new InputRequestElement("stop", "Finish time from which to analyse the spiking", null, suggestedEnd + "", "ms");
+        inputs.add(stopInput);
+        InputRequestElement syncInput = new InputRequestElement("synchronyWindow", "Sliding window for counting synchronous spikes", null, options.getSynchronyWindow() + "", "ms");
+        inputs.add(syncInput);
+        InputRequestElement binSizeInput = new InputRequestElement("binSize", "Bin size for the cross correlogram", null, options.getCorrelationBinSize() + "", "ms");
+        inputs.add(binSizeInput);
+        InputRequestElement windowInput = new InputRequestElement("window", "Maximum offset in the cross correlogram", null, options.getCorrelationWindow() + "", "ms");
+        inputs.add(windowInput);
+        InputRequestElement pauseInput = new InputRequestElement("pauseMin", "Minimum interval before a spike for it to be used as a reference", null, options.getPauseMin() + "", "ms");
+        inputs.add(pauseInput);
+
+        InputRequest dlg = new InputRequest(null, "Please enter the parameters for the analysis of the spiking of all the Data Sets", "Parameters for population spike analysis", inputs, true);
+
+        GuiUtils.centreWindow(dlg);
+
+        dlg.setVisible(true);
+
+        if (dlg.cancelled()) {
+            return;
+        }
+
+        try {
+            options.setThreshold(Float.parseFloat(threshInput.getValue()));
+            options.setStartTime(Float.parseFloat(startInput.getValue()));
+            options.setStopTime(Float.parseFloat(stopInput.getValue()));
+            options.setSynchronyWindow(Float.parseFloat(syncInput.getValue()));
+            options.setCorrelationBinSize(Float.parseFloat(binSizeInput.getValue()));
+            options.setCorrelationWindow(Float.parseFloat(windowInput.getValue()));
+            options.setPauseMin(Float.parseFloat(pauseInput.getValue()));
+        } catch (Exception ex) {
+            GuiUtils.showErrorMessage(logger, "Invalid value for the population spike analysis", ex, this);
+            return;
+        }
+        PlotterFrame.preferredSpikeValsEntered = true;
+
+        final SpikeAnalysisOptions analysisOptions = options;
+        final DataSet[] dataSets = plotCanvas.getDataSets();
+        final double[] times = ds0.getXValues();
+        final String title = this.getTitle();
+
+        jMenuPopulationSpikes.setEnabled(false);
+
+        // The analysis (in particular the all pairs cross correlogram) can take a long time for
+        // large populations, so is run off the event thread, and the results shown when it's done
+        SwingWorker<Void, Void> worker = new SwingWorker<Void, Void>() {
+
+            double[][] spikeTrains = null;
+            PopulationSpikeAnalyser population = null;
+            int[] numSpikes = null;
+            float[] correl = null;
+            double[] rates = null;
+            double[] cvs = null;
+            double[] interSpikeIntervals = null;
+
+            @Override
+            protected Void doInBackground() {
+                float startTime = analysisOptions.getStartTime();
+                float stopTime = analysisOptions.getStopTime();
+
+                spikeTrains = new double[dataSets.length][];
+
+                for (int dataSetIndex = 0; dataSetIndex < dataSets.length; dataSetIndex++) {
+                    DataSet nextDs = dataSets[dataSetIndex];
+
+                    spikeTrains[dataSetIndex] = SpikeAnalyser.getSpikeTimes(nextDs.getYValues(),
+                            nextDs.getXValues(),
+                            analysisOptions.getThreshold(),
+                            startTime,
+                            stopTime);
+                }
+
+                population = new PopulationSpikeAnalyser(spikeTrains);
+
+                numSpikes = population.getSlidingWindowCounts(times, analysisOptions.getSynchronyWindow());
+
+                if (spikeTrains.length > 1) {
+                    correl = population.getMeanCrossCorrelogram(analysisOptions.getCorrelationBinSize(),
+                            analysisOptions.getCorrelationWindow(),
+                            analysisOptions.getPauseMin());
+                }
+
+                rates = population.getFiringRates(startTime, stopTime);
+                cvs = population.getCoefficientsOfVariation(startTime, stopTime);
+                interSpikeIntervals = population.getAllInterSpikeIntervals(startTime, stopTime);
+                return null;
+            }
+
+            @Override
+            protected void done() {
+                jMenuPopulationSpikes.setEnabled(true);
+                try {
+                    get();
+                } catch (InterruptedException ex) {
+                    return;
+                } catch (java.util.concurrent.ExecutionException ex) {
+                    GuiUtils.showErrorMessage(logger, "Problem with the population spike analysis", ex.getCause(), PlotterFrame.this);
+                    return;
+                }
+                showPopulationSpikeInfo(analysisOptions, title, times, spikeTrains, population,
+                        numSpikes, correl, rates, cvs, interSpikeIntervals);
+            }
+        };
+        worker.execute();
+    }
+
+    private void showPopulationSpikeInfo(SpikeAnalysisOptions options,
+                                         String title,
+                                         double[] times,
+                                         double[][] spikeTrains,
+                                         PopulationSpikeAnalyser population,
+                                         int[] numSpikes,
+                                         float[] correl,
+                                         double[] rates,
+                                         double[] cvs,
+                                         double[] interSpikeIntervals) {
+        float startTime = options.getStartTime();
+        float stopTime = options.getStopTime();
+
+        String name = "Population spike analysis of " + spikeTrains.length + " Data Sets in " + title;
+        PlotterFrame frame = PlotManager.getPlotterFrame(name, false, true);
+
+        String desc = "Synchrony of " + spikeTrains.length + " spike sets over " + options.getSynchronyWindow() + " ms sliding window";
+        DataSet syncDataSet = new DataSet(desc, desc, "ms", "", "Time", "Num spikes over " + options.getSynchronyWindow() + " ms");
+        syncDataSet.setGraphFormat(PlotCanvas.USE_LINES_FOR_PLOT);
+
+        for (int i = 0; i < times.length; i++) {
+            if (times[i] >= startTime && times[i] <= stopTime) {
+                syncDataSet.addPoint(times[i], numSpikes[i]);
+            }
+        }
+        frame.addDataSet(syncDataSet);
+
+        if (correl != null) {
+            float binSize = options.getCorrelationBinSize();
+
+            int binNum = (correl.length - 1) / 2;
+
+            desc = "Mean cross correlogram of " + spikeTrains.length + " spike sets";
+            DataSet ccDataSet = new DataSet(desc, desc, "ms", "", "Offset", "Mean cross correlation");
+            ccDataSet.setGraphFormat(PlotCanvas.USE_BARCHART_FOR_PLOT);
+
+            for (int i = 0; i < correl.length; i++) {
+                if (!Float.isNaN(correl[i])) {
+                    ccDataSet.addPoint((i - binNum) * binSize, correl[i]);
+                }
+            }
+            PlotterFrame ccFrame = PlotManager.getPlotterFrame(desc + " in " + title, false, true);
+            ccFrame.addDataSet(ccDataSet);
+        }
+
+        int numWithCv = 0;
+        double totalCv = 0;
+        for (double cv : cvs) {
+            if (!Double.isNaN(cv)) {
+                numWithCv++;
+                totalCv += cv;
+            }
+        }
+
+        StringBuffer sb = new StringBuffer();
+        sb.append("<h2>Population spiking info on " + spikeTrains.length + " Data Sets</h2>");
+        sb.append("Spiking threshold: " + options.getThreshold() + "<br>");
+        sb.append("Start time: " + startTime + ", stop time: " + stopTime + "<br>");
+        sb.append("Total number of spikes: " + population.getTotalNumSpikes() + "<br>");
+        sb.append("Mean firing rate: <b>" + Utils3D.trimDouble(PopulationSpikeAnalyser.getMean(rates), 5) + " Hz</b><br>");
+        sb.append("Standard deviation on firing rate: " + Utils3D.trimDouble(PopulationSpikeAnalyser.getStandardDeviation(rates), 5) + " Hz<br>");
+        sb.append("Average Inter Spike Interval: " + Utils3D.trimDouble(PopulationSpikeAnalyser.getMean(interSpikeIntervals), 5) + " ms<br>");
+        sb.append("Mean coefficient of variation of ISI: " + Utils3D.trimDouble(totalCv / numWithCv, 5)
+                + " (of " + numWithCv + " Data Sets with at least 2 intervals)<br>");
+
+        SimpleViewer simpleViewer = new SimpleViewer(sb.toString(),
+                "Population spike info on: " + title,
+                12,
+                false,
+                true);
+
+        simpleViewer.setFrameSize(600, 400);
+
+        GuiUtils.centreWindow(simpleViewer);
+
+        simpleViewer.setVisible(true);
     }
 
     void jMenuAverage_actionPerformed(ActionEvent e) {
@@ -3103,10 +3304,8 @@ public class PlotterFrame extends JFrame {
 
         String desc = name;
 
-        DataSet dataSet = new DataSet(name, desc, ds0.getXUnit(), ds0.getYUnit(), ds0.getXLegend(), ds0.getYLegend());
-        for (int i = 0; i < xVals.length; i++) {
-            dataSet.addPoint(xVals[i], allYVals[i]);
-        }
+        DataSet dataSet = new DataSet(name, desc, ds0.getXUnit(), ds0.getYUnit(), ds0.getXLegend(), ds0.getYLegend(),
+                                      xVals, allYVals, xVals.length);
         frame.addDataSet(dataSet);
 
     }
@@ -40,6 +40,15 @@ public class SpikeAnalysisOptions
     float startTime = 0;
     float stopTime = 100;
 
+    /*
+     * For the ISI histograms & population analysis, see PopulationSpikeAnalyser
+     */
+    float isiBinSize = 1;
+    float synchronyWindow = 5;
+    float correlationBinSize = 1;
+    float correlationWindow = 50;
+    float pauseMin = 0;
+
 
     public SpikeAnalysisOptions()
     {
@@ -69,4 +78,53 @@ public class SpikeAnalysisOptions
     {
         this.stopTime = stopTime;
     }
+    public float getIsiBinSize()
+    {
+        return isiBinSize;
+    }
+    public void setIsiBinSize(float isiBinSize)
+    {
+        this.isiBinSize = isiBinSize;
+    }
+    /**
+     * Spikes at or after each time and up to this much later are counted for the population synchrony
+     */
+    public float getSynchronyWindow()
+    {
+        return synchronyWindow;
+    }
+    public void setSynchronyWindow(float synchronyWindow)
+    {
+        this.synchronyWindow = synchronyWindow;
+    }
+    public float getCorrelationBinSize()
+    {
+        return correlationBinSize;
+    }
+    public void setCorrelationBinSize(float correlationBinSize)
+    {
+        this.correlationBinSize = correlationBinSize;
+    }
+    /**
+     * Maximum offset of spikes in the correlograms
+     */
+    public float getCorrelationWindow()
+    {
+        return correlationWindow;
+    }
+    public void setCorrelationWindow(float correlationWindow)
+    {
+        this.correlationWindow = correlationWindow;
+    }
+    /**
+     * Spikes which follow the previous spike by less than this aren't used as references in the correlograms
+     */
+    public float getPauseMin()
+    {
+        return pauseMin;
+    }
+    public void setPauseMin(float pauseMin)
+    {
+        this.pauseMin = pauseMin;
+    }
 }
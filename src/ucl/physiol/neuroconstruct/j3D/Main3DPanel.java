@@ -3941,8 +3941,8 @@ public class Main3DPanel extends Base3DPanel implements SimulationInterface
             int cellNum = orderedCellNums.get(i);
             String cellSegRef = SimulationData.getCellSegRef(cellGroup, cellNum, 0, simRerunFrame.isOnlySomaValues());
            
-            double[] voltages = simRerunFrame.getVoltageAtAllTimes(cellSegRef);
-            spikeSets.add(i, SpikeAnalyser.getSpikeTimes(voltages, times, threshold, startTime, stopTime));
+            double[] allSpikeTimes = simRerunFrame.getSpikeTimes(cellSegRef, threshold);
+            spikeSets.add(i, SpikeAnalyser.getSpikeTimes(allSpikeTimes, startTime, stopTime));
         }
 
         cellGroupSync = SpikeAnalyser.getSlidingSpikeSynchrony(spikeSets, times, slideSize, startTime, stopTime);
@@ -4532,20 +4532,13 @@ public class Main3DPanel extends Base3DPanel implements SimulationInterface
 
         for (int cellNum = 0; cellNum < total; cellNum++)
         {
-            double[] voltages = null;
-
-
             String cellRef = SimulationData.getCellSegRef(cellGroup, cellNum, 0, simRerunFrame.isOnlySomaValues());
 
             logger.logComment("Data for soma only present...");
-            voltages = simRerunFrame.getVoltageAtAllTimes(cellRef);
-
-            logger.logComment("Voltages:  ("+voltages.length+"): "+ voltages[0]+", "+ voltages[1]+", ... , "+ voltages[voltages.length-1]);
+            double[] allSpikeTimes = simRerunFrame.getSpikeTimes(cellRef, threshold);
 
             ArrayList<Double> latestInterSpikeIntervals
-                = SpikeAnalyser.getInterSpikeIntervals(voltages,
-                                                       times,
-                                                       threshold,
+                = SpikeAnalyser.getInterSpikeIntervals(allSpikeTimes,
                                                        startTime,
                                                        stopTime);
 
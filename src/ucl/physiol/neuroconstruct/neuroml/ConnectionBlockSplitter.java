@@ -0,0 +1,535 @@
+/**
+ *  neuroConstruct
+ *  Software for developing large scale 3D networks of biologically realistic neurons
+ *
+ *  Copyright (c) 2009 Padraig Gleeson
+ *  UCL Department of Neuroscience, Physiology and Pharmacology
+ *
+ *  Development of this software was made possible with funding from the
+ *  Medical Research Council and the Wellcome Trust
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+
+package ucl.physiol.neuroconstruct.neuroml;
+
+import java.io.*;
+import java.nio.charset.*;
+import java.util.*;
+
+/**
+ * Stream over a NetworkML file which takes the contents of the connections elements out of what is
+ * passed on to the XML parser, so they can be parsed separately (see ProjectionConnectionBuilder).
+ * The contents are split between connection elements into blocks of around BLOCK_BYTES, and each
+ * block is replaced by a processing instruction with target BLOCK_PI_TARGET. When the parser
+ * reaches one of these, the next block can be got with takeBlock(). Works on the bytes of the file,
+ * so is only used for ASCII compatible encodings (e.g. UTF-8, ISO-8859-1), with any other the file
+ * is passed on unchanged.
+ *
+ * @author Padraig Gleeson
+ *
+ */
+
+class ConnectionBlockSplitter extends InputStream
+{
+    static final String BLOCK_PI_TARGET = "neuroConstructConnections";
+
+    private static final int BLOCK_BYTES = 1 << 22;
+    private static final int BUFFER_BYTES = 1 << 16;
+
+    private static final byte[] BLOCK_PI = ("<?" + BLOCK_PI_TARGET + "?>").getBytes();
+    private static final byte[] CONNECTIONS = NetworkMLConstants.CONNECTIONS_ELEMENT.getBytes();
+
+    private final InputStream in;
+
+    private final byte[] inBuf = new byte[BUFFER_BYTES];
+    private int inPos = 0;
+    private int inLen = 0;
+
+    private final Bytes out = new Bytes(BUFFER_BYTES);
+    private int outPos = 0;
+
+    private final Bytes block = new Bytes(BUFFER_BYTES);
+    private final LinkedList<byte[]> blocks = new LinkedList<byte[]>();
+    private int numBlocks = 0;
+
+    private final byte[] nameBuf = new byte[64];
+
+    private String encoding = "UTF-8";
+    private boolean splitting = true;
+
+    /*
+     * True while going through the contents of a connections element
+     */
+    private boolean inConnections = false;
+
+
+    ConnectionBlockSplitter(InputStream in) throws IOException
+    {
+        this.in = in;
+
+        while (inLen < 256 && fill()) { }
+
+        checkEncoding();
+    }
+
+    /*
+     * Gets the encoding from the XML declaration, and turns off splitting if the file isn't
+     * in an ASCII compatible encoding
+     */
+    private void checkEncoding()
+    {
+        if (inLen >= 2 && ((inBuf[0] == (byte)0xFE && inBuf[1] == (byte)0xFF) ||
+                           (inBuf[0] == (byte)0xFF && inBuf[1] == (byte)0xFE) ||
+                           inBuf[0] == 0 || inBuf[1] == 0))
+        {
+            splitting = false;
+            return;
+        }
+        String start = new String(inBuf, 0, inLen, Charset.forName("ISO-8859-1"));
+        int declEnd = start.indexOf("?>");
+
+        if (start.indexOf("<?xml") >= 0 && declEnd > 0)
+        {
+            String decl = start.substring(0, declEnd);
+            int encAttr = decl.indexOf("encoding");
+
+            if (encAttr > 0)
+            {
+                int eq = decl.indexOf('=', encAttr);
+                if (eq > 0)
+                {
+                    String value = decl.substring(eq + 1).trim();
+                    if (value.length() > 1)
+                    {
+                        int close = value.indexOf(value.charAt(0), 1);
+                        if (close > 0) encoding = value.substring(1, close);
+                    }
+                }
+            }
+        }
+        String upper = encoding.toUpperCase();
+        if (upper.startsWith("UTF-16") || upper.startsWith("UTF-32") || upper.startsWith("UCS") || upper.startsWith("EBCDIC"))
+        {
+            splitting = false;
+        }
+    }
+
+    String getEncoding()
+    {
+        return encoding;
+    }
+
+    int getNumberBlocks()
+    {
+        return numBlocks;
+    }
+
+    /**
+     * Gets the block of connections whose place holder the parser has just reached, or null if
+     * there is none
+     */
+    byte[] takeBlock()
+    {
+        if (blocks.isEmpty()) return null;
+        return blocks.removeFirst();
+    }
+
+
+    @Override
+    public int read() throws IOException
+    {
+        byte[] b = new byte[1];
+        int num = read(b, 0, 1);
+        if (num < 0) return -1;
+        return b[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException
+    {
+        if (len == 0) return 0;
+
+        while (outPos == out.length)
+        {
+            outPos = 0;
+            out.length = 0;
+            if (!process()) return -1;
+        }
+        int num = Math.min(len, out.length - outPos);
+        System.arraycopy(out.data, outPos, b, off, num);
+        outPos += num;
+        return num;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        in.close();
+    }
+
+
+    private boolean fill() throws IOException
+    {
+        if (inPos > 0)
+        {
+            System.arraycopy(inBuf, inPos, inBuf, 0, inLen - inPos);
+            inLen = inLen - inPos;
+            inPos = 0;
+        }
+        if (inLen == inBuf.length) return true;
+
+        int num = in.read(inBuf, inLen, inBuf.length - inLen);
+        if (num < 0) return false;
+
+        inLen += num;
+        return true;
+    }
+
+    private int nextByte() throws IOException
+    {
+        while (inPos == inLen)
+        {
+            if (!fill()) return -1;
+        }
+        return inBuf[inPos++] & 0xff;
+    }
+
+    private int nextByteInElement() throws IOException
+    {
+        int c = nextByte();
+        if (c < 0)
+            throw new EOFException("End of file inside " + NetworkMLConstants.CONNECTIONS_ELEMENT + " element");
+        return c;
+    }
+
+    /*
+     * Puts the next part of the file into out, returning false at the end of the file
+     */
+    private boolean process() throws IOException
+    {
+        if (inConnections)
+        {
+            splitBlock();
+            return true;
+        }
+
+        while (inPos == inLen)
+        {
+            if (!fill()) return false;
+        }
+
+        if (!splitting)
+        {
+            out.add(inBuf, inPos, inLen - inPos);
+            inPos = inLen;
+            return true;
+        }
+
+        int start = inPos;
+        while (inPos < inLen && inBuf[inPos] != '<') inPos++;
+
+        out.add(inBuf, start, inPos - start);
+
+        if (inPos == inLen) return true;
+
+        inPos++;
+        out.add('<');
+
+        int c = nextByte();
+        if (c < 0) return true;
+
+        out.add(c);
+
+        if (c == '!')
+        {
+            copyMarkup(out);
+        }
+        else if (c == '?')
+        {
+            copyUntil("?>", out);
+        }
+        else if (c != '/')
+        {
+            int nameLength = 0;
+            nameBuf[nameLength++] = (byte)c;
+
+            while ((c = nextByte()) >= 0 && !isNameEnd(c))
+            {
+                out.add(c);
+                if (nameLength < nameBuf.length) nameBuf[nameLength] = (byte)c;
+                nameLength++;
+            }
+            if (c >= 0)
+            {
+                out.add(c);
+
+                if (isConnectionsName(nameLength))
+                {
+                    boolean selfClosing = (c == '/');
+                    if (c != '>')
+                        selfClosing = copyRestOfStartTag(out);
+
+                    inConnections = !selfClosing;
+                }
+            }
+        }
+        return true;
+    }
+
+    /*
+     * Name is connections, or prefix:connections
+     */
+    private boolean isConnectionsName(int nameLength)
+    {
+        if (nameLength > nameBuf.length || nameLength < CONNECTIONS.length) return false;
+
+        int offset = nameLength - CONNECTIONS.length;
+        if (offset > 0 && nameBuf[offset - 1] != ':') return false;
+
+        for (int i = 0; i < CONNECTIONS.length; i++)
+        {
+            if (nameBuf[offset + i] != CONNECTIONS[i]) return false;
+        }
+        return true;
+    }
+
+    private static boolean isNameEnd(int c)
+    {
+        return c == '>' || c == '/' || c == ' ' || c == '\t' || c == '\n' || c == '\r';
+    }
+
+    /*
+     * Takes the contents of the connections element up to the end of the first connection element
+     * after BLOCK_BYTES (or up to the end of the connections element) as a block
+     */
+    private void splitBlock() throws IOException
+    {
+        int depth = 0;
+        boolean hasElements = false;
+
+        while (true)
+        {
+            int start = inPos;
+            while (inPos < inLen && inBuf[inPos] != '<') inPos++;
+
+            block.add(inBuf, start, inPos - start);
+
+            if (inPos == inLen)
+            {
+                if (!fill())
+                    throw new EOFException("End of file inside " + NetworkMLConstants.CONNECTIONS_ELEMENT + " element");
+                continue;
+            }
+            inPos++;
+
+            int c = nextByteInElement();
+
+            if (c == '/')
+            {
+                if (depth == 0)
+                {
+                    // the end of the connections element, which is passed on
+                    endBlock(hasElements);
+                    out.add('<');
+                    out.add('/');
+                    inConnections = false;
+                    return;
+                }
+                block.add('<');
+                block.add(c);
+                copyUntil(">", block);
+                depth--;
+
+                if (depth == 0 && block.length >= BLOCK_BYTES)
+                {
+                    endBlock(true);
+                    return;
+                }
+            }
+            else if (c == '!')
+            {
+                block.add('<');
+                block.add(c);
+                copyMarkup(block);
+            }
+            else if (c == '?')
+            {
+                block.add('<');
+                block.add(c);
+                copyUntil("?>", block);
+            }
+            else
+            {
+                block.add('<');
+                block.add(c);
+                hasElements = true;
+
+                if (!copyRestOfStartTag(block))
+                {
+                    depth++;
+                }
+                else if (depth == 0 && block.length >= BLOCK_BYTES)
+                {
+                    endBlock(true);
+                    return;
+                }
+            }
+        }
+    }
+
+    /*
+     * Queues the block, and puts its place holder in the output. Blocks with no elements
+     * (just white space) are passed on as they are
+     */
+    private void endBlock(boolean hasElements)
+    {
+        if (hasElements)
+        {
+            blocks.add(Arrays.copyOf(block.data, block.length));
+            numBlocks++;
+            out.add(BLOCK_PI, 0, BLOCK_PI.length);
+        }
+        else
+        {
+            out.add(block.data, 0, block.length);
+        }
+        block.length = 0;
+    }
+
+    /*
+     * Copies up to and including the > at the end of a start tag, returning true if it's an empty
+     * element tag (ends in />)
+     */
+    private boolean copyRestOfStartTag(Bytes dest) throws IOException
+    {
+        int quote = 0;
+        int last = 0;
+
+        while (true)
+        {
+            int c = nextByteInElement();
+            dest.add(c);
+
+            if (quote != 0)
+            {
+                if (c == quote) quote = 0;
+            }
+            else if (c == '"' || c == '\'')
+            {
+                quote = c;
+            }
+            else if (c == '>')
+            {
+                return last == '/';
+            }
+            last = c;
+        }
+    }
+
+    /*
+     * Copies the rest of a comment, CDATA section or declaration, after the <!
+     */
+    private void copyMarkup(Bytes dest) throws IOException
+    {
+        int c = nextByteInElement();
+        dest.add(c);
+
+        if (c == '-')
+        {
+            copyUntil("-->", dest);
+        }
+        else if (c == '[')
+        {
+            copyUntil("]]>", dest);
+        }
+        else
+        {
+            int brackets = 0;
+            while (c != '>' || brackets > 0)
+            {
+                if (c == '[') brackets++;
+                else if (c == ']') brackets--;
+
+                c = nextByteInElement();
+                dest.add(c);
+            }
+        }
+    }
+
+    /*
+     * Copies up to and including the end string (at most 4 bytes), keeping the last bytes
+     * copied in an int to compare with it
+     */
+    private void copyUntil(String end, Bytes dest) throws IOException
+    {
+        int target = 0;
+        for (int i = 0; i < end.length(); i++)
+        {
+            target = (target << 8) | end.charAt(i);
+        }
+        int mask = end.length() == 4 ? -1 : (1 << (8 * end.length())) - 1;
+        int lastBytes = 0;
+        int numCopied = 0;
+
+        while (numCopied < end.length() || (lastBytes & mask) != target)
+        {
+            int c = nextByteInElement();
+            dest.add(c);
+
+            lastBytes = (lastBytes << 8) | c;
+            numCopied++;
+        }
+    }
+
+
+    /*
+     * Growable array of bytes
+     */
+    private static class Bytes
+    {
+        byte[] data;
+        int length = 0;
+
+        Bytes(int capacity)
+        {
+            data = new byte[capacity];
+        }
+
+        void add(int b)
+        {
+            if (length == data.length) data = Arrays.copyOf(data, length * 2);
+            data[length++] = (byte)b;
+        }
+
+        void add(byte[] bytes, int off, int len)
+        {
+            if (length + len > data.length)
+                data = Arrays.copyOf(data, Math.max(length + len, length * 2));
+
+            System.arraycopy(bytes, off, data, length, len);
+            length += len;
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return "ConnectionBlockSplitter (encoding: " + encoding + ", splitting: " + splitting
+            + ") which has split out " + numBlocks + " blocks";
+    }
+
+}
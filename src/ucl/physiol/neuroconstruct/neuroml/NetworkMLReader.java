@@ -31,6 +31,7 @@ import java.beans.XMLDecoder;
 import java.io.*;
 import java.util.*;
 import java.util.ArrayList;
+import java.util.concurrent.*;
 
 import javax.swing.*;
 import javax.xml.parsers.*;
@@ -104,13 +105,21 @@ public class NetworkMLReader extends XMLFilterImpl implements NetworkMLnCInfo
 
     private String currentSynType = null;
 
-    private int currentSourceCellNumber = -1;
-    private int currentSourceCellSegmentIndex = -1;
-    private float currentSourceCellDisplacement = -1;
+    /*
+     * Builds up the connections of the current connections element, which are added in one go at its end
+     */
+    private ProjectionConnectionBuilder connBuilder = null;
+
+    /*
+     * If the connections are being parsed on separate threads: the stream the file is being read
+     * through, and the connections of each block not yet added. Blocks are added in order as soon
+     * as they (and all before them) are parsed, and all of a connections element's blocks by its end
+     */
+    private ConnectionBlockSplitter blockSplitter = null;
+    private LinkedList<ConnectionBlock> connBlocks = new LinkedList<ConnectionBlock>();
+    private Semaphore blocksInProgress = null;
 
-    private int currentTargetCellNumber = -1;
-    private int currentTargetCellSegmentIndex = -1;
-    private float currentTargetCellDisplacement = -1;
+    private static ExecutorService blockExecutor = null;
     
     private String currentPropertyName = null;
     
@@ -119,10 +128,8 @@ public class NetworkMLReader extends XMLFilterImpl implements NetworkMLnCInfo
 
     private ArrayList<ConnSpecificProps> projectConnProps = new ArrayList<ConnSpecificProps>();
     private ArrayList<ConnSpecificProps> globConnProps = new ArrayList<ConnSpecificProps>();
-    private ArrayList<ConnSpecificProps> localConnProps = new ArrayList<ConnSpecificProps>();
     
     private float globAPDelay = 0;
-    private float localAPDelay = 0;
 
     private String currentElecInput = null;
     private String currentInputType = null;
@@ -198,9 +205,158 @@ public class NetworkMLReader extends XMLFilterImpl implements NetworkMLnCInfo
         this.testMode = test;
     }
 
+    /**
+     * Wraps the stream the NetworkML file will be parsed from, so that the contents of the connections
+     * elements are split into blocks which are parsed on separate threads while the rest of the file
+     * is parsed. The returned stream should be given to the XML parser in place of the original.
+     */
+    public InputStream splitConnectionBlocks(InputStream in) throws IOException
+    {
+        blockSplitter = new ConnectionBlockSplitter(in);
+        blocksInProgress = new Semaphore(getNumberBlockThreads() * 2);
+
+        logger.logComment("Parsing connections in parallel using: {}", blockSplitter);
+
+        return blockSplitter;
+    }
+
+    private static int getNumberBlockThreads()
+    {
+        return Math.max(1, Runtime.getRuntime().availableProcessors());
+    }
+
+    private static synchronized ExecutorService getBlockExecutor()
+    {
+        if (blockExecutor == null)
+        {
+            blockExecutor = ThreadPools.newDaemonThreadPool("NetworkMLConnections", getNumberBlockThreads());
+        }
+        return blockExecutor;
+    }
+
+    /*
+     * Place holder for a block of connections split out by the ConnectionBlockSplitter
+     */
+    @Override
+    public void processingInstruction(String target, String data) throws SAXException
+    {
+        if (blockSplitter == null || !target.equals(ConnectionBlockSplitter.BLOCK_PI_TARGET))
+            return;
+
+        final byte[] block = blockSplitter.takeBlock();
+
+        if (block == null || connBuilder == null)
+            throw new SAXException("Block of connections found outside a connections element");
+
+        // So the parsed blocks aren't all held until the end of the connections element
+        addConnectionBlocks(false);
+
+        final ProjectionConnectionBuilder blockBuilder = connBuilder.copy();
+        final String encoding = blockSplitter.getEncoding();
+
+        try
+        {
+            // Limits the number of blocks held in memory before being parsed
+            blocksInProgress.acquire();
+        }
+        catch (InterruptedException ex)
+        {
+            cancelConnectionBlocks();
+            throw new SAXException("Interrupted when parsing connections of: " + blockBuilder.getProjectionName(), ex);
+        }
+
+        Future<SynapticConnectionStore> future = null;
+        try
+        {
+            future = getBlockExecutor().submit(new Callable<SynapticConnectionStore>()
+            {
+                public SynapticConnectionStore call() throws Exception
+                {
+                    try
+                    {
+                        blockBuilder.parseBlock(block, encoding);
+                        return blockBuilder.getConnections();
+                    }
+                    finally
+                    {
+                        blocksInProgress.release();
+                    }
+                }
+            });
+        }
+        catch (RejectedExecutionException ex)
+        {
+            blocksInProgress.release();
+            throw new SAXException("Unable to parse connections of: " + blockBuilder.getProjectionName(), ex);
+        }
+
+        connBlocks.add(new ConnectionBlock(blockBuilder.getProjectionName(), future));
+    }
+
+    /*
+     * Adds the blocks of connections parsed on other threads, in the order they were in the file. If
+     * waitForAll is false, only the blocks already parsed at the start of the list are added
+     */
+    private void addConnectionBlocks(boolean waitForAll) throws SAXException
+    {
+        try
+        {
+            while (!connBlocks.isEmpty() && (waitForAll || connBlocks.getFirst().connections.isDone()))
+            {
+                ConnectionBlock connBlock = connBlocks.removeFirst();
+                netConns.addSynapticConnections(connBlock.projectionName, connBlock.connections.get());
+            }
+        }
+        catch (InterruptedException ex)
+        {
+            cancelConnectionBlocks();
+            throw new SAXException("Interrupted when parsing connections", ex);
+        }
+        catch (ExecutionException ex)
+        {
+            cancelConnectionBlocks();
+            throw new SAXException("Problem parsing connections: " + ex.getCause().getMessage(), ex);
+        }
+    }
+
+    private void cancelConnectionBlocks()
+    {
+        for (ConnectionBlock connBlock: connBlocks)
+        {
+            connBlock.connections.cancel(false);
+        }
+        connBlocks.clear();
+    }
+
+    private static class ConnectionBlock
+    {
+        final String projectionName;
+        final Future<SynapticConnectionStore> connections;
+
+        ConnectionBlock(String projectionName, Future<SynapticConnectionStore> connections)
+        {
+            this.projectionName = projectionName;
+            this.connections = connections;
+        }
+    }
+
+    /*
+     * Avoids creating a String for the white space between elements
+     */
+    private static boolean isWhitespace(char[] ch, int start, int length)
+    {
+        for (int i = start; i < start + length; i++)
+        {
+            if (!Character.isWhitespace(ch[i])) return false;
+        }
+        return true;
+    }
+
     @Override
     public void characters(char[] ch, int start, int length) throws SAXException
     {
+        if (isWhitespace(ch, start, length)) return;
+
         String contents = new String(ch, start, length);
         
         if (contents.trim().length() > 0)
@@ -428,9 +584,9 @@ public class NetworkMLReader extends XMLFilterImpl implements NetworkMLnCInfo
     }
 
     @Override
-    public void endDocument()
+    public void endDocument() throws SAXException
     {
-
+        addConnectionBlocks(true);
     }
 
     public String getCurrentElement()
@@ -461,7 +617,7 @@ public class NetworkMLReader extends XMLFilterImpl implements NetworkMLnCInfo
     {
         this.elementStack.push(newElement);
 
-         logger.logComment("Elements: "+ elementStack);
+         logger.logComment("Elements: {}", elementStack);
 
      }
 
@@ -476,25 +632,32 @@ public class NetworkMLReader extends XMLFilterImpl implements NetworkMLnCInfo
                              String qName, Attributes attributes)
     throws SAXException
     {        
-        logger.logComment("\n\n          -----   Start element: " + qName + "        (namespaceURI: " + namespaceURI
-                           + ", localName: " + localName + ")");
-
-
         int attrsLength = attributes.getLength();
 
-        for (int i = 0; i < attrsLength; i++)
+        if (logger.isLoggingComments())
         {
-         String name = attributes.getLocalName(i);
-         String val = attributes.getValue(i);
-         String renamedVal = renamedCells.get(val);
+            logger.logComment("\n\n          -----   Start element: " + qName + "        (namespaceURI: " + namespaceURI
+                               + ", localName: " + localName + ")");
 
-         logger.logComment("Attr:  " + name+ " = " + val+ " ("+renamedVal+")         (qname: "
-                           + attributes.getQName(i)+ ", uri: " + attributes.getURI(i)+")");
+            for (int i = 0; i < attrsLength; i++)
+            {
+             String name = attributes.getLocalName(i);
+             String val = attributes.getValue(i);
+             String renamedVal = renamedCells.get(val);
+
+             logger.logComment("Attr:  " + name+ " = " + val+ " ("+renamedVal+")         (qname: "
+                               + attributes.getQName(i)+ ", uri: " + attributes.getURI(i)+")");
+            }
         }
 
          setCurrentElement(localName);
+
+         if (connBuilder != null && connBuilder.startElement(localName, attributes))
+         {
+             return;
+         }
          
-         logger.logComment("current element:"+ getCurrentElement());
+         logger.logComment("current element: {}", getCurrentElement());
          
          if (!insideCell && getCurrentElement().equals(MorphMLConstants.CELL_ELEMENT))
          {
@@ -568,7 +731,7 @@ public class NetworkMLReader extends XMLFilterImpl implements NetworkMLnCInfo
 
          }
 
-         logger.logComment("cellPrefix:" +cellPrefix);
+         logger.logComment("cellPrefix: {}", cellPrefix);
 
          if (getCurrentElement().equals(ChannelMLConstants.ION_ELEMENT))
          {
@@ -880,59 +1043,15 @@ public class NetworkMLReader extends XMLFilterImpl implements NetworkMLnCInfo
              
          }         
          
-         else if (getCurrentElement().equals(NetworkMLConstants.PRE_CONN_ELEMENT)
-             && getAncestorElement(1).equals(NetworkMLConstants.CONNECTION_ELEMENT))
+         else if (getCurrentElement().equals(NetworkMLConstants.CONNECTIONS_ELEMENT)
+             && NetworkMLConstants.PROJECTION_ELEMENT.equals(getAncestorElement(1)))
          {
-             this.currentSourceCellNumber = Integer.parseInt(attributes.getValue(NetworkMLConstants.CELL_ID_ATTR));
-
-             this.currentSourceCellSegmentIndex = 0;
-             if (attributes.getValue(NetworkMLConstants.SEGMENT_ID_ATTR)!=null)
-             {
-                 currentSourceCellSegmentIndex = Integer.parseInt(attributes.getValue(NetworkMLConstants.
-                     SEGMENT_ID_ATTR));
-             }
-
-             currentSourceCellDisplacement = 0.5f;
-             if (attributes.getValue(NetworkMLConstants.FRACT_ALONG_ATTR)!=null)
-             {
-                 currentSourceCellDisplacement = Float.parseFloat(attributes.getValue(NetworkMLConstants.FRACT_ALONG_ATTR));
-             }
-         }
-         else if (getCurrentElement().equals(NetworkMLConstants.CONNECTION_ELEMENT))
-         {
-             int connId = Integer.parseInt(attributes.getValue(NetworkMLConstants.CONNECTION_ID_ATTR));
-             
-             logger.logComment("Looking at conn: "+ connId);
-             
-             if (attributes.getValue(NetworkMLConstants.PRE_CELL_ID_ATTR)!=null)
-             {
-                 currentSourceCellNumber = Integer.parseInt(attributes.getValue(NetworkMLConstants.PRE_CELL_ID_ATTR));
-             }
-             currentSourceCellSegmentIndex =  0;
-             if (attributes.getValue(NetworkMLConstants.PRE_SEGMENT_ID_ATTR)!=null)
-             {
-                 currentSourceCellSegmentIndex = Integer.parseInt(attributes.getValue(NetworkMLConstants.PRE_SEGMENT_ID_ATTR));
-             }
-             currentSourceCellDisplacement = 0.5f;
-             if (attributes.getValue(NetworkMLConstants.PRE_FRACT_ALONG_ATTR)!=null)
-             {
-                 currentSourceCellDisplacement = Float.parseFloat(attributes.getValue(NetworkMLConstants.PRE_FRACT_ALONG_ATTR));
-             }
-             
-             if (attributes.getValue(NetworkMLConstants.POST_CELL_ID_ATTR)!=null)
-             {
-                 currentTargetCellNumber = Integer.parseInt(attributes.getValue(NetworkMLConstants.POST_CELL_ID_ATTR));
-             }
-             currentTargetCellSegmentIndex =  0;
-             if (attributes.getValue(NetworkMLConstants.POST_SEGMENT_ID_ATTR)!=null)
-             {
-                 currentTargetCellSegmentIndex = Integer.parseInt(attributes.getValue(NetworkMLConstants.POST_SEGMENT_ID_ATTR));
-             }
-             currentTargetCellDisplacement = 0.5f;
-             if (attributes.getValue(NetworkMLConstants.POST_FRACT_ALONG_ATTR)!=null)
-             {
-                 currentTargetCellDisplacement = Float.parseFloat(attributes.getValue(NetworkMLConstants.POST_FRACT_ALONG_ATTR));
-             }
+             connBuilder = new ProjectionConnectionBuilder(currentProjection,
+                                                           projUnitSystem,
+                                                           currentSynType,
+                                                           globConnProps,
+                                                           projectConnProps,
+                                                           globAPDelay);
          }
          
          
@@ -1006,74 +1125,6 @@ public class NetworkMLReader extends XMLFilterImpl implements NetworkMLnCInfo
              if (connProps!=null) this.globConnProps.add(connProps);
          }
 
-         else if (getCurrentElement().equals(NetworkMLConstants.POST_CONN_ELEMENT)
-             && getAncestorElement(1).equals(NetworkMLConstants.CONNECTION_ELEMENT))
-         {
-             currentTargetCellNumber = Integer.parseInt(attributes.getValue(NetworkMLConstants.CELL_ID_ATTR));
-
-             currentTargetCellSegmentIndex =  0;
-             if (attributes.getValue(NetworkMLConstants.SEGMENT_ID_ATTR)!=null)
-             {
-                 currentTargetCellSegmentIndex = Integer.parseInt(attributes.getValue(NetworkMLConstants.
-                     SEGMENT_ID_ATTR));
-             }
-
-             currentTargetCellDisplacement = 0.5f;
-             if (attributes.getValue(NetworkMLConstants.FRACT_ALONG_ATTR)!=null)
-             {
-                 currentTargetCellDisplacement = Float.parseFloat(attributes.getValue(NetworkMLConstants.FRACT_ALONG_ATTR));
-             }
-
-         }
-
-         else if (getCurrentElement().equals(NetworkMLConstants.CONN_PROP_ELEMENT)
-                  && getAncestorElement(1).equals(NetworkMLConstants.CONNECTION_ELEMENT))
-         {
-             String synType = currentSynType;
-             String inclSynType = attributes.getValue(NetworkMLConstants.SYN_TYPE_ELEMENT);
-
-             if (inclSynType != null && inclSynType.length() > 0)
-                 synType = inclSynType;
-
-             ConnSpecificProps localProps = null;
-             
-             
-             if (attributes.getValue(NetworkMLConstants.INTERNAL_DELAY_ATTR) != null)
-             {
-                 if (localProps==null) localProps = getGlobalSynProps(synType);
-                 localProps.internalDelay = (float)UnitConverter.getTime(Float.parseFloat(attributes.getValue(NetworkMLConstants.INTERNAL_DELAY_ATTR)), projUnitSystem, UnitConverter.NEUROCONSTRUCT_UNITS);
-             }
-             if (attributes.getValue(NetworkMLConstants.PRE_DELAY_ATTR) != null)
-             {
-                 if (localProps==null) localProps = getGlobalSynProps(synType);
-                 localProps.internalDelay = localProps.internalDelay + 
-                         (float)UnitConverter.getTime(Float.parseFloat(attributes.getValue(NetworkMLConstants.PRE_DELAY_ATTR)), projUnitSystem, UnitConverter.NEUROCONSTRUCT_UNITS);
-             }
-             if (attributes.getValue(NetworkMLConstants.POST_DELAY_ATTR) != null)
-             {
-                 if (localProps==null) localProps = getGlobalSynProps(synType);
-                 localProps.internalDelay = localProps.internalDelay + 
-                         (float)UnitConverter.getTime(Float.parseFloat(attributes.getValue(NetworkMLConstants.POST_DELAY_ATTR)), projUnitSystem, UnitConverter.NEUROCONSTRUCT_UNITS);
-             }
-             if (attributes.getValue(NetworkMLConstants.WEIGHT_ATTR) != null)
-             {
-                 if (localProps==null) localProps = getGlobalSynProps(synType);
-                 localProps.weight = Float.parseFloat(attributes.getValue(NetworkMLConstants.WEIGHT_ATTR));
-             }
-             if (attributes.getValue(NetworkMLConstants.THRESHOLD_ATTR) != null)
-             {
-                 if (localProps==null) localProps = getGlobalSynProps(synType);
-                 logger.logComment("Note: conn specific threshold not implemented!!");
-             }
-
-             if (this.localConnProps == null) this.localConnProps = new ArrayList<ConnSpecificProps> ();
-             if (localProps!=null)  localConnProps.add(localProps);
-
-             if (attributes.getValue(NetworkMLConstants.PROP_DELAY_ATTR)!=null)
-             {
-                 this.localAPDelay = (float)UnitConverter.getTime(Float.parseFloat(attributes.getValue(NetworkMLConstants.PROP_DELAY_ATTR)), projUnitSystem, UnitConverter.NEUROCONSTRUCT_UNITS);
-             }
-         }
          else if (getCurrentElement().equals(NetworkMLConstants.INPUT_ELEMENT)
                  && getAncestorElement(1).equals(NetworkMLConstants.INPUTS_ELEMENT))
          {    
@@ -1362,25 +1413,6 @@ public class NetworkMLReader extends XMLFilterImpl implements NetworkMLnCInfo
          
     }
     
-    private ConnSpecificProps getGlobalSynProps(String synType)
-    {
-        for(ConnSpecificProps props: globConnProps)
-        {
-            if (props.synapseType.equals(synType))
-                return new ConnSpecificProps(props);
-        }
-        return new ConnSpecificProps(synType);
-    }
-    private ConnSpecificProps getProjSynProps(String synType)
-    {
-        for(ConnSpecificProps props: projectConnProps)
-        {
-            if (props.synapseType.equals(synType))
-                return new ConnSpecificProps(props);
-        }
-        return new ConnSpecificProps(synType);
-    }
-
     private boolean acceptCellTypeIncludes = false;
     private boolean acceptMakePlots = false;
 
@@ -1388,7 +1420,23 @@ public class NetworkMLReader extends XMLFilterImpl implements NetworkMLnCInfo
     public void endElement(String namespaceURI, String localName, String qName) throws SAXException
     {
 
-        logger.logComment("-----   End element: " + localName);
+        logger.logComment("-----   End element: {}", localName);
+
+        if (connBuilder != null)
+        {
+            if (connBuilder.getDepth() == 0)
+            {
+                // end of the connections element
+                addConnectionBlocks(true);
+                netConns.addSynapticConnections(connBuilder.getProjectionName(), connBuilder.getConnections());
+                connBuilder = null;
+            }
+            else if (connBuilder.endElement(localName))
+            {
+                stepDownElement();
+                return;
+            }
+        }
 
         if (insideCell)
         {
@@ -2042,52 +2090,6 @@ public class NetworkMLReader extends XMLFilterImpl implements NetworkMLnCInfo
             globAPDelay = 0;
             globConnProps = new ArrayList<ConnSpecificProps>();
         }
-        else if (getCurrentElement().equals(NetworkMLConstants.CONNECTION_ELEMENT))
-        {
-
-            float propDelay = globAPDelay;
-            
-            if (localAPDelay>0) propDelay = this.localAPDelay;
-            
-            
-            
-            ArrayList<ConnSpecificProps> connProps = new ArrayList<ConnSpecificProps>();
-            connProps.addAll(globConnProps);
-            
-            for(ConnSpecificProps props: localConnProps)
-            {
-                for(ConnSpecificProps globProps: globConnProps)
-                {
-                    if (globProps.synapseType.equals(props.synapseType))
-                    {
-                        connProps.remove(globProps);
-                    }
-                }
-                connProps.add(props);
-            }
-            
-            ArrayList<ConnSpecificProps> connPropsToUse = new ArrayList<ConnSpecificProps>();
-            for(ConnSpecificProps cp: connProps)
-            {
-                if (!getProjSynProps(cp.synapseType).equals(cp))
-                    connPropsToUse.add(cp);
-            }
-            
-            this.netConns.addSynapticConnection(this.currentProjection,
-                    GeneratedNetworkConnections.MORPH_NETWORK_CONNECTION,
-                                                currentSourceCellNumber,
-                                                currentSourceCellSegmentIndex,
-                                                currentSourceCellDisplacement,
-                                                currentTargetCellNumber,
-                                                currentTargetCellSegmentIndex,
-                                                currentTargetCellDisplacement,
-                                                propDelay,
-                                                connPropsToUse);
-
-            this.localConnProps = new ArrayList<ConnSpecificProps>();
-            localAPDelay = 0;
-        }
-        
         else if (!testMode && level3 && getCurrentElement().equals(NetworkMLConstants.INPUTS_ELEMENT))
         {
             File savedNetsDir = ProjectStructure.getSavedNetworksDir(project.getProjectMainDirectory());
@@ -29,6 +29,7 @@ package ucl.physiol.neuroconstruct.neuroml;
 
 import java.io.*;
 import java.util.*;
+import java.util.zip.*;
 import javax.xml.XMLConstants;
 import javax.xml.transform.Source;
 import javax.xml.transform.stream.StreamSource;
@@ -138,7 +139,7 @@ public class NeuroMLFileManager
             while (netConns.hasNext())
             {
             String mc = netConns.next();
-            int numHere = project.generatedNetworkConnections.getSynapticConnections(mc).size();
+            int numHere = project.generatedNetworkConnections.getNumberSynapticConnections(mc);
             if (numHere>0)
             notes.append("Network connection: "+mc+" contains "+numHere+" individual synaptic connections\n");
 
@@ -196,11 +197,6 @@ public class NeuroMLFileManager
 
             doc.addRootElement(rootElement);
 
-            logger.logComment("    ****    Full XML:  ****");
-            logger.logComment("  ");
-
-            
-
             rootElement.addContent("\n\n");
 
             rootElement.addChildElement(new SimpleXMLElement(metaPrefix +
@@ -265,7 +261,8 @@ public class NeuroMLFileManager
 
 
 
-            ArrayList<SimpleXMLElement> popElements = project.generatedCellPositions.getNetworkMLElements(version);
+            // The instances, connections & input sites are only turned into elements as the file is written
+            ArrayList<SimpleXMLElement> popElements = project.generatedCellPositions.getNetworkMLElements(version, true);
 
             for(SimpleXMLElement popEl: popElements)
             {
@@ -277,10 +274,16 @@ public class NeuroMLFileManager
 
             rootElement.addContent("\n\n");
 
-            ArrayList<SimpleXMLEntity> netEntities = project.generatedNetworkConnections.getNetworkMLElements(preferredUnits, extraComments, version);
+            ArrayList<SimpleXMLEntity> netEntities = project.generatedNetworkConnections.getNetworkMLElements(preferredUnits, extraComments, version, true);
 
             for(SimpleXMLEntity netEntity: netEntities)
             {
+                if (netEntity instanceof SimpleXMLEntitySequence)
+                {
+                    // contains its own whitespace
+                    rootElement.addSequence((SimpleXMLEntitySequence)netEntity);
+                    continue;
+                }
                 rootElement.addContent("\n\n        ");
                 if (netEntity instanceof SimpleXMLElement)
                 {
@@ -293,7 +296,7 @@ public class NeuroMLFileManager
             }
 
 
-            ArrayList<SimpleXMLEntity> elecInputEntities = project.generatedElecInputs.getNetworkMLEntities(preferredUnits, version, topLevelCompElement);
+            ArrayList<SimpleXMLEntity> elecInputEntities = project.generatedElecInputs.getNetworkMLEntities(preferredUnits, version, topLevelCompElement, true);
 
             for(SimpleXMLEntity elecInputEntity: elecInputEntities)
             {
@@ -320,15 +323,23 @@ public class NeuroMLFileManager
             rootElement.addContent("\n\n");
             if (nml2) rootElement.addContent("    ");
 
-            String stringForm = doc.getXMLString("", false);
-
-            logger.logComment(stringForm);
-
             if (!zipped)
             {
-                FileWriter fw = new FileWriter(neuroMLFile);
-                fw.write(stringForm);
-                fw.close();
+                File tempFile = getTempFile(neuroMLFile);
+                try
+                {
+                    OutputStream out = new FileOutputStream(tempFile);
+
+                    if (neuroMLFile.getName().endsWith(".gz"))
+                        out = new GZIPOutputStream(out);
+
+                    writeDocument(doc, out);
+                    replaceFile(tempFile, neuroMLFile);
+                }
+                finally
+                {
+                    tempFile.delete();
+                }
 
                 return neuroMLFile;
             }
@@ -344,7 +355,20 @@ public class NeuroMLFileManager
                                         ProjectStructure.getNeuroMLCompressedFileExtension(),
                                         ProjectStructure.getNeuroMLFileExtension());
 
-                ZipUtils.zipStringAsFile(stringForm, zipFile, internalFilename, notes.toString());
+                File tempFile = getTempFile(zipFile);
+                try
+                {
+                    ZipOutputStream out = new ZipOutputStream(new FileOutputStream(tempFile));
+                    out.putNextEntry(new ZipEntry(internalFilename));
+                    out.setComment(notes.toString());
+
+                    writeDocument(doc, out);
+                    replaceFile(tempFile, zipFile);
+                }
+                finally
+                {
+                    tempFile.delete();
+                }
 
                 return zipFile;
             }
@@ -358,6 +382,41 @@ public class NeuroMLFileManager
     }
 
 
+    /*
+     * The document is written to this file in the same directory and renamed when complete, so if
+     * anything goes wrong part way through, any earlier file is left as it was
+     */
+    private static File getTempFile(File file)
+    {
+        return new File(file.getAbsoluteFile().getParentFile(), file.getName() + ".tmp");
+    }
+
+    private static void replaceFile(File tempFile, File file) throws IOException
+    {
+        if (file.exists()) file.delete();
+
+        if (!tempFile.renameTo(file))
+            throw new IOException("Unable to rename "+tempFile.getAbsolutePath()+" to "+file.getAbsolutePath());
+    }
+
+    /*
+     * Writes the document straight to the stream (which is closed after), so the whole file is never
+     * held in memory as a string
+     */
+    private static void writeDocument(SimpleXMLDocument doc, OutputStream out) throws IOException
+    {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, "UTF-8"), 1 << 16);
+        try
+        {
+            doc.writeXMLString(writer, "", false);
+        }
+        finally
+        {
+            writer.close();
+        }
+    }
+
+
     public void generateNeuroMLFiles(SimConfig simConf,
                                   MorphCompartmentalisation mc,
                                   int seed,
@@ -1035,19 +1094,14 @@ public class NeuroMLFileManager
             File dirToRunIn = ProjectStructure.getNeuroML2Dir();
 
 
-            File positionsFile = new File(simDir, SimulationData.POSITION_DATA_FILE);
-            File netConnsFile = new File(simDir, SimulationData.NETCONN_DATA_FILE);
-            File elecInputFile = new File(simDir, SimulationData.ELEC_INPUT_DATA_FILE);
             try
             {
-                project.generatedCellPositions.saveToFile(positionsFile);
-                project.generatedNetworkConnections.saveToFile(netConnsFile);
-                project.generatedElecInputs.saveToFile(elecInputFile);
+                ProjectManager.saveGeneratedNetwork(project, simDir);
             }
             catch (IOException ex)
             {
                 GuiUtils.showErrorMessage(logger,
-                                          "Problem saving generated positions in file: " + positionsFile.getAbsolutePath(),
+                                          "Problem saving the generated network in: " + simDir.getAbsolutePath(),
                                           ex, null);
                 return;
             }
@@ -0,0 +1,460 @@
+/**
+ *  neuroConstruct
+ *  Software for developing large scale 3D networks of biologically realistic neurons
+ *
+ *  Copyright (c) 2009 Padraig Gleeson
+ *  UCL Department of Neuroscience, Physiology and Pharmacology
+ *
+ *  Development of this software was made possible with funding from the
+ *  Medical Research Council and the Wellcome Trust
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+
+package ucl.physiol.neuroconstruct.neuroml;
+
+import java.io.*;
+import java.util.*;
+import javax.xml.parsers.*;
+import org.xml.sax.*;
+import org.xml.sax.helpers.*;
+
+import ucl.physiol.neuroconstruct.project.*;
+import ucl.physiol.neuroconstruct.utils.units.*;
+
+/**
+ * Builds up the connections inside a connections element of one projection in a NetworkML file
+ * into a local SynapticConnectionStore, so they can be added to the GeneratedNetworkConnections
+ * in one go when the element ends, rather than one at a time. Given the elements inside the
+ * connections element (but not the connections element itself), either by the NetworkMLReader,
+ * or, for blocks of connections split out of the file by ConnectionBlockSplitter, by parseBlock()
+ * on another thread.
+ *
+ * @author Padraig Gleeson
+ *
+ */
+
+class ProjectionConnectionBuilder
+{
+    private final String projectionName;
+
+    private final int unitSystem;
+    private final String synType;
+    private final ArrayList<ConnSpecificProps> globConnProps;
+    private final ArrayList<ConnSpecificProps> projectConnProps;
+    private final float globAPDelay;
+
+    private final SynapticConnectionStore connections = new SynapticConnectionStore();
+
+    /*
+     * Element depth below the connections element, connection elements being at 1
+     */
+    private int depth = 0;
+    private boolean inConnection = false;
+
+    private int sourceCellNumber = -1;
+    private int sourceSegmentIndex = -1;
+    private float sourceDisplacement = -1;
+
+    private int targetCellNumber = -1;
+    private int targetSegmentIndex = -1;
+    private float targetDisplacement = -1;
+
+    private float localAPDelay = 0;
+
+    /*
+     * Reused for each connection, as the store keeps copies of the values
+     */
+    private final ArrayList<ConnSpecificProps> localConnProps = new ArrayList<ConnSpecificProps>();
+    private final ArrayList<ConnSpecificProps> connProps = new ArrayList<ConnSpecificProps>();
+    private final ArrayList<ConnSpecificProps> connPropsToUse = new ArrayList<ConnSpecificProps>();
+
+    /*
+     * The props to use for connections with no properties elements of their own
+     */
+    private ArrayList<ConnSpecificProps> globPropsToUse = null;
+
+
+    /**
+     * @param projectionName Name of the projection (net conn) the connections are in
+     * @param unitSystem Unit system of the projections element
+     * @param synType Synapse type of the (last) synapse_props element of the projection
+     * @param globConnProps Props from the synapse_props elements of the projection
+     * @param projectConnProps Props (fixed weights/delays) of the net conn in the project
+     * @param globAPDelay Propagation delay from the synapse_props elements
+     */
+    ProjectionConnectionBuilder(String projectionName,
+                                int unitSystem,
+                                String synType,
+                                ArrayList<ConnSpecificProps> globConnProps,
+                                ArrayList<ConnSpecificProps> projectConnProps,
+                                float globAPDelay)
+    {
+        this.projectionName = projectionName;
+        this.unitSystem = unitSystem;
+        this.synType = synType;
+        this.globConnProps = new ArrayList<ConnSpecificProps>(globConnProps);
+        this.projectConnProps = new ArrayList<ConnSpecificProps>(projectConnProps);
+        this.globAPDelay = globAPDelay;
+    }
+
+    /**
+     * A new builder for the same projection, with no connections yet
+     */
+    ProjectionConnectionBuilder copy()
+    {
+        return new ProjectionConnectionBuilder(projectionName,
+                                               unitSystem,
+                                               synType,
+                                               globConnProps,
+                                               projectConnProps,
+                                               globAPDelay);
+    }
+
+    String getProjectionName()
+    {
+        return projectionName;
+    }
+
+    /**
+     * The connections built so far
+     */
+    SynapticConnectionStore getConnections()
+    {
+        return connections;
+    }
+
+    int getDepth()
+    {
+        return depth;
+    }
+
+    /**
+     * @param name Local name of the element
+     * @return true if the element was one handled here
+     */
+    boolean startElement(String name, Attributes attributes)
+    {
+        depth++;
+
+        if (depth == 1 && name.equals(NetworkMLConstants.CONNECTION_ELEMENT))
+        {
+            startConnection(attributes);
+            return true;
+        }
+        if (depth == 2 && inConnection)
+        {
+            if (name.equals(NetworkMLConstants.PRE_CONN_ELEMENT))
+            {
+                sourceCellNumber = Integer.parseInt(attributes.getValue(NetworkMLConstants.CELL_ID_ATTR));
+                sourceSegmentIndex = parseInt(attributes.getValue(NetworkMLConstants.SEGMENT_ID_ATTR), 0);
+                sourceDisplacement = parseFloat(attributes.getValue(NetworkMLConstants.FRACT_ALONG_ATTR), 0.5f);
+                return true;
+            }
+            if (name.equals(NetworkMLConstants.POST_CONN_ELEMENT))
+            {
+                targetCellNumber = Integer.parseInt(attributes.getValue(NetworkMLConstants.CELL_ID_ATTR));
+                targetSegmentIndex = parseInt(attributes.getValue(NetworkMLConstants.SEGMENT_ID_ATTR), 0);
+                targetDisplacement = parseFloat(attributes.getValue(NetworkMLConstants.FRACT_ALONG_ATTR), 0.5f);
+                return true;
+            }
+            if (name.equals(NetworkMLConstants.CONN_PROP_ELEMENT))
+            {
+                addLocalProps(attributes);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param name Local name of the element
+     * @return true if the element was one handled here
+     */
+    boolean endElement(String name)
+    {
+        depth--;
+
+        if (depth == 0 && inConnection)
+        {
+            endConnection();
+            return true;
+        }
+        return depth == 1 && inConnection && (name.equals(NetworkMLConstants.PRE_CONN_ELEMENT)
+                                              || name.equals(NetworkMLConstants.POST_CONN_ELEMENT)
+                                              || name.equals(NetworkMLConstants.CONN_PROP_ELEMENT));
+    }
+
+    /*
+     * Goes through the attributes once, rather than looking up each by name
+     */
+    private void startConnection(Attributes attributes)
+    {
+        inConnection = true;
+
+        sourceSegmentIndex = 0;
+        sourceDisplacement = 0.5f;
+        targetSegmentIndex = 0;
+        targetDisplacement = 0.5f;
+
+        int numAttrs = attributes.getLength();
+
+        for (int i = 0; i < numAttrs; i++)
+        {
+            String attrName = attributes.getLocalName(i);
+            if (attrName == null || attrName.length() == 0)
+                attrName = attributes.getQName(i);
+
+            String value = attributes.getValue(i);
+
+            if (attrName.equals(NetworkMLConstants.CONNECTION_ID_ATTR))
+                Integer.parseInt(value); // not stored, but still checked to be a number
+            else if (attrName.equals(NetworkMLConstants.PRE_CELL_ID_ATTR))
+                sourceCellNumber = Integer.parseInt(value);
+            else if (attrName.equals(NetworkMLConstants.PRE_SEGMENT_ID_ATTR))
+                sourceSegmentIndex = Integer.parseInt(value);
+            else if (attrName.equals(NetworkMLConstants.PRE_FRACT_ALONG_ATTR))
+                sourceDisplacement = Float.parseFloat(value);
+            else if (attrName.equals(NetworkMLConstants.POST_CELL_ID_ATTR))
+                targetCellNumber = Integer.parseInt(value);
+            else if (attrName.equals(NetworkMLConstants.POST_SEGMENT_ID_ATTR))
+                targetSegmentIndex = Integer.parseInt(value);
+            else if (attrName.equals(NetworkMLConstants.POST_FRACT_ALONG_ATTR))
+                targetDisplacement = Float.parseFloat(value);
+        }
+    }
+
+    private void addLocalProps(Attributes attributes)
+    {
+        String propsSynType = synType;
+        String inclSynType = attributes.getValue(NetworkMLConstants.SYN_TYPE_ELEMENT);
+
+        if (inclSynType != null && inclSynType.length() > 0)
+            propsSynType = inclSynType;
+
+        ConnSpecificProps localProps = null;
+
+        String value = attributes.getValue(NetworkMLConstants.INTERNAL_DELAY_ATTR);
+        if (value != null)
+        {
+            localProps = getGlobalSynProps(propsSynType);
+            localProps.internalDelay = getTime(value);
+        }
+        value = attributes.getValue(NetworkMLConstants.PRE_DELAY_ATTR);
+        if (value != null)
+        {
+            if (localProps==null) localProps = getGlobalSynProps(propsSynType);
+            localProps.internalDelay = localProps.internalDelay + getTime(value);
+        }
+        value = attributes.getValue(NetworkMLConstants.POST_DELAY_ATTR);
+        if (value != null)
+        {
+            if (localProps==null) localProps = getGlobalSynProps(propsSynType);
+            localProps.internalDelay = localProps.internalDelay + getTime(value);
+        }
+        value = attributes.getValue(NetworkMLConstants.WEIGHT_ATTR);
+        if (value != null)
+        {
+            if (localProps==null) localProps = getGlobalSynProps(propsSynType);
+            localProps.weight = Float.parseFloat(value);
+        }
+        if (attributes.getValue(NetworkMLConstants.THRESHOLD_ATTR) != null)
+        {
+            if (localProps==null) localProps = getGlobalSynProps(propsSynType);
+        }
+
+        if (localProps!=null) localConnProps.add(localProps);
+
+        value = attributes.getValue(NetworkMLConstants.PROP_DELAY_ATTR);
+        if (value != null)
+        {
+            localAPDelay = getTime(value);
+        }
+    }
+
+    private void endConnection()
+    {
+        float propDelay = globAPDelay;
+
+        if (localAPDelay>0) propDelay = localAPDelay;
+
+        ArrayList<ConnSpecificProps> propsToUse = null;
+
+        if (localConnProps.isEmpty())
+        {
+            if (globPropsToUse == null)
+            {
+                globPropsToUse = new ArrayList<ConnSpecificProps>();
+                getPropsToUse(globConnProps, globPropsToUse);
+            }
+            propsToUse = globPropsToUse;
+        }
+        else
+        {
+            connProps.clear();
+            connProps.addAll(globConnProps);
+
+            for(ConnSpecificProps props: localConnProps)
+            {
+                for(ConnSpecificProps globProps: globConnProps)
+                {
+                    if (globProps.synapseType.equals(props.synapseType))
+                    {
+                        connProps.remove(globProps);
+                    }
+                }
+                connProps.add(props);
+            }
+            connPropsToUse.clear();
+            getPropsToUse(connProps, connPropsToUse);
+            propsToUse = connPropsToUse;
+        }
+
+        connections.addConnection(GeneratedNetworkConnections.MORPH_NETWORK_CONNECTION,
+                                  sourceCellNumber,
+                                  sourceSegmentIndex,
+                                  sourceDisplacement,
+                                  targetCellNumber,
+                                  targetSegmentIndex,
+                                  targetDisplacement,
+                                  propDelay,
+                                  propsToUse);
+
+        localConnProps.clear();
+        localAPDelay = 0;
+        inConnection = false;
+    }
+
+    /*
+     * Only the props which differ from those of the net conn in the project need to be stored
+     */
+    private void getPropsToUse(ArrayList<ConnSpecificProps> props, ArrayList<ConnSpecificProps> propsToUse)
+    {
+        for(ConnSpecificProps cp: props)
+        {
+            if (!getProjSynProps(cp.synapseType).equals(cp))
+                propsToUse.add(cp);
+        }
+    }
+
+    private ConnSpecificProps getGlobalSynProps(String synapseType)
+    {
+        for(ConnSpecificProps props: globConnProps)
+        {
+            if (props.synapseType.equals(synapseType))
+                return new ConnSpecificProps(props);
+        }
+        return new ConnSpecificProps(synapseType);
+    }
+
+    /*
+     * Only used for comparison, so not copied
+     */
+    private ConnSpecificProps getProjSynProps(String synapseType)
+    {
+        for(ConnSpecificProps props: projectConnProps)
+        {
+            if (props.synapseType.equals(synapseType))
+                return props;
+        }
+        return new ConnSpecificProps(synapseType);
+    }
+
+    private float getTime(String value)
+    {
+        return (float)UnitConverter.getTime(Float.parseFloat(value), unitSystem, UnitConverter.NEUROCONSTRUCT_UNITS);
+    }
+
+    private static int parseInt(String value, int defaultValue)
+    {
+        if (value == null) return defaultValue;
+        return Integer.parseInt(value);
+    }
+
+    private static float parseFloat(String value, float defaultValue)
+    {
+        if (value == null) return defaultValue;
+        return Float.parseFloat(value);
+    }
+
+
+    /**
+     * Parses a block of connection elements (as split out of the contents of a connections element
+     * by ConnectionBlockSplitter), adding the connections to this builder. Usually called on a copy()
+     * of the builder for the connections element the block came from.
+     *
+     * @param block The bytes of the connection elements
+     * @param encoding Encoding of the file the block came from
+     */
+    void parseBlock(byte[] block, String encoding) throws SAXException, IOException
+    {
+        String header = "<?xml version=\"1.0\" encoding=\"" + encoding + "\"?>\n<"
+            + NetworkMLConstants.CONNECTIONS_ELEMENT + ">";
+        String footer = "</" + NetworkMLConstants.CONNECTIONS_ELEMENT + ">";
+
+        Vector<InputStream> parts = new Vector<InputStream>();
+        parts.add(new ByteArrayInputStream(header.getBytes(encoding)));
+        parts.add(new ByteArrayInputStream(block));
+        parts.add(new ByteArrayInputStream(footer.getBytes(encoding)));
+
+        // Not namespace aware, as the block has none of the declarations, so prefixes are removed here
+        SAXParserFactory spf = SAXParserFactory.newInstance();
+        spf.setNamespaceAware(false);
+
+        XMLReader xmlReader = null;
+        try
+        {
+            xmlReader = spf.newSAXParser().getXMLReader();
+        }
+        catch (ParserConfigurationException ex)
+        {
+            throw new SAXException("Problem creating parser for connections of: " + projectionName, ex);
+        }
+
+        xmlReader.setContentHandler(new DefaultHandler()
+        {
+            private int level = 0;
+
+            @Override
+            public void startElement(String uri, String localName, String qName, Attributes attributes)
+            {
+                if (level++ > 0) ProjectionConnectionBuilder.this.startElement(removePrefix(qName), attributes);
+            }
+
+            @Override
+            public void endElement(String uri, String localName, String qName)
+            {
+                if (--level > 0) ProjectionConnectionBuilder.this.endElement(removePrefix(qName));
+            }
+        });
+
+        xmlReader.parse(new InputSource(new SequenceInputStream(parts.elements())));
+    }
+
+    private static String removePrefix(String qName)
+    {
+        int colon = qName.indexOf(':');
+        if (colon < 0) return qName;
+        return qName.substring(colon + 1);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "ProjectionConnectionBuilder for " + projectionName + " with " + connections.size() + " connections";
+    }
+
+}
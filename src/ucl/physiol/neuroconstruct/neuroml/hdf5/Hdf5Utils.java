@@ -198,6 +198,75 @@ public class Hdf5Utils
         }
 
     }
+
+    /**
+     * Creates a 2D dataset of the given size with no data written yet, stored in chunks of (up to) chunkRows
+     * rows compressed with gzip at the given level (0 for no compression). The rows can then be written a
+     * block at a time with writeRows()
+     */
+    public static Dataset createChunkedDataset(H5File h5File,
+                                               String name,
+                                               Group group,
+                                               Datatype dtype,
+                                               long numRows,
+                                               int numColumns,
+                                               int chunkRows,
+                                               int gzipLevel) throws Hdf5Exception
+    {
+        long[] dims2D = {numRows, numColumns};
+        long[] chunks = null;
+
+        // Chunks can't be bigger than a fixed size dataset, so an empty one is left contiguous
+        if (numRows > 0)
+        {
+            chunks = new long[]{Math.min(numRows, chunkRows), numColumns};
+        }
+        else
+        {
+            gzipLevel = 0;
+        }
+
+        try
+        {
+            Dataset dataset = h5File.createScalarDS(name, group, dtype, dims2D, null, chunks, gzipLevel, null);
+            dataset.init();
+
+            logger.logComment("Created dataset: "+name+" of size ("+numRows+", "+numColumns+"), compression: "
+                              + dataset.getCompression());
+            return dataset;
+        }
+        catch (Exception ex)
+        {
+            throw new Hdf5Exception("Failed to create dataset: "+name+" in HDF5 file: " + h5File.getFilePath(), ex);
+        }
+    }
+
+    /**
+     * Writes the rows (one after another in the array) into a 2D dataset created with createChunkedDataset(),
+     * starting at row firstRow. The array should hold a whole number of rows
+     */
+    public static void writeRows(Dataset dataset, long firstRow, float[] rows) throws Hdf5Exception
+    {
+        long numColumns = dataset.getDims()[1];
+
+        long[] start = dataset.getStartDims();
+        long[] selected = dataset.getSelectedDims();
+
+        start[0] = firstRow;
+        start[1] = 0;
+        selected[0] = rows.length / numColumns;
+        selected[1] = numColumns;
+
+        try
+        {
+            dataset.write(rows);
+        }
+        catch (Exception ex)
+        {
+            throw new Hdf5Exception("Failed to write rows "+firstRow+" to "+(firstRow+selected[0]-1)
+                                    +" of dataset: "+dataset.getName(), ex);
+        }
+    }
     
     
     public static String getFirstStringValAttr(ArrayList<Attribute> attrs, String attrName)
@@ -613,79 +682,106 @@ public class Hdf5Utils
     
     
     
+    /**
+     * Rows read at a time by parse2Ddataset()
+     */
+    public static final int DEFAULT_BLOCK_ROWS = 16384;
+
     public static float[][] parse2Ddataset(Dataset d) throws Hdf5Exception
     {
-        
         try
         {
             d.init();
+        }
+        catch (Exception ex)
+        {
+            throw new Hdf5Exception("Failed to parse2Ddataset", ex);
+        }
 
-            if (d.getDims().length!=2) return null;
-            float[][] data = new float[(int)d.getDims()[0]][(int)d.getDims()[1]];
-            
-            float[] oneDdata = new float[(int)( d.getDims()[0] * d.getDims()[1]) ];
+        if (d.getDims().length!=2) return null;
 
-            Object dataObj = d.getData();
-            logger.logComment("Got the data: "+ dataObj.toString()+ ", size: ("+d.getDims()[0]+", "+d.getDims()[1]+")");
-            
-            if (dataObj instanceof short[])
-            {
-                short[] datas = (short[])dataObj;
+        int numRows = (int)d.getDims()[0];
+        int numColumns = (int)d.getDims()[1];
 
-                logger.logComment("Got array of some shorts: "+ datas[0]);
-                
-                
+        float[][] data = new float[numRows][numColumns];
+
+        for (int first = 0; first < numRows; first += DEFAULT_BLOCK_ROWS)
+        {
+            int rowsHere = Math.min(DEFAULT_BLOCK_ROWS, numRows - first);
 
-                //oneDdata = datas;
+            float[] rows = readRows(d, first, rowsHere);
 
+            if (rows == null)
+            {
+                logger.logComment("Couldn't determine that datatype! ");
+                return null;
             }
-            else if (dataObj instanceof float[])
+
+            for (int row = 0; row < rowsHere; row++)
             {
-                float[] dataf = (float[])dataObj;
+                System.arraycopy(rows, row * numColumns, data[first + row], 0, numColumns);
+            }
+        }
+        logger.logComment("Got the data, size: ({}, {})", numRows, numColumns);
 
-                logger.logComment("Got array of some floats: "+ dataf[0]);
-                
-                oneDdata = dataf;
-                
+        return data;
+    }
 
-            }
-            else if (dataObj instanceof double[])
+    /**
+     * Reads numRows rows of a 2D dataset starting at row firstRow (as a hyperslab, so only that part of
+     * the dataset is read), returning them one after another in the array. Integer & double values are
+     * converted to float. Returns null if the dataset holds some other type.
+     */
+    public static float[] readRows(Dataset d, long firstRow, int numRows) throws Hdf5Exception
+    {
+        try
+        {
+            d.init();
+
+            long numColumns = d.getDims()[1];
+
+            long[] start = d.getStartDims();
+            long[] selected = d.getSelectedDims();
+
+            start[0] = firstRow;
+            start[1] = 0;
+            selected[0] = numRows;
+            selected[1] = numColumns;
+
+            Object dataObj = d.read();
+
+            if (dataObj instanceof float[])
             {
-                double[] datad = (double[])dataObj;
+                return (float[])dataObj;
+            }
 
-                logger.logComment("Got array of some doubles: "+ datad[0]);
-                
-                
+            float[] rows = new float[(int)(numRows * numColumns)];
 
+            if (dataObj instanceof double[])
+            {
+                double[] datad = (double[])dataObj;
+                for (int i = 0; i < rows.length; i++) rows[i] = (float)datad[i];
             }
-            else
+            else if (dataObj instanceof int[])
             {
-                logger.logComment("Couldn't determine that datatype! ");
-                return null;
+                int[] datai = (int[])dataObj;
+                for (int i = 0; i < rows.length; i++) rows[i] = datai[i];
             }
-            
-            for(int x=0;x<d.getDims()[0];x++)
+            else if (dataObj instanceof short[])
             {
-                for(int y=0;y<d.getDims()[1];y++)
-                {
-                    int oneD = (int)(x * d.getDims()[1]) + y;
-                    
-                    logger.logComment("(x,y)= ("+x+","+y+"), one D: "+oneD+", val: "+ oneDdata[oneD]);
-                    
-                    data[x][y] = oneDdata[oneD];
-                }
+                short[] datas = (short[])dataObj;
+                for (int i = 0; i < rows.length; i++) rows[i] = datas[i];
             }
-            
-
-            return data;
-        
+            else
+            {
+                return null;
+            }
+            return rows;
         }
         catch (Exception ex)
         {
-            throw new Hdf5Exception("Failed to parse2Ddataset", ex);
+            throw new Hdf5Exception("Failed to read rows "+firstRow+" to "+(firstRow+numRows-1)+" of dataset: "+d.getName(), ex);
         }
-
-                
     }
 
     public static ArrayList<DataSet> parse2DDataset(Dataset d, boolean includePoints, Properties p)
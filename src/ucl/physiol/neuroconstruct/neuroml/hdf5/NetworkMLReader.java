@@ -75,12 +75,46 @@ public class NetworkMLReader  implements NetworkMLnCInfo
     private int projUnitSystem = -1;
     private int inputUnitSystem = -1;
 
+    private int blockRows = Hdf5Utils.DEFAULT_BLOCK_ROWS;
+
+    /*
+     * If not null, only the populations/projections with these names are read
+     */
+    private Set<String> populationsToRead = null;
+    private Set<String> projectionsToRead = null;
+
     public NetworkMLReader(Project project)
     {        
         //logger.setThisClassVerbose(true);
         this.project = project;
 
     }
+
+    /**
+     * Sets the number of rows of each dataset read at a time. Rows are added to the project as
+     * each block is read, so memory use depends on this, not on the size of the network
+     */
+    public void setBlockRows(int blockRows)
+    {
+        this.blockRows = Math.max(1, blockRows);
+    }
+
+    /**
+     * Only the populations with these names will be read from the file. Null for all of them
+     */
+    public void setPopulationsToRead(Collection<String> populations)
+    {
+        this.populationsToRead = populations == null ? null : new HashSet<String>(populations);
+    }
+
+    /**
+     * Only the projections with these names will be read from the file (and the others needn't
+     * exist in the project). Null for all of them
+     */
+    public void setProjectionsToRead(Collection<String> projections)
+    {
+        this.projectionsToRead = projections == null ? null : new HashSet<String>(projections);
+    }
     
     public String getSimConfig()
     {
@@ -147,7 +181,9 @@ public class NetworkMLReader  implements NetworkMLnCInfo
             String name = Hdf5Utils.getFirstStringValAttr(attrs, NetworkMLConstants.POP_NAME_ATTR);
             
             logger.logComment("Found a population: "+ name);
-            currentCellGroup = name;
+
+            if (populationsToRead == null || populationsToRead.contains(name))
+                currentCellGroup = name;
         }
         else if (g.getName().equals(NetworkMLConstants.PROJECTIONS_ELEMENT))
         {
@@ -166,6 +202,12 @@ public class NetworkMLReader  implements NetworkMLnCInfo
             String target = Hdf5Utils.getFirstStringValAttr(attrs, NetworkMLConstants.TARGET_ATTR);
             
             logger.logComment("Found a projection: "+ name+" from "+ source+" to "+ target);
+
+            if (projectionsToRead != null && !projectionsToRead.contains(name))
+            {
+                logger.logComment("Not reading projection: "+ name);
+                return;
+            }
             
             if (!project.morphNetworkConnectionsInfo.isValidSimpleNetConn(name) &&
                 !project.volBasedConnsInfo.isValidVolBasedConn(name))
@@ -395,32 +437,63 @@ public class NetworkMLReader  implements NetworkMLnCInfo
             
         }
         
-        float[][] data = Hdf5Utils.parse2Ddataset(d);
-        
-        logger.logComment("Data has size: ("+data.length+", "+data[0].length+")");
+        boolean popData = inPopulations && currentCellGroup!=null;
+        boolean projData = inProjections && currentNetConn!=null;
+        boolean inputData = inInputs && currentInput !=null;
+
+        if (!popData && !projData && !inputData)
+        {
+            logger.logComment("Dataset: "+d.getName()+" not needed");
+            return;
+        }
+
+        try
+        {
+            d.init();
+        }
+        catch (Exception ex)
+        {
+            throw new Hdf5Exception("Problem reading dataset: "+ d.getName(), ex);
+        }
+
+        if (d.getDims().length!=2)
+            throw new Hdf5Exception("Dataset: "+ d.getName()+" should have 2 dimensions");
+
+        int numRows = (int)d.getDims()[0];
+        int numColumns = (int)d.getDims()[1];
+
+        logger.logComment("Data has size: ("+numRows+", "+numColumns+")");
         
         
-        if (inPopulations && currentCellGroup!=null)
+        if (popData)
         {
-            for(int i = 0;i<data.length;i++)
+            for (int first = 0; first < numRows; first += blockRows)
             {
-                int id = (int)data[i][0];
-                float x = data[i][1];
-                float y = data[i][2];
-                float z = data[i][3];
-                
-                
-                PositionRecord posRec = new PositionRecord(id,x,y,z);
-                
-                if (data[0].length==5)
+                int rowsHere = Math.min(blockRows, numRows - first);
+                float[] data = readRows(d, first, rowsHere);
+
+                for(int i = 0;i<rowsHere;i++)
                 {
-                    posRec.setNodeId((int)data[i][4]);
+                    int row = i * numColumns;
+
+                    int id = (int)data[row];
+                    float x = data[row + 1];
+                    float y = data[row + 2];
+                    float z = data[row + 3];
+
+
+                    PositionRecord posRec = new PositionRecord(id,x,y,z);
+
+                    if (numColumns==5)
+                    {
+                        posRec.setNodeId((int)data[row + 4]);
+                    }
+
+                    this.project.generatedCellPositions.addPosition(currentCellGroup, posRec);
                 }
-                
-                this.project.generatedCellPositions.addPosition(currentCellGroup, posRec);
             }
         }
-        if (inProjections && currentNetConn!=null)
+        if (projData)
         {
             logger.logComment("Adding info for NetConn: "+ currentNetConn);
             
@@ -516,69 +589,76 @@ public class NetworkMLReader  implements NetworkMLnCInfo
 
             }
             
-            for(int i = 0;i<data.length;i++)
+            for (int first = 0; first < numRows; first += blockRows)
             {
-                int pre_seg_id = 0;
-                float pre_fract_along = 0.5f;
-                int post_seg_id = 0;
-                float post_fract_along = 0.5f;
+                int rowsHere = Math.min(blockRows, numRows - first);
+                float[] data = readRows(d, first, rowsHere);
+
+                for(int i = 0;i<rowsHere;i++)
+                {
+                    int row = i * numColumns;
+
+                    int pre_seg_id = 0;
+                    float pre_fract_along = 0.5f;
+                    int post_seg_id = 0;
+                    float post_fract_along = 0.5f;
                 
-                int id = (int)data[i][id_col];
-                int pre_cell_id = (int)data[i][pre_cell_id_col];
-                int post_cell_id = (int)data[i][post_cell_id_col];
+                    int id = (int)data[row + id_col];
+                    int pre_cell_id = (int)data[row + pre_cell_id_col];
+                    int post_cell_id = (int)data[row + post_cell_id_col];
                 
-                float prop_delay = 0;
+                    float prop_delay = 0;
                 
-                if (pre_segment_id_col>=0) 
-                    pre_seg_id = (int)data[i][pre_segment_id_col];
-                if (pre_fraction_along_col>=0) 
-                    pre_fract_along = data[i][pre_fraction_along_col];
-                if (post_segment_id_col>=0) 
-                    post_seg_id = (int)data[i][post_segment_id_col];
-                if (post_fraction_along_col>=0) 
-                    post_fract_along = data[i][post_fraction_along_col];
+                    if (pre_segment_id_col>=0) 
+                        pre_seg_id = (int)data[row + pre_segment_id_col];
+                    if (pre_fraction_along_col>=0) 
+                        pre_fract_along = data[row + pre_fraction_along_col];
+                    if (post_segment_id_col>=0) 
+                        post_seg_id = (int)data[row + post_segment_id_col];
+                    if (post_fraction_along_col>=0) 
+                        post_fract_along = data[row + post_fraction_along_col];
                 
                 
-                    //(float)UnitConverter.getTime(XXXXXXXXX, UnitConverter.NEUROCONSTRUCT_UNITS, unitSystem)+"";
-                if (prop_delay_col>=0) 
-                    prop_delay = (float)UnitConverter.getTime(data[i][prop_delay_col], projUnitSystem, UnitConverter.NEUROCONSTRUCT_UNITS);
+                        //(float)UnitConverter.getTime(XXXXXXXXX, UnitConverter.NEUROCONSTRUCT_UNITS, unitSystem)+"";
+                    if (prop_delay_col>=0) 
+                        prop_delay = (float)UnitConverter.getTime(data[row + prop_delay_col], projUnitSystem, UnitConverter.NEUROCONSTRUCT_UNITS);
                 
                 
                 
-                ArrayList<ConnSpecificProps> props = new ArrayList<ConnSpecificProps>();
+                    ArrayList<ConnSpecificProps> props = new ArrayList<ConnSpecificProps>();
                 
-                if (localConnProps.size()>0)
-                {
-                    for(ConnSpecificProps currCp:localConnProps)
+                    if (localConnProps.size()>0)
                     {
-                        logger.logComment("Pre cp: "+currCp);
-                        ConnSpecificProps cp2 = new ConnSpecificProps(currCp.synapseType);
+                        for(ConnSpecificProps currCp:localConnProps)
+                        {
+                            logger.logComment("Pre cp: {}", currCp);
+                            ConnSpecificProps cp2 = new ConnSpecificProps(currCp.synapseType);
                         
-                        if (currCp.internalDelay>0) // index was stored in this val...
-                            cp2.internalDelay = (float)UnitConverter.getTime(data[i][(int)currCp.internalDelay], projUnitSystem, UnitConverter.NEUROCONSTRUCT_UNITS);
-                        if (currCp.weight>0) // index was stored in this val...
-                            cp2.weight = data[i][(int)currCp.weight];
+                            if (currCp.internalDelay>0) // index was stored in this val...
+                                cp2.internalDelay = (float)UnitConverter.getTime(data[row + (int)currCp.internalDelay], projUnitSystem, UnitConverter.NEUROCONSTRUCT_UNITS);
+                            if (currCp.weight>0) // index was stored in this val...
+                                cp2.weight = data[row + (int)currCp.weight];
                         
-                        logger.logComment("Filled cp: "+cp2);
+                            logger.logComment("Filled cp: {}", cp2);
                         
-                        props.add(cp2);
+                            props.add(cp2);
+                        }
                     }
-                }
                 
-                this.project.generatedNetworkConnections.addSynapticConnection(currentNetConn,
-                                                                               GeneratedNetworkConnections.MORPH_NETWORK_CONNECTION,
-                                                                               pre_cell_id, 
-                                                                               pre_seg_id,
-                                                                               pre_fract_along,
-                                                                               post_cell_id,
-                                                                               post_seg_id,
-                                                                               post_fract_along,
-                                                                               prop_delay,
-                                                                               props);
+                    this.project.generatedNetworkConnections.addSynapticConnection(currentNetConn,
+                                                                                   GeneratedNetworkConnections.MORPH_NETWORK_CONNECTION,
+                                                                                   pre_cell_id, 
+                                                                                   pre_seg_id,
+                                                                                   pre_fract_along,
+                                                                                   post_cell_id,
+                                                                                   post_seg_id,
+                                                                                   post_fract_along,
+                                                                                   prop_delay,
+                                                                                   props);
+                }
             }
-            
         }
-        if (inInputs && currentInput !=null)
+        if (inputData)
         {
             logger.logComment("Adding info for: "+ currentInput);
             StimulationSettings nextStim = project.elecInputInfo.getStim(currentInput);
@@ -586,23 +666,31 @@ public class NetworkMLReader  implements NetworkMLnCInfo
             String electricalInputType = myElectricalInput.getType();
             String cellGroup = nextStim.getCellGroup();
                     
-            for(int i = 0;i<data.length;i++)
+            for (int first = 0; first < numRows; first += blockRows)
             {
-                Float fileCellId = data[i][0];
-                Float fileSegmentId = data[i][1];
-                Float fractionAlong = data[i][2];
-                int cellId = fileCellId.intValue();
-                int segmentId = fileSegmentId.intValue();                
+                int rowsHere = Math.min(blockRows, numRows - first);
+                float[] data = readRows(d, first, rowsHere);
+
+                for(int i = 0;i<rowsHere;i++)
+                {
+                    int row = i * numColumns;
+
+                    Float fileCellId = data[row + 0];
+                    Float fileSegmentId = data[row + 1];
+                    Float fractionAlong = data[row + 2];
+                    int cellId = fileCellId.intValue();
+                    int segmentId = fileSegmentId.intValue();                
                 
-                SingleElectricalInput singleElectricalInputFromFile 
-                        = new SingleElectricalInput(electricalInputType,
-                                                    cellGroup,
-                                                    cellId,
-                                                    segmentId,
-                                                    fractionAlong,
-                                                    null);
+                    SingleElectricalInput singleElectricalInputFromFile 
+                            = new SingleElectricalInput(electricalInputType,
+                                                        cellGroup,
+                                                        cellId,
+                                                        segmentId,
+                                                        fractionAlong,
+                                                        null);
                
-                this.project.generatedElecInputs.addSingleInput(currentInput,singleElectricalInputFromFile);
+                    this.project.generatedElecInputs.addSingleInput(currentInput,singleElectricalInputFromFile);
+                }
             }
         }
         
@@ -610,6 +698,17 @@ public class NetworkMLReader  implements NetworkMLnCInfo
     }
         
         
+    private float[] readRows(Dataset d, int firstRow, int numRows) throws Hdf5Exception
+    {
+        float[] rows = Hdf5Utils.readRows(d, firstRow, numRows);
+
+        if (rows == null)
+            throw new Hdf5Exception("Unsupported type of data in dataset: "+ d.getName());
+
+        return rows;
+    }
+
+
     public void parseGroup(Group g) throws Hdf5Exception, EndOfSequenceException
     {
         startGroup(g);
@@ -42,19 +42,22 @@ import ucl.physiol.neuroconstruct.project.GeneratedNetworkConnections;
 import java.util.Iterator;
 import java.util.ArrayList;
 import java.util.Vector;
+import java.util.HashMap;
+import java.util.concurrent.*;
 import ucl.physiol.neuroconstruct.cell.SegmentLocation;
 import ucl.physiol.neuroconstruct.neuroml.NetworkMLConstants;
 import ucl.physiol.neuroconstruct.project.ConnSpecificProps;
 import ucl.physiol.neuroconstruct.project.GeneralProperties;
 import ucl.physiol.neuroconstruct.project.GeneratedElecInputs;
 import ucl.physiol.neuroconstruct.project.PositionRecord;
-import ucl.physiol.neuroconstruct.project.GeneratedNetworkConnections.SingleSynapticConnection;
 import ucl.physiol.neuroconstruct.project.SimConfig;
 import ucl.physiol.neuroconstruct.project.SingleElectricalInput;
+import ucl.physiol.neuroconstruct.project.SynapticConnectionStore;
 import ucl.physiol.neuroconstruct.project.SynapticProperties;
 import ucl.physiol.neuroconstruct.project.stimulation.*;
 import ucl.physiol.neuroconstruct.simulation.StimulationSettings;
 import ucl.physiol.neuroconstruct.utils.GeneralUtils;
+import ucl.physiol.neuroconstruct.utils.ThreadPools;
 import ucl.physiol.neuroconstruct.utils.units.UnitConverter;
 
 /**
@@ -68,6 +71,26 @@ public class NetworkMLWriter
 {
     private static ClassLogger logger = new ClassLogger("NetworkMLWriter");
 
+    /**
+     * Number of rows in each chunk of the (gzip compressed) datasets in the file
+     */
+    public static final int CHUNK_ROWS = 4096;
+
+    public static final int GZIP_LEVEL = 6;
+
+    /*
+     * Rows of a dataset created & written at a time, and the number of blocks of rows of each projection
+     * which can be waiting to be written
+     */
+    private static final int BLOCK_ROWS = 16384;
+    private static final int QUEUED_BLOCKS = 4;
+
+    /*
+     * Compared by identity, to mark the end of the rows of a projection
+     */
+    private static final float[] END_OF_BLOCKS = new float[0];
+
+    private static ExecutorService executor = null;
 
 
     public NetworkMLWriter()
@@ -120,7 +143,7 @@ public class NetworkMLWriter
         while (netConns.hasNext())
         {
             String mc = netConns.next();
-            int numHere = gnc.getSynapticConnections(mc).size();
+            int numHere = gnc.getNumberSynapticConnections(mc);
             if (numHere>0)
             notes.append("Network connection: "+mc+" contains "+numHere+" individual synaptic connections\n");
 
@@ -165,297 +188,200 @@ public class NetworkMLWriter
             throw new Hdf5Exception("Failed to create group in HDF5 file: "+ h5File.getFilePath(), ex);
         }
 
-        cellGroups = gcp.getNamesGeneratedCellGroups();
+        // The rows of the projections are worked out on other threads while the populations etc. are written
+        ArrayList<ProjectionRows> projectionRows = new ArrayList<ProjectionRows>();
 
-        while(cellGroups.hasNext())
+        netConns = gnc.getNamesNetConnsIter();
+
+        while (netConns.hasNext())
         {
-            String cg = cellGroups.next();
+            String nc = netConns.next();
+
+            ProjectionRows rows = new ProjectionRows(nc,
+                                                     gnc.getConnectionStore(nc),
+                                                     getGlobalSynapseList(project, nc),
+                                                     unitSystem);
+            projectionRows.add(rows);
+            getExecutor().execute(rows);
+        }
 
-            ArrayList<PositionRecord> posRecs = gcp.getPositionRecords(cg);
+        try
+        {
+            cellGroups = gcp.getNamesGeneratedCellGroups();
 
-            try
+            while(cellGroups.hasNext())
             {
-                Group popGroup = h5File.createGroup(NetworkMLConstants.POPULATION_ELEMENT+"_"+cg, popsGroup);
+                String cg = cellGroups.next();
+
+                ArrayList<PositionRecord> posRecs = gcp.getPositionRecords(cg);
+
+                try
+                {
+                    Group popGroup = h5File.createGroup(NetworkMLConstants.POPULATION_ELEMENT+"_"+cg, popsGroup);
                 
-                Attribute nameAttr = Hdf5Utils.getSimpleAttr(NetworkMLConstants.POP_NAME_ATTR, cg, h5File);
-                popGroup.writeMetadata(nameAttr);
+                    Attribute nameAttr = Hdf5Utils.getSimpleAttr(NetworkMLConstants.POP_NAME_ATTR, cg, h5File);
+                    popGroup.writeMetadata(nameAttr);
                 
-                String cellType = project.cellGroupsInfo.getCellType(cg);
+                    String cellType = project.cellGroupsInfo.getCellType(cg);
             
-                Attribute cellTypeAttr = Hdf5Utils.getSimpleAttr(NetworkMLConstants.CELLTYPE_ATTR, cellType, h5File);
-                popGroup.writeMetadata(cellTypeAttr);
+                    Attribute cellTypeAttr = Hdf5Utils.getSimpleAttr(NetworkMLConstants.CELLTYPE_ATTR, cellType, h5File);
+                    popGroup.writeMetadata(cellTypeAttr);
 
-                Datatype dtype = getPopDatatype(h5File);
+                    Datatype dtype = getPopDatatype(h5File);
                 
-                int numColumns = 4; // cellNum, x, y, z
+                    int numColumns = 4; // cellNum, x, y, z
                 
-                if (posRecs.get(0).getNodeId()!=PositionRecord.NO_NODE_ID)
-                {
-                    numColumns = 5; // cellNum, x, y, z
-                }
-
-                long[] dims2D = {posRecs.size(), numColumns};
+                    if (posRecs.get(0).getNodeId()!=PositionRecord.NO_NODE_ID)
+                    {
+                        numColumns = 5; // cellNum, x, y, z
+                    }
 
-                float[] posArray = new float[posRecs.size() * numColumns];
+                    Dataset dataset = Hdf5Utils.createChunkedDataset(h5File, cg, popGroup, dtype,
+                                                                     posRecs.size(), numColumns, CHUNK_ROWS, GZIP_LEVEL);
 
+                    for (int first = 0; first < posRecs.size(); first += BLOCK_ROWS)
+                    {
+                        int numRows = Math.min(BLOCK_ROWS, posRecs.size() - first);
+                        float[] posArray = new float[numRows * numColumns];
 
-                for (int i=0; i<posRecs.size(); i++)
-                {
-                    PositionRecord p = posRecs.get(i);
+                        for (int i=0; i<numRows; i++)
+                        {
+                            PositionRecord p = posRecs.get(first + i);
+
+                            posArray[i * numColumns + 0] = p.cellNumber;
+                            posArray[i * numColumns + 1] = p.x_pos;
+                            posArray[i * numColumns + 2] = p.y_pos;
+                            posArray[i * numColumns + 3] = p.z_pos;
+                            if (numColumns>4)
+                                posArray[i * numColumns + 4] = p.getNodeId();
+                        }
+                        Hdf5Utils.writeRows(dataset, first, posArray);
+                    }
 
-                    posArray[i * numColumns + 0] = p.cellNumber;
-                    posArray[i * numColumns + 1] = p.x_pos;
-                    posArray[i * numColumns + 2] = p.y_pos;
-                    posArray[i * numColumns + 3] = p.z_pos;
+                    Attribute attr0 = Hdf5Utils.getSimpleAttr("column_0", NetworkMLConstants.INSTANCE_ID_ATTR, h5File);
+                    dataset.writeMetadata(attr0);
+                    Attribute attr1 = Hdf5Utils.getSimpleAttr("column_1", NetworkMLConstants.LOC_X_ATTR, h5File);
+                    dataset.writeMetadata(attr1);
+                    Attribute attr2 = Hdf5Utils.getSimpleAttr("column_2", NetworkMLConstants.LOC_Y_ATTR, h5File);
+                    dataset.writeMetadata(attr2);
+                    Attribute attr3 = Hdf5Utils.getSimpleAttr("column_3", NetworkMLConstants.LOC_Z_ATTR, h5File);
+                    dataset.writeMetadata(attr3);
+                
                     if (numColumns>4)
-                        posArray[i * numColumns + 4] = p.getNodeId();
-                        
-
-                }
-
+                    {
+                        Attribute attr4 = Hdf5Utils.getSimpleAttr("column_4", NetworkMLConstants.NODE_ID_ATTR, h5File);
+                        dataset.writeMetadata(attr4);
+                    }
 
-                Dataset dataset = h5File.createScalarDS
-                    (cg, popGroup, dtype, dims2D, null, null, 0, posArray);
 
-                Attribute attr0 = Hdf5Utils.getSimpleAttr("column_0", NetworkMLConstants.INSTANCE_ID_ATTR, h5File);
-                dataset.writeMetadata(attr0);
-                Attribute attr1 = Hdf5Utils.getSimpleAttr("column_1", NetworkMLConstants.LOC_X_ATTR, h5File);
-                dataset.writeMetadata(attr1);
-                Attribute attr2 = Hdf5Utils.getSimpleAttr("column_2", NetworkMLConstants.LOC_Y_ATTR, h5File);
-                dataset.writeMetadata(attr2);
-                Attribute attr3 = Hdf5Utils.getSimpleAttr("column_3", NetworkMLConstants.LOC_Z_ATTR, h5File);
-                dataset.writeMetadata(attr3);
-                
-                if (numColumns>4)
+                }
+                catch (Exception ex)
                 {
-                    Attribute attr4 = Hdf5Utils.getSimpleAttr("column_4", NetworkMLConstants.NODE_ID_ATTR, h5File);
-                    dataset.writeMetadata(attr4);
+                    throw new Hdf5Exception("Failed to create group in HDF5 file: " + h5File.getFilePath(), ex);
                 }
-
-
-            }
-            catch (Exception ex)
-            {
-                throw new Hdf5Exception("Failed to create group in HDF5 file: " + h5File.getFilePath(), ex);
             }
-        }
-
-
-
 
 
-        Iterator<String> nCs = gnc.getNamesNetConnsIter();
 
-        while(nCs.hasNext())
-        {
-            String nc = nCs.next();
 
-            ArrayList<SingleSynapticConnection> conns = gnc.getSynapticConnections(nc);
 
-            try
+            for(ProjectionRows rows: projectionRows)
             {
-                Group projGroup = h5File.createGroup(NetworkMLConstants.PROJECTION_ELEMENT +"_" + nc, projsGroup);
-                
-                
-                Attribute nameAttr = Hdf5Utils.getSimpleAttr(NetworkMLConstants.PROJ_NAME_ATTR, nc, h5File);
-                projGroup.writeMetadata(nameAttr);
-                
-                String src = null;
-                String tgt = null;
-                Vector<SynapticProperties>  globalSynPropList = null;
-                
-                if (project.morphNetworkConnectionsInfo.isValidSimpleNetConn(nc))
-                {
-                    src = project.morphNetworkConnectionsInfo.getSourceCellGroup(nc);
-                    tgt = project.morphNetworkConnectionsInfo.getTargetCellGroup(nc);
-                    globalSynPropList = project.morphNetworkConnectionsInfo.getSynapseList(nc);
-                }
+                String nc = rows.name;
 
-                else if (project.volBasedConnsInfo.isValidVolBasedConn(nc))
+                try
                 {
-                    src = project.volBasedConnsInfo.getSourceCellGroup(nc);
-                    src = project.volBasedConnsInfo.getTargetCellGroup(nc);
-                    globalSynPropList = project.volBasedConnsInfo.getSynapseList(nc);
-                }
+                    Group projGroup = h5File.createGroup(NetworkMLConstants.PROJECTION_ELEMENT +"_" + nc, projsGroup);
                 
-                Attribute srcAttr = Hdf5Utils.getSimpleAttr(NetworkMLConstants.SOURCE_ATTR, src, h5File);
-                projGroup.writeMetadata(srcAttr);
-                Attribute tgtAttr = Hdf5Utils.getSimpleAttr(NetworkMLConstants.TARGET_ATTR, tgt, h5File);
-                projGroup.writeMetadata(tgtAttr);
                 
-                float globWeight = 1;
-                float globDelay = 0;
+                    Attribute nameAttr = Hdf5Utils.getSimpleAttr(NetworkMLConstants.PROJ_NAME_ATTR, nc, h5File);
+                    projGroup.writeMetadata(nameAttr);
                 
-                for(SynapticProperties sp:  globalSynPropList)
-                {
-                    Group synPropGroup = h5File.createGroup(NetworkMLConstants.SYN_PROPS_ELEMENT +"_" + sp.getSynapseType(), projGroup);
+                    String src = null;
+                    String tgt = null;
+                    Vector<SynapticProperties>  globalSynPropList = null;
+                
+                    if (project.morphNetworkConnectionsInfo.isValidSimpleNetConn(nc))
+                    {
+                        src = project.morphNetworkConnectionsInfo.getSourceCellGroup(nc);
+                        tgt = project.morphNetworkConnectionsInfo.getTargetCellGroup(nc);
+                        globalSynPropList = project.morphNetworkConnectionsInfo.getSynapseList(nc);
+                    }
 
-                    Attribute synTypeAttr = Hdf5Utils.getSimpleAttr(NetworkMLConstants.SYN_TYPE_ATTR, sp.getSynapseType(), h5File);
-                    synPropGroup.writeMetadata(synTypeAttr);
-                    
-                    globDelay = (float)UnitConverter.getTime(sp.getDelayGenerator().getNominalNumber(), UnitConverter.NEUROCONSTRUCT_UNITS, unitSystem);
-                    Attribute synTypeDelay = Hdf5Utils.getSimpleAttr(NetworkMLConstants.INTERNAL_DELAY_ATTR, globDelay+"", h5File);
-                    synPropGroup.writeMetadata(synTypeDelay);
-                    
-                    globWeight = sp.getWeightsGenerator().getNominalNumber();
-                    Attribute synTypeWeight = Hdf5Utils.getSimpleAttr(NetworkMLConstants.WEIGHT_ATTR, globWeight+"", h5File);
-                    synPropGroup.writeMetadata(synTypeWeight);
-                    
-                    Attribute synTypeThreshold = Hdf5Utils.getSimpleAttr(NetworkMLConstants.THRESHOLD_ATTR, 
-                            (float)UnitConverter.getVoltage(sp.getThreshold(), UnitConverter.NEUROCONSTRUCT_UNITS, unitSystem)+"", h5File);
-                    
-                    synPropGroup.writeMetadata(synTypeThreshold);
-                }
+                    else if (project.volBasedConnsInfo.isValidVolBasedConn(nc))
+                    {
+                        src = project.volBasedConnsInfo.getSourceCellGroup(nc);
+                        src = project.volBasedConnsInfo.getTargetCellGroup(nc);
+                        globalSynPropList = project.volBasedConnsInfo.getSynapseList(nc);
+                    }
                 
-                ArrayList<String> columnsNeeded = new ArrayList<String>();
+                    Attribute srcAttr = Hdf5Utils.getSimpleAttr(NetworkMLConstants.SOURCE_ATTR, src, h5File);
+                    projGroup.writeMetadata(srcAttr);
+                    Attribute tgtAttr = Hdf5Utils.getSimpleAttr(NetworkMLConstants.TARGET_ATTR, tgt, h5File);
+                    projGroup.writeMetadata(tgtAttr);
                 
-                columnsNeeded.add(NetworkMLConstants.CONNECTION_ID_ATTR);
-                columnsNeeded.add(NetworkMLConstants.PRE_CELL_ID_ATTR);
-                columnsNeeded.add(NetworkMLConstants.POST_CELL_ID_ATTR);
+                    float globWeight = 1;
+                    float globDelay = 0;
                 
-                for (int i = 0; i < conns.size(); i++)
-                {
-                    SingleSynapticConnection conn = conns.get(i);
-                    
-                    if (conn.sourceEndPoint.location.getSegmentId()!=0 && !columnsNeeded.contains(NetworkMLConstants.PRE_SEGMENT_ID_ATTR))
-                        columnsNeeded.add(NetworkMLConstants.PRE_SEGMENT_ID_ATTR);
-                    
-                    if (conn.sourceEndPoint.location.getFractAlong()!=SegmentLocation.DEFAULT_FRACT_CONN && 
-                            !columnsNeeded.contains(NetworkMLConstants.PRE_FRACT_ALONG_ATTR))
-                        columnsNeeded.add(NetworkMLConstants.PRE_FRACT_ALONG_ATTR);
+                    for(SynapticProperties sp:  globalSynPropList)
+                    {
+                        Group synPropGroup = h5File.createGroup(NetworkMLConstants.SYN_PROPS_ELEMENT +"_" + sp.getSynapseType(), projGroup);
+
+                        Attribute synTypeAttr = Hdf5Utils.getSimpleAttr(NetworkMLConstants.SYN_TYPE_ATTR, sp.getSynapseType(), h5File);
+                        synPropGroup.writeMetadata(synTypeAttr);
                     
-                    if (conn.targetEndPoint.location.getSegmentId()!=0 && !columnsNeeded.contains(NetworkMLConstants.POST_SEGMENT_ID_ATTR))
-                        columnsNeeded.add(NetworkMLConstants.POST_SEGMENT_ID_ATTR);
+                        globDelay = (float)UnitConverter.getTime(sp.getDelayGenerator().getNominalNumber(), UnitConverter.NEUROCONSTRUCT_UNITS, unitSystem);
+                        Attribute synTypeDelay = Hdf5Utils.getSimpleAttr(NetworkMLConstants.INTERNAL_DELAY_ATTR, globDelay+"", h5File);
+                        synPropGroup.writeMetadata(synTypeDelay);
                     
-                    if (conn.targetEndPoint.location.getFractAlong()!=SegmentLocation.DEFAULT_FRACT_CONN && 
-                            !columnsNeeded.contains(NetworkMLConstants.POST_FRACT_ALONG_ATTR))
-                        columnsNeeded.add(NetworkMLConstants.POST_FRACT_ALONG_ATTR);
+                        globWeight = sp.getWeightsGenerator().getNominalNumber();
+                        Attribute synTypeWeight = Hdf5Utils.getSimpleAttr(NetworkMLConstants.WEIGHT_ATTR, globWeight+"", h5File);
+                        synPropGroup.writeMetadata(synTypeWeight);
                     
-                    if (conn.apPropDelay!=0)
-                    {
-                        for(SynapticProperties sp:  globalSynPropList)
-                        {
-                            String colName = NetworkMLConstants.PROP_DELAY_ATTR +"_"+sp.getSynapseType();
-                            if (!columnsNeeded.contains(colName))
-                            {
-                                columnsNeeded.add(colName);
-                            }
-                        }
-                    }
+                        Attribute synTypeThreshold = Hdf5Utils.getSimpleAttr(NetworkMLConstants.THRESHOLD_ATTR, 
+                                (float)UnitConverter.getVoltage(sp.getThreshold(), UnitConverter.NEUROCONSTRUCT_UNITS, unitSystem)+"", h5File);
                     
-                    if (conn.props!=null)
-                    {
-                        for(ConnSpecificProps prop: conn.props)
-                        {
-                            if(prop.weight!=1 && !columnsNeeded.contains(NetworkMLConstants.WEIGHT_ATTR+"_"+prop.synapseType))
-                                columnsNeeded.add(NetworkMLConstants.WEIGHT_ATTR+"_"+prop.synapseType);
-                            
-                            if(prop.internalDelay!=0 && !columnsNeeded.contains(NetworkMLConstants.INTERNAL_DELAY_ATTR+"_"+prop.synapseType))
-                                columnsNeeded.add(NetworkMLConstants.INTERNAL_DELAY_ATTR+"_"+prop.synapseType);
-                        }
+                        synPropGroup.writeMetadata(synTypeThreshold);
                     }
-                }
                 
+                    ArrayList<String> columnsNeeded = rows.getColumns();
 
-                Datatype dtype = getProjDatatype(h5File);
-
-                long[] dims2D = {conns.size(), columnsNeeded.size()};
+                    Datatype dtype = getProjDatatype(h5File);
 
-                float[] projArray = new float[conns.size() * columnsNeeded.size()];
+                    Dataset projDataset = Hdf5Utils.createChunkedDataset(h5File, nc, projGroup, dtype,
+                                                                         rows.getNumRows(), columnsNeeded.size(),
+                                                                         CHUNK_ROWS, GZIP_LEVEL);
+                    long nextRow = 0;
+                    float[] projArray = null;
 
-                for (int i = 0; i < conns.size(); i++)
-                {
-                    SingleSynapticConnection conn = conns.get(i);
-
-                    int row = 0;
-                    projArray[i * columnsNeeded.size() +row] = i;
-                    row++;
-
-                    projArray[i * columnsNeeded.size() + row] = conn.sourceEndPoint.cellNumber;
-                    row++;
-                    
-                    projArray[i * columnsNeeded.size() + row] = conn.targetEndPoint.cellNumber;
-                    row++;
-                    
-                    if (columnsNeeded.contains(NetworkMLConstants.PRE_SEGMENT_ID_ATTR))
-                    {
-                        projArray[i * columnsNeeded.size() + row] = conn.sourceEndPoint.location.getSegmentId();
-                        row++;
-                    }
-                    
-                    if (columnsNeeded.contains(NetworkMLConstants.PRE_FRACT_ALONG_ATTR))
-                    {
-                        projArray[i * columnsNeeded.size() + row] = conn.sourceEndPoint.location.getFractAlong();
-                        row++;
-                    }
-
-                    
-                    if (columnsNeeded.contains(NetworkMLConstants.POST_SEGMENT_ID_ATTR))
-                    {
-                        projArray[i * columnsNeeded.size() + row] = conn.targetEndPoint.location.getSegmentId();
-                        row++;
-                    }
-                    
-                    if (columnsNeeded.contains(NetworkMLConstants.POST_FRACT_ALONG_ATTR))
+                    while ((projArray = rows.takeBlock()) != null)
                     {
-                        projArray[i * columnsNeeded.size() + row] = conn.targetEndPoint.location.getFractAlong();
-                        row++;
+                        Hdf5Utils.writeRows(projDataset, nextRow, projArray);
+                        nextRow = nextRow + projArray.length / columnsNeeded.size();
                     }
-                    /*
-                    if (columnsNeeded.contains(NetworkMLConstants.PROP_DELAY_ATTR))
-                    {
-                        projArray[i * columnsNeeded.size() + row] = conn.apPropDelay;
-                        row++;
-                    }*/
-                    
-                    for(SynapticProperties sp:  globalSynPropList)
-                    {
-                        String colName = NetworkMLConstants.PROP_DELAY_ATTR +"_"+sp.getSynapseType();
-                        if (columnsNeeded.contains(colName))
-                        {
-                            projArray[i * columnsNeeded.size() + row] = 
-                                    (float)UnitConverter.getTime(conn.apPropDelay, UnitConverter.NEUROCONSTRUCT_UNITS, unitSystem);
-                            row++;
-                        }
-                    }
-                    
-                    
-                    if (conn.props!=null)
+                
+                    for(int i=0;i<columnsNeeded.size();i++)
                     {
-                        for(ConnSpecificProps prop: conn.props)
-                        {
-                            if(columnsNeeded.contains(NetworkMLConstants.WEIGHT_ATTR+"_"+prop.synapseType))
-                            {
-                                projArray[i * columnsNeeded.size() + row] = prop.weight;
-                                row++;
-                            }
-                            if(columnsNeeded.contains(NetworkMLConstants.INTERNAL_DELAY_ATTR+"_"+prop.synapseType))
-                            {
-                                projArray[i * columnsNeeded.size() + row] = 
-                                        (float)UnitConverter.getTime(prop.internalDelay, UnitConverter.NEUROCONSTRUCT_UNITS, unitSystem);
-                                row++;
-                            }
-                            
-                        }
+                        Attribute attr = Hdf5Utils.getSimpleAttr("column_"+i, columnsNeeded.get(i), h5File);
+                        projDataset.writeMetadata(attr);
                     }
+                
+                
+                    logger.logComment("Dataset compression: " + projDataset.getCompression());
 
                 }
-
-                Dataset projDataset = h5File.createScalarDS(nc, projGroup, dtype, dims2D, null, null, 0, projArray);
-                
-                for(int i=0;i<columnsNeeded.size();i++)
+                catch (Exception ex)
                 {
-                    Attribute attr = Hdf5Utils.getSimpleAttr("column_"+i, columnsNeeded.get(i), h5File);
-                    projDataset.writeMetadata(attr);
+                    throw new Hdf5Exception("Failed to create group in HDF5 file: " + h5File.getFilePath(), ex);
                 }
-                
-                
-                logger.logComment("Dataset compression: " + projDataset.getCompression());
-
             }
-            catch (Exception ex)
+        }
+        finally
+        {
+            // in case the writing failed, so the rows of the later projections aren't worked out
+            for(ProjectionRows rows: projectionRows)
             {
-                throw new Hdf5Exception("Failed to create group in HDF5 file: " + h5File.getFilePath(), ex);
+                rows.cancel();
             }
         }
          
@@ -504,22 +430,28 @@ public class NetworkMLWriter
 
                     int inputNumber = inputsHere.size();
 
-                    long[] dims2D = {inputNumber, inputsNumCols};
-
-                    float[] sitesArray = new float[inputNumber * inputsNumCols];
-
                     Datatype dtype = getInputDatatype(h5File);
 
-                    // Build array of sites as stim setting
+                    Dataset sitesDataset = Hdf5Utils.createChunkedDataset(h5File, ei+"_"+"input_sites", inputGroup, dtype,
+                                                                          inputNumber, inputsNumCols, CHUNK_ROWS, GZIP_LEVEL);
+
+                    // Build array of sites as stim setting, a block at a time
 
-                    for (int i=0; i<inputNumber; i++)
+                    for (int first = 0; first < inputNumber; first += BLOCK_ROWS)
                     {
-                        sitesArray[i * inputsNumCols + 0] = inputsHere.get(i).getCellNumber();
-                        sitesArray[i * inputsNumCols + 1] = inputsHere.get(i).getSegmentId();
-                        sitesArray[i * inputsNumCols + 2] = inputsHere.get(i).getFractionAlong();
-                    }               
+                        int numRows = Math.min(BLOCK_ROWS, inputNumber - first);
+                        float[] sitesArray = new float[numRows * inputsNumCols];
 
-                    Dataset sitesDataset = h5File.createScalarDS (ei+"_"+"input_sites", inputGroup, dtype, dims2D, null, null, 0, sitesArray);
+                        for (int i=0; i<numRows; i++)
+                        {
+                            SingleElectricalInput input = inputsHere.get(first + i);
+
+                            sitesArray[i * inputsNumCols + 0] = input.getCellNumber();
+                            sitesArray[i * inputsNumCols + 1] = input.getSegmentId();
+                            sitesArray[i * inputsNumCols + 2] = input.getFractionAlong();
+                        }
+                        Hdf5Utils.writeRows(sitesDataset, first, sitesArray);
+                    }
 
                     Attribute attr0 = Hdf5Utils.getSimpleAttr("column_0", NetworkMLConstants.INPUT_SITE_CELLID_ATTR, h5File);
                     sitesDataset.writeMetadata(attr0);
@@ -608,6 +540,26 @@ public class NetworkMLWriter
         return file;
     }
 
+    private static synchronized ExecutorService getExecutor()
+    {
+        if (executor == null)
+        {
+            executor = ThreadPools.newDaemonThreadPool("ProjectionRows", Runtime.getRuntime().availableProcessors());
+        }
+        return executor;
+    }
+
+    private static Vector<SynapticProperties> getGlobalSynapseList(Project project, String nc)
+    {
+        if (project.morphNetworkConnectionsInfo.isValidSimpleNetConn(nc))
+            return project.morphNetworkConnectionsInfo.getSynapseList(nc);
+
+        if (project.volBasedConnsInfo.isValidVolBasedConn(nc))
+            return project.volBasedConnsInfo.getSynapseList(nc);
+
+        return new Vector<SynapticProperties>();
+    }
+
     public static Datatype getPopDatatype(H5File h5File) throws Hdf5Exception
     {
         try
@@ -714,4 +666,247 @@ public class NetworkMLWriter
 
 
     }
+
+
+    /*
+     * Works out the columns needed for a projection, then fills the rows of the projection dataset a
+     * block at a time, straight from the connection store. Up to QUEUED_BLOCKS blocks wait for the
+     * writing thread to take them, so the whole dataset is never held in memory.
+     */
+    private static class ProjectionRows implements Runnable
+    {
+        private final String name;
+        private final SynapticConnectionStore store;
+        private final Vector<SynapticProperties> globalSynPropList;
+        private final int unitSystem;
+
+        private final ArrayList<String> columns = new ArrayList<String>();
+        private final CountDownLatch columnsFound = new CountDownLatch(1);
+
+        private final BlockingQueue<float[]> blocks = new ArrayBlockingQueue<float[]>(QUEUED_BLOCKS);
+
+        private volatile Throwable error = null;
+        private volatile boolean cancelled = false;
+
+        ProjectionRows(String name, SynapticConnectionStore store, Vector<SynapticProperties> globalSynPropList, int unitSystem)
+        {
+            this.name = name;
+            this.store = store;
+            this.globalSynPropList = globalSynPropList;
+            this.unitSystem = unitSystem;
+        }
+
+        int getNumRows()
+        {
+            return store == null ? 0 : store.size();
+        }
+
+        public void run()
+        {
+            try
+            {
+                findColumns();
+            }
+            catch (Throwable t)
+            {
+                error = t;
+            }
+            finally
+            {
+                columnsFound.countDown();
+            }
+
+            try
+            {
+                if (error == null) fillBlocks();
+
+                put(END_OF_BLOCKS);
+            }
+            catch (InterruptedException ex)
+            {
+                // cancelled...
+            }
+            catch (Throwable t)
+            {
+                error = t;
+                try
+                {
+                    put(END_OF_BLOCKS);
+                }
+                catch (InterruptedException ex)
+                {
+                    // cancelled...
+                }
+            }
+        }
+
+        /*
+         * Columns as in the original single array version: only those which have non default values
+         */
+        private void findColumns()
+        {
+            columns.add(NetworkMLConstants.CONNECTION_ID_ATTR);
+            columns.add(NetworkMLConstants.PRE_CELL_ID_ATTR);
+            columns.add(NetworkMLConstants.POST_CELL_ID_ATTR);
+
+            for (int i = 0; i < getNumRows(); i++)
+            {
+                if (store.getSourceSegmentId(i)!=0 && !columns.contains(NetworkMLConstants.PRE_SEGMENT_ID_ATTR))
+                    columns.add(NetworkMLConstants.PRE_SEGMENT_ID_ATTR);
+
+                if (store.getSourceFractAlong(i)!=SegmentLocation.DEFAULT_FRACT_CONN &&
+                        !columns.contains(NetworkMLConstants.PRE_FRACT_ALONG_ATTR))
+                    columns.add(NetworkMLConstants.PRE_FRACT_ALONG_ATTR);
+
+                if (store.getTargetSegmentId(i)!=0 && !columns.contains(NetworkMLConstants.POST_SEGMENT_ID_ATTR))
+                    columns.add(NetworkMLConstants.POST_SEGMENT_ID_ATTR);
+
+                if (store.getTargetFractAlong(i)!=SegmentLocation.DEFAULT_FRACT_CONN &&
+                        !columns.contains(NetworkMLConstants.POST_FRACT_ALONG_ATTR))
+                    columns.add(NetworkMLConstants.POST_FRACT_ALONG_ATTR);
+
+                if (store.getApPropDelay(i)!=0)
+                {
+                    for(SynapticProperties sp:  globalSynPropList)
+                    {
+                        String colName = NetworkMLConstants.PROP_DELAY_ATTR +"_"+sp.getSynapseType();
+                        if (!columns.contains(colName))
+                        {
+                            columns.add(colName);
+                        }
+                    }
+                }
+
+                for (int p = 0; p < store.getNumConnSpecificProps(i); p++)
+                {
+                    String synapseType = store.getSynapseType(i, p);
+
+                    if(store.getWeight(i, p)!=1 && !columns.contains(NetworkMLConstants.WEIGHT_ATTR+"_"+synapseType))
+                        columns.add(NetworkMLConstants.WEIGHT_ATTR+"_"+synapseType);
+
+                    if(store.getInternalDelay(i, p)!=0 && !columns.contains(NetworkMLConstants.INTERNAL_DELAY_ATTR+"_"+synapseType))
+                        columns.add(NetworkMLConstants.INTERNAL_DELAY_ATTR+"_"+synapseType);
+                }
+            }
+        }
+
+        private void fillBlocks() throws InterruptedException
+        {
+            int numColumns = columns.size();
+            int numRows = getNumRows();
+
+            boolean preSegCol = columns.contains(NetworkMLConstants.PRE_SEGMENT_ID_ATTR);
+            boolean preFractCol = columns.contains(NetworkMLConstants.PRE_FRACT_ALONG_ATTR);
+            boolean postSegCol = columns.contains(NetworkMLConstants.POST_SEGMENT_ID_ATTR);
+            boolean postFractCol = columns.contains(NetworkMLConstants.POST_FRACT_ALONG_ATTR);
+
+            int numPropDelayCols = 0;
+            for(SynapticProperties sp:  globalSynPropList)
+            {
+                if (columns.contains(NetworkMLConstants.PROP_DELAY_ATTR +"_"+sp.getSynapseType()))
+                    numPropDelayCols++;
+            }
+
+            // whether there are weight & internal delay columns for each synapse type
+            HashMap<String, boolean[]> propColumns = new HashMap<String, boolean[]>();
+
+            for (int first = 0; first < numRows; first += BLOCK_ROWS)
+            {
+                if (cancelled) return;
+
+                int rowsHere = Math.min(BLOCK_ROWS, numRows - first);
+                float[] block = new float[rowsHere * numColumns];
+
+                for (int row = 0; row < rowsHere; row++)
+                {
+                    int i = first + row;
+                    int col = row * numColumns;
+
+                    block[col++] = i;
+                    block[col++] = store.getSourceCellNumber(i);
+                    block[col++] = store.getTargetCellNumber(i);
+
+                    if (preSegCol) block[col++] = store.getSourceSegmentId(i);
+                    if (preFractCol) block[col++] = store.getSourceFractAlong(i);
+                    if (postSegCol) block[col++] = store.getTargetSegmentId(i);
+                    if (postFractCol) block[col++] = store.getTargetFractAlong(i);
+
+                    if (numPropDelayCols > 0)
+                    {
+                        float propDelay = (float)UnitConverter.getTime(store.getApPropDelay(i), UnitConverter.NEUROCONSTRUCT_UNITS, unitSystem);
+
+                        for (int j = 0; j < numPropDelayCols; j++)
+                        {
+                            block[col++] = propDelay;
+                        }
+                    }
+
+                    for (int p = 0; p < store.getNumConnSpecificProps(i); p++)
+                    {
+                        String synapseType = store.getSynapseType(i, p);
+                        boolean[] propCols = propColumns.get(synapseType);
+
+                        if (propCols == null)
+                        {
+                            propCols = new boolean[]{columns.contains(NetworkMLConstants.WEIGHT_ATTR+"_"+synapseType),
+                                                     columns.contains(NetworkMLConstants.INTERNAL_DELAY_ATTR+"_"+synapseType)};
+                            propColumns.put(synapseType, propCols);
+                        }
+                        if (propCols[0])
+                        {
+                            block[col++] = store.getWeight(i, p);
+                        }
+                        if (propCols[1])
+                        {
+                            block[col++] = (float)UnitConverter.getTime(store.getInternalDelay(i, p), UnitConverter.NEUROCONSTRUCT_UNITS, unitSystem);
+                        }
+                    }
+                }
+                put(block);
+            }
+        }
+
+        private void put(float[] block) throws InterruptedException
+        {
+            while (!blocks.offer(block, 100, TimeUnit.MILLISECONDS))
+            {
+                if (cancelled) throw new InterruptedException("Rows of projection: "+name+" no longer needed");
+            }
+        }
+
+        /**
+         * Waits until the columns needed for the projection have been found
+         */
+        ArrayList<String> getColumns() throws Hdf5Exception, InterruptedException
+        {
+            columnsFound.await();
+
+            if (error != null)
+                throw new Hdf5Exception("Problem getting the columns of projection: "+name, error);
+
+            return columns;
+        }
+
+        /**
+         * Waits for the next block of rows, returning null when all have been given
+         */
+        float[] takeBlock() throws Hdf5Exception, InterruptedException
+        {
+            float[] block = blocks.take();
+
+            if (block == END_OF_BLOCKS)
+            {
+                if (error != null)
+                    throw new Hdf5Exception("Problem getting the rows of projection: "+name, error);
+
+                return null;
+            }
+            return block;
+        }
+
+        void cancel()
+        {
+            cancelled = true;
+        }
+    }
 }
@@ -173,10 +173,8 @@ public class CellPositionGenerator extends Thread
 
                         Point3f nextPosn = adapter.getNextPosition();
 
-                        logger.logComment("Trying position " + nextPosn
-                                          + " for cell number: " + numCellsInGroupSoFar
-                                          + ". Have tried " + triesAtFittingOneCell
-                                          + " time(s) so far to fit it...");
+                        logger.logComment("Trying position {} for cell number: {}. Have tried {} time(s) so far to fit it...",
+                                          nextPosn, numCellsInGroupSoFar, triesAtFittingOneCell);
 
                         boolean canBeUsed = true;
 
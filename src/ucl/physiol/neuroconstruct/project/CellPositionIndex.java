@@ -0,0 +1,331 @@
+/**
+ *  neuroConstruct
+ *  Software for developing large scale 3D networks of biologically realistic neurons
+ *
+ *  Copyright (c) 2009 Padraig Gleeson
+ *  UCL Department of Neuroscience, Physiology and Pharmacology
+ *
+ *  Development of this software was made possible with funding from the
+ *  Medical Research Council and the Wellcome Trust
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+
+package ucl.physiol.neuroconstruct.project;
+
+import java.util.*;
+import javax.vecmath.*;
+
+/**
+ * Uniform grid over the positions of the cells in one cell group, for finding the cells inside a
+ * box or at a range of distances from a point without checking every cell. Results are always given
+ * in the order of the position records, as a check of each record in turn would give them.
+ * Immutable after creation, so can be shared between threads. Use
+ * GeneratedCellPositions.getPositionIndex() to get an up to date one for a cell group.
+ *
+ * @author Padraig Gleeson
+ *
+ */
+
+public class CellPositionIndex
+{
+    private static final int TARGET_CELLS_PER_BIN = 2;
+    private static final int MAX_BINS_PER_DIM = 1024;
+
+    private final ArrayList<PositionRecord> positionRecords;
+    private final int numPositions;
+
+    private final int[] cellNumbers;
+    private final float[] xs;
+    private final float[] ys;
+    private final float[] zs;
+
+    private float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE, minZ = Float.MAX_VALUE;
+    private float maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE, maxZ = -Float.MAX_VALUE;
+
+    private double binSize = 1;
+    private int numBinsX = 1, numBinsY = 1, numBinsZ = 1;
+
+    /*
+     * Record indices in each bin are binContents[binStarts[bin]] to binContents[binStarts[bin+1]-1], in order
+     */
+    private int[] binStarts;
+    private int[] binContents;
+
+
+    public CellPositionIndex(ArrayList<PositionRecord> positionRecords)
+    {
+        this.positionRecords = positionRecords;
+        this.numPositions = positionRecords.size();
+
+        cellNumbers = new int[numPositions];
+        xs = new float[numPositions];
+        ys = new float[numPositions];
+        zs = new float[numPositions];
+
+        for (int i = 0; i < numPositions; i++)
+        {
+            PositionRecord pos = positionRecords.get(i);
+            cellNumbers[i] = pos.cellNumber;
+            xs[i] = pos.x_pos;
+            ys[i] = pos.y_pos;
+            zs[i] = pos.z_pos;
+
+            minX = Math.min(minX, xs[i]);
+            minY = Math.min(minY, ys[i]);
+            minZ = Math.min(minZ, zs[i]);
+            maxX = Math.max(maxX, xs[i]);
+            maxY = Math.max(maxY, ys[i]);
+            maxZ = Math.max(maxZ, zs[i]);
+        }
+
+        if (numPositions > 0)
+        {
+            // Bin size so there are around TARGET_CELLS_PER_BIN per bin. Dimensions thinner than
+            // a bin are treated as flat, and the size is worked out again for the others
+            double[] extents = new double[]{maxX - minX, maxY - minY, maxZ - minZ};
+            double targetBins = Math.max(1, numPositions / (double)TARGET_CELLS_PER_BIN);
+            double minExtent = 0;
+
+            for (int attempt = 0; attempt < 3; attempt++)
+            {
+                double volume = 1;
+                int nonFlatDims = 0;
+
+                for (double extent: extents)
+                {
+                    if (extent > minExtent)
+                    {
+                        volume = volume * extent;
+                        nonFlatDims++;
+                    }
+                }
+                if (nonFlatDims == 0) break;
+
+                binSize = Math.pow(volume / targetBins, 1.0 / nonFlatDims);
+
+                if (binSize <= minExtent) break;
+                minExtent = binSize;
+            }
+
+            for (double extent: extents)
+            {
+                binSize = Math.max(binSize, extent / MAX_BINS_PER_DIM);
+            }
+
+            numBinsX = (int)((maxX - minX) / binSize) + 1;
+            numBinsY = (int)((maxY - minY) / binSize) + 1;
+            numBinsZ = (int)((maxZ - minZ) / binSize) + 1;
+        }
+
+        int numBins = numBinsX * numBinsY * numBinsZ;
+
+        binStarts = new int[numBins + 1];
+        binContents = new int[numPositions];
+
+        int[] binOfPosition = new int[numPositions];
+
+        for (int i = 0; i < numPositions; i++)
+        {
+            binOfPosition[i] = getBin(getBinX(xs[i]), getBinY(ys[i]), getBinZ(zs[i]));
+            binStarts[binOfPosition[i] + 1]++;
+        }
+        for (int bin = 0; bin < numBins; bin++)
+        {
+            binStarts[bin + 1] += binStarts[bin];
+        }
+
+        int[] nextInBin = Arrays.copyOf(binStarts, numBins);
+
+        for (int i = 0; i < numPositions; i++)
+        {
+            binContents[nextInBin[binOfPosition[i]]++] = i;
+        }
+    }
+
+    /**
+     * True if the index was made from this list of records, and no more have been added since
+     */
+    public boolean isValidFor(ArrayList<PositionRecord> records)
+    {
+        return records == positionRecords && records.size() == numPositions;
+    }
+
+    public int getNumberPositions()
+    {
+        return numPositions;
+    }
+
+    public int[] getAllCellNumbers()
+    {
+        return cellNumbers.clone();
+    }
+
+    /**
+     * Gets the numbers of the cells with positions inside the box (edges included), in the order
+     * of the position records
+     */
+    public int[] getCellNumbersInBox(float boxMinX, float boxMinY, float boxMinZ,
+                                     float boxMaxX, float boxMaxY, float boxMaxZ)
+    {
+        int[] indices = getRecordIndicesInBox(boxMinX, boxMinY, boxMinZ, boxMaxX, boxMaxY, boxMaxZ);
+
+        for (int i = 0; i < indices.length; i++)
+        {
+            indices[i] = cellNumbers[indices[i]];
+        }
+        return indices;
+    }
+
+    /**
+     * Gets the numbers of the cells whose positions are at least minDistance and at most maxDistance
+     * from the point, in the order of the position records
+     */
+    public int[] getCellNumbersInAnnulus(Point3f centre, float minDistance, float maxDistance)
+    {
+        int[] indices = getRecordIndicesInBox(centre.x - maxDistance,
+                                              centre.y - maxDistance,
+                                              centre.z - maxDistance,
+                                              centre.x + maxDistance,
+                                              centre.y + maxDistance,
+                                              centre.z + maxDistance);
+        int count = 0;
+
+        for (int index: indices)
+        {
+            float dx = xs[index] - centre.x;
+            float dy = ys[index] - centre.y;
+            float dz = zs[index] - centre.z;
+
+            float distance = (float)Math.sqrt(dx*dx + dy*dy + dz*dz);
+
+            if (distance >= minDistance && distance <= maxDistance)
+            {
+                indices[count++] = cellNumbers[index];
+            }
+        }
+        return Arrays.copyOf(indices, count);
+    }
+
+    /**
+     * Gets the numbers of the cells whose positions are no further than maxDistance from the point
+     */
+    public int[] getCellNumbersWithin(Point3f centre, float maxDistance)
+    {
+        return getCellNumbersInAnnulus(centre, 0, maxDistance);
+    }
+
+    private int[] getRecordIndicesInBox(float boxMinX, float boxMinY, float boxMinZ,
+                                        float boxMaxX, float boxMaxY, float boxMaxZ)
+    {
+        if (numPositions == 0 ||
+            boxMaxX < minX || boxMinX > maxX ||
+            boxMaxY < minY || boxMinY > maxY ||
+            boxMaxZ < minZ || boxMinZ > maxZ)
+        {
+            return new int[0];
+        }
+
+        int lowX = getBinX(boxMinX), highX = getBinX(boxMaxX);
+        int lowY = getBinY(boxMinY), highY = getBinY(boxMaxY);
+        int lowZ = getBinZ(boxMinZ), highZ = getBinZ(boxMaxZ);
+
+        int[] found = new int[numPositions];
+        int count = 0;
+
+        long binsToSearch = (long)(highX - lowX + 1) * (highY - lowY + 1) * (highZ - lowZ + 1);
+
+        if (binsToSearch * 2 >= binStarts.length)
+        {
+            // quicker just to check them all, and they're then in order already
+            for (int i = 0; i < numPositions; i++)
+            {
+                if (isInBox(i, boxMinX, boxMinY, boxMinZ, boxMaxX, boxMaxY, boxMaxZ))
+                    found[count++] = i;
+            }
+            return Arrays.copyOf(found, count);
+        }
+
+        for (int bx = lowX; bx <= highX; bx++)
+        {
+            for (int by = lowY; by <= highY; by++)
+            {
+                for (int bz = lowZ; bz <= highZ; bz++)
+                {
+                    int bin = getBin(bx, by, bz);
+
+                    for (int j = binStarts[bin]; j < binStarts[bin + 1]; j++)
+                    {
+                        int i = binContents[j];
+
+                        if (isInBox(i, boxMinX, boxMinY, boxMinZ, boxMaxX, boxMaxY, boxMaxZ))
+                            found[count++] = i;
+                    }
+                }
+            }
+        }
+        int[] indices = Arrays.copyOf(found, count);
+        Arrays.sort(indices);
+        return indices;
+    }
+
+    private boolean isInBox(int i,
+                            float boxMinX, float boxMinY, float boxMinZ,
+                            float boxMaxX, float boxMaxY, float boxMaxZ)
+    {
+        return xs[i] >= boxMinX &&
+               xs[i] <= boxMaxX &&
+               ys[i] >= boxMinY &&
+               ys[i] <= boxMaxY &&
+               zs[i] >= boxMinZ &&
+               zs[i] <= boxMaxZ;
+    }
+
+    private int getBin(int bx, int by, int bz)
+    {
+        return (bx * numBinsY + by) * numBinsZ + bz;
+    }
+
+    private int getBinX(float x)
+    {
+        return clamp((x - (double)minX) / binSize, numBinsX);
+    }
+
+    private int getBinY(float y)
+    {
+        return clamp((y - (double)minY) / binSize, numBinsY);
+    }
+
+    private int getBinZ(float z)
+    {
+        return clamp((z - (double)minZ) / binSize, numBinsZ);
+    }
+
+    private static int clamp(double binCoord, int numBins)
+    {
+        if (binCoord <= 0) return 0;
+        if (binCoord >= numBins - 1) return numBins - 1;
+        return (int)binCoord;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "CellPositionIndex of "+numPositions+" positions in "+numBinsX+"x"+numBinsY+"x"+numBinsZ
+            +" bins of size "+(float)binSize;
+    }
+
+}
@@ -122,8 +122,8 @@ public class CompNodeGenerator extends Thread
                     //int nodeID = r.nextInt(totalProcs);
                     int nodeID = ((cellCount-1)%totalProcs);
                     
-                    logger.logComment("cellCount: "+cellCount+", nextCellGroup: "
-                            +nextCellGroup+", nodeID: "+nodeID);
+                    logger.logComment("cellCount: {}, nextCellGroup: {}, nodeID: {}",
+                                      cellCount, nextCellGroup, nodeID);
                     
                     
                     pos.setNodeId(nodeID);
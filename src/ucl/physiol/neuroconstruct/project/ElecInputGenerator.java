@@ -174,7 +174,7 @@ public class ElecInputGenerator extends Thread
                     logger.logComment("Getting the next cell num...");
                     int nextCellNumber = cellChooser.getNextCellIndex();
 
-                    logger.logComment("Adding stim to cell number: "+ nextCellNumber);
+                    logger.logComment("Adding stim to cell number: {}", nextCellNumber);
 
                     
                     Cell cell = project.cellManager.getCell(project.cellGroupsInfo.getCellType(nextStim.getCellGroup()));
@@ -56,6 +56,16 @@ public class GeneratedCellPositions
 
     private Project project = null;
 
+    /*
+     * Spatial indices of the cell groups, made on request
+     */
+    private Hashtable<String, CellPositionIndex> positionIndices = new Hashtable<String, CellPositionIndex>();
+
+    /*
+     * Positions of the cells in each group by cell number, for quick lookup
+     */
+    private Hashtable<String, CellNumberLookup> cellNumberLookups = new Hashtable<String, CellNumberLookup>();
+
     /**
      * The random seed used to generate the network
      */
@@ -71,10 +81,9 @@ public class GeneratedCellPositions
     public void reset()
     {
         this.myCellGroupPosns.clear();
+        this.positionIndices.clear();
+        this.cellNumberLookups.clear();
         logger.logComment("Reset called. Info: "+ this.toString());
-        cachedCellPosition1 = null;
-        cachedCellPosition2 = null;
-        cachedCellPosition3 = null;
     }
 
     public void setRandomSeed(long rs)
@@ -101,14 +110,17 @@ public class GeneratedCellPositions
                                                    zPos);
 
         addPosition(cellGroupName, posRec);
-        cachedCellPosition1 = null;
-        cachedCellPosition2 = null;
-        cachedCellPosition3 = null;
     }
 
 
-    public void addPosition(String cellGroupName,
-                            PositionRecord posRecord)
+    /**
+     * Synchronized, as cell groups may be filled from different threads. The lookup by cell number
+     * for the group is updated if the new cell number is in the range it holds in arrays (as when cells
+     * are numbered in order), so generators which add a cell and then look up positions don't make it
+     * again each time. Otherwise it's dropped, and recreated on the next request for a position
+     */
+    public synchronized void addPosition(String cellGroupName,
+                                         PositionRecord posRecord)
     {
 
         if (!myCellGroupPosns.containsKey(cellGroupName))
@@ -118,10 +130,35 @@ public class GeneratedCellPositions
         }
         ArrayList<PositionRecord> cellGroupVector = myCellGroupPosns.get(cellGroupName);
 
+        CellNumberLookup lookup = cellNumberLookups.get(cellGroupName);
+        boolean lookupValid = lookup != null && lookup.isValidFor(cellGroupVector);
+
         cellGroupVector.add(posRecord);
-        cachedCellPosition1 = null;
-        cachedCellPosition2 = null;
-        cachedCellPosition3 = null;
+        positionIndices.remove(cellGroupName);
+
+        if (!lookupValid || !lookup.append(posRecord))
+        {
+            cellNumberLookups.remove(cellGroupName);
+        }
+    }
+
+
+    /**
+     * Adds the positions of many cells in the cell group in one go, e.g. when loading a NetworkSnapshot.
+     * If the cell group has no positions yet, the list itself is used for it
+     */
+    public synchronized void addPositions(String cellGroupName,
+                                          ArrayList<PositionRecord> posRecords)
+    {
+        ArrayList<PositionRecord> cellGroupVector = myCellGroupPosns.get(cellGroupName);
+
+        if (cellGroupVector == null)
+            myCellGroupPosns.put(cellGroupName, posRecords);
+        else
+            cellGroupVector.addAll(posRecords);
+
+        positionIndices.remove(cellGroupName);
+        cellNumberLookups.remove(cellGroupName);
     }
 
 
@@ -205,62 +242,186 @@ public class GeneratedCellPositions
         return cellGroupVector.size();
     }
     
-    // As there is often multiple requests for the same cells, e.g. srcCell1 -> tgtCell1,  srcCell1 -> tgtCell2...
-    private CachedCellPosition cachedCellPosition1 = null;
-    private CachedCellPosition cachedCellPosition2 = null;
-    private CachedCellPosition cachedCellPosition3 = null;
-    
-    public class CachedCellPosition
+    /**
+     * Gets a spatial index of the positions of the cells in the group, for finding the cells in a region
+     */
+    public synchronized CellPositionIndex getPositionIndex(String cellGroupName)
     {
-        String cellGroupName;
-        int index;
-        Point3f point;
-    }
+        ArrayList<PositionRecord> records = getPositionRecords(cellGroupName);
 
+        CellPositionIndex index = positionIndices.get(cellGroupName);
 
-    public Point3f getOneCellPosition(String cellGroupName, int index)
+        if (index == null || !index.isValidFor(records))
+        {
+            index = new CellPositionIndex(records);
+            if (myCellGroupPosns.containsKey(cellGroupName))
+                positionIndices.put(cellGroupName, index);
+
+            logger.logComment("Created: {}", index);
+        }
+        return index;
+    }
+
+    /**
+     * Coordinates of the cells in a group held in arrays indexed by cell number, or in a map
+     * from cell number to position record index where the cell numbers have large gaps.
+     * Only changed by append() (with the GeneratedCellPositions locked), which fills in the arrays
+     * before increasing numRecords, so a thread which finds it up to date for the records without
+     * locking also sees the new cell. The map is never changed after creation
+     */
+    private static class CellNumberLookup
     {
-        //logger.logComment("Being requested for posn of cell num: "+ index+ " in group: "+ cellGroupName, true);
-        if (cachedCellPosition1!=null && 
-            cachedCellPosition1.index == index && 
-            cachedCellPosition1.cellGroupName.equals(cellGroupName))
-            return new Point3f(cachedCellPosition1.point.x, cachedCellPosition1.point.y,cachedCellPosition1.point.z);
-        
-        if (cachedCellPosition2!=null && 
-            cachedCellPosition2.index == index && 
-            cachedCellPosition2.cellGroupName.equals(cellGroupName))
-            return new Point3f(cachedCellPosition2.point.x, cachedCellPosition2.point.y,cachedCellPosition2.point.z);
-        
-        if (cachedCellPosition3!=null && 
-            cachedCellPosition3.index == index && 
-            cachedCellPosition3.cellGroupName.equals(cellGroupName))
-            return new Point3f(cachedCellPosition3.point.x, cachedCellPosition3.point.y,cachedCellPosition3.point.z);
-        
-        if (!myCellGroupPosns.containsKey(cellGroupName))
+        private static final int MIN_DENSE_SIZE = 16;
+
+        private ArrayList<PositionRecord> records;
+        private volatile int numRecords = 0;
+
+        private float[] xs = new float[0];
+        private float[] ys = new float[0];
+        private float[] zs = new float[0];
+        private boolean[] present = new boolean[0];
+
+        private HashMap<Integer, Integer> sparseRecordIndices = new HashMap<Integer, Integer>();
+
+        CellNumberLookup(ArrayList<PositionRecord> records)
         {
-            return null;
+            this.records = records;
+
+            for (int i = 0; i < records.size(); i++)
+            {
+                add(records.get(i), i);
+            }
+        }
+
+        /*
+         * True if made for this list and up to date
+         */
+        boolean isValidFor(ArrayList<PositionRecord> list)
+        {
+            return list == records && list.size() == numRecords;
+        }
+
+        /*
+         * Adds the record just appended to the list of records, if its cell number goes in the arrays,
+         * so the lookup is the same as one made again for the list
+         *
+         * @return false if the cell number would go in the map, so the lookup should be made again
+         */
+        boolean append(PositionRecord posRec)
+        {
+            if (!isDense(posRec.cellNumber, numRecords + 1)) return false;
+
+            add(posRec, numRecords);
+            return true;
+        }
+
+        private static boolean isDense(int cellNumber, int numRecords)
+        {
+            return cellNumber >= 0 && cellNumber < Math.max(MIN_DENSE_SIZE, numRecords * 4);
         }
-        ArrayList<PositionRecord> cellGroupArrayList = myCellGroupPosns.get(cellGroupName);
 
-        for (int i = 0; i < cellGroupArrayList.size(); i++)
+        /*
+         * As with a search through the records, the first record for a cell number is the one used
+         */
+        private void add(PositionRecord posRec, int recordIndex)
         {
-            PositionRecord posRec = cellGroupArrayList.get(i);
-            if (posRec.cellNumber==index)
+            int cellNumber = posRec.cellNumber;
+
+            if (isDense(cellNumber, numRecords + 1))
             {
-                Point3f p = new Point3f(posRec.x_pos,posRec.y_pos,posRec.z_pos);
-                CachedCellPosition cp = new CachedCellPosition();
-                cp.index = index;
-                cp.cellGroupName = cellGroupName;
-                cp.point = new Point3f(p);
-                cachedCellPosition3 = cachedCellPosition2;
-                cachedCellPosition2 = cachedCellPosition1;
-                cachedCellPosition1 = cp;
-                return p;
+                if (cellNumber >= present.length)
+                {
+                    int newSize = Math.max(cellNumber + 1, Math.max(MIN_DENSE_SIZE, present.length * 2));
+                    xs = Arrays.copyOf(xs, newSize);
+                    ys = Arrays.copyOf(ys, newSize);
+                    zs = Arrays.copyOf(zs, newSize);
+                    present = Arrays.copyOf(present, newSize);
+                }
+                if (!present[cellNumber] && !sparseRecordIndices.containsKey(cellNumber))
+                {
+                    xs[cellNumber] = posRec.x_pos;
+                    ys[cellNumber] = posRec.y_pos;
+                    zs[cellNumber] = posRec.z_pos;
+                    present[cellNumber] = true;
+                }
             }
+            else if (!sparseRecordIndices.containsKey(cellNumber))
+            {
+                sparseRecordIndices.put(cellNumber, recordIndex);
+            }
+            numRecords++;
         }
-        logger.logComment("No record of cell with index: "+ index);
-        return null;
 
+        boolean getPosition(int cellNumber, Point3f result)
+        {
+            if (cellNumber >= 0 && cellNumber < present.length && present[cellNumber])
+            {
+                result.set(xs[cellNumber], ys[cellNumber], zs[cellNumber]);
+                return true;
+            }
+            if (sparseRecordIndices.isEmpty()) return false;
+
+            Integer recordIndex = sparseRecordIndices.get(cellNumber);
+
+            if (recordIndex == null) return false;
+
+            PositionRecord posRec = records.get(recordIndex);
+            result.set(posRec.x_pos, posRec.y_pos, posRec.z_pos);
+            return true;
+        }
+    }
+
+    private CellNumberLookup getCellNumberLookup(String cellGroupName)
+    {
+        ArrayList<PositionRecord> records = myCellGroupPosns.get(cellGroupName);
+
+        if (records == null) return null;
+
+        CellNumberLookup lookup = cellNumberLookups.get(cellGroupName);
+
+        if (lookup == null || !lookup.isValidFor(records))
+        {
+            synchronized (this)
+            {
+                lookup = cellNumberLookups.get(cellGroupName);
+
+                if (lookup == null || !lookup.isValidFor(records))
+                {
+                    lookup = new CellNumberLookup(records);
+                    cellNumberLookups.put(cellGroupName, lookup);
+                }
+            }
+        }
+        return lookup;
+    }
+
+
+    /**
+     * Gets the position of the cell with this number in the group, or null if there's no such cell
+     */
+    public Point3f getOneCellPosition(String cellGroupName, int index)
+    {
+        return getOneCellPosition(cellGroupName, index, new Point3f());
+    }
+
+
+    /**
+     * Puts the position of the cell with this number in the group into result, without creating any
+     * new objects
+     *
+     * @return result, or null if there's no such cell
+     */
+    public Point3f getOneCellPosition(String cellGroupName, int index, Point3f result)
+    {
+        CellNumberLookup lookup = getCellNumberLookup(cellGroupName);
+
+        if (lookup != null && lookup.getPosition(index, result))
+        {
+            return result;
+        }
+
+        logger.logComment("No record of cell with index: {}", index);
+        return null;
     }
 
 
@@ -499,6 +660,16 @@ public class GeneratedCellPositions
     }
 
     public ArrayList<SimpleXMLElement> getNetworkMLElements(NeuroMLVersion version) throws NeuroMLException
+    {
+        return getNetworkMLElements(version, false);
+    }
+
+    /**
+     * Gets the elements for the populations. If streamed, the instance elements aren't created until
+     * the elements are written (see SimpleXMLEntitySequence), so the elements for all of the cells
+     * are never in memory at once.
+     */
+    public ArrayList<SimpleXMLElement> getNetworkMLElements(NeuroMLVersion version, boolean streamed) throws NeuroMLException
     {
         ArrayList<SimpleXMLElement> elements = new ArrayList<SimpleXMLElement>();
 
@@ -538,35 +709,8 @@ public class GeneratedCellPositions
 
                     if (version.isVersion2beta())
                     {
-                        for (int i = 0; i < cellsHere.size(); i++)
-                        {
-                            PositionRecord posRec = cellsHere.get(i);
-
-                            SimpleXMLElement instanceElement = new SimpleXMLElement(NetworkMLConstants.INSTANCE_ELEMENT);
-
-                            instanceElement.addAttribute(new SimpleXMLAttribute(NetworkMLConstants.INSTANCE_ID_ATTR, i+""));
-
-                            if (posRec.getNodeId()!=PositionRecord.NO_NODE_ID)
-                            {
-                                instanceElement.addAttribute(new SimpleXMLAttribute(NetworkMLConstants.NODE_ID_ATTR, posRec.getNodeId()+""));
-                            }
-
+                        addInstances(populationElement, cellsHere, true, streamed);
 
-                            SimpleXMLElement locationElement = new SimpleXMLElement(NetworkMLConstants.LOCATION_ELEMENT);
-
-                            populationElement.addContent("\n            ");
-                            instanceElement.addContent("\n                ");
-                            instanceElement.addChildElement(locationElement);
-                            instanceElement.addContent("\n            ");
-
-                            locationElement.addAttribute(new SimpleXMLAttribute(NetworkMLConstants.LOC_X_ATTR, posRec.x_pos+""));
-                            locationElement.addAttribute(new SimpleXMLAttribute(NetworkMLConstants.LOC_Y_ATTR, posRec.y_pos+""));
-                            locationElement.addAttribute(new SimpleXMLAttribute(NetworkMLConstants.LOC_Z_ATTR, posRec.z_pos+""));
-
-                            populationElement.addChildElement(instanceElement);
-
-
-                        }
                         populationElement.addContent("\n        ");
                     }
                 }
@@ -603,31 +747,7 @@ public class GeneratedCellPositions
 
                     instancesElement.addAttribute(new SimpleXMLAttribute(NetworkMLConstants.INSTANCES_SIZE_ATTR, cellsHere.size()+""));
 
-                    for (int i = 0; i < cellsHere.size(); i++)
-                    {
-                        PositionRecord posRec = cellsHere.get(i);
-
-                        SimpleXMLElement instanceElement = new SimpleXMLElement(NetworkMLConstants.INSTANCE_ELEMENT);
-
-                        instanceElement.addAttribute(new SimpleXMLAttribute(NetworkMLConstants.INSTANCE_ID_ATTR, i+""));
-
-                        if (posRec.getNodeId()!=PositionRecord.NO_NODE_ID)
-                        {
-                            instanceElement.addAttribute(new SimpleXMLAttribute(NetworkMLConstants.NODE_ID_ATTR, posRec.getNodeId()+""));
-                        }
-
-
-                        SimpleXMLElement locationElement = new SimpleXMLElement(NetworkMLConstants.LOCATION_ELEMENT);
-
-                        instanceElement.addChildElement(locationElement);
-                        instanceElement.addContent("\n            ");
-
-                        locationElement.addAttribute(new SimpleXMLAttribute(NetworkMLConstants.LOC_X_ATTR, posRec.x_pos+""));
-                        locationElement.addAttribute(new SimpleXMLAttribute(NetworkMLConstants.LOC_Y_ATTR, posRec.y_pos+""));
-                        locationElement.addAttribute(new SimpleXMLAttribute(NetworkMLConstants.LOC_Z_ATTR, posRec.z_pos+""));
-
-                        instancesElement.addChildElement(instanceElement);
-                    }
+                    addInstances(instancesElement, cellsHere, false, streamed);
 
                     populationElement.addChildElement(instancesElement);
                 }
@@ -655,6 +775,53 @@ public class GeneratedCellPositions
 
     }
 
+    /*
+     * Adds the instance elements for the cells to the element, preceded by spacing for NeuroML v2
+     */
+    private static void addInstances(SimpleXMLElement element,
+                                     final ArrayList<PositionRecord> cellsHere,
+                                     final boolean nml2,
+                                     boolean streamed)
+    {
+        SimpleXMLEntitySequence instances = new SimpleXMLEntitySequence(cellsHere.size())
+        {
+            protected void addEntities(int i, ArrayList<SimpleXMLEntity> entities)
+            {
+                PositionRecord posRec = cellsHere.get(i);
+
+                SimpleXMLElement instanceElement = new SimpleXMLElement(NetworkMLConstants.INSTANCE_ELEMENT);
+
+                instanceElement.addAttribute(new SimpleXMLAttribute(NetworkMLConstants.INSTANCE_ID_ATTR, i+""));
+
+                if (posRec.getNodeId()!=PositionRecord.NO_NODE_ID)
+                {
+                    instanceElement.addAttribute(new SimpleXMLAttribute(NetworkMLConstants.NODE_ID_ATTR, posRec.getNodeId()+""));
+                }
+
+                SimpleXMLElement locationElement = new SimpleXMLElement(NetworkMLConstants.LOCATION_ELEMENT);
+
+                if (nml2)
+                {
+                    entities.add(new SimpleXMLContent("\n            "));
+                    instanceElement.addContent("\n                ");
+                }
+                instanceElement.addChildElement(locationElement);
+                instanceElement.addContent("\n            ");
+
+                locationElement.addAttribute(new SimpleXMLAttribute(NetworkMLConstants.LOC_X_ATTR, posRec.x_pos+""));
+                locationElement.addAttribute(new SimpleXMLAttribute(NetworkMLConstants.LOC_Y_ATTR, posRec.y_pos+""));
+                locationElement.addAttribute(new SimpleXMLAttribute(NetworkMLConstants.LOC_Z_ATTR, posRec.z_pos+""));
+
+                entities.add(instanceElement);
+            }
+        };
+
+        if (streamed)
+            element.addSequence(instances);
+        else
+            element.addEntities(instances);
+    }
+
     public static void main(String[] args)
     {
         try
@@ -137,6 +137,21 @@ public class GeneratedElecInputs
         inputVector.add(oneInput);
     }
 
+    /**
+     * Adds many inputs in one go, e.g. when loading a NetworkSnapshot. If there are no inputs
+     * for the reference yet, the list itself is used for it
+     */
+    public void addSingleInputs(String inputReference,
+                                ArrayList<SingleElectricalInput> inputs)
+    {
+        ArrayList<SingleElectricalInput> inputVector = myElecInputs.get(inputReference);
+
+        if (inputVector == null)
+            myElecInputs.put(inputReference, inputs);
+        else
+            inputVector.addAll(inputs);
+    }
+
 
 
 
@@ -354,7 +369,19 @@ public class GeneratedElecInputs
 
     public ArrayList<SimpleXMLEntity> getNetworkMLEntities(int unitSystem, NeuroMLConstants.NeuroMLVersion version, SimpleXMLElement topLevelCompElement) throws NeuroMLException
     {
-        ArrayList<SimpleXMLEntity> entities = new ArrayList<SimpleXMLEntity>();
+        return getNetworkMLEntities(unitSystem, version, topLevelCompElement, false);
+    }
+
+    /**
+     * Gets the entities for the inputs. If streamed, the elements for the input sites aren't created
+     * until the entities are written (see SimpleXMLEntitySequence), apart from for NeuroML v2.
+     */
+    public ArrayList<SimpleXMLEntity> getNetworkMLEntities(final int unitSystem,
+                                                           NeuroMLConstants.NeuroMLVersion version,
+                                                           final SimpleXMLElement topLevelCompElement,
+                                                           boolean streamed) throws NeuroMLException
+    {
+        final ArrayList<SimpleXMLEntity> entities = new ArrayList<SimpleXMLEntity>();
 
         Units timeUnits = UnitConverter.timeUnits[unitSystem];
         Units currentUnits = UnitConverter.currentUnits[unitSystem];
@@ -372,7 +399,7 @@ public class GeneratedElecInputs
                 return entities;
             }
 
-            boolean nml2 = version.isVersion2();
+            final boolean nml2 = version.isVersion2();
 
             if (!nml2)
             {
@@ -482,136 +509,169 @@ public class GeneratedElecInputs
 
                 inputTargetElement.addChildElement(inputTargetSitesElement);                
                
-                // Iterate around the list of sites
-                for (int i=0; i < inputsHere.size() ; i++)
+                final ArrayList<SingleElectricalInput> sitesHere = inputsHere;
+                final String inputRef = inputReference;
+                final StimulationSettings stim = nextStim;
+                final ElectricalInput input = myElectricalInput;
+
+                SimpleXMLEntitySequence sites = new SimpleXMLEntitySequence(inputsHere.size())
                 {
-                    inputTargetSitesElement.addContent("\n                ");
+                    protected void addEntities(int i, ArrayList<SimpleXMLEntity> siteEntities) throws NeuroMLException
+                    {
+                        siteEntities.add(new SimpleXMLContent("\n                "));
+                        siteEntities.add(getTargetSiteElement(sitesHere, i, inputRef, stim, input, unitSystem,
+                                                              nml2, topLevelCompElement, entities));
 
-                    SingleElectricalInput sei = inputsHere.get(i);
-                    
-                    SimpleXMLElement inputTargetSiteElement = new SimpleXMLElement(NetworkMLConstants.INPUT_TARGET_SITE_ELEMENT);
+                        if (i == sitesHere.size()-1)
+                            siteEntities.add(new SimpleXMLContent("\n            "));
+                    }
+                };
 
-                    inputTargetSiteElement.addAttribute(new SimpleXMLAttribute(NetworkMLConstants.INPUT_SITE_CELLID_ATTR, sei.getCellNumber()+""));
-                    inputTargetSiteElement.addAttribute(new SimpleXMLAttribute(NetworkMLConstants.INPUT_SITE_SEGID_ATTR, sei.getSegmentId()+""));
-                    inputTargetSiteElement.addAttribute(new SimpleXMLAttribute(NetworkMLConstants.INPUT_SITE_FRAC_ATTR, sei.getFractionAlong()+""));
-                    inputTargetSitesElement.addChildElement(inputTargetSiteElement);
+                // The v2 elements for the sites are added elsewhere as they're created, so can't be streamed
+                if (streamed && !nml2)
+                    inputTargetSitesElement.addSequence(sites);
+                else
+                    inputTargetSitesElement.addEntities(sites);
+                inputTargetElement.addContent("\n        ");      
 
+                if (!nml2)
+                {
+                    inputsElement.addChildElement(inputElement);
+                    inputElement.addContent("\n    ");
+                }
+              
+            }
+            logger.logComment("Finished saving data to inputs element");
 
+        }
 
-                    if(sei.getInstanceProps()!=null)
-                    {
-                        inputTargetSiteElement.addContent("\n                ");
-                        inputTargetSiteElement.addComment("Adding the site specific props");
+        catch (Exception ex)
+        {
+            throw new NeuroMLException("Problem creating inputs element file", ex);
+        }
+        return entities;
 
-                        if (sei.getInstanceProps() instanceof IClampInstanceProps)
-                        {
-                            IClampInstanceProps ic = (IClampInstanceProps)sei.getInstanceProps();
+    }
+        
+        
+    /*
+     * Creates the element for the input site. For NeuroML v2, the elements for the input are added to
+     * the entities & top level element instead
+     */
+    private SimpleXMLElement getTargetSiteElement(ArrayList<SingleElectricalInput> inputsHere,
+                                                  int i,
+                                                  String inputReference,
+                                                  StimulationSettings nextStim,
+                                                  ElectricalInput myElectricalInput,
+                                                  int unitSystem,
+                                                  boolean nml2,
+                                                  SimpleXMLElement topLevelCompElement,
+                                                  ArrayList<SimpleXMLEntity> entities) throws NeuroMLException
+    {
+        Units timeUnits = UnitConverter.timeUnits[unitSystem];
+        Units currentUnits = UnitConverter.currentUnits[unitSystem];
 
-                            float delay = (float)UnitConverter.getTime(ic.getDelay(), UnitConverter.NEUROCONSTRUCT_UNITS, unitSystem);
-                            float duration = (float)UnitConverter.getTime(ic.getDuration(), UnitConverter.NEUROCONSTRUCT_UNITS, unitSystem);
-                            float amp = (float)UnitConverter.getCurrent(ic.getAmplitude(), UnitConverter.NEUROCONSTRUCT_UNITS, unitSystem);
+        SingleElectricalInput sei = inputsHere.get(i);
+        
+        SimpleXMLElement inputTargetSiteElement = new SimpleXMLElement(NetworkMLConstants.INPUT_TARGET_SITE_ELEMENT);
 
-                            if (!nml2)
-                            {
-                                SimpleXMLElement inputTypeElement = new SimpleXMLElement(NetworkMLConstants.PULSEINPUT_INSTANCE_ELEMENT);
+        inputTargetSiteElement.addAttribute(new SimpleXMLAttribute(NetworkMLConstants.INPUT_SITE_CELLID_ATTR, sei.getCellNumber()+""));
+        inputTargetSiteElement.addAttribute(new SimpleXMLAttribute(NetworkMLConstants.INPUT_SITE_SEGID_ATTR, sei.getSegmentId()+""));
+        inputTargetSiteElement.addAttribute(new SimpleXMLAttribute(NetworkMLConstants.INPUT_SITE_FRAC_ATTR, sei.getFractionAlong()+""));
 
-                                inputTypeElement.addAttribute(new SimpleXMLAttribute(NetworkMLConstants.INPUT_DELAY_ATTR,delay+""));
 
-                                inputTypeElement.addAttribute(new SimpleXMLAttribute(NetworkMLConstants.INPUT_DUR_ATTR, duration+""));
 
+        if(sei.getInstanceProps()!=null)
+        {
+            inputTargetSiteElement.addContent("\n                ");
+            inputTargetSiteElement.addComment("Adding the site specific props");
 
-                                //System.out.println("Converted "+amp+" to "+ a);
-                                inputTypeElement.addAttribute(new SimpleXMLAttribute(NetworkMLConstants.INPUT_AMP_ATTR, amp+""));
+            if (sei.getInstanceProps() instanceof IClampInstanceProps)
+            {
+                IClampInstanceProps ic = (IClampInstanceProps)sei.getInstanceProps();
 
-                                inputTargetSiteElement.addContent("                    ");
-                                inputTargetSiteElement.addChildElement(inputTypeElement);
+                float delay = (float)UnitConverter.getTime(ic.getDelay(), UnitConverter.NEUROCONSTRUCT_UNITS, unitSystem);
+                float duration = (float)UnitConverter.getTime(ic.getDuration(), UnitConverter.NEUROCONSTRUCT_UNITS, unitSystem);
+                float amp = (float)UnitConverter.getCurrent(ic.getAmplitude(), UnitConverter.NEUROCONSTRUCT_UNITS, unitSystem);
 
-                                inputTargetSiteElement.addContent("\n                ");
-                            }
-                            else
-                            {
-                                SimpleXMLElement pulseGenElement = new SimpleXMLElement(NetworkMLConstants.NEUROML2_PULSE_GEN_ELEMENT);
-                                pulseGenElement.addAttribute(NeuroMLConstants.NEUROML_ID_V2, inputReference+"__"+i);
-                                pulseGenElement.addAttribute(NetworkMLConstants.INPUT_DELAY_ATTR, delay+timeUnits.getNeuroML2Symbol());
-                                pulseGenElement.addAttribute(NetworkMLConstants.INPUT_DUR_ATTR, duration+timeUnits.getNeuroML2Symbol());
-                                pulseGenElement.addAttribute(NetworkMLConstants.INPUT_AMP_ATTR, amp+currentUnits.getNeuroML2Symbol());
+                if (!nml2)
+                {
+                    SimpleXMLElement inputTypeElement = new SimpleXMLElement(NetworkMLConstants.PULSEINPUT_INSTANCE_ELEMENT);
 
-                                topLevelCompElement.addContent("\n\n    ");
-                                topLevelCompElement.addChildElement(pulseGenElement);
-                                topLevelCompElement.addContent("\n\n    ");
+                    inputTypeElement.addAttribute(new SimpleXMLAttribute(NetworkMLConstants.INPUT_DELAY_ATTR,delay+""));
 
-                                String target = nextStim.getCellGroup()+"["+sei.getCellNumber()+"]";
-                                SimpleXMLElement expInputElement = new SimpleXMLElement(NetworkMLConstants.NEUROML2_EXP_INPUT_ELEMENT);
-                                expInputElement.addAttribute(NetworkMLConstants.NEUROML2_EXP_INPUT_TARGET_ATTR, target);
-                                expInputElement.addAttribute(NetworkMLConstants.NEUROML2_EXP_INPUT_INPUT_ATTR, inputReference+"__"+i);
+                    inputTypeElement.addAttribute(new SimpleXMLAttribute(NetworkMLConstants.INPUT_DUR_ATTR, duration+""));
 
-                                entities.add(expInputElement);
-                            }
-                        }
-                        else if (sei.getInstanceProps() instanceof RandomSpikeTrainInstanceProps)
-                        {
-                            RandomSpikeTrainInstanceProps rst = (RandomSpikeTrainInstanceProps)sei.getInstanceProps();
 
-                            float stimFreq = rst.getRate();
-                            //String stimMech = rst.get;
+                    //System.out.println("Converted "+amp+" to "+ a);
+                    inputTypeElement.addAttribute(new SimpleXMLAttribute(NetworkMLConstants.INPUT_AMP_ATTR, amp+""));
 
-                            SimpleXMLElement inputTypeElement = new SimpleXMLElement(NetworkMLConstants.RANDOMSTIM_INSTANCE_ELEMENT);
+                    inputTargetSiteElement.addContent("                    ");
+                    inputTargetSiteElement.addChildElement(inputTypeElement);
 
-                            inputTypeElement.addAttribute(new SimpleXMLAttribute(NetworkMLConstants.RND_STIM_FREQ_ATTR,
-                                    (float)UnitConverter.getRate(stimFreq, UnitConverter.NEUROCONSTRUCT_UNITS, unitSystem)+""));
+                    inputTargetSiteElement.addContent("\n                ");
+                }
+                else
+                {
+                    SimpleXMLElement pulseGenElement = new SimpleXMLElement(NetworkMLConstants.NEUROML2_PULSE_GEN_ELEMENT);
+                    pulseGenElement.addAttribute(NeuroMLConstants.NEUROML_ID_V2, inputReference+"__"+i);
+                    pulseGenElement.addAttribute(NetworkMLConstants.INPUT_DELAY_ATTR, delay+timeUnits.getNeuroML2Symbol());
+                    pulseGenElement.addAttribute(NetworkMLConstants.INPUT_DUR_ATTR, duration+timeUnits.getNeuroML2Symbol());
+                    pulseGenElement.addAttribute(NetworkMLConstants.INPUT_AMP_ATTR, amp+currentUnits.getNeuroML2Symbol());
+
+                    topLevelCompElement.addContent("\n\n    ");
+                    topLevelCompElement.addChildElement(pulseGenElement);
+                    topLevelCompElement.addContent("\n\n    ");
+
+                    String target = nextStim.getCellGroup()+"["+sei.getCellNumber()+"]";
+                    SimpleXMLElement expInputElement = new SimpleXMLElement(NetworkMLConstants.NEUROML2_EXP_INPUT_ELEMENT);
+                    expInputElement.addAttribute(NetworkMLConstants.NEUROML2_EXP_INPUT_TARGET_ATTR, target);
+                    expInputElement.addAttribute(NetworkMLConstants.NEUROML2_EXP_INPUT_INPUT_ATTR, inputReference+"__"+i);
+
+                    entities.add(expInputElement);
+                }
+            }
+            else if (sei.getInstanceProps() instanceof RandomSpikeTrainInstanceProps)
+            {
+                RandomSpikeTrainInstanceProps rst = (RandomSpikeTrainInstanceProps)sei.getInstanceProps();
 
-                            //inputTypeElement.addAttribute(new SimpleXMLAttribute(NetworkMLConstants.RND_STIM_MECH_ATTR, stimMech));
+                float stimFreq = rst.getRate();
+                //String stimMech = rst.get;
 
-                            inputTargetSiteElement.addContent("                    ");
-                            inputTargetSiteElement.addChildElement(inputTypeElement);
-                            inputTargetSiteElement.addContent("\n                ");
-                        }
-                        else
-                        {
-                            throw new NeuroMLException("Error trying to save input "+inputReference+". Cannot save in NeuroML an input of type: "+ myElectricalInput.getType());
+                SimpleXMLElement inputTypeElement = new SimpleXMLElement(NetworkMLConstants.RANDOMSTIM_INSTANCE_ELEMENT);
 
-                        }
-                    }
-                    else
-                    {
-                        if (nml2)
-                        {
-                            String target = nextStim.getCellGroup()+"["+sei.getCellNumber()+"]";
-                            SimpleXMLElement expInputElement = new SimpleXMLElement(NetworkMLConstants.NEUROML2_EXP_INPUT_ELEMENT);
-                            expInputElement.addAttribute(NetworkMLConstants.NEUROML2_EXP_INPUT_TARGET_ATTR, target);
-                            expInputElement.addAttribute(NetworkMLConstants.NEUROML2_EXP_INPUT_INPUT_ATTR, inputReference);
-
-                            entities.add(expInputElement);
-                        }
-                    }
+                inputTypeElement.addAttribute(new SimpleXMLAttribute(NetworkMLConstants.RND_STIM_FREQ_ATTR,
+                        (float)UnitConverter.getRate(stimFreq, UnitConverter.NEUROCONSTRUCT_UNITS, unitSystem)+""));
 
-                    if (i == inputsHere.size()-1) 
-                        inputTargetSitesElement.addContent("\n            ");
-                        
-                // Next Site
-                }                
-                inputTargetElement.addContent("\n        ");      
+                //inputTypeElement.addAttribute(new SimpleXMLAttribute(NetworkMLConstants.RND_STIM_MECH_ATTR, stimMech));
 
-                if (!nml2)
-                {
-                    inputsElement.addChildElement(inputElement);
-                    inputElement.addContent("\n    ");
-                }
-              
+                inputTargetSiteElement.addContent("                    ");
+                inputTargetSiteElement.addChildElement(inputTypeElement);
+                inputTargetSiteElement.addContent("\n                ");
             }
-            logger.logComment("Finished saving data to inputs element");
+            else
+            {
+                throw new NeuroMLException("Error trying to save input "+inputReference+". Cannot save in NeuroML an input of type: "+ myElectricalInput.getType());
 
+            }
         }
-
-        catch (Exception ex)
+        else
         {
-            throw new NeuroMLException("Problem creating inputs element file", ex);
+            if (nml2)
+            {
+                String target = nextStim.getCellGroup()+"["+sei.getCellNumber()+"]";
+                SimpleXMLElement expInputElement = new SimpleXMLElement(NetworkMLConstants.NEUROML2_EXP_INPUT_ELEMENT);
+                expInputElement.addAttribute(NetworkMLConstants.NEUROML2_EXP_INPUT_TARGET_ATTR, target);
+                expInputElement.addAttribute(NetworkMLConstants.NEUROML2_EXP_INPUT_INPUT_ATTR, inputReference);
+
+                entities.add(expInputElement);
+            }
         }
-        return entities;
 
+        return inputTargetSiteElement;
     }
-        
-        
+
+
     public String getHtmlReport()
     {    
         StringBuffer generationReport = new StringBuffer();
@@ -31,6 +31,7 @@ import ucl.physiol.neuroconstruct.utils.*;
 import java.util.*;
 import ucl.physiol.neuroconstruct.cell.*;
 import java.io.*;
+import java.lang.ref.SoftReference;
 import java.util.ArrayList;
 import ucl.physiol.neuroconstruct.utils.xml.*;
 import ucl.physiol.neuroconstruct.mechanisms.*;
@@ -55,8 +56,15 @@ public class GeneratedNetworkConnections
 {
     ClassLogger logger = new ClassLogger("GeneratedNetworkConnections");
 
-    private Hashtable<String, ArrayList<SingleSynapticConnection>> mySynapticConnectionVectors
-        = new Hashtable<String, ArrayList<SingleSynapticConnection>>();
+    private Hashtable<String, SynapticConnectionStore> mySynapticConnectionStores
+        = new Hashtable<String, SynapticConnectionStore>();
+
+    /*
+     * SingleSynapticConnection views of the stores, created only when the full list
+     * for a net conn is asked for, and freed again if memory runs short
+     */
+    private Hashtable<String, SoftReference<ArrayList<SingleSynapticConnection>>> connectionViewCache
+        = new Hashtable<String, SoftReference<ArrayList<SingleSynapticConnection>>>();
 
     public static final int MORPH_NETWORK_CONNECTION = 0;
     public static final int COMPLEX_NETWORK_CONNECTION = 1;
@@ -78,7 +86,8 @@ public class GeneratedNetworkConnections
     {
 
         logger.logComment("--------------------------------    Resetting: "+this.hashCode());
-        this.mySynapticConnectionVectors.clear();
+        this.mySynapticConnectionStores.clear();
+        this.connectionViewCache.clear();
     }
 
 
@@ -115,31 +124,112 @@ public class GeneratedNetworkConnections
                                       float apPropDelay,
                                       ArrayList<ConnSpecificProps> props)
     {
-        if (!mySynapticConnectionVectors.containsKey(netConnectionName))
+        SynapticConnectionStore store = getOrCreateStore(netConnectionName);
+
+        store.addConnection(connectionType,
+                            sourceCellNumber,
+                            sourceCellSegmentIndex,
+                            sourceCellDisplacement,
+                            targetCellNumber,
+                            targetCellSgmentIndex,
+                            targetCellDisplacement,
+                            apPropDelay,
+                            props);
+
+        logger.logComment("Adding new net conn: {}, type: {}", netConnectionName, connectionType);
+        logger.logComment("From src {}({}({})) to {}({}({})), props: {}",
+                          sourceCellNumber, sourceCellSegmentIndex, sourceCellDisplacement, targetCellNumber, targetCellSgmentIndex, targetCellDisplacement, props);
+        //logger.logComment("Current num syn conns: "+ getNumberSynapticConnections());
+    }
+
+
+    /**
+     * Adds a batch of connections to the net conn in one go. If the net conn has no connections
+     * yet, the batch itself is used as its store (so shouldn't be changed afterwards), otherwise
+     * the connections are copied onto the end of the existing store
+     */
+    public void addSynapticConnections(String netConnectionName, SynapticConnectionStore conns)
+    {
+        if (conns.isEmpty()) return;
+
+        SynapticConnectionStore store = null;
+
+        synchronized(this)
+        {
+            store = mySynapticConnectionStores.get(netConnectionName);
+            if (store == null)
+            {
+                mySynapticConnectionStores.put(netConnectionName, conns);
+            }
+        }
+        if (store != null)
+        {
+            store.addConnections(conns);
+        }
+
+        logger.logComment("Added {} connections to net conn: {}", conns.size(), netConnectionName);
+    }
+
+
+    private synchronized SynapticConnectionStore getOrCreateStore(String netConnectionName)
+    {
+        SynapticConnectionStore store = mySynapticConnectionStores.get(netConnectionName);
+        if (store == null)
         {
-            ArrayList<SingleSynapticConnection> newSynapticConnections = new ArrayList<SingleSynapticConnection>();
-            mySynapticConnectionVectors.put(netConnectionName,
-                                            newSynapticConnections);
+            store = new SynapticConnectionStore();
+            mySynapticConnectionStores.put(netConnectionName, store);
         }
-        ArrayList<SingleSynapticConnection> cellGroupSyns = mySynapticConnectionVectors.get(netConnectionName);
-
-        SingleSynapticConnection conn
-            = new SingleSynapticConnection(connectionType,
-                                           sourceCellNumber,
-                                           sourceCellSegmentIndex,
-                                           sourceCellDisplacement,
-                                           targetCellNumber,
-                                           targetCellSgmentIndex,
-                                           targetCellDisplacement,
-                                           apPropDelay,
-                                           props);
-
-
-        cellGroupSyns.add(conn);
-        logger.logComment("Adding new net conn: "+netConnectionName+", type: "+connectionType);
-        logger.logComment("From src " + sourceCellNumber +"("+sourceCellSegmentIndex+"("+sourceCellDisplacement+")) to "
-                +targetCellNumber+"("+targetCellSgmentIndex+"("+targetCellDisplacement+")), props: "+props);
-        //logger.logComment("Current num syn conns: "+ getNumberSynapticConnections());
+        return store;
+    }
+
+    /**
+     * Gets the columnar store holding all the connections of the net conn, or null if
+     * there are none yet. Preferable to getSynapticConnections() for large networks, as
+     * no per connection objects are created
+     */
+    public SynapticConnectionStore getConnectionStore(String netConnectionName)
+    {
+        return mySynapticConnectionStores.get(netConnectionName);
+    }
+
+    /**
+     * Number of connections generated for the net conn, without creating the full list
+     */
+    public int getNumberSynapticConnections(String netConnectionName)
+    {
+        SynapticConnectionStore store = mySynapticConnectionStores.get(netConnectionName);
+
+        if (store == null) return 0;
+
+        return store.size();
+    }
+
+    /**
+     * Creates a SingleSynapticConnection for a single entry in the store. Note: this
+     * is a copy of the stored values, so changes to it will not alter the network
+     */
+    private SingleSynapticConnection getConnectionView(SynapticConnectionStore store, int index)
+    {
+        return new SingleSynapticConnection(store.getConnectionType(index),
+                                            store.getSourceCellNumber(index),
+                                            store.getSourceSegmentId(index),
+                                            store.getSourceFractAlong(index),
+                                            store.getTargetCellNumber(index),
+                                            store.getTargetSegmentId(index),
+                                            store.getTargetFractAlong(index),
+                                            store.getApPropDelay(index),
+                                            store.getConnSpecificProps(index));
+    }
+
+    private ArrayList<SingleSynapticConnection> getConnectionViews(SynapticConnectionStore store, int[] indices)
+    {
+        ArrayList<SingleSynapticConnection> conns = new ArrayList<SingleSynapticConnection>(indices.length);
+
+        for (int index: indices)
+        {
+            conns.add(getConnectionView(store, index));
+        }
+        return conns;
     }
     
     /*
@@ -149,19 +239,17 @@ public class GeneratedNetworkConnections
      */
     public int[][] getConnectionMatrix(String netConnectionName, Project project)
     {
-        logger.logComment("Synaptic conn matrix sought for: #" + this.hashCode() + " out of my " +
-                          getNumberSynapticConnections(ANY_NETWORK_CONNECTION)
-                          + " net conns from " + mySynapticConnectionVectors.keySet());
+        logger.logComment("Synaptic conn matrix sought for: #{} out of my {} net conns from {}",
+                          this.hashCode(), getNumberSynapticConnections(ANY_NETWORK_CONNECTION), mySynapticConnectionStores.keySet());
         
 
-        if (!mySynapticConnectionVectors.containsKey(netConnectionName))
+        if (!mySynapticConnectionStores.containsKey(netConnectionName))
         {
             logger.logComment("No SingleSynapticConnections yet...");
             return null;
         }
         
-        ArrayList<SingleSynapticConnection> synapticConnectionVector
-            = mySynapticConnectionVectors.get(netConnectionName);
+        SynapticConnectionStore store = mySynapticConnectionStores.get(netConnectionName);
         
         String src = null;
         String tgt = null;
@@ -184,43 +272,66 @@ public class GeneratedNetworkConnections
        
         
         
-        for(SingleSynapticConnection conn: synapticConnectionVector)
+        for(int i = 0; i < store.size(); i++)
         {
-            mx[conn.sourceEndPoint.cellNumber][conn.targetEndPoint.cellNumber]++;
+            mx[store.getSourceCellNumber(i)][store.getTargetCellNumber(i)]++;
         }
 
-        logger.logComment(synapticConnectionVector.size()+ " SingleSynapticConnections so far...");
+        logger.logComment("{} SingleSynapticConnections so far...", store.size());
         
         return mx;
     }
 
 
+    /**
+     * Gets all the connections of the net conn. Note: the SingleSynapticConnections are
+     * views created on demand from the underlying SynapticConnectionStore, so for large
+     * networks getConnectionStore() should be used where possible. The list returned is
+     * a copy, so can be changed by the caller without affecting later calls
+     */
     public ArrayList<SingleSynapticConnection> getSynapticConnections(String netConnectionName)
     {
-        logger.logComment("SynapticConnections sought for: #" + this.hashCode() + " out of my " +
-                          getNumberSynapticConnections(ANY_NETWORK_CONNECTION)
-                          + " net conns from " + mySynapticConnectionVectors.keySet());
+        logger.logComment("SynapticConnections sought for: #{} out of my {} net conns from {}",
+                          this.hashCode(), getNumberSynapticConnections(ANY_NETWORK_CONNECTION), mySynapticConnectionStores.keySet());
 
         //System.out.println("Details: " + this.toString());
 
-        if (!mySynapticConnectionVectors.containsKey(netConnectionName))
+        SynapticConnectionStore store = mySynapticConnectionStores.get(netConnectionName);
+
+        if (store == null)
         {
             logger.logComment("No SingleSynapticConnections yet...");
             return new ArrayList<SingleSynapticConnection>();
         }
 
-        ArrayList<SingleSynapticConnection> synapticConnectionVector
-            = mySynapticConnectionVectors.get(netConnectionName);
+        ArrayList<SingleSynapticConnection> synapticConnectionVector = null;
+
+        SoftReference<ArrayList<SingleSynapticConnection>> ref = connectionViewCache.get(netConnectionName);
+        if (ref != null) synapticConnectionVector = ref.get();
+
+        if (synapticConnectionVector == null || synapticConnectionVector.size() > store.size())
+        {
+            synapticConnectionVector = new ArrayList<SingleSynapticConnection>(store.size());
+            connectionViewCache.put(netConnectionName,
+                                    new SoftReference<ArrayList<SingleSynapticConnection>>(synapticConnectionVector));
+        }
+
+        // Only connections added since the list was last asked for need views
+        for (int i = synapticConnectionVector.size(); i < store.size(); i++)
+        {
+            synapticConnectionVector.add(getConnectionView(store, i));
+        }
 
-        logger.logComment(synapticConnectionVector.size()+ " SingleSynapticConnections so far...");
+        logger.logComment("{} SingleSynapticConnections so far...", synapticConnectionVector.size());
 
-        return synapticConnectionVector;
+        // The cached list is shared between callers, so isn't handed out itself
+        return new ArrayList<SingleSynapticConnection>(synapticConnectionVector);
     }
 
 
     public Iterator<String> getNamesNetConnsIter()
     {
-        return mySynapticConnectionVectors.keySet().iterator();
+        return mySynapticConnectionStores.keySet().iterator();
     }
 
     public int getNumAllSynConns()
@@ -232,12 +343,12 @@ public class GeneratedNetworkConnections
     {
         int totalCount = 0;
 
-        Enumeration keys = mySynapticConnectionVectors.keys();
+        Enumeration<String> keys = mySynapticConnectionStores.keys();
 
         while(keys.hasMoreElements())
         {
-            ArrayList<SingleSynapticConnection> synConns = mySynapticConnectionVectors.get((String)keys.nextElement());
-            if (synConns.size()>0)
+            SynapticConnectionStore store = mySynapticConnectionStores.get(keys.nextElement());
+            if (store.size()>0)
                 totalCount++;
         }
         return totalCount;
@@ -248,13 +359,13 @@ public class GeneratedNetworkConnections
     {
         ArrayList<String> ncs = new ArrayList<String>();
 
-        Enumeration<String> keys = mySynapticConnectionVectors.keys();
+        Enumeration<String> keys = mySynapticConnectionStores.keys();
 
         while(keys.hasMoreElements())
         {
             String nc = keys.nextElement();
-            ArrayList<SingleSynapticConnection> synConns = mySynapticConnectionVectors.get(nc);
-            if (synConns.size()>0)
+            SynapticConnectionStore store = mySynapticConnectionStores.get(nc);
+            if (store.size()>0)
                 ncs.add(nc);
         }
         return ncs;
@@ -266,16 +377,16 @@ public class GeneratedNetworkConnections
         //logger.logComment("getNumberSynapticConnections sought for : "+this.hashCode());
         int totalCount = 0;
 
-        Enumeration keys = mySynapticConnectionVectors.keys();
+        Enumeration<String> keys = mySynapticConnectionStores.keys();
 
         while(keys.hasMoreElements())
         {
-            ArrayList<SingleSynapticConnection> synConns = mySynapticConnectionVectors.get((String)keys.nextElement());
+            SynapticConnectionStore store = mySynapticConnectionStores.get(keys.nextElement());
             if (connType == ANY_NETWORK_CONNECTION ||
-                (connType == MORPH_NETWORK_CONNECTION && (synConns.get(0).connectionType == connType)) ||
-                 (connType == VOL_NETWORK_CONNECTION && (synConns.get(0).connectionType == connType)))
+                (connType == MORPH_NETWORK_CONNECTION && (store.getConnectionType(0) == connType)) ||
+                 (connType == VOL_NETWORK_CONNECTION && (store.getConnectionType(0) == connType)))
             {
-                totalCount = totalCount + synConns.size();
+                totalCount = totalCount + store.size();
             }
         }
 
@@ -292,26 +403,17 @@ public class GeneratedNetworkConnections
      */
     public ArrayList<Integer> getTargetCellIndices(String netConnectionName, int sourceCellIndex, boolean uniqueValues)
     {
-        ArrayList<SingleSynapticConnection> synConns = getSynapticConnections(netConnectionName);
-
-        /** @todo Do this quicker with collections... */
         ArrayList<Integer> allIndices = new ArrayList<Integer>();
-        for (int i = 0; i < synConns.size(); i++)
+
+        SynapticConnectionStore store = mySynapticConnectionStores.get(netConnectionName);
+        if (store == null) return allIndices;
+
+        for (int i: store.getConnIndicesFromSource(sourceCellIndex))
         {
-            SingleSynapticConnection conn = synConns.get(i);
+            int targetCellIndex = store.getTargetCellNumber(i);
 
-            if (conn.sourceEndPoint.cellNumber==sourceCellIndex)
-            {
-                if (uniqueValues)
-                {
-                    if (!allIndices.contains(conn.targetEndPoint.cellNumber))
-                        allIndices.add(conn.targetEndPoint.cellNumber);
-                }
-                else
-                {
-                    allIndices.add(conn.targetEndPoint.cellNumber);
-                }
-            }
+            if (!uniqueValues || !allIndices.contains(targetCellIndex))
+                allIndices.add(targetCellIndex);
         }
         return allIndices;
     }
@@ -320,13 +422,10 @@ public class GeneratedNetworkConnections
                                int sourceCellIndex, 
                                int targetCellIndex)
     {
-        for (SingleSynapticConnection synConn: getSynapticConnections(netConnectionName))
-        {
-            if (synConn.sourceEndPoint.cellNumber==sourceCellIndex &&
-                synConn.targetEndPoint.cellNumber==targetCellIndex)
-                return true;
-        }
-        return false;
+        SynapticConnectionStore store = mySynapticConnectionStores.get(netConnectionName);
+        if (store == null) return false;
+
+        return store.areConnected(sourceCellIndex, targetCellIndex);
         
     }
     
@@ -367,42 +466,20 @@ public class GeneratedNetworkConnections
     public ArrayList<SingleSynapticConnection> getConnsFromSource(String netConnectionName,
                                                                   int sourceCellIndex)
     {
-        ArrayList<SingleSynapticConnection> synConns = getSynapticConnections(netConnectionName);
-
-        /** @todo Do this quicker with collections... */
-        ArrayList<SingleSynapticConnection> allConns = new ArrayList<SingleSynapticConnection> ();
-        for (int i = 0; i < synConns.size(); i++)
-        {
-            SingleSynapticConnection conn = synConns.get(i);
+        SynapticConnectionStore store = mySynapticConnectionStores.get(netConnectionName);
+        if (store == null) return new ArrayList<SingleSynapticConnection>();
 
-            if (conn.sourceEndPoint.cellNumber == sourceCellIndex)
-            {
-                    allConns.add(conn);
-
-            }
-        }
-        return allConns;
+        return getConnectionViews(store, store.getConnIndicesFromSource(sourceCellIndex));
     }
 
 
     public ArrayList<SingleSynapticConnection> getConnsToTarget(String netConnectionName,
                                                                   int targetCellIndex)
     {
-        ArrayList<SingleSynapticConnection> synConns = getSynapticConnections(netConnectionName);
+        SynapticConnectionStore store = mySynapticConnectionStores.get(netConnectionName);
+        if (store == null) return new ArrayList<SingleSynapticConnection>();
 
-        /** @todo Do this quicker with collections... */
-        ArrayList<SingleSynapticConnection> allConns = new ArrayList<SingleSynapticConnection> ();
-        for (int i = 0; i < synConns.size(); i++)
-        {
-            SingleSynapticConnection conn = synConns.get(i);
-
-            if (conn.targetEndPoint.cellNumber == targetCellIndex)
-            {
-                    allConns.add(conn);
-
-            }
-        }
-        return allConns;
+        return getConnectionViews(store, store.getConnIndicesToTarget(targetCellIndex));
     }
 
 
@@ -417,27 +494,17 @@ public class GeneratedNetworkConnections
      */
     public ArrayList<Integer> getSourceCellIndices(String netConnectionName, int targetCellIndex, boolean uniqueValues)
     {
-        ArrayList<SingleSynapticConnection> synConns = getSynapticConnections(netConnectionName);
-
-        /** @todo Do this quicker with collections... */
         ArrayList<Integer> allIndices = new ArrayList<Integer>();
-        for (int i = 0; i < synConns.size(); i++)
-        {
-            SingleSynapticConnection conn = synConns.get(i);
 
-            if (conn.targetEndPoint.cellNumber==targetCellIndex)
-            {
-                if (uniqueValues)
-                {
-                    if (!allIndices.contains(new Integer(conn.sourceEndPoint.cellNumber)))
-                        allIndices.add(new Integer(conn.sourceEndPoint.cellNumber));
-                }
-                else
-                {
-                    allIndices.add(new Integer(conn.sourceEndPoint.cellNumber));
-                }
+        SynapticConnectionStore store = mySynapticConnectionStores.get(netConnectionName);
+        if (store == null) return allIndices;
 
-            }
+        for (int i: store.getConnIndicesToTarget(targetCellIndex))
+        {
+            int sourceCellIndex = store.getSourceCellNumber(i);
+
+            if (!uniqueValues || !allIndices.contains(sourceCellIndex))
+                allIndices.add(sourceCellIndex);
         }
         return allIndices;
     }
@@ -453,14 +520,14 @@ public class GeneratedNetworkConnections
                 + getNumberSynapticConnections(ANY_NETWORK_CONNECTION) +
                   " positions in total\n");
 
-        Enumeration keys = mySynapticConnectionVectors.keys();
+        Enumeration<String> keys = mySynapticConnectionStores.keys();
 
         while (keys.hasMoreElements())
         {
-            String netConnName = (String) keys.nextElement();
-            ArrayList<SingleSynapticConnection> synConns = mySynapticConnectionVectors.get(netConnName);
-            sb.append(netConnName+" has "+synConns.size()
-                      + " entries. First: "+synConns.get(0)+"\n");
+            String netConnName = keys.nextElement();
+            SynapticConnectionStore store = mySynapticConnectionStores.get(netConnName);
+            sb.append(netConnName+" has "+store.size()
+                      + " entries. First: "+getConnectionView(store, 0)+"\n");
         }
         return sb.toString();
     }
@@ -481,13 +548,13 @@ public class GeneratedNetworkConnections
                 + GeneralUtils.getTabbedString(getNumberSynapticConnections(ANY_NETWORK_CONNECTION)+"", "b", html) +
                   " connections in total"+GeneralUtils.getEndLine(html)+GeneralUtils.getEndLine(html));
 
-        Enumeration keys = mySynapticConnectionVectors.keys();
+        Enumeration<String> keys = mySynapticConnectionStores.keys();
 
         while (keys.hasMoreElements())
         {
-            String netConnName = (String) keys.nextElement();
+            String netConnName = keys.nextElement();
             
-            ArrayList<SingleSynapticConnection> synConns = mySynapticConnectionVectors.get(netConnName);
+            SynapticConnectionStore store = mySynapticConnectionStores.get(netConnName);
             String src, tgt;
 
             if (project.morphNetworkConnectionsInfo.isValidSimpleNetConn(netConnName))
@@ -505,11 +572,11 @@ public class GeneratedNetworkConnections
             sb.append("Network Connection: "+ GeneralUtils.getBold(netConnName, html) + " "
                     + "("+ GeneralUtils.getBold(src, html) + " -> "+ GeneralUtils.getBold(tgt, html) + ") "
                     + "has "+
-                    GeneralUtils.getBold(synConns.size()+"", html) +" individual synaptic connections"+GeneralUtils.getEndLine(html));
+                    GeneralUtils.getBold(store.size()+"", html) +" individual synaptic connections"+GeneralUtils.getEndLine(html));
             
-            for (int i = 0; i < synConns.size(); i++)
+            for (int i = 0; i < store.size(); i++)
             {
-                sb.append("Connection "+i+": "+ synConns.get(i).details(html));
+                sb.append("Connection "+i+": "+ getConnectionView(store, i).details(html));
             }
             sb.append(GeneralUtils.getEndLine(html));
         }
@@ -528,18 +595,18 @@ public class GeneratedNetworkConnections
 
         FileWriter fw = new FileWriter(netConnFile);
 
-        Enumeration keys = mySynapticConnectionVectors.keys();
+        Enumeration<String> keys = mySynapticConnectionStores.keys();
 
         while (keys.hasMoreElements())
         {
-            String netConnName = (String) keys.nextElement();
-            ArrayList<SingleSynapticConnection> synConns = getSynapticConnections(netConnName);
+            String netConnName = keys.nextElement();
+            SynapticConnectionStore store = mySynapticConnectionStores.get(netConnName);
 
             fw.write(netConnName + ":\n");
 
-            for (int i = 0; i < synConns.size(); i++)
+            for (int i = 0; i < store.size(); i++)
             {
-                SingleSynapticConnection synConn = synConns.get(i);
+                SingleSynapticConnection synConn = getConnectionView(store, i);
                 fw.write(synConn + "\n");
 
             }
@@ -575,10 +642,10 @@ public class GeneratedNetworkConnections
             String src = null;
             String tgt = null;
 
-            ArrayList<SingleSynapticConnection> conns 
-                = project.generatedNetworkConnections.getSynapticConnections(netConnName);
+            SynapticConnectionStore store
+                = project.generatedNetworkConnections.getConnectionStore(netConnName);
 
-            if (! (conns.isEmpty()))
+            if (store!=null && !store.isEmpty())
             {
                 if (project.morphNetworkConnectionsInfo.isValidSimpleNetConn(netConnName))
                 {
@@ -606,20 +673,16 @@ public class GeneratedNetworkConnections
                 int numZeroWeight = 0;
                 int numNegWeight = 0;
 
-                for (SingleSynapticConnection conn : conns)
+                for (int i = 0; i < store.size(); i++)
                 {
-                    //logger.logComment(conn.toNiceString());
-                    numInEachSrcCell[conn.sourceEndPoint.cellNumber]++;
-                    numInEachTgtCell[conn.targetEndPoint.cellNumber]++;
+                    numInEachSrcCell[store.getSourceCellNumber(i)]++;
+                    numInEachTgtCell[store.getTargetCellNumber(i)]++;
 
-                    if (conn.props!=null && conn.props.size()>0)
+                    for (int p = 0; p < store.getNumConnSpecificProps(i); p++)
                     {
-                        for(ConnSpecificProps csp: conn.props)
-                        {
-                            if (csp.weight==0) numZeroWeight++;
-                            if (csp.weight<0) numNegWeight++;
-
-                        }
+                        float weight = store.getWeight(i, p);
+                        if (weight==0) numZeroWeight++;
+                        if (weight<0) numNegWeight++;
                     }
                 }
 
@@ -762,7 +825,7 @@ public class GeneratedNetworkConnections
 
                 generationReport.append("No. of conns: <b>"
                                         +
-                                        project.generatedNetworkConnections.getSynapticConnections(netConnName).size()
+                                        store.size()
                                         + weightReport+ "</b> (<font color=\"green\">" + srcAvg + srcStdString + " each</font> -> " +
                                         "<font color=\"red\">" + tgtAvg + tgtStdString + " each</font>)<br>");
                 
@@ -857,6 +920,20 @@ public class GeneratedNetworkConnections
     public ArrayList<SimpleXMLEntity> getNetworkMLElements(int unitSystem,
                                                 boolean extraComments,
                                                 NeuroMLVersion version) throws NeuroMLException
+    {
+        return getNetworkMLElements(unitSystem, extraComments, version, false);
+    }
+
+    /**
+     * Gets the entities for the projections. If streamed, the connection elements aren't created until
+     * the entities are written (see SimpleXMLEntitySequence), so the elements for all of the connections
+     * are never in memory at once. For NeuroML v2 the connections are then given as one sequence, with
+     * the spacing which would otherwise go between the entities included.
+     */
+    public ArrayList<SimpleXMLEntity> getNetworkMLElements(final int unitSystem,
+                                                final boolean extraComments,
+                                                NeuroMLVersion version,
+                                                final boolean streamed) throws NeuroMLException
     {
         ArrayList<SimpleXMLEntity> entities = new ArrayList<SimpleXMLEntity>();
         
@@ -873,10 +950,7 @@ public class GeneratedNetworkConnections
         SimpleXMLElement projectionsElement = null;
 
 
-        boolean nml2 = version.isVersion2();
-
-        String metadataPrefix = MetadataConstants.PREFIX + ":";
-        if (nml2) metadataPrefix = "";
+        final boolean nml2 = version.isVersion2();
 
         try
         {
@@ -889,12 +963,12 @@ public class GeneratedNetworkConnections
             else if (unitSystem == UnitConverter.GENESIS_SI_UNITS)
                 projectionsElement.addAttribute(new SimpleXMLAttribute(NetworkMLConstants.UNITS_ATTR, "SI Units"));
 
-            Enumeration keys = mySynapticConnectionVectors.keys();
+            Enumeration<String> keys = mySynapticConnectionStores.keys();
 
             while (keys.hasMoreElements())
             {
-                String netConnName = (String) keys.nextElement();
-                ArrayList<SingleSynapticConnection> synConns = getSynapticConnections(netConnName);
+                String netConnName = keys.nextElement();
+                SynapticConnectionStore store = mySynapticConnectionStores.get(netConnName);
 
                 String sourceCellGroup = null;
                 String targetCellGroup = null;
@@ -954,200 +1028,251 @@ public class GeneratedNetworkConnections
                 SimpleXMLElement connsElement = new SimpleXMLElement(NetworkMLConstants.CONNECTIONS_ELEMENT);
                 projectionElement.addChildElement(connsElement);
 
-                connsElement.addAttribute(NetworkMLConstants.CONNECTIONS_SIZE_ATTR, ""+synConns.size());
+                connsElement.addAttribute(NetworkMLConstants.CONNECTIONS_SIZE_ATTR, ""+store.size());
 
-                int id = 0;
+                final SynapticConnectionStore connStore = store;
+                final String source = sourceCellGroup;
+                final String target = targetCellGroup;
+                final Vector<SynapticProperties> synPropList = globalSynPropList;
 
-                for(SingleSynapticConnection synConn: synConns)
+                SimpleXMLEntitySequence connections = new SimpleXMLEntitySequence(store.size())
                 {
-                    if (nml2)
+                    protected void addEntities(int connIndex, ArrayList<SimpleXMLEntity> connEntities)
+                    {
+                        addConnectionEntities(connStore, connIndex, source, target, synPropList,
+                                              unitSystem, extraComments, nml2, nml2 && streamed, connEntities);
+                    }
+                };
+
+                if (nml2)
+                {
+                    if (streamed)
+                    {
+                        entities.add(connections);
+                    }
+                    else
                     {
-                        for (SynapticProperties synProps:  globalSynPropList)
+                        for (SimpleXMLEntity connEntity: connections)
                         {
-                            SimpleXMLElement connElement = new SimpleXMLElement(NetworkMLConstants.NEUROML2_EXP_CONN_ELEMENT);
-                            entities.add(connElement);
+                            entities.add(connEntity);
+                        }
+                    }
+                }
+                else if (streamed)
+                {
+                    connsElement.addSequence(connections);
+                }
+                else
+                {
+                    connsElement.addEntities(connections);
+                }
 
-                            connElement.addAttribute(NetworkMLConstants.NEUROML2_EXP_CONN_FROM_ATTR,
-                                    sourceCellGroup+"["+synConn.sourceEndPoint.cellNumber+"]");
-                            connElement.addAttribute(NetworkMLConstants.NEUROML2_EXP_CONN_TO_ATTR,
-                                    targetCellGroup+"["+synConn.targetEndPoint.cellNumber+"]");
-                            connElement.addAttribute(NetworkMLConstants.NEUROML2_EXP_CONN_SYN_ATTR,
-                                    synProps.getSynapseType());
+                if (!nml2) projectionsElement.addChildElement(projectionElement);
+            }
+            logger.logComment("Finished saving data to projs element");
 
-                            /*if (synConn.props!=null && synConn.props.size()>0)
-                            {
-                                for (ConnSpecificProps prop:synConn.props)
-                                {
+        }
 
-                                    connElement.addAttribute(new SimpleXMLAttribute(NetworkMLConstants.NEUROML2_EXP_CONN_DELAY_ATTR,
-                                            (float)UnitConverter.getTime((synConn.apPropDelay+prop.internalDelay), UnitConverter.NEUROCONSTRUCT_UNITS,UnitConverter.GENESIS_PHYSIOLOGICAL_UNITS) + "ms"));
+        catch (Exception ex)
+        {
+            throw new NeuroMLException("Problem creating prjections element file", ex);
+        }
 
+        return entities;
 
-                                    connElement.addAttribute(new SimpleXMLAttribute(NetworkMLConstants.NEUROML2_EXP_CONN_WEIGHT_ATTR, prop.weight+""));
-                                }
-                            }*/
-                        }
-                    }
-                    else
-                    {
+    }
 
-                        SimpleXMLElement connElement = new SimpleXMLElement(NetworkMLConstants.CONNECTION_ELEMENT);
 
-                        connElement.addAttribute(new SimpleXMLAttribute(NetworkMLConstants.CONNECTION_ID_ATTR, id+""));
 
-                        id++;
+    /*
+     * Adds the element(s) for the connection: one connection element for NeuroML v1, or one element per
+     * synapse type for v2, each preceded by the spacing between top level entities if separated is true
+     */
+    private void addConnectionEntities(SynapticConnectionStore store,
+                                       int connIndex,
+                                       String sourceCellGroup,
+                                       String targetCellGroup,
+                                       Vector<SynapticProperties> globalSynPropList,
+                                       int unitSystem,
+                                       boolean extraComments,
+                                       boolean nml2,
+                                       boolean separated,
+                                       ArrayList<SimpleXMLEntity> entities)
+    {
+        String metadataPrefix = MetadataConstants.PREFIX + ":";
+        if (nml2) metadataPrefix = "";
 
-                        if (extraComments)
-                        {
-                            Point3f sourceSynLoc = CellTopologyHelper.getAbsolutePosSegLoc(project,
-                                                                                           sourceCellGroup,
-                                                                                           synConn.sourceEndPoint.cellNumber,
-                                                                                           synConn.sourceEndPoint.location);
+        SingleSynapticConnection synConn = getConnectionView(store, connIndex);
 
-                            Point3f tgtSynLoc = CellTopologyHelper.getAbsolutePosSegLoc(project,
-                                                                                        targetCellGroup,
-                                                                                        synConn.targetEndPoint.cellNumber,
-                                                                                        synConn.targetEndPoint.location);
+        if (nml2)
+        {
+            for (SynapticProperties synProps:  globalSynPropList)
+            {
+                SimpleXMLElement connElement = new SimpleXMLElement(NetworkMLConstants.NEUROML2_EXP_CONN_ELEMENT);
+                if (separated) entities.add(new SimpleXMLContent("\n\n        "));
+                entities.add(connElement);
+
+                connElement.addAttribute(NetworkMLConstants.NEUROML2_EXP_CONN_FROM_ATTR,
+                        sourceCellGroup+"["+synConn.sourceEndPoint.cellNumber+"]");
+                connElement.addAttribute(NetworkMLConstants.NEUROML2_EXP_CONN_TO_ATTR,
+                        targetCellGroup+"["+synConn.targetEndPoint.cellNumber+"]");
+                connElement.addAttribute(NetworkMLConstants.NEUROML2_EXP_CONN_SYN_ATTR,
+                        synProps.getSynapseType());
+
+                /*if (synConn.props!=null && synConn.props.size()>0)
+                {
+                    for (ConnSpecificProps prop:synConn.props)
+                    {
 
-                            float dist = tgtSynLoc.distance(sourceSynLoc);
+                        connElement.addAttribute(new SimpleXMLAttribute(NetworkMLConstants.NEUROML2_EXP_CONN_DELAY_ATTR,
+                                (float)UnitConverter.getTime((synConn.apPropDelay+prop.internalDelay), UnitConverter.NEUROCONSTRUCT_UNITS,UnitConverter.GENESIS_PHYSIOLOGICAL_UNITS) + "ms"));
 
-                            String info = "\nSource synaptic location: "+ sourceSynLoc+"\n"+
-                                "Target synaptic location: "+ tgtSynLoc+"\n"+
-                                "Separation: "+ dist;
 
+                        connElement.addAttribute(new SimpleXMLAttribute(NetworkMLConstants.NEUROML2_EXP_CONN_WEIGHT_ATTR, prop.weight+""));
+                    }
+                }*/
+            }
+        }
+        else
+        {
 
-                            SimpleXMLElement noteElement = new SimpleXMLElement(metadataPrefix + MetadataConstants.NOTES_ELEMENT);
-                            noteElement.addContent(info);
-                            connElement.addChildElement(noteElement);
+            SimpleXMLElement connElement = new SimpleXMLElement(NetworkMLConstants.CONNECTION_ELEMENT);
 
-                        }
+            connElement.addAttribute(new SimpleXMLAttribute(NetworkMLConstants.CONNECTION_ID_ATTR, connIndex+""));
 
-                        //boolean prev171format = false; // Not fully supported for all changes...
-                        if (false)//prev171format)
-                        {
-                            SimpleXMLElement preElement = new SimpleXMLElement(NetworkMLConstants.PRE_CONN_ELEMENT);
-                            preElement.addAttribute(new SimpleXMLAttribute(NetworkMLConstants.CELL_ID_ATTR, synConn.sourceEndPoint.cellNumber+""));
-                            preElement.addAttribute(new SimpleXMLAttribute(NetworkMLConstants.SEGMENT_ID_ATTR, synConn.sourceEndPoint.location.getSegmentId()+""));
+            if (extraComments)
+            {
+                Point3f sourceSynLoc = CellTopologyHelper.getAbsolutePosSegLoc(project,
+                                                                               sourceCellGroup,
+                                                                               synConn.sourceEndPoint.cellNumber,
+                                                                               synConn.sourceEndPoint.location);
 
-                            if (synConn.sourceEndPoint.location.getFractAlong()!=SegmentLocation.DEFAULT_FRACT_CONN)
-                            {
-                                preElement.addAttribute(new SimpleXMLAttribute(NetworkMLConstants.FRACT_ALONG_ATTR,
-                                                                                synConn.sourceEndPoint.location.getFractAlong()+""));
-                            }
+                Point3f tgtSynLoc = CellTopologyHelper.getAbsolutePosSegLoc(project,
+                                                                            targetCellGroup,
+                                                                            synConn.targetEndPoint.cellNumber,
+                                                                            synConn.targetEndPoint.location);
 
-                            SimpleXMLElement postElement = new SimpleXMLElement(NetworkMLConstants.POST_CONN_ELEMENT);
-                            postElement.addAttribute(new SimpleXMLAttribute(NetworkMLConstants.CELL_ID_ATTR, synConn.targetEndPoint.cellNumber+""));
-                            postElement.addAttribute(new SimpleXMLAttribute(NetworkMLConstants.SEGMENT_ID_ATTR, synConn.targetEndPoint.location.getSegmentId()+""));
+                float dist = tgtSynLoc.distance(sourceSynLoc);
 
-                            if (synConn.targetEndPoint.location.getFractAlong()!=SegmentLocation.DEFAULT_FRACT_CONN)
-                            {
-                                postElement.addAttribute(new SimpleXMLAttribute(NetworkMLConstants.FRACT_ALONG_ATTR,
-                                                                                synConn.targetEndPoint.location.getFractAlong() + ""));
-                            }
+                String info = "\nSource synaptic location: "+ sourceSynLoc+"\n"+
+                    "Target synaptic location: "+ tgtSynLoc+"\n"+
+                    "Separation: "+ dist;
 
-                            connElement.addContent("\n                ");
-                            connElement.addChildElement(preElement);
-                            connElement.addContent("\n                ");
-                            connElement.addChildElement(postElement);
-                        }
-                        else
-                        {
-                            connElement.addAttribute(new SimpleXMLAttribute(NetworkMLConstants.PRE_CELL_ID_ATTR, synConn.sourceEndPoint.cellNumber+""));
 
-                            if (synConn.sourceEndPoint.location.getSegmentId()!=0)
-                            {
-                                connElement.addAttribute(new SimpleXMLAttribute(NetworkMLConstants.PRE_SEGMENT_ID_ATTR, synConn.sourceEndPoint.location.getSegmentId()+""));
-                            }
+                SimpleXMLElement noteElement = new SimpleXMLElement(metadataPrefix + MetadataConstants.NOTES_ELEMENT);
+                noteElement.addContent(info);
+                connElement.addChildElement(noteElement);
 
-                            if (synConn.sourceEndPoint.location.getFractAlong()!=SegmentLocation.DEFAULT_FRACT_CONN)
-                            {
-                                connElement.addAttribute(new SimpleXMLAttribute(NetworkMLConstants.PRE_FRACT_ALONG_ATTR,
-                                                                                synConn.sourceEndPoint.location.getFractAlong()+""));
-                            }
+            }
 
-                            connElement.addAttribute(new SimpleXMLAttribute(NetworkMLConstants.POST_CELL_ID_ATTR, synConn.targetEndPoint.cellNumber+""));
+            //boolean prev171format = false; // Not fully supported for all changes...
+            if (false)//prev171format)
+            {
+                SimpleXMLElement preElement = new SimpleXMLElement(NetworkMLConstants.PRE_CONN_ELEMENT);
+                preElement.addAttribute(new SimpleXMLAttribute(NetworkMLConstants.CELL_ID_ATTR, synConn.sourceEndPoint.cellNumber+""));
+                preElement.addAttribute(new SimpleXMLAttribute(NetworkMLConstants.SEGMENT_ID_ATTR, synConn.sourceEndPoint.location.getSegmentId()+""));
 
-                            if (synConn.targetEndPoint.location.getSegmentId()!=0)
-                            {
-                                connElement.addAttribute(new SimpleXMLAttribute(NetworkMLConstants.POST_SEGMENT_ID_ATTR, synConn.targetEndPoint.location.getSegmentId()+""));
-                            }
+                if (synConn.sourceEndPoint.location.getFractAlong()!=SegmentLocation.DEFAULT_FRACT_CONN)
+                {
+                    preElement.addAttribute(new SimpleXMLAttribute(NetworkMLConstants.FRACT_ALONG_ATTR,
+                                                                    synConn.sourceEndPoint.location.getFractAlong()+""));
+                }
 
-                            if (synConn.targetEndPoint.location.getFractAlong()!=SegmentLocation.DEFAULT_FRACT_CONN)
-                            {
-                                connElement.addAttribute(new SimpleXMLAttribute(NetworkMLConstants.POST_FRACT_ALONG_ATTR,
-                                                                                synConn.targetEndPoint.location.getFractAlong() + ""));
-                            }
-                        }
+                SimpleXMLElement postElement = new SimpleXMLElement(NetworkMLConstants.POST_CONN_ELEMENT);
+                postElement.addAttribute(new SimpleXMLAttribute(NetworkMLConstants.CELL_ID_ATTR, synConn.targetEndPoint.cellNumber+""));
+                postElement.addAttribute(new SimpleXMLAttribute(NetworkMLConstants.SEGMENT_ID_ATTR, synConn.targetEndPoint.location.getSegmentId()+""));
 
-                        //UnitConverter.getTime(XXX, UnitConverter.NEUROCONSTRUCT_UNITS,unitSystem)
+                if (synConn.targetEndPoint.location.getFractAlong()!=SegmentLocation.DEFAULT_FRACT_CONN)
+                {
+                    postElement.addAttribute(new SimpleXMLAttribute(NetworkMLConstants.FRACT_ALONG_ATTR,
+                                                                    synConn.targetEndPoint.location.getFractAlong() + ""));
+                }
 
-                        if (synConn.props!=null && synConn.props.size()>0)
-                        {
-                            for (ConnSpecificProps prop:synConn.props)
-                            {
-                                SimpleXMLElement propElement = new SimpleXMLElement(NetworkMLConstants.CONN_PROP_ELEMENT);
-                                connElement.addContent("\n                ");
-                                connElement.addChildElement(propElement);
+                connElement.addContent("\n                ");
+                connElement.addChildElement(preElement);
+                connElement.addContent("\n                ");
+                connElement.addChildElement(postElement);
+            }
+            else
+            {
+                connElement.addAttribute(new SimpleXMLAttribute(NetworkMLConstants.PRE_CELL_ID_ATTR, synConn.sourceEndPoint.cellNumber+""));
 
-                                if (globalSynPropList.size()>1)
-                                {
-                                    /** @todo Clean up... */
-                                    propElement.addAttribute(new SimpleXMLAttribute(NetworkMLConstants.SYN_TYPE_ATTR, prop.synapseType));
+                if (synConn.sourceEndPoint.location.getSegmentId()!=0)
+                {
+                    connElement.addAttribute(new SimpleXMLAttribute(NetworkMLConstants.PRE_SEGMENT_ID_ATTR, synConn.sourceEndPoint.location.getSegmentId()+""));
+                }
 
-                                }
-                                propElement.addAttribute(new SimpleXMLAttribute(NetworkMLConstants.PROP_DELAY_ATTR,
-                                        (float)UnitConverter.getTime(synConn.apPropDelay, UnitConverter.NEUROCONSTRUCT_UNITS,unitSystem) + ""));
+                if (synConn.sourceEndPoint.location.getFractAlong()!=SegmentLocation.DEFAULT_FRACT_CONN)
+                {
+                    connElement.addAttribute(new SimpleXMLAttribute(NetworkMLConstants.PRE_FRACT_ALONG_ATTR,
+                                                                    synConn.sourceEndPoint.location.getFractAlong()+""));
+                }
 
-                                //System.out.println("..."+prop.internalDelay);
-                                //System.out.println("..."+(float)UnitConverter.getTime(prop.internalDelay, UnitConverter.NEUROCONSTRUCT_UNITS,unitSystem));
+                connElement.addAttribute(new SimpleXMLAttribute(NetworkMLConstants.POST_CELL_ID_ATTR, synConn.targetEndPoint.cellNumber+""));
 
-                                propElement.addAttribute(new SimpleXMLAttribute(NetworkMLConstants.INTERNAL_DELAY_ATTR,
-                                        (float)UnitConverter.getTime(prop.internalDelay, UnitConverter.NEUROCONSTRUCT_UNITS,unitSystem)+""));
+                if (synConn.targetEndPoint.location.getSegmentId()!=0)
+                {
+                    connElement.addAttribute(new SimpleXMLAttribute(NetworkMLConstants.POST_SEGMENT_ID_ATTR, synConn.targetEndPoint.location.getSegmentId()+""));
+                }
 
-                                propElement.addAttribute(new SimpleXMLAttribute(NetworkMLConstants.WEIGHT_ATTR, prop.weight+""));
-                            }
-                        }
-                        else
-                        {
-                            if (synConn.apPropDelay>0)
-                            {
-                                SimpleXMLElement propElement = new SimpleXMLElement(NetworkMLConstants.CONN_PROP_ELEMENT);
-                                connElement.addContent("\n                ");
-                                connElement.addChildElement(propElement);
+                if (synConn.targetEndPoint.location.getFractAlong()!=SegmentLocation.DEFAULT_FRACT_CONN)
+                {
+                    connElement.addAttribute(new SimpleXMLAttribute(NetworkMLConstants.POST_FRACT_ALONG_ATTR,
+                                                                    synConn.targetEndPoint.location.getFractAlong() + ""));
+                }
+            }
 
-                                propElement.addAttribute(new SimpleXMLAttribute(NetworkMLConstants.PROP_DELAY_ATTR,
-                                    (float)UnitConverter.getTime(synConn.apPropDelay, UnitConverter.NEUROCONSTRUCT_UNITS,unitSystem) + ""));
-                            }
-                        }
+            //UnitConverter.getTime(XXX, UnitConverter.NEUROCONSTRUCT_UNITS,unitSystem)
 
-                        connElement.addContent("\n            ");
+            if (synConn.props!=null && synConn.props.size()>0)
+            {
+                for (ConnSpecificProps prop:synConn.props)
+                {
+                    SimpleXMLElement propElement = new SimpleXMLElement(NetworkMLConstants.CONN_PROP_ELEMENT);
+                    connElement.addContent("\n                ");
+                    connElement.addChildElement(propElement);
+
+                    if (globalSynPropList.size()>1)
+                    {
+                        /** @todo Clean up... */
+                        propElement.addAttribute(new SimpleXMLAttribute(NetworkMLConstants.SYN_TYPE_ATTR, prop.synapseType));
 
-                        connsElement.addChildElement(connElement);
                     }
+                    propElement.addAttribute(new SimpleXMLAttribute(NetworkMLConstants.PROP_DELAY_ATTR,
+                            (float)UnitConverter.getTime(synConn.apPropDelay, UnitConverter.NEUROCONSTRUCT_UNITS,unitSystem) + ""));
+
+                    //System.out.println("..."+prop.internalDelay);
+                    //System.out.println("..."+(float)UnitConverter.getTime(prop.internalDelay, UnitConverter.NEUROCONSTRUCT_UNITS,unitSystem));
+
+                    propElement.addAttribute(new SimpleXMLAttribute(NetworkMLConstants.INTERNAL_DELAY_ATTR,
+                            (float)UnitConverter.getTime(prop.internalDelay, UnitConverter.NEUROCONSTRUCT_UNITS,unitSystem)+""));
+
+                    propElement.addAttribute(new SimpleXMLAttribute(NetworkMLConstants.WEIGHT_ATTR, prop.weight+""));
                 }
+            }
+            else
+            {
+                if (synConn.apPropDelay>0)
+                {
+                    SimpleXMLElement propElement = new SimpleXMLElement(NetworkMLConstants.CONN_PROP_ELEMENT);
+                    connElement.addContent("\n                ");
+                    connElement.addChildElement(propElement);
 
-                if (!nml2) projectionsElement.addChildElement(projectionElement);
+                    propElement.addAttribute(new SimpleXMLAttribute(NetworkMLConstants.PROP_DELAY_ATTR,
+                        (float)UnitConverter.getTime(synConn.apPropDelay, UnitConverter.NEUROCONSTRUCT_UNITS,unitSystem) + ""));
+                }
             }
-            logger.logComment("Finished saving data to projs element");
 
-        }
+            connElement.addContent("\n            ");
 
-        catch (Exception ex)
-        {
-            throw new NeuroMLException("Problem creating prjections element file", ex);
+            entities.add(connElement);
         }
-
-        return entities;
-
     }
 
 
-
     /**
      * Gets all PostSynapticObjects for the specified synapse on the segment
      *
-     * @todo probably not the most efficient implementation of this...
-     *
      * @param netConnName String The NetConn
      * @param synapseType String Which of possible multiple synapse types to pick
      * @param cellNumber number of cell in cell group
@@ -1158,19 +1283,16 @@ public class GeneratedNetworkConnections
     {
         ArrayList<PostSynapticObject> objNames = new ArrayList<PostSynapticObject>();
 
-        ArrayList<SingleSynapticConnection> allConns = project.generatedNetworkConnections.getSynapticConnections(netConnName);
+        SynapticConnectionStore store = project.generatedNetworkConnections.getConnectionStore(netConnName);
 
-        for (int singleConnIndex=0; singleConnIndex<allConns.size(); singleConnIndex++)
-        {
-            SingleSynapticConnection synConn = allConns.get(singleConnIndex);
+        if (store == null) return objNames;
 
-            if (synConn.targetEndPoint.cellNumber == cellNumber)
+        for (int singleConnIndex: store.getConnIndicesToTarget(cellNumber))
+        {
+            if (segmentId == -1 || store.getTargetSegmentId(singleConnIndex) == segmentId)
             {
-                if (segmentId == -1 || synConn.targetEndPoint.location.getSegmentId() == segmentId)
-                {
-                    PostSynapticObject object = new PostSynapticObject(netConnName, synapseType, cellNumber, segmentId, singleConnIndex);
-                    objNames.add(object);
-                }
+                PostSynapticObject object = new PostSynapticObject(netConnName, synapseType, cellNumber, segmentId, singleConnIndex);
+                objNames.add(object);
             }
         }
 
@@ -0,0 +1,491 @@
+/**
+ *  neuroConstruct
+ *  Software for developing large scale 3D networks of biologically realistic neurons
+ *
+ *  Copyright (c) 2009 Padraig Gleeson
+ *  UCL Department of Neuroscience, Physiology and Pharmacology
+ *
+ *  Development of this software was made possible with funding from the
+ *  Medical Research Council and the Wellcome Trust
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+
+package ucl.physiol.neuroconstruct.project;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import ucl.physiol.neuroconstruct.utils.*;
+
+/**
+ * Runs the stages of network generation (cell positions, connections, inputs, etc.) on a shared
+ * pool of threads, starting each stage as soon as the stages it depends on have finished, so that
+ * independent stages run at the same time. Generation reports are passed on to the GenerationReport
+ * in the order the stages were added, whatever order they finish in. If a stage is interrupted,
+ * fails or is stopped, the stages which haven't started yet are skipped.
+ *
+ * @author Padraig Gleeson
+ *
+ */
+
+public class GenerationScheduler
+{
+    private static ClassLogger logger = new ClassLogger("GenerationScheduler");
+
+    private static final String INTERRUPTED_NOTE = "Generation interrupted";
+
+    private static ExecutorService executor = null;
+
+    private final GenerationReport reportInterface;
+
+    private final ArrayList<Stage> stages = new ArrayList<Stage>();
+
+    private boolean started = false;
+    private volatile boolean stopped = false;
+
+    private int numUnfinished = 0;
+    private int nextStageToReport = 0;
+
+    private long startTime = -1;
+    private long endTime = -1;
+
+    /*
+     * Held while passing on reports & updates, so the GenerationReport only gets one call at a time
+     */
+    private final Object reportLock = new Object();
+
+
+    /**
+     * @param reportInterface Where the updates & reports of all the stages are passed on to
+     */
+    public GenerationScheduler(GenerationReport reportInterface)
+    {
+        this.reportInterface = reportInterface;
+    }
+
+    private static synchronized ExecutorService getExecutor()
+    {
+        if (executor == null)
+        {
+            executor = ThreadPools.newDaemonCachedThreadPool("GenerationStage");
+        }
+        return executor;
+    }
+
+    /**
+     * Adds a stage, which will be started when all of its dependencies have finished
+     */
+    public synchronized Stage addStage(Stage stage)
+    {
+        if (started)
+            throw new IllegalStateException("Stages can't be added after the scheduler has started");
+
+        for (Stage dependency: stage.dependencies)
+        {
+            if (!stages.contains(dependency))
+                throw new IllegalArgumentException("Stage " + stage.name + " depends on "
+                                                   + dependency.name + ", which hasn't been added");
+            dependency.dependents.add(stage);
+        }
+        stage.unfinishedDependencies = stage.dependencies.length;
+        stages.add(stage);
+        numUnfinished++;
+
+        return stage;
+    }
+
+    public synchronized void start()
+    {
+        if (started) return;
+
+        started = true;
+        startTime = System.currentTimeMillis();
+
+        logger.logComment("Starting generation of stages: " + stages);
+
+        if (stages.isEmpty())
+        {
+            endTime = startTime;
+            notifyAll();
+            return;
+        }
+
+        for (Stage stage: stages)
+        {
+            if (stage.unfinishedDependencies == 0)
+                submit(stage);
+        }
+    }
+
+    private void submit(final Stage stage)
+    {
+        getExecutor().execute(new Runnable()
+        {
+            public void run()
+            {
+                runStage(stage);
+            }
+        });
+    }
+
+    private void runStage(Stage stage)
+    {
+        boolean completed = false;
+
+        if (!stopped)
+        {
+            synchronized(this)
+            {
+                stage.startTime = System.currentTimeMillis();
+                stage.running = true;
+            }
+            logger.logComment("Starting stage: " + stage.name);
+
+            if (stage.ownRandomStream)
+            {
+                ProjectManager.setThreadRandomGenerator(ProjectManager.createRandomStream(stage.name, 0));
+            }
+            try
+            {
+                stage.generate(new StageReport(stage));
+
+                completed = stage.wasSuccessful(stage.report);
+            }
+            catch (Throwable t)
+            {
+                GuiUtils.showErrorMessage(logger, "Error when generating: " + stage.name, t, null);
+            }
+            finally
+            {
+                if (stage.ownRandomStream) ProjectManager.clearThreadRandomGenerator();
+            }
+        }
+        stageFinished(stage, completed);
+    }
+
+    private void stageFinished(Stage stage, boolean completed)
+    {
+        ArrayList<Stage> readyStages = new ArrayList<Stage>();
+
+        synchronized(this)
+        {
+            stage.running = false;
+            stage.finished = true;
+            stage.completed = completed;
+
+            if (stage.startTime >= 0)
+                stage.endTime = System.currentTimeMillis();
+
+            if (!completed && !stopped)
+            {
+                logger.logComment("Stage: " + stage.name + " didn't complete, so stopping the stages after it");
+                stopAll();
+            }
+
+            for (Stage dependent: stage.dependents)
+            {
+                dependent.unfinishedDependencies--;
+                if (dependent.unfinishedDependencies == 0)
+                    readyStages.add(dependent);
+            }
+        }
+
+        for (Stage readyStage: readyStages)
+        {
+            submit(readyStage);
+        }
+
+        passOnReports();
+
+        synchronized(this)
+        {
+            numUnfinished--;
+
+            if (numUnfinished == 0)
+            {
+                endTime = System.currentTimeMillis();
+                logger.logComment(getTimingReport());
+                notifyAll();
+            }
+        }
+    }
+
+    /*
+     * Passes on the reports of all finished stages up to the first unfinished one
+     */
+    private void passOnReports()
+    {
+        synchronized(reportLock)
+        {
+            ArrayList<Stage> toReport = new ArrayList<Stage>();
+
+            synchronized(this)
+            {
+                while (nextStageToReport < stages.size() && stages.get(nextStageToReport).finished)
+                {
+                    toReport.add(stages.get(nextStageToReport));
+                    nextStageToReport++;
+                }
+            }
+
+            for (Stage stage: toReport)
+            {
+                if (stage.report != null && reportInterface != null)
+                {
+                    reportInterface.giveGenerationReport(stage.report, stage.reportGeneratorType, stage.reportSimConfig);
+                }
+            }
+        }
+    }
+
+    /**
+     * Tells the running stages to stop and skips any not yet started
+     */
+    public synchronized void stopGeneration()
+    {
+        logger.logComment("Stopping generation...");
+        stopAll();
+    }
+
+    private void stopAll()
+    {
+        stopped = true;
+
+        for (Stage stage: stages)
+        {
+            stage.stopRequested = true;
+            if (stage.running) stage.stopGeneration();
+        }
+    }
+
+    public boolean isStopped()
+    {
+        return stopped;
+    }
+
+    public synchronized boolean isFinished()
+    {
+        return started && numUnfinished == 0;
+    }
+
+    /**
+     * True if every stage ran to completion
+     */
+    public synchronized boolean isCompleted()
+    {
+        if (!isFinished()) return false;
+
+        for (Stage stage: stages)
+        {
+            if (!stage.completed) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Waits until all the stages have finished or been skipped
+     */
+    public synchronized void waitForCompletion() throws InterruptedException
+    {
+        while (!isFinished())
+        {
+            wait();
+        }
+    }
+
+    public synchronized List<Stage> getStages()
+    {
+        return new ArrayList<Stage>(stages);
+    }
+
+    /**
+     * Time from starting the scheduler until the last stage finished (or until now, if still running)
+     */
+    public synchronized long getElapsedMillis()
+    {
+        if (startTime < 0) return 0;
+        if (endTime < 0) return System.currentTimeMillis() - startTime;
+        return endTime - startTime;
+    }
+
+    public synchronized String getTimingReport()
+    {
+        StringBuilder sb = new StringBuilder("Generation stages (total time: "
+                                             + (getElapsedMillis() / 1000f) + " seconds):\n");
+        for (Stage stage: stages)
+        {
+            sb.append("    " + stage.name + ": ");
+
+            if (stage.startTime < 0)
+            {
+                sb.append(stage.finished ? "skipped" : "waiting");
+            }
+            else
+            {
+                sb.append("started after " + ((stage.startTime - startTime) / 1000f) + " s, ");
+
+                if (stage.endTime < 0)
+                    sb.append("running");
+                else
+                    sb.append("took " + (stage.getDurationMillis() / 1000f) + " s"
+                              + (stage.completed ? "" : " (not completed)"));
+            }
+            sb.append("\n");
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public String toString()
+    {
+        return "GenerationScheduler with stages: " + stages;
+    }
+
+
+    /*
+     * Given to the generator of a stage in place of the main GenerationReport. Holds on to the
+     * generation report until it can be passed on in order
+     */
+    private class StageReport implements GenerationReport
+    {
+        private final Stage stage;
+
+        StageReport(Stage stage)
+        {
+            this.stage = stage;
+        }
+
+        public void giveGenerationReport(String report, String generatorType, SimConfig simConfig)
+        {
+            logger.logComment("Stage: " + stage.name + " finished with report from: " + generatorType);
+
+            stage.report = report;
+            stage.reportGeneratorType = generatorType;
+            stage.reportSimConfig = simConfig;
+        }
+
+        public void majorStepComplete()
+        {
+            if (reportInterface == null) return;
+
+            synchronized(reportLock)
+            {
+                reportInterface.majorStepComplete();
+            }
+        }
+
+        public void giveUpdate(String update)
+        {
+            if (reportInterface == null) return;
+
+            synchronized(reportLock)
+            {
+                reportInterface.giveUpdate(update);
+            }
+        }
+    }
+
+
+    /**
+     * One stage of the generation, e.g. generating the cell positions. The generator should be run on
+     * the thread calling generate(), giving its updates & report to the GenerationReport passed in.
+     */
+    public static abstract class Stage
+    {
+        private final String name;
+        private final Stage[] dependencies;
+        private final boolean ownRandomStream;
+
+        private final ArrayList<Stage> dependents = new ArrayList<Stage>();
+        private int unfinishedDependencies = 0;
+
+        private volatile String report = null;
+        private volatile String reportGeneratorType = null;
+        private volatile SimConfig reportSimConfig = null;
+
+        private boolean running = false;
+        private boolean finished = false;
+        private boolean completed = false;
+
+        private volatile boolean stopRequested = false;
+
+        private volatile long startTime = -1;
+        private volatile long endTime = -1;
+
+        /**
+         * @param name Name of the stage, usually the generator type
+         * @param ownRandomStream If true, all random numbers used by the stage come from a stream
+         * specific to the stage (see ProjectManager.createRandomStream()), so the result doesn't depend
+         * on which other stages are running at the same time
+         * @param dependencies The stages which need to have finished before this one starts
+         */
+        public Stage(String name, boolean ownRandomStream, Stage... dependencies)
+        {
+            this.name = name;
+            this.ownRandomStream = ownRandomStream;
+            this.dependencies = dependencies;
+        }
+
+        protected abstract void generate(GenerationReport stageReport);
+
+        /**
+         * Called when the generation is stopped while the stage is running. In case that happens before
+         * its generator is created, generate() should also check isStopRequested() after creating it
+         */
+        protected abstract void stopGeneration();
+
+        protected boolean isStopRequested()
+        {
+            return stopRequested;
+        }
+
+        /**
+         * Whether the stages after this should go ahead. By default, true if there was a report, and
+         * it didn't say the generation was interrupted
+         */
+        protected boolean wasSuccessful(String report)
+        {
+            return report != null && report.indexOf(INTERRUPTED_NOTE) < 0;
+        }
+
+        public String getName()
+        {
+            return name;
+        }
+
+        public String getReport()
+        {
+            return report;
+        }
+
+        /**
+         * Time taken by the stage, or -1 if it hasn't finished, or was skipped
+         */
+        public long getDurationMillis()
+        {
+            if (startTime < 0 || endTime < 0) return -1;
+            return endTime - startTime;
+        }
+
+        @Override
+        public String toString()
+        {
+            return name;
+        }
+    }
+
+}
@@ -37,6 +37,7 @@ import ucl.physiol.neuroconstruct.cell.Segment;
 import ucl.physiol.neuroconstruct.gui.SimpleFileFilter;
 import ucl.physiol.neuroconstruct.utils.GeneralUtils;
 import ucl.physiol.neuroconstruct.simulation.SimulationData;
+import ucl.physiol.neuroconstruct.simulation.SimulationDataExporter;
 
 /**
  * Class which generates a simple file for easy loading of simulation results into Igor Pro
@@ -54,6 +55,10 @@ public class IgorNeuroMatic
 
     public static String MAIN_LOAD_MACRO = "LoadAllSimData";
 
+    private static final String EXPORTED_CHECK_FUNCTION = "TracesExported";
+    private static final String EXPORTED_LOAD_FUNCTION = "LoadExportedTrace";
+    private static final String EXPORT_INDEX_WAVE = "exportIndex";
+
 
 
     public static void createSimulationLoader(Project project, SimConfig simConfig, String simRef)
@@ -155,12 +160,16 @@ public class IgorNeuroMatic
         contents.append("\n\nPrint\n");
         contents.append("Print \"Loading data from simulation: "+simRef+", project: "+project.getProjectName()+"\"\n\n");
 
+        String simDirPath = IgorNeuroMatic.convertFilePath(simDir.getAbsolutePath());
+
         String loadPrePrefx = "LoadWave/A=";
-        String loadPrefix = "/J/D/K=0 \""+ IgorNeuroMatic.convertFilePath(simDir.getAbsolutePath())+":";
+        String loadPrefix = "/J/D/K=0 \""+ simDirPath+":";
         String loadSuffix = "\"";
 
-        contents.append(loadPrePrefx+"time"+loadPrefix+SimulationData.getStandardTimesFilename()+loadSuffix+"\n\n");
+        // Pairs of wave name & data file name
+        ArrayList<String[]> traces = new ArrayList<String[]>();
 
+        traces.add(new String[]{"time", SimulationData.getStandardTimesFilename()});
 
         ArrayList<PlotSaveDetails> recordings = project.generatedPlotSaves.getSavedPlotSaves();
 
@@ -184,16 +193,42 @@ public class IgorNeuroMatic
                         String fileName = SimPlot.getFilename(record, segToRecord, cellNum+"");
                         String ref = fileName.substring(0, fileName.lastIndexOf("."));
                         ref = GeneralUtils.replaceAllTokens(ref, ".", "_");
-                        contents.append(loadPrePrefx+ref+loadPrefix + fileName+loadSuffix + "\n");
+                        traces.add(new String[]{ref, fileName});
                     }
 
                 }
             }
         }
+
+        contents.append("// If the traces have been exported to "+SimulationDataExporter.CONTAINER_FILENAME
+                        +" (see SimulationDataExporter) they're read from there\n");
+        contents.append("if ("+EXPORTED_CHECK_FUNCTION+"())\n\n");
+        contents.append("LoadWave/Q/J/K=2/N="+EXPORT_INDEX_WAVE+" \""+simDirPath+":"+SimulationDataExporter.INDEX_FILENAME+"\"\n");
+
+        for (String[] trace : traces)
+        {
+            contents.append(EXPORTED_LOAD_FUNCTION+"(\""+trace[0]+"\", \""
+                            +SimulationDataExporter.getVariableName(trace[1])+"\")\n");
+        }
+        contents.append("KillWaves/Z "+EXPORT_INDEX_WAVE+"0, "+EXPORT_INDEX_WAVE+"1, "
+                        +EXPORT_INDEX_WAVE+"2, "+EXPORT_INDEX_WAVE+"3\n\n");
+
+        contents.append("else\n\n");
+
+        for (String[] trace : traces)
+        {
+            contents.append(loadPrePrefx+trace[0]+loadPrefix + trace[1]+loadSuffix + "\n");
+        }
+        contents.append("\nendif\n");
+
         contents.append("\n\nPrint\n");
         contents.append("Print \"Finished loading data\"\n");
 
         contents.append("Print\n");
+        contents.append("End\n\n\n");
+
+        contents.append(getExportedTraceFunctions(simDirPath));
+
         try
         {
             FileWriter fwReadme = new FileWriter(newIFile);
@@ -216,6 +251,45 @@ public class IgorNeuroMatic
         return newPath;
     }
 
+    /*
+     * Igor functions for reading the traces from the MAT file exported by SimulationDataExporter.
+     * The values of each are read straight from the file with GBLoadWave, at the offset in the index
+     */
+    private static String getExportedTraceFunctions(String simDirPath)
+    {
+        StringBuffer response = new StringBuffer();
+
+        response.append("Function "+EXPORTED_CHECK_FUNCTION+"()\n");
+        response.append("    GetFileFolderInfo/Q/Z \""+simDirPath+":"+SimulationDataExporter.INDEX_FILENAME+"\"\n");
+        response.append("    return V_Flag == 0\n");
+        response.append("End\n\n");
+
+        response.append("// Loads the columns of the exported trace into waveBase0, waveBase1, etc., as LoadWave/A would\n");
+        response.append("Function "+EXPORTED_LOAD_FUNCTION+"(waveBase, varName)\n");
+        response.append("    String waveBase, varName\n");
+        response.append("    Wave/T names = "+EXPORT_INDEX_WAVE+"0\n");
+        response.append("    Wave/T offsets = "+EXPORT_INDEX_WAVE+"1\n");
+        response.append("    Wave/T rows = "+EXPORT_INDEX_WAVE+"2\n");
+        response.append("    Wave/T cols = "+EXPORT_INDEX_WAVE+"3\n");
+        response.append("    Variable i, col\n");
+        response.append("    for (i = 0; i < numpnts(names); i += 1)\n");
+        response.append("        if (cmpstr(names[i], varName) == 0)\n");
+        response.append("            GBLoadWave/Q/O/B/T={4,4}/S=(str2num(offsets[i]))/U=(str2num(rows[i]))/W=(str2num(cols[i]))/N=ncTrace \""
+                        +simDirPath+":"+SimulationDataExporter.CONTAINER_FILENAME+"\"\n");
+        response.append("            for (col = 0; col < str2num(cols[i]); col += 1)\n");
+        response.append("                Duplicate/O $(\"ncTrace\" + num2str(col)), $(waveBase + num2str(col))\n");
+        response.append("                KillWaves $(\"ncTrace\" + num2str(col))\n");
+        response.append("            endfor\n");
+        response.append("            return 1\n");
+        response.append("        endif\n");
+        response.append("    endfor\n");
+        response.append("    Print \"No exported trace: \" + varName\n");
+        response.append("    return 0\n");
+        response.append("End\n\n");
+
+        return response.toString();
+    }
+
     private static String getFileHeader()
     {
         StringBuffer response = new StringBuffer();
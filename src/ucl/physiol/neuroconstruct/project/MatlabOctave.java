@@ -37,6 +37,7 @@ import ucl.physiol.neuroconstruct.cell.Segment;
 import ucl.physiol.neuroconstruct.gui.SimpleFileFilter;
 import ucl.physiol.neuroconstruct.utils.GeneralUtils;
 import ucl.physiol.neuroconstruct.simulation.SimulationData;
+import ucl.physiol.neuroconstruct.simulation.SimulationDataExporter;
 
 /**
  * Class which generates a simple file for easy loading of simulation results into Matlab,
@@ -142,7 +143,22 @@ public class MatlabOctave
 
         //contents.append("function "+LOAD_SIM+"()\n\n");
 
-        contents.append("load('"+SimulationData.getStandardTimesFilename()+"');\n\n");
+        String container = SimulationDataExporter.CONTAINER_FILENAME;
+
+        contents.append("% If the traces have been exported to "+container+" (see SimulationDataExporter) they're\n");
+        contents.append("% read from there, rather than from each of the data files\n\n");
+
+        contents.append("if exist('"+container+"', 'file')\n");
+        contents.append("    simData = load('"+container+"');\n");
+        contents.append("    loadtrace = @(fileName, varName) simData.(varName);\n");
+        contents.append("else\n");
+        contents.append("    loadtrace = @(fileName, varName) load(fileName);\n");
+        contents.append("end\n\n");
+
+        String timesFile = SimulationData.getStandardTimesFilename();
+        String times = SimulationDataExporter.getVariableName(timesFile);
+
+        contents.append(times+" = "+getLoadTrace(timesFile)+";\n\n");
 
 
         ArrayList<PlotSaveDetails> recordings = project.generatedPlotSaves.getSavedPlotSaves();
@@ -183,11 +199,11 @@ public class MatlabOctave
                         String fileName = SimPlot.getFilename(record, segToRecord, cellNum + "");
                         if (!spikeData)
                         {
-                            contents.append(" load('" + fileName + "') ");
+                            contents.append(" " + getLoadTrace(fileName) + " ");
                         }
                         else
                         {
-                            contents.append("timespike" + cellGroupName + "{"+(cellNum+1)+"} = load('" + fileName + "');\n");
+                            contents.append("timespike" + cellGroupName + "{"+(cellNum+1)+"} = " + getLoadTrace(fileName) + ";\n");
                         }
                     }
                     if (!spikeData && i < record.segIdsToPlot.size() - 1)
@@ -277,6 +293,11 @@ public class MatlabOctave
 
     }
 
+    private static String getLoadTrace(String fileName)
+    {
+        return "loadtrace('" + fileName + "', '" + SimulationDataExporter.getVariableName(fileName) + "')";
+    }
+
     private static String getFileHeader()
     {
         StringBuffer response = new StringBuffer();
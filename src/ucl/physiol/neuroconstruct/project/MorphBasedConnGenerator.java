@@ -30,6 +30,7 @@ import java.io.File;
 import ucl.physiol.neuroconstruct.utils.*;
 import java.util.*;
 import java.util.ArrayList;
+import java.util.concurrent.*;
 import ucl.physiol.neuroconstruct.cell.*;
 import ucl.physiol.neuroconstruct.cell.utils.*;
 import javax.vecmath.*;
@@ -59,6 +60,12 @@ public class MorphBasedConnGenerator extends Thread
     private SimConfig simConfig = null;
 
     private ArrayList<String> generatingNetConns = new ArrayList<String>();
+
+    /**
+     * Number of cells in the generation start cell group which share one random stream.
+     * Note: changing this will change the networks generated from a given seed
+     */
+    public static final int RANDOM_STREAM_BLOCK_SIZE = 100;
     
     private String synLocWarning = "Please ensure there is a Synaptic Mechanism of that name at tab Cell Mechanisms and that the locations where synaptic connections \n"
                                   +"of that type are allowed on the cell are specified via Visualisation -> (View cell type) -> Synaptic Conn Locations in drop down box.\n" +
@@ -116,59 +123,49 @@ public class MorphBasedConnGenerator extends Thread
 
         ArrayList<String> simpNetConnsInSimConfig = getRelevantNetConns();
 
-        int maxNumThreads = GeneralProperties.getNumProcessorstoUse();
-        int waitMillis = 100;
+        int maxNumThreads = Math.max(1, GeneralProperties.getNumProcessorstoUse());
 
-        for (int j = 0; j < simpNetConnsInSimConfig.size(); j++)
-        {
-            if (!continueGeneration)
-            {
-                logger.logComment("Discontinuing generation...");
-                sendGenerationReport(true);
-                return;
-            }
+        ForkJoinPool pool = new ForkJoinPool(maxNumThreads);
+
+        ArrayList<ForkJoinTask<?>> tasks = new ArrayList<ForkJoinTask<?>>();
 
+        for (int j = 0; j < simpNetConnsInSimConfig.size() && continueGeneration; j++)
+        {
             String netConnName = simpNetConnsInSimConfig.get(j);
 
-            SingleConnGenerator scg = new SingleConnGenerator(myReportInterface, netConnName);
             netConnStarting(netConnName);
-            scg.start();
-
-            logger.logComment("Generating: "+generatingNetConns+"...");
+            tasks.add(pool.submit(new SingleConnGenerator(myReportInterface, netConnName)));
 
-            while(netConnsRunning()>=maxNumThreads)
-            {
-                try
-                {
-                    logger.logComment("Waiting for: "+generatingNetConns+"...");
-                    Thread.sleep(waitMillis);
-                }
-                catch (InterruptedException ex)
-                {
-                    GuiUtils.showErrorMessage(logger, "Error when generating "+ netConnName, ex, null);
-                }
-            }
-
-            
         } // loop over simpNetConnsInSimConfig
 
+        logger.logComment("Generating: "+generatingNetConns+" on "+maxNumThreads+" threads...");
 
-        while(netConnsRunning()>0)
+        for (int j = 0; j < tasks.size(); j++)
         {
             try
             {
-                logger.logComment("Waiting for: "+generatingNetConns+"...");
-                Thread.sleep(waitMillis);
+                tasks.get(j).get();
             }
             catch (InterruptedException ex)
             {
                 GuiUtils.showErrorMessage(logger, "Error when generating "+ generatingNetConns, ex, null);
+                continueGeneration = false;
+            }
+            catch (ExecutionException ex)
+            {
+                GuiUtils.showErrorMessage(logger, "Error when generating "+ simpNetConnsInSimConfig.get(j), ex.getCause(), null);
             }
         }
+        pool.shutdown();
+
+        if (!continueGeneration)
+        {
+            logger.logComment("Discontinued generation...");
+        }
 
         // Finished the main generation part...
 
-        sendGenerationReport(false);
+        sendGenerationReport(!continueGeneration);
 
     }
 
@@ -188,7 +185,12 @@ public class MorphBasedConnGenerator extends Thread
         return generatingNetConns.size();
     }
 
-    private class SingleConnGenerator extends Thread
+    /**
+     * Generates the connections of a single net conn. All random numbers come from streams
+     * specific to the net conn and to each block of RANDOM_STREAM_BLOCK_SIZE start cells,
+     * so the network depends only on the seed, not on how many of these run at once
+     */
+    private class SingleConnGenerator implements Runnable
     {
 
         GenerationReport myReportInterface = null;
@@ -197,14 +199,28 @@ public class MorphBasedConnGenerator extends Thread
 
         public SingleConnGenerator(GenerationReport reportInterface, String netConnName)
         {
-            super("SingleConnGenerator_"+netConnName);
             this.myReportInterface = reportInterface;
             this.netConnName = netConnName;
 
         }
 
-        @Override
         public void run()
+        {
+            try
+            {
+                ProjectManager.setThreadRandomGenerator(ProjectManager.createRandomStream(netConnName, -1));
+
+                generateConns();
+            }
+            finally
+            {
+                ProjectManager.clearThreadRandomGenerator();
+
+                netConnCompleted(netConnName);
+            }
+        }
+
+        private void generateConns()
         {
 
             CellTopologyHelper cth = new CellTopologyHelper(); // so that synapse locations can be cached...
@@ -236,6 +252,10 @@ public class MorphBasedConnGenerator extends Thread
             int numberInTargetCellGroup
                 = project.generatedCellPositions.getNumberInCellGroup(targetCellGroup);
 
+            // Morphologies don't change during generation, so the segment positions can be taken from snapshots
+            sourceCellInstance.getFlatMorphology();
+            targetCellInstance.getFlatMorphology();
+
             String genStartCellGroup = null;
             Cell genStartCellInstance = null;
             int numberInGenStartCellGroup = -1;
@@ -313,6 +333,12 @@ public class MorphBasedConnGenerator extends Thread
 
                 for (int genStartCellNumber = 0; genStartCellNumber < numberInGenStartCellGroup; genStartCellNumber++)
                 {
+                    if (genStartCellNumber % RANDOM_STREAM_BLOCK_SIZE == 0)
+                    {
+                        ProjectManager.setThreadRandomGenerator(
+                            ProjectManager.createRandomStream(netConnName, genStartCellNumber / RANDOM_STREAM_BLOCK_SIZE));
+                    }
+
                     if(genStartCellNumber==0)
                     {
                         for(String synType: synTypeNames)
@@ -336,7 +362,7 @@ public class MorphBasedConnGenerator extends Thread
                     }
 
 
-                    ArrayList<PositionRecord> finishPosRecords = project.generatedCellPositions.getPositionRecords(genFinishCellGroup);
+                    CellPositionIndex finishPosIndex = project.generatedCellPositions.getPositionIndex(genFinishCellGroup);
                     Point3f startCellPos = project.generatedCellPositions.getOneCellPosition(genStartCellGroup, genStartCellNumber);
 
                     int[] allowedFinishCells
@@ -345,7 +371,7 @@ public class MorphBasedConnGenerator extends Thread
                                                                    startCellPos,
                                                                    maxMin,
                                                                    genFinishCellGroup,
-                                                                   finishPosRecords);
+                                                                   finishPosIndex);
 
 
                     float numConnFloat = connConds.getNumConnsInitiatingCellGroup().getNextNumber();
@@ -409,7 +435,8 @@ public class MorphBasedConnGenerator extends Thread
                             numberConnections = numberConnections + 1;
                     }
 
-                    logger.logComment(".........   For cell number: " + genStartCellNumber + ", there will be " + numberConnections + " connections");
+                    logger.logComment(".........   For cell number: {}, there will be {} connections",
+                                      genStartCellNumber, numberConnections);
 
 
     //////////////////////            Loop over numberConnections cells in FINISH group
@@ -422,16 +449,13 @@ public class MorphBasedConnGenerator extends Thread
                         if (!continueGeneration)
                         {
                             logger.logComment("Discontinuing generation...");
-                            sendGenerationReport(true);
                             return;
                         }
 
                         boolean continueSingleConnGeneration = true;
 
-                        logger.logComment("-----   Connection number " + connNumber
-                                          + " for cell number: " + genStartCellNumber
-                                          + ". Asking cell of type: " + genStartCellInstance.toString()
-                                          + " for a synaptic location");
+                        logger.logComment("-----   Connection number {} for cell number: {}. Asking cell of type: {} for a synaptic location",
+                                          connNumber, genStartCellNumber, genStartCellInstance);
 
                         SegmentLocation genStartConnPoint = null;
 
@@ -473,10 +497,8 @@ public class MorphBasedConnGenerator extends Thread
                         }
                         else
                         {
-                            logger.logComment("There are currently "
-                                              + genFinCellsAlreadyConnected.size()
-                                              + " unique connection cells in the opposite cell group: "+
-                                              genFinCellsAlreadyConnected.toString());
+                            logger.logComment("There are currently {} unique connection cells in the opposite cell group: {}",
+                                              genFinCellsAlreadyConnected.size(), genFinCellsAlreadyConnected);
                         }
 
                         if (connConds.isNoRecurrent()){
@@ -490,7 +512,8 @@ public class MorphBasedConnGenerator extends Thread
 
                             }
 
-                                logger.logComment("alreadyReciveConnectionFrom: "+ alreadyReciveConnectionFrom);
+                                logger.logComment("alreadyReciveConnectionFrom: {}",
+                                                  alreadyReciveConnectionFrom);
 
 
                             if (alreadyReciveConnectionFrom.size() == numberInGenFinishCellGroup)
@@ -501,9 +524,8 @@ public class MorphBasedConnGenerator extends Thread
                             }
                             else
                             {
-                                logger.logComment("The cell already recive connections from "
-                                                  + alreadyReciveConnectionFrom.size()
-                                                  + " unique cells... ");
+                                logger.logComment("The cell already recive connections from {} unique cells... ",
+                                                  alreadyReciveConnectionFrom.size());
                             }
                         }
 
@@ -544,8 +566,8 @@ public class MorphBasedConnGenerator extends Thread
                                 boolean foundOne = false;
 
                                 logger.logComment("Linking will be done in completely random manner...");
-                                logger.logComment("Asking cell of type: " + genFinishCellInstance.toString() +
-                                                  " for a synaptic location");
+                                logger.logComment("Asking cell of type: {} for a synaptic location",
+                                                  genFinishCellInstance);
 
                                 int numFailedAttemptsMaxMin = 0;
                                 int numToTryMaxMin = maxMin.getNumberAttempts();
@@ -561,8 +583,8 @@ public class MorphBasedConnGenerator extends Thread
                                 {
                                     logger.logComment("***************************************");
                                     logger.logComment("   Restarting loop for random");
-                                    logger.logComment("numFaliedAttemptsMaxMin: " + numFailedAttemptsMaxMin);
-                                    logger.logComment("finCellsMaxedOut.size(): " + finCellsMaxedOut.size());
+                                    logger.logComment("numFaliedAttemptsMaxMin: {}", numFailedAttemptsMaxMin);
+                                    logger.logComment("finCellsMaxedOut.size(): {}", finCellsMaxedOut.size());
 
 
                                     if (connConds.isNoRecurrent())
@@ -573,9 +595,12 @@ public class MorphBasedConnGenerator extends Thread
                                         if (!connConds.isAllowAutapses())
                                             totalPossibleConnectTo = totalPossibleConnectTo -1;
 
-                                        logger.logComment("totalPossibleConnectTo: " + totalPossibleConnectTo);
-                                        logger.logComment("alreadyReciveConnectionFrom: " + alreadyReciveConnectionFrom);
-                                        logger.logComment("genFinCellsAlreadyConnected: " + genFinCellsAlreadyConnected);
+                                        logger.logComment("totalPossibleConnectTo: {}",
+                                                          totalPossibleConnectTo);
+                                        logger.logComment("alreadyReciveConnectionFrom: {}",
+                                                          alreadyReciveConnectionFrom);
+                                        logger.logComment("genFinCellsAlreadyConnected: {}",
+                                                          genFinCellsAlreadyConnected);
 
                                         if (alreadyReciveConnectionFrom.size() + genFinCellsAlreadyConnected.size() >=
                                                 totalPossibleConnectTo)
@@ -600,7 +625,7 @@ public class MorphBasedConnGenerator extends Thread
                                             connConds.getPrePostAllowedLoc());
                                     }
 
-                                    logger.logComment("genFinishConnPoint: " + genFinishConnPoint);
+                                    logger.logComment("genFinishConnPoint: {}", genFinishConnPoint);
 
                                     if (genFinishConnPoint == null)
                                     {
@@ -626,29 +651,33 @@ public class MorphBasedConnGenerator extends Thread
 
                                             genFinishCellNumber = allowedFinishCells[ProjectManager.getRandomGenerator().nextInt(allowedFinishCells.length)];
 
-                                            logger.logComment("--------------------------Testing if cell num: " + genFinishCellNumber +
-                                                              " is appropriate for cell number: " + genStartCellNumber+", ignoreDistance: "+ignoreDistance);
+                                            logger.logComment("--------------------------Testing if cell num: {} is appropriate for cell number: {}, ignoreDistance: {}",
+                                                              genFinishCellNumber, genStartCellNumber, ignoreDistance);
 
-                                            logger.logComment("finCellsMaxedOut: " + finCellsMaxedOut);
-                                            logger.logComment("availableCellsToConnectTo: " + availableCellsToConnectTo);
+                                            logger.logComment("finCellsMaxedOut: {}", finCellsMaxedOut);
+                                            logger.logComment("availableCellsToConnectTo: {}",
+                                                              availableCellsToConnectTo);
 
 
                                             ArrayList<Integer> connsOnFinishCell = null;
 
                                             if (connConds.isNoRecurrent())
                                             {
-                                                    logger.logComment("alreadyReciveConnectionFrom: "+ alreadyReciveConnectionFrom);
+                                                    logger.logComment("alreadyReciveConnectionFrom: {}",
+                                                                      alreadyReciveConnectionFrom);
 
                                                 if (!alreadyReciveConnectionFrom.contains(genFinishCellNumber))
                                                 {
                                                     satisfiesGAPj = true;
-                                                    logger.logComment("Reccurent connections are not allowed, satisfies condition: " + satisfiesGAPj);
+                                                    logger.logComment("Reccurent connections are not allowed, satisfies condition: {}",
+                                                                      Boolean.valueOf(satisfiesGAPj));
 
                                                 }
                                                 else
                                                 {
                                                     satisfiesGAPj = false;
-                                                    logger.logComment("Reccurent connections are not allowed, satisfies condition: " + satisfiesGAPj + "the two cells are already coupled");
+                                                    logger.logComment("Reccurent connections are not allowed, satisfies condition: {}the two cells are already coupled",
+                                                                      Boolean.valueOf(satisfiesGAPj));
                                                 }
                                             }
                                             else
@@ -670,32 +699,36 @@ public class MorphBasedConnGenerator extends Thread
                                                 }
                                             }
 
-                                            logger.logComment("connsOnFinishCell: " + connsOnFinishCell);
+                                            logger.logComment("connsOnFinishCell: {}", connsOnFinishCell);
 
 
                                             if ( !checkMaxingOutFinCells || ((connsOnFinishCell.size()+1) <= connConds.getMaxNumInitPerFinishCell()) )
                                             {
-                                                logger.logComment("There are not more than: " + connConds.getMaxNumInitPerFinishCell()
-                                                                  + " src conns on finish cell "+genFinishCellNumber);
+                                                logger.logComment("There are not more than: {} src conns on finish cell {}",
+                                                                  connConds.getMaxNumInitPerFinishCell(), genFinishCellNumber);
 
                                                 satisfiesMaxNumPerFinCell = true;
 
                                                 if (connConds.isOnlyConnectToUniqueCells())
                                                 {
-                                                    logger.logComment("genFinCellsAlreadyConnected: " + genFinCellsAlreadyConnected);
+                                                    logger.logComment("genFinCellsAlreadyConnected: {}",
+                                                                      genFinCellsAlreadyConnected);
 
                                                     if (!genFinCellsAlreadyConnected.contains(genFinishCellNumber))
                                                     {
                                                         satisfiesUniqueness = true;
-                                                        logger.logComment("Needs uniqueness, satisfiesUniqueness: " + satisfiesUniqueness);
+                                                        logger.logComment("Needs uniqueness, satisfiesUniqueness: {}",
+                                                                          Boolean.valueOf(satisfiesUniqueness));
                                                     }
                                                     else
                                                     {
                                                         satisfiesUniqueness = false;
-                                                        logger.logComment("Needs uniqueness, satisfiesUniqueness: " + satisfiesUniqueness);
+                                                        logger.logComment("Needs uniqueness, satisfiesUniqueness: {}",
+                                                                          Boolean.valueOf(satisfiesUniqueness));
                                                     }
                                                     availableCellsToConnectTo = numberInGenFinishCellGroup - genFinCellsAlreadyConnected.size();
-                                                    logger.logComment("--- availableCellsToConnectTo: " + availableCellsToConnectTo);
+                                                    logger.logComment("--- availableCellsToConnectTo: {}",
+                                                                      availableCellsToConnectTo);
 
                                                 }
                                                 else
@@ -706,7 +739,8 @@ public class MorphBasedConnGenerator extends Thread
                                             }
                                             else
                                             {
-                                                logger.logComment("There are already: " + connsOnFinishCell + " src conns on tgt cell "+genFinishCellNumber);
+                                                logger.logComment("There are already: {} src conns on tgt cell {}",
+                                                                  connsOnFinishCell, genFinishCellNumber);
 
                                                 satisfiesMaxNumPerFinCell = false;
                                                 satisfiesUniqueness = false;
@@ -732,7 +766,8 @@ public class MorphBasedConnGenerator extends Thread
 
                                                 if(!ignoreDistance || nonZeroPropDelay)
                                                 {
-                                                    logger.logComment("Distancebeing calc, ignored dist: "+ ignoreDistance+", nonZeroPropDelay: "+nonZeroPropDelay);
+                                                    logger.logComment("Distancebeing calc, ignored dist: {}, nonZeroPropDelay: {}",
+                                                                      ignoreDistance, nonZeroPropDelay);
                                                     distApart = CellTopologyHelper.getSynapticEndpointsDistance(
                                                                                             project,
                                                                                             genStartCellGroup,
@@ -763,14 +798,15 @@ public class MorphBasedConnGenerator extends Thread
                                                 if (ignoreDistance || (distForMaxMin >= maxMin.getMinLength()
                                                     && distForMaxMin <= maxMin.getMaxLength()))
                                                 {
-                                                    logger.logComment("Distance condition satisfied, ignored dist: "+ ignoreDistance+", nonZeroPropDelay: "+nonZeroPropDelay);
+                                                    logger.logComment("Distance condition satisfied, ignored dist: {}, nonZeroPropDelay: {}",
+                                                                      ignoreDistance, nonZeroPropDelay);
                                                     foundOne = true;
                                                     connDistance = distApart;
                                                 }
                                                 else
                                                 {
-                                                    logger.logComment("The length: " + distForMaxMin + " isn't between " +
-                                                                      maxMin.getMinLength() + " and " + maxMin.getMaxLength());
+                                                    logger.logComment("The length: {} isn't between {} and {}",
+                                                                      distForMaxMin, maxMin.getMinLength(), maxMin.getMaxLength());
                                                     numFailedAttemptsMaxMin++;
                                                     genFinishConnPoint = null;
                                                     genFinishCellNumber = -1;
@@ -794,8 +830,8 @@ public class MorphBasedConnGenerator extends Thread
 
                                 for (int o = 0; o < numberOfSectionsToCheck; o++)
                                 {
-                                    logger.logComment("Checking number " + o + " of the " + numberOfSectionsToCheck +
-                                                      " sections I've to check");
+                                    logger.logComment("Checking number {} of the {} sections I've to check",
+                                                      o, numberOfSectionsToCheck);
 
                                     SegmentLocation tempGenFinishConnPoint = null;
 
@@ -813,7 +849,7 @@ public class MorphBasedConnGenerator extends Thread
                                                                             connConds.getPrePostAllowedLoc());
                                     }
 
-                                    logger.logComment("tempGenFinishConnPoint: " + tempGenFinishConnPoint);
+                                    logger.logComment("tempGenFinishConnPoint: {}", tempGenFinishConnPoint);
 
                                     if (tempGenFinishConnPoint == null)
                                     {
@@ -840,13 +876,13 @@ public class MorphBasedConnGenerator extends Thread
 
                                         tempGenFinishCellNumber = allowedFinishCells[ProjectManager.getRandomGenerator().nextInt(allowedFinishCells.length)];
 
-                                        logger.logComment("----  Testing if cell num: " + tempGenFinishCellNumber +
-                                                          " is appropriate for cell number: "
-                                                          + genStartCellNumber);
+                                        logger.logComment("----  Testing if cell num: {} is appropriate for cell number: {}",
+                                                          tempGenFinishCellNumber, genStartCellNumber);
 
-                                        logger.logComment("finCellsMaxedOut: " + finCellsMaxedOut);
-                                        logger.logComment("numCellsNotConnTo: " + numCellsNotConnTo);
-                                        logger.logComment("genFinCellsAlreadyConnected: " + genFinCellsAlreadyConnected);
+                                        logger.logComment("finCellsMaxedOut: {}", finCellsMaxedOut);
+                                        logger.logComment("numCellsNotConnTo: {}", numCellsNotConnTo);
+                                        logger.logComment("genFinCellsAlreadyConnected: {}",
+                                                          genFinCellsAlreadyConnected);
 
                                         int numConnsOnFinishCell = 0;
 
@@ -862,12 +898,12 @@ public class MorphBasedConnGenerator extends Thread
 
                                         }
 
-                                        logger.logComment("numConnsOnFinishCell: " + numConnsOnFinishCell);
+                                        logger.logComment("numConnsOnFinishCell: {}", numConnsOnFinishCell);
 
                                         if ( (numConnsOnFinishCell + 1) <= connConds.getMaxNumInitPerFinishCell())
                                         {
-                                            logger.logComment("There are not more than: " + connConds.getMaxNumInitPerFinishCell()
-                                                              + " src conns on finish cell " + tempGenFinishCellNumber);
+                                            logger.logComment("There are not more than: {} src conns on finish cell {}",
+                                                              connConds.getMaxNumInitPerFinishCell(), tempGenFinishCellNumber);
                                             satisfiesMaxNumPerFinCell = true;
 
                                             if (connConds.isNoRecurrent())
@@ -875,12 +911,14 @@ public class MorphBasedConnGenerator extends Thread
                                                 if (!(project.generatedNetworkConnections.areConnected(netConnName, genStartCellNumber, tempGenFinishCellNumber))
                                                     && (!(project.generatedNetworkConnections.areConnected(netConnName, tempGenFinishCellNumber, genStartCellNumber)))) {
                                                     satisfiesGAPj = true;
-                                                    logger.logComment("Reccurent connections are not allowed, satisfies condition: " + satisfiesGAPj);
+                                                    logger.logComment("Reccurent connections are not allowed, satisfies condition: {}",
+                                                                      Boolean.valueOf(satisfiesGAPj));
                                                 }
                                                 else
                                                 {
                                                     satisfiesGAPj = false;
-                                                    logger.logComment("Reccurent connections are not allowed, satisfies condition: " + satisfiesGAPj + "the two cells are already connected");
+                                                    logger.logComment("Reccurent connections are not allowed, satisfies condition: {}the two cells are already connected",
+                                                                      Boolean.valueOf(satisfiesGAPj));
                                                 }
                                             }
                                             else
@@ -893,12 +931,14 @@ public class MorphBasedConnGenerator extends Thread
                                                 if (!genFinCellsAlreadyConnected.contains(new Integer(tempGenFinishCellNumber)))
                                                 {
                                                     satisfiesUniqueness = true;
-                                                        logger.logComment("Needs uniqueness, satisfiesUniqueness: " + satisfiesUniqueness);
+                                                        logger.logComment("Needs uniqueness, satisfiesUniqueness: {}",
+                                                                          Boolean.valueOf(satisfiesUniqueness));
 
                                                 }
                                                 else
                                                 {
-                                                    logger.logComment("Needs uniqueness, satisfiesUniqueness: " + satisfiesUniqueness);
+                                                    logger.logComment("Needs uniqueness, satisfiesUniqueness: {}",
+                                                                      Boolean.valueOf(satisfiesUniqueness));
                                                     satisfiesUniqueness = false;
                                                 }
                                                 numCellsNotConnTo = numberInGenFinishCellGroup - genFinCellsAlreadyConnected.size();
@@ -911,8 +951,8 @@ public class MorphBasedConnGenerator extends Thread
                                         }
                                         else
                                         {
-                                            logger.logComment("There are already: " + numConnsOnFinishCell + " src conns on tgt cell " +
-                                                              tempGenFinishCellNumber);
+                                            logger.logComment("There are already: {} src conns on tgt cell {}",
+                                                              numConnsOnFinishCell, tempGenFinishCellNumber);
 
                                             satisfiesMaxNumPerFinCell = false;
 
@@ -923,7 +963,7 @@ public class MorphBasedConnGenerator extends Thread
 
                                     }
 
-                                    logger.logComment("tempGenFinishCellNumber: " + tempGenFinishCellNumber);
+                                    logger.logComment("tempGenFinishCellNumber: {}", tempGenFinishCellNumber);
 
                                     if(satisfiesMaxNumPerFinCell && satisfiesUniqueness && satisfiesGAPj)
                                     {
@@ -936,8 +976,8 @@ public class MorphBasedConnGenerator extends Thread
                                         else
                                         {
 
-                                            logger.logComment("Not an autapse? "+sourceCellGroup.equals(targetCellGroup) +" "+!connConds.isAllowAutapses()+" "+
-                                            (genStartCellNumber == tempGenFinishCellNumber));
+                                            logger.logComment("Not an autapse? {} {} {}",
+                                                              sourceCellGroup.equals(targetCellGroup), !connConds.isAllowAutapses(), (genStartCellNumber == tempGenFinishCellNumber));
 
                                             SynapticConnectionEndPoint tempGenFinishEndpoint =
                                                 new SynapticConnectionEndPoint(tempGenFinishConnPoint, tempGenFinishCellNumber);
@@ -984,7 +1024,8 @@ public class MorphBasedConnGenerator extends Thread
                                                 }
                                                 else
                                                 {
-                                                    logger.logComment("Not good enough, genFinishCellNumber: "+ genFinishCellNumber);
+                                                    logger.logComment("Not good enough, genFinishCellNumber: {}",
+                                                                      genFinishCellNumber);
                                                 }
                                             }
                                             else
@@ -995,14 +1036,15 @@ public class MorphBasedConnGenerator extends Thread
                                     }
                                     else
                                     {
-                                        logger.logComment("satisfiesMaxNumPerFinCell: " + satisfiesMaxNumPerFinCell);
-                                        logger.logComment("satisfiesUniqueness: " + satisfiesUniqueness);
-                                        logger.logComment("satisfiesGAPj: " + satisfiesGAPj);
+                                        logger.logComment("satisfiesMaxNumPerFinCell: {}",
+                                                          Boolean.valueOf(satisfiesMaxNumPerFinCell));
+                                        logger.logComment("satisfiesUniqueness: {}", Boolean.valueOf(satisfiesUniqueness));
+                                        logger.logComment("satisfiesGAPj: {}", Boolean.valueOf(satisfiesGAPj));
 
                                     }
                                 }
-                                logger.logComment("Finished checking the " + numberOfSectionsToCheck +
-                                                  " cells I'd to check...");
+                                logger.logComment("Finished checking the {} cells I'd to check...",
+                                                  numberOfSectionsToCheck);
                             }
 
 
@@ -1038,8 +1080,8 @@ public class MorphBasedConnGenerator extends Thread
                                 {
                                     int nextGenFinishCellNum = allowedFinishCells[nextGenFinishCellIndex];
 
-                                    logger.logComment("Checking cell number: " + nextGenFinishCellNum + " in cell group: " +
-                                                      genFinishCellGroup);
+                                    logger.logComment("Checking cell number: {} in cell group: {}",
+                                                      nextGenFinishCellNum, genFinishCellGroup);
 
                                     boolean alreadyConnected;
                                     boolean satisfiesGAPj = false;
@@ -1062,13 +1104,15 @@ public class MorphBasedConnGenerator extends Thread
                                                 || ((project.generatedNetworkConnections.areConnected(netConnName, nextGenFinishCellNum, genStartCellNumber))))
                                             {
                                                 satisfiesGAPj = false;
-                                                logger.logComment("Needs GAPj, satisfiesGAPj: " + satisfiesGAPj + "the two cells are already coupled");
+                                                logger.logComment("Needs GAPj, satisfiesGAPj: {}the two cells are already coupled",
+                                                                  Boolean.valueOf(satisfiesGAPj));
 
                                             }
                                             else
                                             {
                                                 satisfiesGAPj = true;
-                                                logger.logComment("Needs GAPj, satisfiesGAPj: " + satisfiesGAPj);
+                                                logger.logComment("Needs GAPj, satisfiesGAPj: {}",
+                                                                  Boolean.valueOf(satisfiesGAPj));
                                             }
                                         }
                                         else
@@ -1098,13 +1142,12 @@ public class MorphBasedConnGenerator extends Thread
 
                                         }
 
-                                        logger.logComment("numConnsOnFinishCell: " + numConnsOnFinishCell);
+                                        logger.logComment("numConnsOnFinishCell: {}", numConnsOnFinishCell);
 
                                         if ( (numConnsOnFinishCell + 1) <= connConds.getMaxNumInitPerFinishCell())
                                         {
-                                            logger.logComment("There are not more than: " +
-                                                              connConds.getMaxNumInitPerFinishCell()
-                                                              + " src conns on finish cell " + nextGenFinishCellNum);
+                                            logger.logComment("There are not more than: {} src conns on finish cell {}",
+                                                              connConds.getMaxNumInitPerFinishCell(), nextGenFinishCellNum);
 
                                                 satisfiesMaxNumPerFinCell = true;
 
@@ -1113,8 +1156,8 @@ public class MorphBasedConnGenerator extends Thread
                                         }
                                         else
                                         {
-                                            logger.logComment("There are already: " + numConnsOnFinishCell +
-                                                              " src conns on tgt cell " + nextGenFinishCellNum);
+                                            logger.logComment("There are already: {} src conns on tgt cell {}",
+                                                              numConnsOnFinishCell, nextGenFinishCellNum);
 
                                             if (!finCellsMaxedOut.contains(nextGenFinishCellNum))
                                                 finCellsMaxedOut.add(nextGenFinishCellNum);
@@ -1190,7 +1233,8 @@ public class MorphBasedConnGenerator extends Thread
                                                                 tempGenFinishEndpoint,
                                                                 maxMin.getDimension());
 
-                                                    logger.logComment("Distance to that point: " + distToThisPoint);
+                                                    logger.logComment("Distance to that point: {}",
+                                                                      distToThisPoint);
 
                                                     if (distToThisPoint < bestDistanceSoFar)
                                                     {
@@ -1219,8 +1263,8 @@ public class MorphBasedConnGenerator extends Thread
                                 && genFinishConnPoint != null
                                 && finCellsMaxedOut.size()<numberInGenFinishCellGroup)
                             {
-                                logger.logComment("Generated a synaptic point for cell number " +
-                                                  genFinishCellNumber + ": " +genFinishConnPoint.toString());
+                                logger.logComment("Generated a synaptic point for cell number {}: {}",
+                                                  genFinishCellNumber, genFinishConnPoint);
 
                                 ArrayList<ConnSpecificProps> props = new ArrayList<ConnSpecificProps>();
 
@@ -1328,8 +1372,8 @@ public class MorphBasedConnGenerator extends Thread
                                             genStartCellInstance.toString(), null);
                         }
                     }
-                    logger.logComment("Finished creating the " + numberConnections + " conns for cell number: " +
-                                      genStartCellNumber);
+                    logger.logComment("Finished creating the {} conns for cell number: {}",
+                                      numberConnections, genStartCellNumber);
                 }
             }
             logger.logComment("Finished looking at all " + numberInGenStartCellGroup + " cells in group: " +
@@ -1337,8 +1381,6 @@ public class MorphBasedConnGenerator extends Thread
 
             if (myReportInterface != null) myReportInterface.majorStepComplete();
 
-            netConnCompleted(netConnName);
-
         }
     }
 
@@ -0,0 +1,744 @@
+/**
+ *  neuroConstruct
+ *  Software for developing large scale 3D networks of biologically realistic neurons
+ *
+ *  Copyright (c) 2009 Padraig Gleeson
+ *  UCL Department of Neuroscience, Physiology and Pharmacology
+ *
+ *  Development of this software was made possible with funding from the
+ *  Medical Research Council and the Wellcome Trust
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+
+package ucl.physiol.neuroconstruct.project;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.Charset;
+import java.util.*;
+import java.util.zip.CRC32;
+
+import ucl.physiol.neuroconstruct.project.stimulation.*;
+import ucl.physiol.neuroconstruct.utils.*;
+
+/**
+ * A binary snapshot of the generated network (cell positions, network connections and
+ * electrical inputs), which is much quicker to save and reload than the text files
+ * written by GeneratedCellPositions, GeneratedNetworkConnections and GeneratedElecInputs. It is
+ * saved alongside those files in the simulation directories (see ProjectManager.saveGeneratedNetwork()),
+ * and used in place of them when reloading a simulation.
+ *
+ * The file has a header (magic number, version, random seed, number of sections), followed by one
+ * section per cell group, net conn and input. Each section has its type, the CRC32 checksum and
+ * length of its body, and the body holds the name followed by the values in columns, e.g. all
+ * the cell numbers of a cell group, then all the x positions, etc. Values are little endian and
+ * every column starts on a 4 byte boundary, so on loading each section is memory mapped and the
+ * columns are read straight into the arrays of the structures.
+ *
+ * @author Padraig Gleeson
+ *
+ */
+
+public class NetworkSnapshot
+{
+    private static ClassLogger logger = new ClassLogger("NetworkSnapshot");
+
+    private static final int MAGIC_NUMBER = 0x534E434E; // NCNS
+    private static final int VERSION = 1;
+
+    public static final int SECTION_POSITIONS = 1;
+    public static final int SECTION_CONNECTIONS = 2;
+    public static final int SECTION_INPUTS = 3;
+
+    private static final int HEADER_LENGTH = 24;
+    private static final int SECTION_HEADER_LENGTH = 16;
+
+    /*
+     * Which InputInstanceProps (if any) an input has, and so what is in its 3 prop columns
+     */
+    private static final byte PROPS_NONE = 0;
+    private static final byte PROPS_ICLAMP = 1;                     // delay, duration, amplitude
+    private static final byte PROPS_ICLAMP_VARIABLE = 2;            // delay, duration
+    private static final byte PROPS_RANDOM_SPIKE_TRAIN = 3;         // rate
+    private static final byte PROPS_RANDOM_SPIKE_TRAIN_EXT = 4;     // rate, delay, duration
+    private static final byte PROPS_RANDOM_SPIKE_TRAIN_VAR = 5;     // delay, duration
+
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+
+    private NetworkSnapshot()
+    {
+    }
+
+
+    /**
+     * Saves the generated cell positions, net conns and inputs of the project. The snapshot is
+     * written to a temporary file first and renamed when complete.
+     */
+    public static void saveToFile(Project project, File snapshotFile) throws IOException
+    {
+        File tempFile = new File(snapshotFile.getParentFile(), snapshotFile.getName() + ".tmp");
+
+        RandomAccessFile raf = null;
+        try
+        {
+            raf = new RandomAccessFile(tempFile, "rw");
+            raf.setLength(0);
+
+            ColumnWriter out = new ColumnWriter(raf.getChannel());
+            int numSections = 0;
+
+            GeneratedCellPositions cellPositions = project.generatedCellPositions;
+            Iterator<String> cellGroups = cellPositions.getNamesGeneratedCellGroups();
+
+            while (cellGroups.hasNext())
+            {
+                String cellGroup = cellGroups.next();
+                out.beginSection(SECTION_POSITIONS, cellGroup);
+                writePositions(out, cellPositions.getPositionRecords(cellGroup));
+                out.endSection();
+                numSections++;
+            }
+
+            GeneratedNetworkConnections netConns = project.generatedNetworkConnections;
+            Iterator<String> netConnNames = netConns.getNamesNetConnsIter();
+
+            while (netConnNames.hasNext())
+            {
+                String netConn = netConnNames.next();
+                SynapticConnectionStore store = netConns.getConnectionStore(netConn);
+                if (store == null) continue;
+
+                out.beginSection(SECTION_CONNECTIONS, netConn);
+                store.writeColumns(out);
+                out.endSection();
+                numSections++;
+            }
+
+            GeneratedElecInputs elecInputs = project.generatedElecInputs;
+
+            for (String inputRef: elecInputs.getInputReferences())
+            {
+                out.beginSection(SECTION_INPUTS, inputRef);
+                writeInputs(out, elecInputs.getInputLocations(inputRef));
+                out.endSection();
+                numSections++;
+            }
+
+            out.writeHeader(cellPositions.getRandomSeed(), numSections);
+
+            close(raf);
+            raf = null;
+
+            if (snapshotFile.exists()) snapshotFile.delete();
+
+            if (!tempFile.renameTo(snapshotFile))
+            {
+                tempFile.delete();
+                throw new IOException("Unable to rename "+tempFile.getAbsolutePath()+" to "+snapshotFile.getAbsolutePath());
+            }
+
+            logger.logComment("Saved {} sections of the generated network to {}", numSections, snapshotFile);
+        }
+        finally
+        {
+            if (raf != null)
+            {
+                close(raf);
+                tempFile.delete();
+            }
+        }
+    }
+
+
+    /**
+     * Replaces the generated cell positions, net conns and inputs of the project with those in the
+     * snapshot. Throws an IOException if the file isn't a snapshot (or a later version of one) or any
+     * section fails its checksum. Every section is checked and read before the generated network of
+     * the project is reset, so in that case the project is left as it was.
+     */
+    public static void loadFromFile(Project project, File snapshotFile) throws IOException
+    {
+        RandomAccessFile raf = null;
+        try
+        {
+            raf = new RandomAccessFile(snapshotFile, "r");
+            FileChannel channel = raf.getChannel();
+            long fileLength = channel.size();
+
+            ByteBuffer header = readFully(channel, 0, HEADER_LENGTH, snapshotFile);
+
+            if (header.getInt() != MAGIC_NUMBER)
+                throw new IOException(snapshotFile.getAbsolutePath() + " is not a network snapshot file");
+
+            int version = header.getShort();
+            if (version > VERSION)
+                throw new IOException(snapshotFile.getAbsolutePath() + " is in a later version ("
+                                      + version + ") of the network snapshot format than supported");
+            header.getShort();
+
+            long randomSeed = header.getLong();
+            int numSections = header.getInt();
+            int headerCrc = header.getInt();
+
+            CRC32 crc = new CRC32();
+            crc.update(header.array(), 0, HEADER_LENGTH - 4);
+            if ((int)crc.getValue() != headerCrc)
+                throw new IOException("Header of network snapshot: " + snapshotFile.getAbsolutePath() + " is corrupt");
+
+            LinkedHashMap<String, ArrayList<PositionRecord>> positions
+                = new LinkedHashMap<String, ArrayList<PositionRecord>>();
+            LinkedHashMap<String, SynapticConnectionStore> connections
+                = new LinkedHashMap<String, SynapticConnectionStore>();
+            LinkedHashMap<String, ArrayList<SingleElectricalInput>> inputs
+                = new LinkedHashMap<String, ArrayList<SingleElectricalInput>>();
+
+            long position = HEADER_LENGTH;
+            byte[] chunk = new byte[65536];
+
+            for (int sectionNum = 0; sectionNum < numSections; sectionNum++)
+            {
+                ByteBuffer sectionHeader = readFully(channel, position, SECTION_HEADER_LENGTH, snapshotFile);
+                int type = sectionHeader.getInt();
+                int sectionCrc = sectionHeader.getInt();
+                long bodyLength = sectionHeader.getLong();
+
+                position += SECTION_HEADER_LENGTH;
+
+                if (bodyLength < 0 || bodyLength > Integer.MAX_VALUE || position + bodyLength > fileLength)
+                    throw new IOException("Network snapshot: " + snapshotFile.getAbsolutePath() + " is truncated");
+
+                MappedByteBuffer body = channel.map(FileChannel.MapMode.READ_ONLY, position, bodyLength);
+                body.order(ByteOrder.LITTLE_ENDIAN);
+
+                position += bodyLength;
+
+                crc.reset();
+                while (body.hasRemaining())
+                {
+                    int num = Math.min(chunk.length, body.remaining());
+                    body.get(chunk, 0, num);
+                    crc.update(chunk, 0, num);
+                }
+                if ((int)crc.getValue() != sectionCrc)
+                    throw new IOException("Section " + (sectionNum + 1) + " of network snapshot: "
+                                          + snapshotFile.getAbsolutePath() + " fails its checksum");
+                body.rewind();
+
+                String name = getString(body);
+
+                if (type == SECTION_POSITIONS)
+                {
+                    positions.put(name, readPositions(body));
+                }
+                else if (type == SECTION_CONNECTIONS)
+                {
+                    connections.put(name, SynapticConnectionStore.readColumns(body));
+                }
+                else if (type == SECTION_INPUTS)
+                {
+                    inputs.put(name, readInputs(body));
+                }
+                else
+                {
+                    logger.logComment("Ignoring section {} of unknown type {}: {}", sectionNum, type, name);
+                }
+            }
+
+            GeneratedCellPositions cellPositions = project.generatedCellPositions;
+            GeneratedNetworkConnections netConns = project.generatedNetworkConnections;
+            GeneratedElecInputs elecInputs = project.generatedElecInputs;
+
+            cellPositions.reset();
+            netConns.reset();
+            elecInputs.reset();
+
+            cellPositions.setRandomSeed(randomSeed);
+
+            for (Map.Entry<String, ArrayList<PositionRecord>> entry: positions.entrySet())
+            {
+                cellPositions.addPositions(entry.getKey(), entry.getValue());
+            }
+            for (Map.Entry<String, SynapticConnectionStore> entry: connections.entrySet())
+            {
+                netConns.addSynapticConnections(entry.getKey(), entry.getValue());
+            }
+            for (Map.Entry<String, ArrayList<SingleElectricalInput>> entry: inputs.entrySet())
+            {
+                elecInputs.addSingleInputs(entry.getKey(), entry.getValue());
+            }
+
+            logger.logComment("Loaded {} sections of the generated network from {}", numSections, snapshotFile);
+        }
+        catch (BufferUnderflowException ex)
+        {
+            IOException ioe = new IOException("Network snapshot: " + snapshotFile.getAbsolutePath() + " is corrupt");
+            ioe.initCause(ex);
+            throw ioe;
+        }
+        finally
+        {
+            close(raf);
+        }
+    }
+
+
+    private static void writePositions(ColumnWriter out, ArrayList<PositionRecord> posRecords) throws IOException
+    {
+        int num = posRecords.size();
+
+        int[] cellNumbers = new int[num];
+        float[] xs = new float[num];
+        float[] ys = new float[num];
+        float[] zs = new float[num];
+        int[] nodeIds = new int[num];
+        float[] initVs = new float[num];
+
+        for (int i = 0; i < num; i++)
+        {
+            PositionRecord posRec = posRecords.get(i);
+            cellNumbers[i] = posRec.cellNumber;
+            xs[i] = posRec.x_pos;
+            ys[i] = posRec.y_pos;
+            zs[i] = posRec.z_pos;
+            nodeIds[i] = posRec.getNodeId();
+            initVs[i] = posRec.getInitV();
+        }
+
+        out.putInt(num);
+        out.putInts(cellNumbers, num);
+        out.putFloats(xs, num);
+        out.putFloats(ys, num);
+        out.putFloats(zs, num);
+        out.putInts(nodeIds, num);
+        out.putFloats(initVs, num);
+    }
+
+    private static ArrayList<PositionRecord> readPositions(ByteBuffer in)
+    {
+        int num = in.getInt();
+
+        int[] cellNumbers = getInts(in, num);
+        float[] xs = getFloats(in, num);
+        float[] ys = getFloats(in, num);
+        float[] zs = getFloats(in, num);
+        int[] nodeIds = getInts(in, num);
+        float[] initVs = getFloats(in, num);
+
+        ArrayList<PositionRecord> posRecords = new ArrayList<PositionRecord>(num);
+
+        for (int i = 0; i < num; i++)
+        {
+            PositionRecord posRec = new PositionRecord(cellNumbers[i], xs[i], ys[i], zs[i]);
+            if (nodeIds[i] != PositionRecord.NO_NODE_ID) posRec.setNodeId(nodeIds[i]);
+            if (initVs[i] != PositionRecord.NO_INIT_V) posRec.setInitV(initVs[i]);
+            posRecords.add(posRec);
+        }
+        return posRecords;
+    }
+
+
+    private static void writeInputs(ColumnWriter out, ArrayList<SingleElectricalInput> inputs) throws IOException
+    {
+        int num = inputs.size();
+
+        ArrayList<String> inputTypes = new ArrayList<String>();
+        ArrayList<String> cellGroups = new ArrayList<String>();
+
+        int[] typeIndices = new int[num];
+        int[] cellGroupIndices = new int[num];
+        int[] cellNumbers = new int[num];
+        int[] segmentIds = new int[num];
+        float[] fractsAlong = new float[num];
+        byte[] propsKinds = new byte[num];
+        float[] props0 = new float[num];
+        float[] props1 = new float[num];
+        float[] props2 = new float[num];
+
+        for (int i = 0; i < num; i++)
+        {
+            SingleElectricalInput input = inputs.get(i);
+
+            typeIndices[i] = getIndex(inputTypes, input.getElectricalInputType());
+            cellGroupIndices[i] = getIndex(cellGroups, input.getCellGroup());
+            cellNumbers[i] = input.getCellNumber();
+            segmentIds[i] = input.getSegmentId();
+            fractsAlong[i] = input.getFractionAlong();
+
+            InputInstanceProps ip = input.getInstanceProps();
+
+            if (ip instanceof IClampInstanceProps)
+            {
+                IClampInstanceProps icip = (IClampInstanceProps)ip;
+                propsKinds[i] = PROPS_ICLAMP;
+                props0[i] = icip.getDelay();
+                props1[i] = icip.getDuration();
+                props2[i] = icip.getAmplitude();
+            }
+            else if (ip instanceof IClampVariableInstanceProps)
+            {
+                IClampVariableInstanceProps icvip = (IClampVariableInstanceProps)ip;
+                propsKinds[i] = PROPS_ICLAMP_VARIABLE;
+                props0[i] = icvip.getDelay();
+                props1[i] = icvip.getDuration();
+            }
+            else if (ip instanceof RandomSpikeTrainInstanceProps)
+            {
+                propsKinds[i] = PROPS_RANDOM_SPIKE_TRAIN;
+                props0[i] = ((RandomSpikeTrainInstanceProps)ip).getRate();
+            }
+            else if (ip instanceof RandomSpikeTrainExtInstanceProps)
+            {
+                RandomSpikeTrainExtInstanceProps rsteip = (RandomSpikeTrainExtInstanceProps)ip;
+                propsKinds[i] = PROPS_RANDOM_SPIKE_TRAIN_EXT;
+                props0[i] = rsteip.getRate();
+                props1[i] = rsteip.getDelay();
+                props2[i] = rsteip.getDuration();
+            }
+            else if (ip instanceof RandomSpikeTrainVarInstanceProps)
+            {
+                RandomSpikeTrainVarInstanceProps rstvip = (RandomSpikeTrainVarInstanceProps)ip;
+                propsKinds[i] = PROPS_RANDOM_SPIKE_TRAIN_VAR;
+                props0[i] = rstvip.getDelay();
+                props1[i] = rstvip.getDuration();
+            }
+            else
+            {
+                propsKinds[i] = PROPS_NONE;
+            }
+        }
+
+        out.putInt(num);
+        out.putStrings(inputTypes);
+        out.putStrings(cellGroups);
+        out.putInts(typeIndices, num);
+        out.putInts(cellGroupIndices, num);
+        out.putInts(cellNumbers, num);
+        out.putInts(segmentIds, num);
+        out.putFloats(fractsAlong, num);
+        out.putBytes(propsKinds, num);
+        out.putFloats(props0, num);
+        out.putFloats(props1, num);
+        out.putFloats(props2, num);
+    }
+
+    private static ArrayList<SingleElectricalInput> readInputs(ByteBuffer in)
+    {
+        int num = in.getInt();
+
+        String[] inputTypes = getStrings(in);
+        String[] cellGroups = getStrings(in);
+
+        int[] typeIndices = getInts(in, num);
+        int[] cellGroupIndices = getInts(in, num);
+        int[] cellNumbers = getInts(in, num);
+        int[] segmentIds = getInts(in, num);
+        float[] fractsAlong = getFloats(in, num);
+        byte[] propsKinds = getBytes(in, num);
+        float[] props0 = getFloats(in, num);
+        float[] props1 = getFloats(in, num);
+        float[] props2 = getFloats(in, num);
+
+        ArrayList<SingleElectricalInput> inputs = new ArrayList<SingleElectricalInput>(num);
+
+        for (int i = 0; i < num; i++)
+        {
+            InputInstanceProps ip = null;
+
+            switch (propsKinds[i])
+            {
+                case PROPS_ICLAMP:
+                    IClampInstanceProps icip = new IClampInstanceProps();
+                    icip.setDelay(props0[i]);
+                    icip.setDuration(props1[i]);
+                    icip.setAmplitude(props2[i]);
+                    ip = icip;
+                    break;
+                case PROPS_ICLAMP_VARIABLE:
+                    IClampVariableInstanceProps icvip = new IClampVariableInstanceProps();
+                    icvip.setDelay(props0[i]);
+                    icvip.setDuration(props1[i]);
+                    ip = icvip;
+                    break;
+                case PROPS_RANDOM_SPIKE_TRAIN:
+                    RandomSpikeTrainInstanceProps rstip = new RandomSpikeTrainInstanceProps();
+                    rstip.setRate(props0[i]);
+                    ip = rstip;
+                    break;
+                case PROPS_RANDOM_SPIKE_TRAIN_EXT:
+                    RandomSpikeTrainExtInstanceProps rsteip = new RandomSpikeTrainExtInstanceProps();
+                    rsteip.setRate(props0[i]);
+                    rsteip.setDelay(props1[i]);
+                    rsteip.setDuration(props2[i]);
+                    ip = rsteip;
+                    break;
+                case PROPS_RANDOM_SPIKE_TRAIN_VAR:
+                    RandomSpikeTrainVarInstanceProps rstvip = new RandomSpikeTrainVarInstanceProps();
+                    rstvip.setDelay(props0[i]);
+                    rstvip.setDuration(props1[i]);
+                    ip = rstvip;
+                    break;
+            }
+
+            inputs.add(new SingleElectricalInput(inputTypes[typeIndices[i]],
+                                                 cellGroups[cellGroupIndices[i]],
+                                                 cellNumbers[i],
+                                                 segmentIds[i],
+                                                 fractsAlong[i],
+                                                 ip));
+        }
+        return inputs;
+    }
+
+    private static int getIndex(ArrayList<String> strings, String string)
+    {
+        int index = strings.indexOf(string);
+        if (index < 0)
+        {
+            strings.add(string);
+            index = strings.size() - 1;
+        }
+        return index;
+    }
+
+
+    /*
+     * Writes the sections through a buffer, keeping the checksum of the current section body
+     */
+    static class ColumnWriter
+    {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        private final CRC32 crc = new CRC32();
+
+        private long sectionStart = -1;
+        private int sectionType = 0;
+
+        ColumnWriter(FileChannel channel) throws IOException
+        {
+            this.channel = channel;
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+            // Header is filled in at the end
+            channel.position(HEADER_LENGTH);
+        }
+
+        void beginSection(int type, String name) throws IOException
+        {
+            flush();
+            sectionStart = channel.position();
+            sectionType = type;
+            channel.position(sectionStart + SECTION_HEADER_LENGTH);
+            crc.reset();
+
+            putString(name);
+        }
+
+        void endSection() throws IOException
+        {
+            flush();
+            long bodyLength = channel.position() - sectionStart - SECTION_HEADER_LENGTH;
+
+            if (bodyLength > Integer.MAX_VALUE)
+                throw new IOException("Section of network snapshot too large ("+bodyLength+" bytes) to be memory mapped");
+
+            ByteBuffer sectionHeader = ByteBuffer.allocate(SECTION_HEADER_LENGTH);
+            sectionHeader.order(ByteOrder.LITTLE_ENDIAN);
+            sectionHeader.putInt(sectionType);
+            sectionHeader.putInt((int)crc.getValue());
+            sectionHeader.putLong(bodyLength);
+            sectionHeader.flip();
+            writeFully(sectionHeader, sectionStart);
+        }
+
+        void writeHeader(long randomSeed, int numSections) throws IOException
+        {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+            header.order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC_NUMBER);
+            header.putShort((short)VERSION);
+            header.putShort((short)0);
+            header.putLong(randomSeed);
+            header.putInt(numSections);
+
+            CRC32 headerCrc = new CRC32();
+            headerCrc.update(header.array(), 0, header.position());
+            header.putInt((int)headerCrc.getValue());
+
+            header.flip();
+            writeFully(header, 0);
+        }
+
+        void putInt(int value) throws IOException
+        {
+            if (buffer.remaining() < 4) flush();
+            buffer.putInt(value);
+        }
+
+        void putInts(int[] values, int num) throws IOException
+        {
+            int done = 0;
+            while (done < num)
+            {
+                if (buffer.remaining() < 4) flush();
+                int count = Math.min(num - done, buffer.remaining() / 4);
+                buffer.asIntBuffer().put(values, done, count);
+                buffer.position(buffer.position() + 4 * count);
+                done += count;
+            }
+        }
+
+        void putFloats(float[] values, int num) throws IOException
+        {
+            int done = 0;
+            while (done < num)
+            {
+                if (buffer.remaining() < 4) flush();
+                int count = Math.min(num - done, buffer.remaining() / 4);
+                buffer.asFloatBuffer().put(values, done, count);
+                buffer.position(buffer.position() + 4 * count);
+                done += count;
+            }
+        }
+
+        /*
+         * Padded with zeros to a multiple of 4 bytes
+         */
+        void putBytes(byte[] values, int num) throws IOException
+        {
+            int done = 0;
+            while (done < num)
+            {
+                if (!buffer.hasRemaining()) flush();
+                int count = Math.min(num - done, buffer.remaining());
+                buffer.put(values, done, count);
+                done += count;
+            }
+            for (int i = num; i % 4 != 0; i++)
+            {
+                if (!buffer.hasRemaining()) flush();
+                buffer.put((byte)0);
+            }
+        }
+
+        void putString(String string) throws IOException
+        {
+            byte[] bytes = (string == null ? "" : string).getBytes(UTF8);
+            putInt(bytes.length);
+            putBytes(bytes, bytes.length);
+        }
+
+        void putStrings(List<String> strings) throws IOException
+        {
+            putInt(strings.size());
+            for (String string: strings)
+            {
+                putString(string);
+            }
+        }
+
+        private void flush() throws IOException
+        {
+            crc.update(buffer.array(), 0, buffer.position());
+            buffer.flip();
+            while (buffer.hasRemaining())
+            {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        private void writeFully(ByteBuffer bytes, long position) throws IOException
+        {
+            while (bytes.hasRemaining())
+            {
+                position += channel.write(bytes, position);
+            }
+        }
+    }
+
+
+    static int[] getInts(ByteBuffer in, int num)
+    {
+        int[] values = new int[num];
+        in.asIntBuffer().get(values);
+        in.position(in.position() + 4 * num);
+        return values;
+    }
+
+    static float[] getFloats(ByteBuffer in, int num)
+    {
+        float[] values = new float[num];
+        in.asFloatBuffer().get(values);
+        in.position(in.position() + 4 * num);
+        return values;
+    }
+
+    static byte[] getBytes(ByteBuffer in, int num)
+    {
+        byte[] values = new byte[num];
+        in.get(values);
+        in.position(in.position() + (4 - num % 4) % 4);
+        return values;
+    }
+
+    static String getString(ByteBuffer in)
+    {
+        return new String(getBytes(in, in.getInt()), UTF8);
+    }
+
+    static String[] getStrings(ByteBuffer in)
+    {
+        String[] strings = new String[in.getInt()];
+        for (int i = 0; i < strings.length; i++)
+        {
+            strings[i] = getString(in);
+        }
+        return strings;
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, long position, int length, File file) throws IOException
+    {
+        ByteBuffer bytes = ByteBuffer.allocate(length);
+        bytes.order(ByteOrder.LITTLE_ENDIAN);
+        while (bytes.hasRemaining())
+        {
+            int num = channel.read(bytes, position + bytes.position());
+            if (num < 0)
+                throw new IOException("Network snapshot: " + file.getAbsolutePath() + " is truncated");
+        }
+        bytes.flip();
+        return bytes;
+    }
+
+    private static void close(RandomAccessFile raf)
+    {
+        if (raf == null) return;
+        try
+        {
+            raf.close();
+        }
+        catch (IOException ex)
+        {
+            // ignore...
+        }
+    }
+
+}
@@ -1079,7 +1079,7 @@ public class Project implements TableModelListener
             while (netConns.hasNext())
             {
             String mc = netConns.next();
-            int numHere = generatedNetworkConnections.getSynapticConnections(mc).size();
+            int numHere = generatedNetworkConnections.getNumberSynapticConnections(mc);
             if (numHere>0)
             notes.append("Network connection: "+mc+" contains "+numHere+" individual synaptic connections\n");
             
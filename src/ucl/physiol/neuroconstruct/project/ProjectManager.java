@@ -95,8 +95,13 @@ public class ProjectManager implements GenerationReport
 
     private static Random randomGenerator = new Random();
     private static long currentSeed = 1;
+
+    /*
+     * Random streams bound to individual generator threads, see setThreadRandomGenerator()
+     */
+    private static ThreadLocal<Random> threadRandomGenerators = new ThreadLocal<Random>();
     
-    private boolean currentlyGenerating = false;
+    private GenerationScheduler generationScheduler = null;
 
 
     // Only for Python based startup
@@ -207,6 +212,33 @@ public class ProjectManager implements GenerationReport
         return true;
     }
 
+
+    /**
+     * Saves the generated cell positions, net conns and inputs of the project in the directory, in
+     * the text files (CellPositions.dat, etc.) read by other applications and earlier versions, and
+     * in a NetworkSnapshot, which is quicker to reload. Not being able to save the snapshot isn't
+     * an error, as the simulation can still be reloaded from the text files.
+     */
+    public static void saveGeneratedNetwork(Project project, File dir) throws IOException
+    {
+        project.generatedCellPositions.saveToFile(new File(dir, SimulationData.POSITION_DATA_FILE));
+        project.generatedNetworkConnections.saveToFile(new File(dir, SimulationData.NETCONN_DATA_FILE));
+        project.generatedElecInputs.saveToFile(new File(dir, SimulationData.ELEC_INPUT_DATA_FILE));
+
+        File snapshotFile = new File(dir, SimulationData.NETWORK_SNAPSHOT_FILE);
+        try
+        {
+            NetworkSnapshot.saveToFile(project, snapshotFile);
+        }
+        catch (IOException ex)
+        {
+            logger.logError("Problem saving the network snapshot: " + snapshotFile, ex);
+
+            // So a snapshot of an earlier network isn't reloaded in place of the text files
+            snapshotFile.delete();
+        }
+    }
+
     public boolean doRunNeuron(SimConfig simConfig)
     {
                 
@@ -220,20 +252,13 @@ public class ProjectManager implements GenerationReport
         String primarySimDirName = activeProject.simulationParameters.getReference();
 
 
-        File positionsFile = new File(genNeuronDir, SimulationData.POSITION_DATA_FILE);
-        File netConnsFile = new File(genNeuronDir, SimulationData.NETCONN_DATA_FILE);
-        File elecInputFile = new File(genNeuronDir, SimulationData.ELEC_INPUT_DATA_FILE);
-
-     
         try
         {
-            activeProject.generatedCellPositions.saveToFile(positionsFile);
-            activeProject.generatedNetworkConnections.saveToFile(netConnsFile);
-            activeProject.generatedElecInputs.saveToFile(elecInputFile);
+            saveGeneratedNetwork(activeProject, genNeuronDir);
         }
         catch (IOException ex)
         {
-            GuiUtils.showErrorMessage(logger, "Problem saving generated positions in file: "+ positionsFile.getAbsolutePath(), ex, null);
+            GuiUtils.showErrorMessage(logger, "Problem saving the generated network in: "+ genNeuronDir.getAbsolutePath(), ex, null);
             return false;
         }
 
@@ -282,6 +307,7 @@ public class ProjectManager implements GenerationReport
                 String fn = generatedNeuronFiles[i].getName();
 
                 if (fn.endsWith(".dat")||
+                        fn.equals(SimulationData.NETWORK_SNAPSHOT_FILE) ||
                         fn.endsWith(".props") ||
                         fn.endsWith(".py")||
                         fn.endsWith(".xml") ||
@@ -544,13 +570,7 @@ public class ProjectManager implements GenerationReport
 
         setRandomGeneratorSeed(randomSeed);
 
-        elecInputGenerator = new ElecInputGenerator(getCurrentProject(), this);
-
-        elecInputGenerator.setSimConfig(getCurrentProject().simConfigInfo.getSimConfig(prevSimConfig));
-
-        currentlyGenerating = true;
-
-        elecInputGenerator.start();
+        doGenerateAfterLoading(getCurrentProject().simConfigInfo.getSimConfig(prevSimConfig), true);
 
 
         return false;
@@ -571,13 +591,7 @@ public class ProjectManager implements GenerationReport
 
         setRandomGeneratorSeed(randomSeed);
 
-        plotSaveGenerator = new PlotSaveGenerator(getCurrentProject(), this);
-
-        plotSaveGenerator.setSimConfig(getCurrentProject().simConfigInfo.getSimConfig(prevSimConfig));
-
-        currentlyGenerating = true;
-
-        plotSaveGenerator.start();
+        doGenerateAfterLoading(getCurrentProject().simConfigInfo.getSimConfig(prevSimConfig), false);
 
 
         return false;
@@ -586,6 +600,19 @@ public class ProjectManager implements GenerationReport
     
     
     public NetworkMLnCInfo doLoadNetworkML(File networkmlFile, boolean acceptDefaults) throws NeuroMLException, Hdf5Exception, EndOfSequenceException
+    {
+        return doLoadNetworkML(networkmlFile, acceptDefaults, true);
+    }
+
+    /**
+     * Loads a network from a NetworkML file (XML, zipped or gzipped XML, or HDF5)
+     *
+     * @param parallelConnections If true, the connections in zipped or gzipped XML files are parsed on
+     * separate threads while the rest of the file is being read and decompressed
+     */
+    public NetworkMLnCInfo doLoadNetworkML(File networkmlFile,
+                                           boolean acceptDefaults,
+                                           boolean parallelConnections) throws NeuroMLException, Hdf5Exception, EndOfSequenceException
     {
         if (networkmlFile.getName().endsWith(ProjectStructure.getHDF5FileExtension()))
         {
@@ -612,6 +639,8 @@ public class ProjectManager implements GenerationReport
 
             XMLReader xmlReader = null;
 
+            InputStream instream = null;
+
             try
             {
                 xmlReader = spf.newSAXParser().getXMLReader();
@@ -623,23 +652,33 @@ public class ProjectManager implements GenerationReport
 
                 xmlReader.setContentHandler(nmlBuilder);
 
+                boolean compressed = true;
+
                 if (networkmlFile.getName().endsWith(ProjectStructure.getNeuroMLCompressedFileExtension()))
                 {
-                    FileInputStream instream = new FileInputStream(networkmlFile);
-
-                    ZipInputStream zis = new ZipInputStream(new BufferedInputStream(instream));
+                    ZipInputStream zis = new ZipInputStream(new BufferedInputStream(new FileInputStream(networkmlFile)));
 
                     ZipEntry entry = zis.getNextEntry();
 
-                    logger.logComment("Reading contents of zip: " + entry);
+                    logger.logComment("Reading contents of zip: {}", entry);
 
-                    is = new InputSource(zis);
+                    instream = zis;
+                }
+                else if (networkmlFile.getName().endsWith(".gz"))
+                {
+                    instream = new GZIPInputStream(new FileInputStream(networkmlFile), 65536);
                 }
                 else
                 {
-                   FileInputStream instream = new FileInputStream(networkmlFile);
-                   is = new InputSource(instream);
+                    instream = new FileInputStream(networkmlFile);
+                    compressed = false;
+                }
+
+                if (compressed && parallelConnections)
+                {
+                    instream = nmlBuilder.splitConnectionBlocks(instream);
                 }
+                is = new InputSource(instream);
 
                 xmlReader.parse(is);
             
@@ -649,6 +688,20 @@ public class ProjectManager implements GenerationReport
             {
                 throw new NeuroMLException("Problem parsing XML based NetworkML file: \n\n"+e.getMessage()+"\n", e);
             }
+            finally
+            {
+                if (instream != null)
+                {
+                    try
+                    {
+                        instream.close();
+                    }
+                    catch (IOException ex)
+                    {
+                        logger.logError("Problem closing: " + networkmlFile, ex);
+                    }
+                }
+            }
             
         }
         
@@ -873,7 +926,7 @@ public class ProjectManager implements GenerationReport
             while (netConns.hasNext())
             {
                 String mc = netConns.next();
-                int numHere = project.generatedNetworkConnections.getSynapticConnections(mc).size();
+                int numHere = project.generatedNetworkConnections.getNumberSynapticConnections(mc);
                 if (numHere>0)
                 notes.append("Network connection: "+mc+" contains "+numHere+" individual synaptic connections\n");
 
@@ -1569,11 +1622,59 @@ public class ProjectManager implements GenerationReport
         return activeProject.projProperties;
     }
 
+    /**
+     * Gets the Random number generator to use. This is the project wide generator seeded
+     * with the current seed, unless a stream has been bound to the calling thread with
+     * setThreadRandomGenerator()
+     */
     public static Random getRandomGenerator()
     {
+        Random threadRandom = threadRandomGenerators.get();
+
+        if (threadRandom != null) return threadRandom;
+
         return randomGenerator;
     }
 
+    /**
+     * Creates a new Random number generator whose seed is derived from the current seed,
+     * the name of the stream (e.g. the net conn name) and the index of the sub stream (e.g.
+     * the block of cells). The same seed always gives the same stream, however many
+     * threads are used for generation, or in whatever order they run.
+     */
+    public static Random createRandomStream(String streamName, long subStream)
+    {
+        long seed = mixSeed(currentSeed + 0x9E3779B97F4A7C15L);
+        seed = mixSeed(seed ^ streamName.hashCode());
+        seed = mixSeed(seed + (subStream + 1) * 0x9E3779B97F4A7C15L);
+
+        return new Random(seed);
+    }
+
+    /*
+     * The SplitMix64 finaliser, which spreads nearby inputs over the full range of seeds
+     */
+    private static long mixSeed(long z)
+    {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * All calls to getRandomGenerator() from the current thread will use this generator
+     * until clearThreadRandomGenerator() is called
+     */
+    public static void setThreadRandomGenerator(Random random)
+    {
+        threadRandomGenerators.set(random);
+    }
+
+    public static void clearThreadRandomGenerator()
+    {
+        threadRandomGenerators.remove();
+    }
+
     public static long getRandomGeneratorSeed()
     {
         return currentSeed;
@@ -2364,23 +2465,221 @@ public class ProjectManager implements GenerationReport
 
         activeProject.resetGenerated();
 
-        cellPosnGenerator = new CellPositionGenerator(activeProject, reportInterface);
-
         SimConfig simConfig = getCurrentProject().simConfigInfo.getSimConfig(simConfigName);
 
-        cellPosnGenerator.setSimConfig(simConfig);
-
         activeProject.generatedCellPositions.setRandomSeed(currentSeed);
 
-        currentlyGenerating = true;
-        
-        cellPosnGenerator.start();
+        GenerationScheduler scheduler = new GenerationScheduler(reportInterface);
+
+        GenerationScheduler.Stage positions = addCellPositionStage(scheduler, simConfig);
+
+        addConnectionStages(scheduler, simConfig, positions);
+
+        addInputAndPlotStages(scheduler, simConfig, true, positions);
+
+        startGeneration(scheduler);
 
     }
-    
-    public boolean isGenerating()
+
+    /*
+     * Cell positions use the main random number generator, as they always have. All the
+     * other stages depend only on the positions, so they run at the same time, each with
+     * its own stream of random numbers
+     */
+    private GenerationScheduler.Stage addCellPositionStage(GenerationScheduler scheduler, final SimConfig simConfig)
+    {
+        return scheduler.addStage(new GenerationScheduler.Stage(CellPositionGenerator.myGeneratorType, false)
+        {
+            protected void generate(GenerationReport stageReport)
+            {
+                cellPosnGenerator = new CellPositionGenerator(activeProject, stageReport);
+                cellPosnGenerator.setSimConfig(simConfig);
+                if (isStopRequested()) cellPosnGenerator.stopGeneration();
+                cellPosnGenerator.run();
+            }
+
+            protected void stopGeneration()
+            {
+                if (cellPosnGenerator != null) cellPosnGenerator.stopGeneration();
+            }
+
+            @Override
+            protected boolean wasSuccessful(String report)
+            {
+                if (activeProject.generatedCellPositions.getNumberPositionRecords() == 0)
+                {
+                    logger.logComment("No cell positions generated. Please ensure the cell bodies will fit in the selected regions.");
+                    return false;
+                }
+                return super.wasSuccessful(report);
+            }
+        });
+    }
+
+    private void addConnectionStages(GenerationScheduler scheduler,
+                                     final SimConfig simConfig,
+                                     GenerationScheduler.Stage positions)
+    {
+        // Uses streams specific to each net conn already
+        scheduler.addStage(new GenerationScheduler.Stage(MorphBasedConnGenerator.myGeneratorType, false, positions)
+        {
+            protected void generate(GenerationReport stageReport)
+            {
+                netConnGenerator = new MorphBasedConnGenerator(activeProject, stageReport);
+                netConnGenerator.setSimConfig(simConfig);
+                if (isStopRequested()) netConnGenerator.stopGeneration();
+                netConnGenerator.run();
+            }
+
+            protected void stopGeneration()
+            {
+                if (netConnGenerator != null) netConnGenerator.stopGeneration();
+            }
+        });
+
+        scheduler.addStage(new GenerationScheduler.Stage(VolumeBasedConnGenerator.myGeneratorType, true, positions)
+        {
+            protected void generate(GenerationReport stageReport)
+            {
+                arbourConnectionGenerator = new VolumeBasedConnGenerator(activeProject, stageReport);
+                arbourConnectionGenerator.setSimConfig(simConfig);
+                if (isStopRequested()) arbourConnectionGenerator.stopGeneration();
+                arbourConnectionGenerator.run();
+            }
+
+            protected void stopGeneration()
+            {
+                if (arbourConnectionGenerator != null) arbourConnectionGenerator.stopGeneration();
+            }
+        });
+
+        if (simConfig.getMpiConf().isParallelOrRemote())
+        {
+            scheduler.addStage(new GenerationScheduler.Stage(CompNodeGenerator.myGeneratorType, false, positions)
+            {
+                protected void generate(GenerationReport stageReport)
+                {
+                    compNodeGenerator = new CompNodeGenerator(activeProject, stageReport);
+                    compNodeGenerator.setSimConfig(simConfig);
+                    if (isStopRequested()) compNodeGenerator.stopGeneration();
+                    compNodeGenerator.run();
+                }
+
+                protected void stopGeneration()
+                {
+                    if (compNodeGenerator != null) compNodeGenerator.stopGeneration();
+                }
+            });
+        }
+    }
+
+    /*
+     * The positions stage is null when the positions have been loaded, not generated
+     */
+    private void addInputAndPlotStages(GenerationScheduler scheduler,
+                                       final SimConfig simConfig,
+                                       boolean generateInputs,
+                                       GenerationScheduler.Stage positions)
+    {
+        GenerationScheduler.Stage[] dependencies = positions == null ?
+            new GenerationScheduler.Stage[0] : new GenerationScheduler.Stage[]{positions};
+
+        if (generateInputs)
+        {
+            scheduler.addStage(new GenerationScheduler.Stage(ElecInputGenerator.myGeneratorType, true, dependencies)
+            {
+                protected void generate(GenerationReport stageReport)
+                {
+                    elecInputGenerator = new ElecInputGenerator(activeProject, stageReport);
+                    elecInputGenerator.setSimConfig(simConfig);
+                    if (isStopRequested()) elecInputGenerator.stopGeneration();
+                    elecInputGenerator.run();
+                }
+
+                protected void stopGeneration()
+                {
+                    if (elecInputGenerator != null) elecInputGenerator.stopGeneration();
+                }
+            });
+        }
+
+        scheduler.addStage(new GenerationScheduler.Stage(PlotSaveGenerator.myGeneratorType, true, dependencies)
+        {
+            protected void generate(GenerationReport stageReport)
+            {
+                plotSaveGenerator = new PlotSaveGenerator(activeProject, stageReport);
+                plotSaveGenerator.setSimConfig(simConfig);
+                if (isStopRequested()) plotSaveGenerator.stopGeneration();
+                plotSaveGenerator.run();
+            }
+
+            protected void stopGeneration()
+            {
+                if (plotSaveGenerator != null) plotSaveGenerator.stopGeneration();
+            }
+        });
+
+        scheduler.addStage(new GenerationScheduler.Stage(CellInitialiser.myGeneratorType, true, dependencies)
+        {
+            protected void generate(GenerationReport stageReport)
+            {
+                cellInitialiser = new CellInitialiser(activeProject, stageReport);
+                cellInitialiser.setSimConfig(simConfig);
+                if (isStopRequested()) cellInitialiser.stopGeneration();
+                cellInitialiser.run();
+            }
+
+            protected void stopGeneration()
+            {
+                if (cellInitialiser != null) cellInitialiser.stopGeneration();
+            }
+        });
+    }
+
+    private synchronized void startGeneration(GenerationScheduler scheduler)
+    {
+        if (generationScheduler != null && !generationScheduler.isFinished())
+        {
+            logger.logComment("Stopping the previous generation...");
+            generationScheduler.stopGeneration();
+        }
+        generationScheduler = scheduler;
+        scheduler.start();
+    }
+
+    /**
+     * Generates the inputs (if generateInputs is true), plots/saves and initial settings of the cells
+     * for positions and connections which have been loaded already, e.g. from NetworkML
+     */
+    public void doGenerateAfterLoading(SimConfig simConfig, boolean generateInputs)
     {
-        return currentlyGenerating;
+        GenerationScheduler scheduler = new GenerationScheduler(reportInterface);
+
+        addInputAndPlotStages(scheduler, simConfig, generateInputs, null);
+
+        startGeneration(scheduler);
+    }
+
+    /**
+     * Tells any generation in progress to stop
+     */
+    public synchronized void stopGeneration()
+    {
+        if (generationScheduler != null) generationScheduler.stopGeneration();
+    }
+
+    public synchronized boolean isGenerating()
+    {
+        return generationScheduler != null && !generationScheduler.isFinished();
+    }
+
+    /**
+     * The scheduler of the latest generation, e.g. to wait for it to finish or get the time taken by
+     * each stage. Null if nothing has been generated yet
+     */
+    public synchronized GenerationScheduler getGenerationScheduler()
+    {
+        return generationScheduler;
     }
 
     public Project copyProject(File oldProjFile, File newProjFile) throws Exception
@@ -2522,54 +2821,74 @@ public class ProjectManager implements GenerationReport
         }
 
 
-        activeProject.generatedCellPositions.reset();
-        try
-        {
-            activeProject.generatedCellPositions.loadFromFile(simData.getCellPositionsFile());
+        boolean loadedSnapshot = false;
+        File snapshotFile = simData.getNetworkSnapshotFile();
 
+        if (snapshotFile.exists())
+        {
+            try
+            {
+                NetworkSnapshot.loadFromFile(activeProject, snapshotFile);
+                loadedSnapshot = true;
+            }
+            catch (IOException ex2)
+            {
+                logger.logError("Problem loading the network snapshot: " + snapshotFile
+                                + ", loading the cell positions, net connections and inputs separately", ex2);
+            }
         }
-        catch (IOException ex2)
+
+        if (!loadedSnapshot)
         {
-            GuiUtils.showErrorMessage(logger,
-                                      "Problem loading the cell position data from: " +
-                                      simData.getCellPositionsFile(), ex2, null);
+            activeProject.generatedCellPositions.reset();
+            try
+            {
+                activeProject.generatedCellPositions.loadFromFile(simData.getCellPositionsFile());
+
+            }
+            catch (IOException ex2)
+            {
+                GuiUtils.showErrorMessage(logger,
+                                          "Problem loading the cell position data from: " +
+                                          simData.getCellPositionsFile(), ex2, null);
 
 
-            activeProject.resetGenerated();
-            return null;
-        }
+                activeProject.resetGenerated();
+                return null;
+            }
 
 
-        activeProject.generatedNetworkConnections.reset();
-        try
-        {
-            activeProject.generatedNetworkConnections.loadFromFile(simData.getNetConnectionsFile());
-        }
-        catch (IOException ex2)
-        {
-            GuiUtils.showErrorMessage(logger,
-                                      "Problem loading the net connections data from: " +
-                                      simData.getNetConnectionsFile(), ex2, null);
+            activeProject.generatedNetworkConnections.reset();
+            try
+            {
+                activeProject.generatedNetworkConnections.loadFromFile(simData.getNetConnectionsFile());
+            }
+            catch (IOException ex2)
+            {
+                GuiUtils.showErrorMessage(logger,
+                                          "Problem loading the net connections data from: " +
+                                          simData.getNetConnectionsFile(), ex2, null);
 
-            activeProject.resetGenerated();
-            return null;
-        }
+                activeProject.resetGenerated();
+                return null;
+            }
 
 
-        activeProject.generatedElecInputs.reset();
-        try
-        {
-            activeProject.generatedElecInputs.loadFromFile(simData.getElecInputsFile());
+            activeProject.generatedElecInputs.reset();
+            try
+            {
+                activeProject.generatedElecInputs.loadFromFile(simData.getElecInputsFile());
 
-        }
-        catch (IOException ex2)
-        {
-            GuiUtils.showErrorMessage(logger,
-                                      "Problem loading the electrical inputs data from: " +
-                                      simData.getElecInputsFile(), ex2, null);
+            }
+            catch (IOException ex2)
+            {
+                GuiUtils.showErrorMessage(logger,
+                                          "Problem loading the electrical inputs data from: " +
+                                          simData.getElecInputsFile(), ex2, null);
 
-            activeProject.resetGenerated();
-            return null;
+                activeProject.resetGenerated();
+                return null;
+            }
         }
 
 
@@ -2619,150 +2938,17 @@ public class ProjectManager implements GenerationReport
     }
     
 
+    /*
+     * Only used when there's no GUI. The GenerationScheduler starts each stage when it can
+     */
     public void giveGenerationReport(String report, String generatorType, SimConfig simConfig)
     {
         logger.logComment(">>> "+ generatorType+ " giving report: "+ report);
 
-        if (generatorType.equals(CellPositionGenerator.myGeneratorType))
+        if (report.indexOf("Generation interrupted")>0)
         {
-            if (activeProject.generatedCellPositions.getNumberPositionRecords() == 0)
-            {
-                logger.logComment("No cell positions generated. Please ensure the cell bodies will fit in the selected regions.");
-                
-                currentlyGenerating = false;
-                return;
-            }
-
-            if (report.indexOf("Generation interrupted")>0)
-            {
-                logger.logComment("It seems the generation of cell positions was interrupted...");
-                currentlyGenerating = false;
-                return;
-            }
-            
-            netConnGenerator = new MorphBasedConnGenerator(activeProject, this);
-
-            netConnGenerator.setSimConfig(simConfig);
-
-            netConnGenerator.start();
-
+            logger.logComment("It seems the generation by "+generatorType+" was interrupted...");
         }
-        else if (generatorType.equals(MorphBasedConnGenerator.myGeneratorType))
-        {
-            if (report.indexOf("Generation interrupted")>0)
-            {
-                logger.logComment("It seems the generation of connections was interrupted...");
-                currentlyGenerating = false;
-                return;
-            }
-
-            arbourConnectionGenerator = new VolumeBasedConnGenerator(activeProject, this);
-
-            arbourConnectionGenerator.setSimConfig(simConfig);
-
-            arbourConnectionGenerator.start();
-
-        }
-
-        else if (simConfig.getMpiConf().isParallelOrRemote()
-                   && generatorType.equals(VolumeBasedConnGenerator.myGeneratorType))
-        {
-
-            if (report.indexOf("Generation interrupted")>0)
-            {
-                logger.logComment("It seems the generation of connections was interrupted...");
-                currentlyGenerating = false;
-                return;
-            }
-
-            compNodeGenerator = new CompNodeGenerator(activeProject, this);
-
-            compNodeGenerator.setSimConfig(simConfig);
-
-            compNodeGenerator.start();
-        }
-
-        else if ((!(simConfig.getMpiConf().isParallelOrRemote())
-                && (generatorType.equals(VolumeBasedConnGenerator.myGeneratorType))
-                || generatorType.equals(CompNodeGenerator.myGeneratorType)))
-        {
-
-            if (report.indexOf("Generation interrupted")>0)
-            {
-                logger.logComment("It seems the generation of compute nodes was interrupted...");
-                currentlyGenerating = false;
-                return;
-            }
-
-
-            elecInputGenerator = new ElecInputGenerator(activeProject, this);
-
-            elecInputGenerator.setSimConfig(simConfig);
-
-            elecInputGenerator.start();
-
-        }
-
-
-        else if (generatorType.equals(ElecInputGenerator.myGeneratorType))
-        {
-
-            if (report.indexOf("Generation interrupted") > 0)
-            {
-                logger.logComment("It seems the generation of cell positions was interrupted...");
-                currentlyGenerating = false;
-                return;
-            }
-
-
-            plotSaveGenerator = new PlotSaveGenerator(activeProject, this);
-
-            plotSaveGenerator.setSimConfig(simConfig);
-
-            plotSaveGenerator.start();
-
-
-        }
-
-        else if (generatorType.equals(PlotSaveGenerator.myGeneratorType))
-        {
-
-            if (report.indexOf("Generation interrupted") > 0)
-            {
-                logger.logComment("It seems the generation of plots was interrupted...");
-                currentlyGenerating = false;
-                return;
-            }
-
-            cellInitialiser = new CellInitialiser(activeProject, this);
-
-            cellInitialiser.setSimConfig(simConfig);
-
-            cellInitialiser.start();
-
-
-        }
-
-        else if (generatorType.equals(CellInitialiser.myGeneratorType))
-        {
-
-            if (report.indexOf("Generation interrupted") > 0)
-            {
-                logger.logComment("It seems the generation of initial cell settings was interrupted...");
-                currentlyGenerating = false;
-                return;
-            }
-
-            currentlyGenerating = false;
-        }
-        else
-        {
-            logger.logComment("Don't know the type of that generation report!!: " + generatorType);
-            
-            //////////////currentlyGenerating = false;
-        }
-
-
     }
     
     
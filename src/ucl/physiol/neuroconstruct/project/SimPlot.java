@@ -63,6 +63,7 @@ public class SimPlot
     public static String CONTINUOUS_DATA_EXT = "dat";
     public static String SPIKE_EXT = "spike";
     public static String H5_EXT = "h5";
+    public static String BINARY_TRACE_EXT = "ntr";
 
 
     public static float DEFAULT_THRESHOLD = -20;
@@ -0,0 +1,543 @@
+/**
+ *  neuroConstruct
+ *  Software for developing large scale 3D networks of biologically realistic neurons
+ *
+ *  Copyright (c) 2009 Padraig Gleeson
+ *  UCL Department of Neuroscience, Physiology and Pharmacology
+ *
+ *  Development of this software was made possible with funding from the
+ *  Medical Research Council and the Wellcome Trust
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+
+package ucl.physiol.neuroconstruct.project;
+
+import java.io.*;
+import java.nio.*;
+import java.util.*;
+
+
+/**
+ * Columnar storage for all of the synaptic connections of a single network
+ * connection (projection). Each connection is a row index into a set of parallel
+ * primitive arrays, so a connection costs a few dozen bytes rather than the
+ * half dozen objects of a SingleSynapticConnection.
+ *
+ * Indexes from source cell and target cell to the connections on that cell are
+ * built on the first query and then kept up to date as connections are added,
+ * so lookups during generation are proportional to the degree of the cell,
+ * not the size of the projection.
+ *
+ * @author Padraig Gleeson
+ *
+ */
+
+public class SynapticConnectionStore
+{
+    private static final int INITIAL_CAPACITY = 16;
+
+    private static final int NO_CONN = -1;
+
+    private int numConns = 0;
+
+    private byte[] connTypes = new byte[INITIAL_CAPACITY];
+
+    private int[] srcCells = new int[INITIAL_CAPACITY];
+    private int[] srcSegIds = new int[INITIAL_CAPACITY];
+    private float[] srcFracts = new float[INITIAL_CAPACITY];
+
+    private int[] tgtCells = new int[INITIAL_CAPACITY];
+    private int[] tgtSegIds = new int[INITIAL_CAPACITY];
+    private float[] tgtFracts = new float[INITIAL_CAPACITY];
+
+    private float[] apPropDelays = new float[INITIAL_CAPACITY];
+
+    /*
+     * The ConnSpecificProps of connection i are stored in rows
+     * propOffsets[i] to propOffsets[i+1]-1 of the prop arrays
+     */
+    private int[] propOffsets = new int[INITIAL_CAPACITY + 1];
+    private int numProps = 0;
+    private int[] propSynTypes = new int[0];
+    private float[] propWeights = new float[0];
+    private float[] propInternalDelays = new float[0];
+
+    private ArrayList<String> synapseTypes = new ArrayList<String>();
+
+    /*
+     * Adjacency chains, only allocated when first needed. srcHeads[c] is the most
+     * recently added connection from source cell c, and nextFromSrc[i] the previous
+     * connection from the same cell as connection i (likewise for targets)
+     */
+    private int[] srcHeads = null;
+    private int[] nextFromSrc = null;
+
+    private int[] tgtHeads = null;
+    private int[] nextToTgt = null;
+
+
+    public SynapticConnectionStore()
+    {
+    }
+
+    public int size()
+    {
+        return numConns;
+    }
+
+    public boolean isEmpty()
+    {
+        return numConns==0;
+    }
+
+
+    /**
+     * Adds a single connection, returning its index in the store
+     */
+    public int addConnection(int connectionType,
+                             int sourceCellNumber,
+                             int sourceCellSegmentIndex,
+                             float sourceCellDisplacement,
+                             int targetCellNumber,
+                             int targetCellSegmentIndex,
+                             float targetCellDisplacement,
+                             float apPropDelay,
+                             ArrayList<ConnSpecificProps> props)
+    {
+        if (numConns == srcCells.length)
+        {
+            growConns(numConns + (numConns >> 1) + 1);
+        }
+
+        int index = numConns;
+
+        connTypes[index] = (byte)connectionType;
+        srcCells[index] = sourceCellNumber;
+        srcSegIds[index] = sourceCellSegmentIndex;
+        srcFracts[index] = sourceCellDisplacement;
+        tgtCells[index] = targetCellNumber;
+        tgtSegIds[index] = targetCellSegmentIndex;
+        tgtFracts[index] = targetCellDisplacement;
+        apPropDelays[index] = apPropDelay;
+
+        if (props!=null && !props.isEmpty())
+        {
+            if (numProps + props.size() > propSynTypes.length)
+            {
+                growProps(Math.max(numProps + props.size(), numProps + (numProps >> 1) + 1));
+            }
+            for (ConnSpecificProps prop: props)
+            {
+                propSynTypes[numProps] = getSynapseTypeIndex(prop.synapseType);
+                propWeights[numProps] = prop.weight;
+                propInternalDelays[numProps] = prop.internalDelay;
+                numProps++;
+            }
+        }
+        propOffsets[index + 1] = numProps;
+
+        numConns++;
+
+        if (srcHeads!=null) linkSource(index);
+        if (tgtHeads!=null) linkTarget(index);
+
+        return index;
+    }
+
+    /**
+     * Appends all the connections in the other store (in order) with a single copy of each
+     * column, e.g. when a batch of connections built up separately is added to a projection
+     */
+    public void addConnections(SynapticConnectionStore conns)
+    {
+        int numNew = conns.numConns;
+        int numNewProps = conns.numProps;
+
+        if (numNew == 0) return;
+
+        if (numConns + numNew > srcCells.length)
+        {
+            growConns(Math.max(numConns + numNew, numConns + (numConns >> 1) + 1));
+        }
+        if (numProps + numNewProps > propSynTypes.length)
+        {
+            growProps(Math.max(numProps + numNewProps, numProps + (numProps >> 1) + 1));
+        }
+
+        System.arraycopy(conns.connTypes, 0, connTypes, numConns, numNew);
+        System.arraycopy(conns.srcCells, 0, srcCells, numConns, numNew);
+        System.arraycopy(conns.srcSegIds, 0, srcSegIds, numConns, numNew);
+        System.arraycopy(conns.srcFracts, 0, srcFracts, numConns, numNew);
+        System.arraycopy(conns.tgtCells, 0, tgtCells, numConns, numNew);
+        System.arraycopy(conns.tgtSegIds, 0, tgtSegIds, numConns, numNew);
+        System.arraycopy(conns.tgtFracts, 0, tgtFracts, numConns, numNew);
+        System.arraycopy(conns.apPropDelays, 0, apPropDelays, numConns, numNew);
+
+        for (int i = 1; i <= numNew; i++)
+        {
+            propOffsets[numConns + i] = numProps + conns.propOffsets[i];
+        }
+
+        int[] synTypeIndices = new int[conns.synapseTypes.size()];
+        for (int t = 0; t < synTypeIndices.length; t++)
+        {
+            synTypeIndices[t] = getSynapseTypeIndex(conns.synapseTypes.get(t));
+        }
+        for (int p = 0; p < numNewProps; p++)
+        {
+            propSynTypes[numProps + p] = synTypeIndices[conns.propSynTypes[p]];
+        }
+        System.arraycopy(conns.propWeights, 0, propWeights, numProps, numNewProps);
+        System.arraycopy(conns.propInternalDelays, 0, propInternalDelays, numProps, numNewProps);
+
+        int firstNew = numConns;
+        numConns += numNew;
+        numProps += numNewProps;
+
+        for (int index = firstNew; index < numConns; index++)
+        {
+            if (srcHeads!=null) linkSource(index);
+            if (tgtHeads!=null) linkTarget(index);
+        }
+    }
+
+
+    public int getConnectionType(int index)
+    {
+        return connTypes[index];
+    }
+
+    public int getSourceCellNumber(int index)
+    {
+        return srcCells[index];
+    }
+
+    public int getSourceSegmentId(int index)
+    {
+        return srcSegIds[index];
+    }
+
+    public float getSourceFractAlong(int index)
+    {
+        return srcFracts[index];
+    }
+
+    public int getTargetCellNumber(int index)
+    {
+        return tgtCells[index];
+    }
+
+    public int getTargetSegmentId(int index)
+    {
+        return tgtSegIds[index];
+    }
+
+    public float getTargetFractAlong(int index)
+    {
+        return tgtFracts[index];
+    }
+
+    public float getApPropDelay(int index)
+    {
+        return apPropDelays[index];
+    }
+
+    public int getNumConnSpecificProps(int index)
+    {
+        return propOffsets[index + 1] - propOffsets[index];
+    }
+
+    /**
+     * Creates new ConnSpecificProps objects for the connection, or returns null if
+     * there are none, as was the case for connections added with null props
+     */
+    public ArrayList<ConnSpecificProps> getConnSpecificProps(int index)
+    {
+        int start = propOffsets[index];
+        int end = propOffsets[index + 1];
+
+        if (start == end) return null;
+
+        ArrayList<ConnSpecificProps> props = new ArrayList<ConnSpecificProps>(end - start);
+
+        for (int p = start; p < end; p++)
+        {
+            ConnSpecificProps prop = new ConnSpecificProps(synapseTypes.get(propSynTypes[p]));
+            prop.weight = propWeights[p];
+            prop.internalDelay = propInternalDelays[p];
+            props.add(prop);
+        }
+        return props;
+    }
+
+    /**
+     * Weight of the n-th ConnSpecificProps of the connection, without creating any objects
+     */
+    public float getWeight(int index, int propNum)
+    {
+        return propWeights[propOffsets[index] + propNum];
+    }
+
+    public float getInternalDelay(int index, int propNum)
+    {
+        return propInternalDelays[propOffsets[index] + propNum];
+    }
+
+    public String getSynapseType(int index, int propNum)
+    {
+        return synapseTypes.get(propSynTypes[propOffsets[index] + propNum]);
+    }
+
+
+    /**
+     * Indices (in order of addition) of all connections starting on the source cell
+     */
+    public int[] getConnIndicesFromSource(int sourceCellNumber)
+    {
+        if (srcHeads==null) buildSourceIndex();
+
+        if (sourceCellNumber<0 || sourceCellNumber>=srcHeads.length) return new int[0];
+
+        return collectChain(srcHeads[sourceCellNumber], nextFromSrc);
+    }
+
+    /**
+     * Indices (in order of addition) of all connections ending on the target cell
+     */
+    public int[] getConnIndicesToTarget(int targetCellNumber)
+    {
+        if (tgtHeads==null) buildTargetIndex();
+
+        if (targetCellNumber<0 || targetCellNumber>=tgtHeads.length) return new int[0];
+
+        return collectChain(tgtHeads[targetCellNumber], nextToTgt);
+    }
+
+    public boolean areConnected(int sourceCellNumber, int targetCellNumber)
+    {
+        if (srcHeads==null) buildSourceIndex();
+
+        if (sourceCellNumber<0 || sourceCellNumber>=srcHeads.length) return false;
+
+        for (int i = srcHeads[sourceCellNumber]; i != NO_CONN; i = nextFromSrc[i])
+        {
+            if (tgtCells[i]==targetCellNumber) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Frees any unused capacity, e.g. once generation of the projection is complete
+     */
+    public void trimToSize()
+    {
+        if (numConns < srcCells.length) growConns(numConns);
+        if (numProps < propSynTypes.length) growProps(numProps);
+    }
+
+    /**
+     * Writes the columns of the store into a section of a NetworkSnapshot
+     */
+    void writeColumns(NetworkSnapshot.ColumnWriter out) throws IOException
+    {
+        out.putInt(numConns);
+        out.putInt(numProps);
+        out.putStrings(synapseTypes);
+
+        out.putBytes(connTypes, numConns);
+        out.putInts(srcCells, numConns);
+        out.putInts(srcSegIds, numConns);
+        out.putFloats(srcFracts, numConns);
+        out.putInts(tgtCells, numConns);
+        out.putInts(tgtSegIds, numConns);
+        out.putFloats(tgtFracts, numConns);
+        out.putFloats(apPropDelays, numConns);
+
+        out.putInts(propOffsets, numConns + 1);
+        out.putInts(propSynTypes, numProps);
+        out.putFloats(propWeights, numProps);
+        out.putFloats(propInternalDelays, numProps);
+    }
+
+    /**
+     * Creates a store from the columns written by writeColumns(), at the current position of the
+     * (memory mapped) buffer
+     */
+    static SynapticConnectionStore readColumns(ByteBuffer in)
+    {
+        SynapticConnectionStore store = new SynapticConnectionStore();
+
+        int num = in.getInt();
+        int numPropsHere = in.getInt();
+        store.synapseTypes.addAll(Arrays.asList(NetworkSnapshot.getStrings(in)));
+
+        store.connTypes = NetworkSnapshot.getBytes(in, num);
+        store.srcCells = NetworkSnapshot.getInts(in, num);
+        store.srcSegIds = NetworkSnapshot.getInts(in, num);
+        store.srcFracts = NetworkSnapshot.getFloats(in, num);
+        store.tgtCells = NetworkSnapshot.getInts(in, num);
+        store.tgtSegIds = NetworkSnapshot.getInts(in, num);
+        store.tgtFracts = NetworkSnapshot.getFloats(in, num);
+        store.apPropDelays = NetworkSnapshot.getFloats(in, num);
+
+        store.propOffsets = NetworkSnapshot.getInts(in, num + 1);
+        store.propSynTypes = NetworkSnapshot.getInts(in, numPropsHere);
+        store.propWeights = NetworkSnapshot.getFloats(in, numPropsHere);
+        store.propInternalDelays = NetworkSnapshot.getFloats(in, numPropsHere);
+
+        store.numConns = num;
+        store.numProps = numPropsHere;
+
+        return store;
+    }
+
+
+    private int[] collectChain(int head, int[] next)
+    {
+        int count = 0;
+        for (int i = head; i != NO_CONN; i = next[i]) count++;
+
+        // The chain runs from newest to oldest, so fill from the end
+        int[] indices = new int[count];
+        for (int i = head; i != NO_CONN; i = next[i])
+        {
+            indices[--count] = i;
+        }
+        return indices;
+    }
+
+    private void buildSourceIndex()
+    {
+        srcHeads = newHeads(srcCells);
+        nextFromSrc = new int[srcCells.length];
+
+        for (int i = 0; i < numConns; i++) linkSource(i);
+    }
+
+    private void buildTargetIndex()
+    {
+        tgtHeads = newHeads(tgtCells);
+        nextToTgt = new int[tgtCells.length];
+
+        for (int i = 0; i < numConns; i++) linkTarget(i);
+    }
+
+    private int[] newHeads(int[] cells)
+    {
+        int maxCell = -1;
+        for (int i = 0; i < numConns; i++)
+        {
+            if (cells[i] > maxCell) maxCell = cells[i];
+        }
+        int[] heads = new int[Math.max(maxCell + 1, INITIAL_CAPACITY)];
+        Arrays.fill(heads, NO_CONN);
+        return heads;
+    }
+
+    private void linkSource(int index)
+    {
+        int cell = srcCells[index];
+        if (cell >= srcHeads.length) srcHeads = growHeads(srcHeads, cell);
+
+        nextFromSrc[index] = srcHeads[cell];
+        srcHeads[cell] = index;
+    }
+
+    private void linkTarget(int index)
+    {
+        int cell = tgtCells[index];
+        if (cell >= tgtHeads.length) tgtHeads = growHeads(tgtHeads, cell);
+
+        nextToTgt[index] = tgtHeads[cell];
+        tgtHeads[cell] = index;
+    }
+
+    private static int[] growHeads(int[] heads, int cell)
+    {
+        int oldLength = heads.length;
+        int[] newHeads = Arrays.copyOf(heads, Math.max(cell + 1, oldLength + (oldLength >> 1)));
+        Arrays.fill(newHeads, oldLength, newHeads.length, NO_CONN);
+        return newHeads;
+    }
+
+    private int getSynapseTypeIndex(String synapseType)
+    {
+        int index = synapseTypes.indexOf(synapseType);
+        if (index<0)
+        {
+            synapseTypes.add(synapseType);
+            index = synapseTypes.size() - 1;
+        }
+        return index;
+    }
+
+    private void growConns(int capacity)
+    {
+        connTypes = Arrays.copyOf(connTypes, capacity);
+        srcCells = Arrays.copyOf(srcCells, capacity);
+        srcSegIds = Arrays.copyOf(srcSegIds, capacity);
+        srcFracts = Arrays.copyOf(srcFracts, capacity);
+        tgtCells = Arrays.copyOf(tgtCells, capacity);
+        tgtSegIds = Arrays.copyOf(tgtSegIds, capacity);
+        tgtFracts = Arrays.copyOf(tgtFracts, capacity);
+        apPropDelays = Arrays.copyOf(apPropDelays, capacity);
+        propOffsets = Arrays.copyOf(propOffsets, capacity + 1);
+
+        if (nextFromSrc!=null) nextFromSrc = Arrays.copyOf(nextFromSrc, capacity);
+        if (nextToTgt!=null) nextToTgt = Arrays.copyOf(nextToTgt, capacity);
+    }
+
+    private void growProps(int capacity)
+    {
+        propSynTypes = Arrays.copyOf(propSynTypes, capacity);
+        propWeights = Arrays.copyOf(propWeights, capacity);
+        propInternalDelays = Arrays.copyOf(propInternalDelays, capacity);
+    }
+
+
+    @Override
+    public String toString()
+    {
+        return "SynapticConnectionStore with "+numConns+" connections, "+numProps+" conn specific props";
+    }
+
+    public static void main(String[] args)
+    {
+        SynapticConnectionStore store = new SynapticConnectionStore();
+
+        ArrayList<ConnSpecificProps> props = new ArrayList<ConnSpecificProps>();
+        ConnSpecificProps cp = new ConnSpecificProps("AMPA");
+        cp.weight = 0.5f;
+        props.add(cp);
+
+        for (int i = 0; i < 100; i++)
+        {
+            store.addConnection(GeneratedNetworkConnections.MORPH_NETWORK_CONNECTION,
+                                i % 7, 0, 0.5f, i % 11, 1, 0.3f, 0, i % 2 == 0 ? props : null);
+        }
+
+        System.out.println(store);
+        System.out.println("From src 3: "+ Arrays.toString(store.getConnIndicesFromSource(3)));
+        System.out.println("To tgt 5: "+ Arrays.toString(store.getConnIndicesToTarget(5)));
+
+        store.addConnection(GeneratedNetworkConnections.MORPH_NETWORK_CONNECTION, 30, 0, 0.5f, 40, 1, 0.3f, 0, null);
+
+        System.out.println("30 -> 40: "+ store.areConnected(30, 40)+", 40 -> 30: "+ store.areConnected(40, 30));
+        System.out.println("Props of conn 4: "+ store.getConnSpecificProps(4)+", of conn 5: "+store.getConnSpecificProps(5));
+    }
+
+}
@@ -183,6 +183,10 @@ public class VolumeBasedConnGenerator extends Thread
             int numberInTargetCellGroup
                 = project.generatedCellPositions.getNumberInCellGroup(targetCellGroup);
 
+            // Morphologies don't change during generation, so the segment positions can be taken from snapshots
+            sourceCellInstance.getFlatMorphology();
+            targetCellInstance.getFlatMorphology();
+
             String generationStartCellGroup = null;
             Cell generationStartCellInstance = null;
             int numberInGenStartCellGroup = -1;
@@ -257,8 +261,8 @@ public class VolumeBasedConnGenerator extends Thread
                         numberConnections = numberConnections +1;
                 }
 
-                logger.logComment("For cell number: " + genStartCellNumber + ", there will be " + numberConnections +
-                                  " connections");
+                logger.logComment("For cell number: {}, there will be {} connections",
+                                  genStartCellNumber, numberConnections);
 
                 ArrayList<Integer> finishCellsMaxedOut = new ArrayList<Integer>(numberInGenFinishCellGroup);
 
@@ -273,7 +277,8 @@ public class VolumeBasedConnGenerator extends Thread
 
                     boolean continueSingleConnGeneration = true;
 
-                    logger.logComment("-----   Connection number " + p + " for cell number: " + genStartCellNumber);
+                    logger.logComment("-----   Connection number {} for cell number: {}",
+                                      p, genStartCellNumber);
 
                     SegmentLocation genStartConnPoint = null;
 
@@ -305,8 +310,8 @@ public class VolumeBasedConnGenerator extends Thread
                             genStartCellNumber, true);
                     }
 
-                    logger.logComment("genStartConnPoint: " + genStartConnPoint);
-                    logger.logComment("genFinCellsConnToThis: " + genFinCellsConnToThis);
+                    logger.logComment("genStartConnPoint: {}", genStartConnPoint);
+                    logger.logComment("genFinCellsConnToThis: {}", genFinCellsConnToThis);
 
                     if (genFinCellsConnToThis.size() == numberInGenFinishCellGroup &&
                         connConds.isOnlyConnectToUniqueCells())
@@ -317,10 +322,9 @@ public class VolumeBasedConnGenerator extends Thread
                     }
                     else
                     {
-                        logger.logComment("There are currently "
-                                          + genFinCellsConnToThis.size()
-                                          + " unique connection cells in the opposite cell group: ");
-                        logger.logComment(genFinCellsConnToThis.toString());
+                        logger.logComment("There are currently {} unique connection cells in the opposite cell group: ",
+                                          genFinCellsConnToThis.size());
+                        logger.logComment("{}", genFinCellsConnToThis);
                     }
 
                     if (genStartConnPoint == null)
@@ -339,8 +343,8 @@ public class VolumeBasedConnGenerator extends Thread
                         int genFinishCellNumber = -1;
 
                         logger.logComment("Linking will be done in completely random manner...");
-                        logger.logComment("Asking cell of type: " + generationFinishCellInstance.toString() +
-                                          " for a synaptic location");
+                        logger.logComment("Asking cell of type: {} for a synaptic location",
+                                          generationFinishCellInstance);
 
                         int numFailedAttempts = 0;
                         boolean foundOne = false;
@@ -353,7 +357,7 @@ public class VolumeBasedConnGenerator extends Thread
                                && continueGeneration
                                && finishCellsMaxedOut.size()<numberInGenFinishCellGroup)
                         {
-                            logger.logComment("....   numFaliedAttempts: " + numFailedAttempts);
+                            logger.logComment("....   numFaliedAttempts: {}", numFailedAttempts);
 
                             if (connConds.getGenerationDirection() == ConnectivityConditions.SOURCE_TO_TARGET)
                             {
@@ -369,7 +373,7 @@ public class VolumeBasedConnGenerator extends Thread
 
                             }
 
-                            logger.logComment("genFinishConnPoint: " + genFinishConnPoint);
+                            logger.logComment("genFinishConnPoint: {}", genFinishConnPoint);
 
                             if (genFinishConnPoint == null)
                             {
@@ -390,7 +394,7 @@ public class VolumeBasedConnGenerator extends Thread
 
                                     genFinishCellNumber = ProjectManager.getRandomGenerator().nextInt(numberInGenFinishCellGroup);
 
-                                    logger.logComment("genFinishCellNumber: " + genFinishCellNumber);
+                                    logger.logComment("genFinishCellNumber: {}", genFinishCellNumber);
 
                                     //if (!numFinishCellsTried.contains(genFinishCellNumber))
                                     //    numFinishCellsTried.add(genFinishCellNumber);
@@ -408,20 +412,20 @@ public class VolumeBasedConnGenerator extends Thread
 
                                     }
 
-                                    logger.logComment("numConnsOnFinishCell: " + numConnsOnFinishCell);
+                                    logger.logComment("numConnsOnFinishCell: {}", numConnsOnFinishCell);
 
 
                                     if ((numConnsOnFinishCell+1)<=connConds.getMaxNumInitPerFinishCell())
                                     {
-                                        logger.logComment("There are not more than: " + connConds.getMaxNumInitPerFinishCell()
-                                                          + " src conns on finish cell " + genFinishCellNumber);
+                                        logger.logComment("There are not more than: {} src conns on finish cell {}",
+                                                          connConds.getMaxNumInitPerFinishCell(), genFinishCellNumber);
 
                                         satisfiesMaxPerFinish = true;
                                     }
                                     else
                                     {
-                                        logger.logComment("There are already: " + numConnsOnFinishCell
-                                                          + " src conns on tgt cell "+genFinishCellNumber);
+                                        logger.logComment("There are already: {} src conns on tgt cell {}",
+                                                          numConnsOnFinishCell, genFinishCellNumber);
 
                                         satisfiesMaxPerFinish = false;
 
@@ -484,7 +488,7 @@ public class VolumeBasedConnGenerator extends Thread
                                     Point3f absGenFinishSynPosition = new Point3f(absoluteGenFinishCellPosition);
                                     absGenFinishSynPosition.add(cellCoordsSynPointGenFinish);
 
-                                    logger.logComment("absGenFinishSynPosition: " + absGenFinishSynPosition);
+                                    logger.logComment("absGenFinishSynPosition: {}", absGenFinishSynPosition);
 
                                     connectionDistance = absGenFinishSynPosition.distance(absGenStartSynPosition);
 
@@ -500,11 +504,11 @@ public class VolumeBasedConnGenerator extends Thread
 
                                     for (Region reg : translatedRegions)
                                     {
-                                        logger.logComment("Looking in region: " + reg);
+                                        logger.logComment("Looking in region: {}", reg);
 
                                         if (reg.isPointInRegion(absGenFinishSynPosition))
                                         {
-                                            logger.logComment("Found point in region: " + reg);
+                                            logger.logComment("Found point in region: {}", reg);
                                             foundOne = true;
                                         }
                                     }
@@ -531,12 +535,14 @@ public class VolumeBasedConnGenerator extends Thread
                                             }
                                             else
                                             {
-                                                logger.logComment("Nonuniform prob of conn given by: " + inhomoExp);
+                                                logger.logComment("Nonuniform prob of conn given by: {}",
+                                                                  inhomoExp);
 
                                                 Point3f synPosnRelToStartCell = new Point3f(absoluteGenFinishCellPosition);
                                                 synPosnRelToStartCell.sub(genStartCellPosition);
 
-                                                logger.logComment("synPosnRelToStartCell: "+synPosnRelToStartCell);
+                                                logger.logComment("synPosnRelToStartCell: {}",
+                                                                  synPosnRelToStartCell);
 
                                                 float x = synPosnRelToStartCell.x;
                                                 float y = synPosnRelToStartCell.y;
@@ -551,7 +557,7 @@ public class VolumeBasedConnGenerator extends Thread
                                                     new Argument("r", r)};
 
                                                 double prob = inhomoExp.evaluateAt(args);
-                                                logger.logComment("Probability of conn: " + prob);
+                                                logger.logComment("Probability of conn: {}", prob);
                                                 if (prob <= 0)
                                                 {
                                                     logger.logComment("Zero or negative prob, so rejecting...");
@@ -567,17 +573,19 @@ public class VolumeBasedConnGenerator extends Thread
                                                     float coin = ProjectManager.getRandomGenerator().nextFloat();
                                                     if (coin > prob)
                                                     {
-                                                        logger.logComment("Coin said " + coin + " so rejecting");
+                                                        logger.logComment("Coin said {} so rejecting", coin);
                                                         foundOne = false;
                                                     }
                                                     else
                                                     {
-                                                        logger.logComment("Coin said " + coin + " so accepting...");
+                                                        logger.logComment("Coin said {} so accepting...",
+                                                                          coin);
                                                         foundOne = true;
                                                     }
                                                 }
 
-                                                logger.logComment("Equation evaluated as: " + inhomoExp.getNiceString());
+                                                logger.logComment("Equation evaluated as: {}",
+                                                                  inhomoExp.getNiceString());
                                             }
                                         }
                                         catch (EquationException ex1)
@@ -604,10 +612,10 @@ public class VolumeBasedConnGenerator extends Thread
                             && genFinishConnPoint != null
                             && finishCellsMaxedOut.size()<numberInGenFinishCellGroup)
                         {
-                            logger.logComment("Generated a synaptic point for cell number " +
-                                              genFinishCellNumber + ": ");
+                            logger.logComment("Generated a synaptic point for cell number {}: ",
+                                              genFinishCellNumber);
 
-                            logger.logComment(genFinishConnPoint.toString());
+                            logger.logComment("{}", genFinishConnPoint);
 
                             ArrayList<ConnSpecificProps> props = new ArrayList<ConnSpecificProps> ();
                             
@@ -719,8 +727,8 @@ public class VolumeBasedConnGenerator extends Thread
                                         generationStartCellInstance.toString(), null);
                     }
                 }
-                logger.logComment("Finished creating the " + numberConnections + " conns for cell number: " +
-                                  genStartCellNumber);
+                logger.logComment("Finished creating the {} conns for cell number: {}",
+                                  numberConnections, genStartCellNumber);
             }
             logger.logComment("Finished looking at all " + numberInGenStartCellGroup + " cells in group: " +
                               generationStartCellGroup);
@@ -828,7 +836,7 @@ public class VolumeBasedConnGenerator extends Thread
             System.out.println("Number of cells generated: "+ proj.generatedCellPositions.getNumberInAllCellGroups());
             for (String nc: proj.generatedNetworkConnections.getNamesNonEmptyNetConns())
             {
-                System.out.println("with "+ proj.generatedNetworkConnections.getSynapticConnections(nc).size()+" conns in "+ nc);
+                System.out.println("with "+ proj.generatedNetworkConnections.getNumberSynapticConnections(nc)+" conns in "+ nc);
             }
 
             
@@ -53,6 +53,18 @@ public abstract class CellPackingAdapter
     protected String description = null;
     private Vector<Point3f> positionsAlreadyTaken = new Vector<Point3f>();
 
+    /*
+     * Grid over positionsAlreadyTaken for collision checks, null if myCell has no
+     * finite volume segments, so nothing can collide with it
+     */
+    private PackedCellIndex positionIndex = null;
+
+    /*
+     * Finite volume segments of myCell and of the cells checked against it. Cleared on
+     * reset(), so any changes to the cells are picked up at the next generation
+     */
+    private IdentityHashMap<Cell, CellVolumeGeometry> volumeGeometries = new IdentityHashMap<Cell, CellVolumeGeometry>();
+
     protected InternalParameter[] parameterList = null;
 
 
@@ -95,6 +107,38 @@ public abstract class CellPackingAdapter
         logger.logComment("addRegionAndCellInfo called...");
         myRegion = region;
         myCell = cell;
+
+        volumeGeometries.clear();
+        rebuildPositionIndex();
+    }
+
+    private CellVolumeGeometry getVolumeGeometry(Cell cell)
+    {
+        CellVolumeGeometry geometry = volumeGeometries.get(cell);
+        if (geometry == null || !geometry.isValidFor(cell))
+        {
+            geometry = new CellVolumeGeometry(cell);
+            volumeGeometries.put(cell, geometry);
+        }
+        return geometry;
+    }
+
+    private void rebuildPositionIndex()
+    {
+        positionIndex = null;
+
+        if (myCell == null) return;
+
+        CellVolumeGeometry myGeometry = getVolumeGeometry(myCell);
+
+        if (myGeometry.isEmpty()) return;
+
+        positionIndex = new PackedCellIndex(2 * myGeometry.collisionRadius);
+
+        for (Point3f position: positionsAlreadyTaken)
+        {
+            positionIndex.add(position);
+        }
     }
 
 
@@ -105,12 +149,15 @@ public abstract class CellPackingAdapter
     public void reset()
     {
         this.positionsAlreadyTaken.removeAllElements();
+
+        volumeGeometries.clear();
+        rebuildPositionIndex();
     }
 
     public int getCurrentNumberPositions()
     {
         int num = positionsAlreadyTaken.size();
-        logger.logComment("There are "+num+" cells in this: "+ this.toString());
+        logger.logComment("There are {} cells in this: {}", num, this);
         return num;
     }
 
@@ -127,11 +174,14 @@ public abstract class CellPackingAdapter
      */
     public Point3f getNextPosition() throws CellPackingException
     {
-        logger.logComment("       +++++       getNextPosition called with cell: "+ myCell.getInstanceName()+" and adapter: "+ toString());
+        logger.logComment("       +++++       getNextPosition called with cell: {} and adapter: {}",
+                          myCell.getInstanceName(), this);
         Point3f newPoint = generateNextPosition();
 
         this.positionsAlreadyTaken.add(newPoint);
 
+        if (positionIndex != null) positionIndex.add(newPoint);
+
         return newPoint;
     }
 
@@ -144,80 +194,90 @@ public abstract class CellPackingAdapter
      */
     public void cancelPosition(Point3f point)
     {
-        logger.logComment("Position: "+ point +" being cancelled...");
+        logger.logComment("Position: {} being cancelled...", point);
         boolean success = positionsAlreadyTaken.remove(point);
+        if (success && positionIndex != null) positionIndex.remove(point);
         if (success) logger.logComment("Successfully removed");
         else logger.logComment("Point never present...");
      }
 
 
+    /**
+     * Checks whether a cell placed at the suggested location would collide with any of the
+     * cells already placed by this adapter. Only cells whose origin is close enough for
+     * any of their finite volume segments to touch the new cell are checked in detail.
+     */
     public boolean doesCellCollideWithExistingCells(Point3f suggestedLocation,
                                                     Cell newCell)
     {
-        logger.logComment("Packer of cells: "+myCell.getInstanceName()+" checking if cell: "+newCell.getInstanceName()+" at: "+ suggestedLocation + " collides with one of my "+positionsAlreadyTaken.size()+ " cells");
+        logger.logComment("Packer of cells: {} checking if cell: {} at: {} collides with one of my {} cells",
+                          myCell.getInstanceName(), newCell.getInstanceName(), suggestedLocation, positionsAlreadyTaken.size());
 
-        Iterator iter = positionsAlreadyTaken.iterator();
+        CellVolumeGeometry myGeometry = getVolumeGeometry(myCell);
+        CellVolumeGeometry newGeometry = getVolumeGeometry(newCell);
 
-        while (iter.hasNext())
+        if (positionIndex == null || myGeometry.isEmpty() || newGeometry.isEmpty())
         {
-            Point3f locationMyCell = (Point3f) iter.next();
+            logger.logComment("No finite volume segments to collide");
+            return false;
+        }
 
-            logger.logComment("Checking one of my cells at: " + Utils3D.getShortStringDesc(locationMyCell));
+        float maxSeparation = myGeometry.collisionRadius + newGeometry.collisionRadius;
 
-            Vector<Segment> volumeSegmentsMyCell = new Vector<Segment>();
-            Vector<Segment> mySegments = myCell.getAllSegments();
+        List<Point3f> candidates = positionIndex.getPositionsNear(suggestedLocation, maxSeparation);
 
-            for (int i = 0; i < mySegments.size(); i++)
-            {
-                Segment segment = mySegments.elementAt(i);
-                if (segment.isFiniteVolume())
-                    volumeSegmentsMyCell.add(segment);
-            }
+        if (candidates == null) candidates = positionsAlreadyTaken;
 
-            Vector<Segment> volumeSegmentsNewCell = new Vector<Segment>();
-            Vector<Segment> newSegments = newCell.getAllSegments();
+        logger.logComment("{} of my cells are near enough to check", candidates.size());
 
-            for (int i = 0; i < newSegments.size(); i++)
-            {
-                Segment segment = newSegments.elementAt(i);
-                if (segment.isFiniteVolume())
-                    volumeSegmentsNewCell.add(segment);
-            }
+        Point3f[] realStartPosNew = new Point3f[newGeometry.numSegments];
+        Point3f[] realEndPosNew = new Point3f[newGeometry.numSegments];
 
-            for (int newSecs = 0; newSecs < volumeSegmentsNewCell.size(); newSecs++)
-            {
-                Segment segmentNewCell = volumeSegmentsNewCell.elementAt(newSecs);
+        for (int newSecs = 0; newSecs < newGeometry.numSegments; newSecs++)
+        {
+            realStartPosNew[newSecs] = new Point3f(newGeometry.startPoints[newSecs]);
+            realStartPosNew[newSecs].add(suggestedLocation);
+            realEndPosNew[newSecs] = new Point3f(newGeometry.endPoints[newSecs]);
+            realEndPosNew[newSecs].add(suggestedLocation);
+        }
 
+        Point3f realStartPosMine = new Point3f();
+        Point3f realEndPosMine = new Point3f();
 
-                for (int mySecs = 0; mySecs < volumeSegmentsMyCell.size(); mySecs++)
-                {
-                    Segment segmentMyCell = volumeSegmentsMyCell.elementAt(mySecs);
+        for (Point3f locationMyCell: candidates)
+        {
+            if (locationMyCell.distance(suggestedLocation) > maxSeparation)
+                continue;
 
-                    /** @todo Redo this for all eventualities... */
+            if (logger.isLoggingComments())
+                logger.logComment("Checking one of my cells at: " + Utils3D.getShortStringDesc(locationMyCell));
+
+            for (int newSecs = 0; newSecs < newGeometry.numSegments; newSecs++)
+            {
+                boolean newSpherical = newGeometry.spherical[newSecs];
+                float newRadius = newGeometry.radii[newSecs];
 
-                    Point3f realStartPosNew = new Point3f(segmentNewCell.getStartPointPosition());
-                    realStartPosNew.add(suggestedLocation);
-                    Point3f realEndPosNew = new Point3f(segmentNewCell.getEndPointPosition());
-                    realEndPosNew.add(suggestedLocation);
+                for (int mySecs = 0; mySecs < myGeometry.numSegments; mySecs++)
+                {
+                    /** @todo Redo this for all eventualities... */
 
-                    Point3f realStartPosMine = new Point3f(segmentMyCell.getStartPointPosition());
+                    realStartPosMine.set(myGeometry.startPoints[mySecs]);
                     realStartPosMine.add(locationMyCell);
-                    Point3f realEndPosMine = new Point3f(segmentMyCell.getEndPointPosition());
+                    realEndPosMine.set(myGeometry.endPoints[mySecs]);
                     realEndPosMine.add(locationMyCell);
 
-                    logger.logComment("realStartPosNew: "+ realStartPosNew + ", sec: "+segmentNewCell);
-                    logger.logComment("realStartPosMine: "+ realStartPosMine+ ", sec: "+segmentMyCell);
+                    boolean mySpherical = myGeometry.spherical[mySecs];
+                    float myRadius = myGeometry.radii[mySecs];
 
                     boolean collides = false;
 
                     // CASE: both segments are spherical...
 
-                    if (segmentMyCell.getSegmentShape()==Segment.SPHERICAL_SHAPE &&
-                        segmentNewCell.getSegmentShape()==Segment.SPHERICAL_SHAPE)
+                    if (mySpherical && newSpherical)
                     {
 
-                        if (realStartPosMine.distance(realStartPosNew)
-                            < segmentMyCell.getRadius() + segmentNewCell.getRadius())
+                        if (realStartPosMine.distance(realStartPosNew[newSecs])
+                            < myRadius + newRadius)
                         {
                             logger.logComment("2 Spherical collision");
                             collides = true;
@@ -225,54 +285,40 @@ public abstract class CellPackingAdapter
                     }
 
                     // CASE: Only my segment is spherical
-                    else if (segmentMyCell.getSegmentShape()==Segment.SPHERICAL_SHAPE)
+                    else if (mySpherical)
                     {
                         if (Utils3D.checkIntersectCylinderSphere(realStartPosMine,
-                                                             segmentMyCell.getRadius(),
-                                                             realStartPosNew,
-                                                             realEndPosNew,
-                                                             segmentNewCell.getRadius()))
-                        {
-                            logger.logComment("Cylindrical collision");
-                            collides = true;
-                        }
-                    }
-
-                    // CASE: Only new segment is spherical
-                    else if (segmentMyCell.getSegmentShape()==Segment.SPHERICAL_SHAPE)
-                    {
-                        if (Utils3D.checkIntersectCylinderSphere(realStartPosNew,
-                                                             segmentNewCell.getRadius(),
-                                                             realStartPosMine,
-                                                             realEndPosMine,
-                                                             segmentMyCell.getRadius()))
+                                                             myRadius,
+                                                             realStartPosNew[newSecs],
+                                                             realEndPosNew[newSecs],
+                                                             newRadius))
                         {
                             logger.logComment("Cylindrical collision");
                             collides = true;
                         }
                     }
 
-                    // CASE: Both are cylindrical
+                    // CASE: Both are cylindrical (or only new segment is spherical)
                     else
                     {
                         // Check whether the spheres at the new segment start point
                         // and end points collide with the cylinder of my segment.
                         // Obviously not a perfect criterion, but will sufice in most cases.
 
-                        if (Utils3D.checkIntersectCylinderSphere(realStartPosNew,
-                                                                 segmentNewCell.getSegmentStartRadius(),
+                        if (Utils3D.checkIntersectCylinderSphere(realStartPosNew[newSecs],
+                                                                 newGeometry.startRadii[newSecs],
                                                                  realStartPosMine,
                                                                  realEndPosMine,
-                                                                 segmentMyCell.getRadius()))
+                                                                 myRadius))
                           {
                               logger.logComment("Start point new collision");
                               collides = true;
                           }
-                          if (Utils3D.checkIntersectCylinderSphere(realEndPosNew,
-                                                                   segmentNewCell.getRadius(),
+                          if (Utils3D.checkIntersectCylinderSphere(realEndPosNew[newSecs],
+                                                                   newRadius,
                                                                    realStartPosMine,
                                                                    realEndPosMine,
-                                                                   segmentMyCell.getRadius()))
+                                                                   myRadius))
                           {
                               logger.logComment("End point new collision");
                               collides = true;
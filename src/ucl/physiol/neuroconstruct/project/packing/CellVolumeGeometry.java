@@ -0,0 +1,137 @@
+/**
+ *  neuroConstruct
+ *  Software for developing large scale 3D networks of biologically realistic neurons
+ *
+ *  Copyright (c) 2009 Padraig Gleeson
+ *  UCL Department of Neuroscience, Physiology and Pharmacology
+ *
+ *  Development of this software was made possible with funding from the
+ *  Medical Research Council and the Wellcome Trust
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+
+package ucl.physiol.neuroconstruct.project.packing;
+
+import javax.vecmath.*;
+import ucl.physiol.neuroconstruct.cell.*;
+
+/**
+ * The finite volume segments of a cell, extracted once so that collision checks
+ * when packing cells don't have to search the whole cell each time. Also holds the
+ * radius of a sphere around the cell origin outside which no collision with the
+ * cell can be detected.
+ *
+ * @author Padraig Gleeson
+ *
+ */
+
+class CellVolumeGeometry
+{
+    final int numSegments;
+
+    final Point3f[] startPoints;
+    final Point3f[] endPoints;
+
+    final float[] radii;
+    final float[] startRadii;
+    final boolean[] spherical;
+
+    /*
+     * Any collision test in CellPackingAdapter can only succeed when the two cell
+     * origins are closer than the sum of the two cells' collision radii
+     */
+    final float collisionRadius;
+
+    /*
+     * The snapshot of the cell's morphology the geometry was taken from
+     */
+    private final FlatMorphology morphology;
+
+    CellVolumeGeometry(Cell cell)
+    {
+        morphology = cell.getFlatMorphology();
+
+        int numAll = morphology.getNumSegments();
+        int[] volumeIndices = new int[numAll];
+        int num = 0;
+
+        for (int i = 0; i < numAll; i++)
+        {
+            if (morphology.isFiniteVolume(i))
+                volumeIndices[num++] = i;
+        }
+
+        numSegments = num;
+
+        startPoints = new Point3f[numSegments];
+        endPoints = new Point3f[numSegments];
+        radii = new float[numSegments];
+        startRadii = new float[numSegments];
+        spherical = new boolean[numSegments];
+
+        float maxPointDist = 0;
+        float maxRadius = 0;
+
+        Point3f origin = new Point3f();
+
+        for (int i = 0; i < numSegments; i++)
+        {
+            int index = volumeIndices[i];
+
+            startPoints[i] = morphology.getStartPoint(index, new Point3f());
+            endPoints[i] = morphology.getEndPoint(index, new Point3f());
+            radii[i] = morphology.getRadius(index);
+            startRadii[i] = morphology.getStartRadius(index);
+            spherical[i] = morphology.isSpherical(index);
+
+            maxPointDist = Math.max(maxPointDist, startPoints[i].distance(origin));
+            maxPointDist = Math.max(maxPointDist, endPoints[i].distance(origin));
+            maxRadius = Math.max(maxRadius, Math.max(radii[i], startRadii[i]));
+        }
+
+        /*
+         * Utils3D.checkIntersectCylinderSphere accepts sphere centres up to sphere radius
+         * beyond the ends of the cylinder and sphere radius + cylinder radius to the side,
+         * so up to sqrt(2) x (sum of radii) from the cylinder axis. Allow for that, plus a
+         * little for rounding
+         */
+        if (numSegments==0)
+            collisionRadius = 0;
+        else
+            collisionRadius = (maxPointDist + 1.5f * maxRadius) * 1.001f + 1e-4f;
+    }
+
+    /**
+     * False if the cell's morphology has changed since the geometry was taken
+     */
+    boolean isValidFor(Cell cell)
+    {
+        return morphology == cell.getCurrentFlatMorphology();
+    }
+
+    boolean isEmpty()
+    {
+        return numSegments==0;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "CellVolumeGeometry with "+numSegments+" finite volume segments, collision radius: "+collisionRadius;
+    }
+
+}
@@ -144,7 +144,7 @@ public class CubicClosePackedCellPackingAdapter extends CellPackingAdapter
         else
         {
             Point3f lastPositionedPoint = positionsAlreadyAttempted.lastElement();
-            logger.logComment("Last point attempted at: "+ lastPositionedPoint);
+            logger.logComment("Last point attempted at: {}", lastPositionedPoint);
 
             // Separation of planes is sqrt(2) times radius. This can be seen from
             // considering 4 spheres in a plane and a fifth on top. The centres form a
@@ -156,12 +156,12 @@ public class CubicClosePackedCellPackingAdapter extends CellPackingAdapter
       ///      float division = (lastPositionedPoint.y - lowestYLocation)/separationOfLayers;
       //      int currentLayerNumber = (int)Math.ceil(division);
 
-            logger.logComment("We're in layer number: "+ currentYLayerNumber);
+            logger.logComment("We're in layer number: {}", currentYLayerNumber);
 
             float proposedNewXPos = lastPositionedPoint.x + (getEffectiveRadius() * 2f);
 
 
-            logger.logComment("Checking if x val of "+proposedNewXPos+" is allowed...");
+            logger.logComment("Checking if x val of {} is allowed...", proposedNewXPos);
 
             if (proposedNewXPos <= (maxXLoc))
             {
@@ -187,7 +187,7 @@ public class CubicClosePackedCellPackingAdapter extends CellPackingAdapter
                 {
                     proposedNewXPos = minXLoc + getEffectiveRadius(); // CCP, xpos moved to middle of 2 spheres
                 }
-                logger.logComment("Checking if z val of "+proposedNewZPos+" is allowed...");
+                logger.logComment("Checking if z val of {} is allowed...", proposedNewZPos);
 
                 if (proposedNewZPos <= (maxZLoc))
                 {
@@ -204,13 +204,13 @@ public class CubicClosePackedCellPackingAdapter extends CellPackingAdapter
                     ///int newLayerNumber = currentLayerNumber +1;
                     currentYLayerNumber++;
 
-                    logger.logComment("Entering layer number: "+ currentYLayerNumber);
+                    logger.logComment("Entering layer number: {}", currentYLayerNumber);
 
                     float proposedNewYPos;
 
                     proposedNewYPos = lastPositionedPoint.y + separationOfLayers;
 
-                    logger.logComment("Checking if y val of "+proposedNewYPos+" is allowed...");
+                    logger.logComment("Checking if y val of {} is allowed...", proposedNewYPos);
 
                     if (proposedNewYPos <= (maxYLoc))
                     {
@@ -219,18 +219,20 @@ public class CubicClosePackedCellPackingAdapter extends CellPackingAdapter
 
                         if ((currentYLayerNumber/2)*2 == currentYLayerNumber) // i.e. even layer...
                         {
-                            logger.logComment("xxxxxxxxxxxxxxxEven numbered layer: ("+currentYLayerNumber+")");
+                            logger.logComment("xxxxxxxxxxxxxxxEven numbered layer: ({})",
+                                              currentYLayerNumber);
                             newXPosition = minXLoc; // for CCP...
                             newZPosition = minZLoc; // for CCP...
                         }
                         else
                         {
-                            logger.logComment("xxxxxxxxxxxxxxOdd numbered layer: ("+currentYLayerNumber+")");
+                            logger.logComment("xxxxxxxxxxxxxxOdd numbered layer: ({})", currentYLayerNumber);
                             newXPosition = minXLoc + getEffectiveRadius(); // for CCP...
                             newZPosition = minZLoc + getEffectiveRadius(); // for CCP...
                         }
 
-                        logger.logComment("Positioning this cell with a y displacement from the last of: "+ (proposedNewYPos-lastPositionedPoint.y));
+                        logger.logComment("Positioning this cell with a y displacement from the last of: {}",
+                                          (proposedNewYPos-lastPositionedPoint.y));
                         proposedPoint = new Point3f(newXPosition,
                                                     proposedNewYPos,
                                                     newZPosition);
@@ -250,12 +252,8 @@ public class CubicClosePackedCellPackingAdapter extends CellPackingAdapter
 
         if (proposedPoint!=null && myRegion.isCellWithinRegion(proposedPoint, myCell, mustBeCompletelyInsideRegion()))
         {
-            logger.logComment("Adding point "+proposedPoint
-                              +"to list of attempts, which already has "
-                              + positionsAlreadyAttempted.size()
-                              + "entries, compared to "
-                              + getNumPosAlreadyTaken()
-                              + " successful ones so far...");
+            logger.logComment("Adding point {}to list of attempts, which already has {}entries, compared to {} successful ones so far...",
+                              proposedPoint, positionsAlreadyAttempted.size(), getNumPosAlreadyTaken());
             positionsAlreadyAttempted.add(proposedPoint);
             return proposedPoint;
         }
@@ -137,7 +137,7 @@ public class HexagonalLayerPackingAdapter extends CellPackingAdapter
         else
         {
             Point3f lastPositionedPoint = positionsAlreadyAttempted.lastElement();
-            logger.logComment("Last point attempted at: " + lastPositionedPoint);
+            logger.logComment("Last point attempted at: {}", lastPositionedPoint);
 
             float proposedNewXPos = lastPositionedPoint.x + getCentreSpacing();
 
@@ -166,7 +166,7 @@ public class HexagonalLayerPackingAdapter extends CellPackingAdapter
                     //float division = (lastPositionedPoint.z - lowestZLocation) / increaseInZdir;
                     //int currentLayerNumber = (int) Math.ceil(division);
 
-                    logger.logComment("Looks like we're in layer number: " + zLayerNumber);
+                    logger.logComment("Looks like we're in layer number: {}", zLayerNumber);
 
                     if ( (zLayerNumber / 2) * 2 == zLayerNumber) // i.e. even layer...
                     {
@@ -194,12 +194,8 @@ public class HexagonalLayerPackingAdapter extends CellPackingAdapter
 
         if (proposedPoint!=null  && myRegion.isCellWithinRegion(proposedPoint, myCell, mustBeCompletelyInsideRegion()))
         {
-            logger.logComment("Adding point "+proposedPoint
-                              +"to list of attempts, which already has "
-                              + positionsAlreadyAttempted.size()
-                              + " entries, compared to "
-                              + getNumPosAlreadyTaken()
-                              + " successful ones so far...");
+            logger.logComment("Adding point {}to list of attempts, which already has {} entries, compared to {} successful ones so far...",
+                              proposedPoint, positionsAlreadyAttempted.size(), getNumPosAlreadyTaken());
             
             positionsAlreadyAttempted.add(proposedPoint);
 
@@ -102,7 +102,8 @@ public class OneDimRegSpacingPackingAdapter extends CellPackingAdapter
     {
         Point3f proposedPoint = null;
 
-        logger.logComment("----   Generating next position. positionsAlreadyTaken.size() = "+getNumPosAlreadyTaken());
+        logger.logComment("----   Generating next position. positionsAlreadyTaken.size() = {}",
+                          getNumPosAlreadyTaken());
 
         float minXLoc, minYLoc, minZLoc, maxXLoc, maxYLoc, maxZLoc;
 
@@ -138,7 +139,7 @@ public class OneDimRegSpacingPackingAdapter extends CellPackingAdapter
                                          minYLoc,
                                          minZLoc);
 
-        logger.logComment("minXLoc: "+ minXLoc+", maxXLoc: "+maxXLoc);
+        logger.logComment("minXLoc: {}, maxXLoc: {}", minXLoc, maxXLoc);
 
         if (maxXLoc-minXLoc<0||maxYLoc-minYLoc<0||maxZLoc-minZLoc<0)
         {
@@ -195,8 +196,8 @@ public class OneDimRegSpacingPackingAdapter extends CellPackingAdapter
                 proposedPoint = new Point3f(startPoint);
                 proposedPoint.add(new Point3f(distanceApart*numProposedPoints, 0, 0));
                 
-                logger.logComment("Placing one of "+getNumberCells()+" cells in x dim..."+distanceApart
-                    +" apart, new: "+proposedPoint+", already proposed: "+numProposedPoints);
+                logger.logComment("Placing one of {} cells in x dim...{} apart, new: {}, already proposed: {}",
+                                  getNumberCells(), distanceApart, proposedPoint, numProposedPoints);
                 
                 if(proposedPoint.x > maxXLoc)
                     throw new CellPackingException("Reached end of x dimension");
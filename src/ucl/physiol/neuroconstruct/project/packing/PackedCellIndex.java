@@ -0,0 +1,151 @@
+/**
+ *  neuroConstruct
+ *  Software for developing large scale 3D networks of biologically realistic neurons
+ *
+ *  Copyright (c) 2009 Padraig Gleeson
+ *  UCL Department of Neuroscience, Physiology and Pharmacology
+ *
+ *  Development of this software was made possible with funding from the
+ *  Medical Research Council and the Wellcome Trust
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+
+package ucl.physiol.neuroconstruct.project.packing;
+
+import java.util.*;
+import javax.vecmath.*;
+
+/**
+ * Uniform grid over the positions of the cells placed by a CellPackingAdapter, so
+ * that only the cells near a suggested location need to be checked for collisions
+ *
+ * @author Padraig Gleeson
+ *
+ */
+
+class PackedCellIndex
+{
+    private float binSize;
+
+    private HashMap<Long, ArrayList<Point3f>> bins = new HashMap<Long, ArrayList<Point3f>>();
+
+    private int numPositions = 0;
+
+    /**
+     * @param binSize Length of the side of each (cubic) bin of the grid
+     */
+    PackedCellIndex(float binSize)
+    {
+        this.binSize = binSize;
+    }
+
+    void add(Point3f position)
+    {
+        Long key = getKey(getBin(position.x), getBin(position.y), getBin(position.z));
+
+        ArrayList<Point3f> bin = bins.get(key);
+        if (bin == null)
+        {
+            bin = new ArrayList<Point3f>(4);
+            bins.put(key, bin);
+        }
+        bin.add(position);
+        numPositions++;
+    }
+
+    /**
+     * Removes one position equal to this one, as Vector.remove() would
+     */
+    boolean remove(Point3f position)
+    {
+        Long key = getKey(getBin(position.x), getBin(position.y), getBin(position.z));
+
+        ArrayList<Point3f> bin = bins.get(key);
+
+        if (bin == null || !bin.remove(position)) return false;
+
+        if (bin.isEmpty()) bins.remove(key);
+
+        numPositions--;
+        return true;
+    }
+
+    void clear()
+    {
+        bins.clear();
+        numPositions = 0;
+    }
+
+    int size()
+    {
+        return numPositions;
+    }
+
+    /**
+     * Gets the positions which may be within distance of the location (the ones in the bins
+     * overlapping the cube around the location), or null if checking all positions
+     * would be quicker than searching that many bins
+     */
+    ArrayList<Point3f> getPositionsNear(Point3f location, float distance)
+    {
+        long minX = getBin(location.x - distance);
+        long maxX = getBin(location.x + distance);
+        long minY = getBin(location.y - distance);
+        long maxY = getBin(location.y + distance);
+        long minZ = getBin(location.z - distance);
+        long maxZ = getBin(location.z + distance);
+
+        double numBins = (double)(maxX - minX + 1) * (maxY - minY + 1) * (maxZ - minZ + 1);
+
+        if (numBins > bins.size()) return null;
+
+        ArrayList<Point3f> near = new ArrayList<Point3f>();
+
+        for (long x = minX; x <= maxX; x++)
+        {
+            for (long y = minY; y <= maxY; y++)
+            {
+                for (long z = minZ; z <= maxZ; z++)
+                {
+                    ArrayList<Point3f> bin = bins.get(getKey(x, y, z));
+                    if (bin != null) near.addAll(bin);
+                }
+            }
+        }
+        return near;
+    }
+
+    private long getBin(float coord)
+    {
+        return (long)Math.floor(coord / binSize);
+    }
+
+    /*
+     * 21 bits per dimension is plenty for any sensible ratio of region size to bin size
+     */
+    private static Long getKey(long x, long y, long z)
+    {
+        return ((x & 0x1FFFFF) << 42) | ((y & 0x1FFFFF) << 21) | (z & 0x1FFFFF);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "PackedCellIndex with "+numPositions+" positions in "+bins.size()+" bins of size "+binSize;
+    }
+
+}
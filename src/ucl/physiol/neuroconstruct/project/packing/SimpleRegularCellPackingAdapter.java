@@ -117,13 +117,13 @@ public class SimpleRegularCellPackingAdapter extends CellPackingAdapter
         else
         {
             Point3f lastPositionedPoint = positionsAlreadyAttempted.lastElement();
-            logger.logComment("Last point attempted at: "+ lastPositionedPoint);
+            logger.logComment("Last point attempted at: {}", lastPositionedPoint);
 
             float proposedNewXPos = lastPositionedPoint.x
                                     + (CellTopologyHelper.getMaxXExtent(myCell, true, false)
                                     - CellTopologyHelper.getMinXExtent(myCell, true, false));
 
-            logger.logComment("Checking if x val of "+proposedNewXPos+" is allowed...");
+            logger.logComment("Checking if x val of {} is allowed...", proposedNewXPos);
 
             if (proposedNewXPos <= (maxXLoc))
             {
@@ -141,7 +141,7 @@ public class SimpleRegularCellPackingAdapter extends CellPackingAdapter
                                         + (CellTopologyHelper.getMaxYExtent(myCell, true, false)
                                            - CellTopologyHelper.getMinYExtent(myCell, true, false));
 
-                logger.logComment("Checking if y val of "+proposedNewYPos+" is allowed...");
+                logger.logComment("Checking if y val of {} is allowed...", proposedNewYPos);
 
                 if (proposedNewYPos <= (maxYLoc))
                 {
@@ -158,7 +158,7 @@ public class SimpleRegularCellPackingAdapter extends CellPackingAdapter
                                              + (CellTopologyHelper.getMaxZExtent(myCell, true, false)
                                                 - CellTopologyHelper.getMinZExtent(myCell, true, false));
 
-                    logger.logComment("Checking if z val of "+proposedNewZPos+" is allowed...");
+                    logger.logComment("Checking if z val of {} is allowed...", proposedNewZPos);
 
                     if (proposedNewZPos <= (maxZLoc))
                     {
@@ -803,12 +803,7 @@ public class PsicsFileManager
         }
         
 
-        File positionsFile = new File(dirForSimDataFiles, SimulationData.POSITION_DATA_FILE);
-        File netConnsFile = new File(dirForSimDataFiles, SimulationData.NETCONN_DATA_FILE);
-        File elecInputFile = new File(dirForSimDataFiles, SimulationData.ELEC_INPUT_DATA_FILE);
-        
 
-        
         if (dirToRunFrom.getAbsolutePath().indexOf(" ")>=0)
         {
             throw new PsicsException("PSICS files cannot be run in a directory like: "+ dirToRunFrom
@@ -819,14 +814,12 @@ public class PsicsFileManager
 
         try
         {
-            project.generatedCellPositions.saveToFile(positionsFile);
-            project.generatedNetworkConnections.saveToFile(netConnsFile);
-            project.generatedElecInputs.saveToFile(elecInputFile);
+            ProjectManager.saveGeneratedNetwork(project, dirForSimDataFiles);
         }
         catch (IOException ex)
         {
             GuiUtils.showErrorMessage(logger,
-                                      "Problem saving generated positions in file: " + positionsFile.getAbsolutePath(),
+                                      "Problem saving the generated network in: " + dirForSimDataFiles.getAbsolutePath(),
                                       ex, null);
             return;
         }
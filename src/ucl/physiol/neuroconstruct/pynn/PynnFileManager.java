@@ -735,7 +735,7 @@ public class PynnFileManager
                     {
                         throw new PynnException("Error, mapping to PyNN does not currently support network connections with non fixed weights, as in "+nc+": "+syns+"!!");
                     }
-                    if(project.generatedNetworkConnections.getSynapticConnections(nc).size()>0)
+                    if(project.generatedNetworkConnections.getNumberSynapticConnections(nc)>0)
                     {
                         try
                         {
@@ -1022,12 +1022,7 @@ public class PynnFileManager
         }
         
 
-        File positionsFile = new File(dirForSimDataFiles, SimulationData.POSITION_DATA_FILE);
-        File netConnsFile = new File(dirForSimDataFiles, SimulationData.NETCONN_DATA_FILE);
-        File elecInputFile = new File(dirForSimDataFiles, SimulationData.ELEC_INPUT_DATA_FILE);
-        
 
-        
         if (dirToRunFrom.getAbsolutePath().indexOf(" ")>=0)
         {
             throw new PynnException("PyNN files cannot be run in a directory like: "+ dirToRunFrom
@@ -1038,14 +1033,12 @@ public class PynnFileManager
 
         try
         {
-            project.generatedCellPositions.saveToFile(positionsFile);
-            project.generatedNetworkConnections.saveToFile(netConnsFile);
-            project.generatedElecInputs.saveToFile(elecInputFile);
+            ProjectManager.saveGeneratedNetwork(project, dirForSimDataFiles);
         }
         catch (IOException ex)
         {
             GuiUtils.showErrorMessage(logger,
-                                      "Problem saving generated positions in file: " + positionsFile.getAbsolutePath(),
+                                      "Problem saving the generated network in: " + dirForSimDataFiles.getAbsolutePath(),
                                       ex, null);
             return;
         }
@@ -0,0 +1,589 @@
+/**
+ *  neuroConstruct
+ *  Software for developing large scale 3D networks of biologically realistic neurons
+ * 
+ *  Copyright (c) 2009 Padraig Gleeson
+ *  UCL Department of Neuroscience, Physiology and Pharmacology
+ *
+ *  Development of this software was made possible with funding from the
+ *  Medical Research Council and the Wellcome Trust
+ *  
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *  
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+
+
+package ucl.physiol.neuroconstruct.simulation;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.Charset;
+
+import ucl.physiol.neuroconstruct.project.SimPlot;
+import ucl.physiol.neuroconstruct.utils.*;
+
+/**
+ * A compact binary format for one recorded trace (or list of spike times) of a simulation, to
+ * use in place of the text data files. The file starts with a header giving the number of values,
+ * how they're encoded, the start time & time step, the name of the data source (e.g.
+ * CellGroup_0.3.na_m), the variable and the units. The values, which are in neuroConstruct units,
+ * follow, either as 32 bit floats (4 bytes each), or as 64 bit doubles with each stored as the XOR
+ * of its bits with those of the value before it, in a variable length integer. A line of a text data
+ * file usually takes 10 to 20 bytes, so 32 bit floats take around a quarter of the space, keeping
+ * about 7 significant figures. The delta encoding keeps full precision, and a value equal to the one
+ * before it (e.g. in flat stretches of a trace) takes a single byte, but as any change in a double
+ * alters its low mantissa bits, other values still take 6 to 8 bytes, around half the space of the
+ * text. Either way, the values are read without being parsed.
+ *
+ * The binary file for a text data file has the same name with .ntr added (e.g. CellGroup_0.dat.ntr),
+ * and is used in preference to the text file by SimulationData.
+ *
+ * @author Padraig Gleeson
+ *
+ */
+
+public class BinaryTraceFile
+{
+    private static ClassLogger logger = new ClassLogger("BinaryTraceFile");
+
+    public static final int ENCODING_FLOAT32 = 1;
+    public static final int ENCODING_DELTA_FLOAT64 = 2;
+
+    public static final int KIND_CONTINUOUS = 0;
+    public static final int KIND_SPIKE_TIMES = 1;
+
+    private static final int MAGIC_NUMBER = 0x4E434254; // NCBT
+    private static final int VERSION = 1;
+
+    /*
+     * Position in the header of the number of values, filled in when the converter has finished
+     */
+    private static final int NUM_VALUES_POSITION = 8;
+
+    /*
+     * The fixed fields, then the 4 strings, each a length (2 bytes) and up to 65535 bytes
+     */
+    private static final int MAX_HEADER_LENGTH = 28 + 4 * (2 + 65535);
+
+    /*
+     * Bytes in the longest variable length integer, 7 bits in each
+     */
+    private static final int MAX_VAR_LONG_LENGTH = 10;
+
+    private static final int BUFFER_SIZE = 65536;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private int encoding = ENCODING_DELTA_FLOAT64;
+    private int kind = KIND_CONTINUOUS;
+    private int numValues = 0;
+    private double startTime = 0;
+    private double timeStep = 0;
+
+    private String dataSourceName = "";
+    private String variable = "";
+    private String xUnit = "";
+    private String yUnit = "";
+
+    private int dataOffset = -1;
+
+
+    public BinaryTraceFile(int encoding,
+                           int kind,
+                           double startTime,
+                           double timeStep,
+                           String dataSourceName,
+                           String variable,
+                           String xUnit,
+                           String yUnit)
+    {
+        this.encoding = encoding;
+        this.kind = kind;
+        this.startTime = startTime;
+        this.timeStep = timeStep;
+        this.dataSourceName = dataSourceName;
+        this.variable = variable;
+        this.xUnit = xUnit;
+        this.yUnit = yUnit;
+    }
+
+    private BinaryTraceFile()
+    {
+    }
+
+    public static boolean isBinaryTraceFile(File file)
+    {
+        return file.getName().endsWith("." + SimPlot.BINARY_TRACE_EXT);
+    }
+
+    public static File getBinaryFileFor(File textFile)
+    {
+        return new File(textFile.getParentFile(), textFile.getName() + "." + SimPlot.BINARY_TRACE_EXT);
+    }
+
+    /**
+     * The name of the text file the binary file was (or would be) made from
+     */
+    public static String getTextFileName(File binaryFile)
+    {
+        String name = binaryFile.getName();
+        return name.substring(0, name.length() - SimPlot.BINARY_TRACE_EXT.length() - 1);
+    }
+
+    public int getEncoding()
+    {
+        return encoding;
+    }
+
+    public int getKind()
+    {
+        return kind;
+    }
+
+    public int getNumValues()
+    {
+        return numValues;
+    }
+
+    public double getStartTime()
+    {
+        return startTime;
+    }
+
+    public double getTimeStep()
+    {
+        return timeStep;
+    }
+
+    public String getDataSourceName()
+    {
+        return dataSourceName;
+    }
+
+    public String getVariable()
+    {
+        return variable;
+    }
+
+    public String getXUnit()
+    {
+        return xUnit;
+    }
+
+    public String getYUnit()
+    {
+        return yUnit;
+    }
+
+    /**
+     * Reads only the header of the file
+     */
+    public static BinaryTraceFile readHeader(File file) throws SimulationDataException
+    {
+        RandomAccessFile raf = null;
+        try
+        {
+            raf = new RandomAccessFile(file, "r");
+            FileChannel channel = raf.getChannel();
+
+            ByteBuffer buffer = ByteBuffer.allocate((int)Math.min(channel.size(), MAX_HEADER_LENGTH));
+            readFully(channel, buffer, 0);
+            buffer.flip();
+
+            return parseHeader(buffer, file);
+        }
+        catch (IOException ex)
+        {
+            throw new SimulationDataException("Error reading binary trace file: " + file.getAbsolutePath(), ex);
+        }
+        finally
+        {
+            close(raf);
+        }
+    }
+
+    /**
+     * Reads the values in the file, which is memory mapped
+     */
+    public static double[] readValues(File file) throws SimulationDataException
+    {
+        RandomAccessFile raf = null;
+        try
+        {
+            raf = new RandomAccessFile(file, "r");
+            FileChannel channel = raf.getChannel();
+
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            BinaryTraceFile header = parseHeader(buffer, file);
+
+            double[] values = new double[header.numValues];
+
+            buffer.position(header.dataOffset);
+
+            if (header.encoding == ENCODING_FLOAT32)
+            {
+                FloatBuffer floats = buffer.asFloatBuffer();
+                for (int i = 0; i < values.length; i++)
+                {
+                    values[i] = floats.get();
+                }
+            }
+            else
+            {
+                long previousBits = 0;
+                for (int i = 0; i < values.length; i++)
+                {
+                    previousBits = previousBits ^ readVarLong(buffer);
+                    values[i] = Double.longBitsToDouble(previousBits);
+                }
+            }
+            logger.logComment("Read {} values from {}", values.length, file);
+
+            return values;
+        }
+        catch (IOException ex)
+        {
+            throw new SimulationDataException("Error reading binary trace file: " + file.getAbsolutePath(), ex);
+        }
+        catch (BufferUnderflowException ex)
+        {
+            throw new SimulationDataException("Binary trace file: " + file.getAbsolutePath() + " is truncated", ex);
+        }
+        finally
+        {
+            close(raf);
+        }
+    }
+
+    /**
+     * Opens the file for reading the values a block at a time. Only the bytes of the block being read
+     * are in memory, and the file is only open while a block is read, so a reader can be kept for each
+     * of a large number of traces
+     *
+     * @param scaleFactor The values are multiplied by this as they're read
+     */
+    public static TraceBlockReader openBlockReader(File file, double scaleFactor) throws SimulationDataException
+    {
+        return new FileBlockReader(readHeader(file), scaleFactor, file);
+    }
+
+    /*
+     * Reads each block's bytes with a plain channel read from the position after the last value read
+     */
+    private static class FileBlockReader extends TraceBlockReader
+    {
+        private final int encoding;
+        private final double scaleFactor;
+        private final File file;
+
+        private long filePosition;
+        private long previousBits = 0;
+
+        FileBlockReader(BinaryTraceFile header, double scaleFactor, File file)
+        {
+            super(header.numValues);
+            this.encoding = header.encoding;
+            this.scaleFactor = scaleFactor;
+            this.file = file;
+            this.filePosition = header.dataOffset;
+        }
+
+        protected int readPoints(double[] values, int offset, int num) throws SimulationDataException
+        {
+            RandomAccessFile raf = null;
+            try
+            {
+                raf = new RandomAccessFile(file, "r");
+                FileChannel channel = raf.getChannel();
+
+                int maxBytesPerValue = encoding == ENCODING_FLOAT32 ? 4 : MAX_VAR_LONG_LENGTH;
+                long numBytes = Math.min((long)num * maxBytesPerValue, channel.size() - filePosition);
+
+                ByteBuffer buffer = ByteBuffer.allocate((int)Math.max(numBytes, 0));
+                buffer.order(ByteOrder.LITTLE_ENDIAN);
+                readFully(channel, buffer, filePosition);
+                buffer.flip();
+
+                if (encoding == ENCODING_FLOAT32)
+                {
+                    for (int i = offset; i < offset + num; i++)
+                    {
+                        values[i] = scaleFactor * buffer.getFloat();
+                    }
+                }
+                else
+                {
+                    for (int i = offset; i < offset + num; i++)
+                    {
+                        previousBits = previousBits ^ readVarLong(buffer);
+                        values[i] = scaleFactor * Double.longBitsToDouble(previousBits);
+                    }
+                }
+                filePosition += buffer.position();
+
+                return num;
+            }
+            catch (IOException ex)
+            {
+                throw new SimulationDataException("Error reading binary trace file: " + file.getAbsolutePath(), ex);
+            }
+            catch (BufferUnderflowException ex)
+            {
+                throw new SimulationDataException("Binary trace file: " + file.getAbsolutePath() + " is truncated", ex);
+            }
+            finally
+            {
+                close(raf);
+            }
+        }
+    }
+
+    private static BinaryTraceFile parseHeader(ByteBuffer buffer, File file) throws SimulationDataException
+    {
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+        try
+        {
+            if (buffer.getInt() != MAGIC_NUMBER)
+                throw new SimulationDataException(file.getAbsolutePath() + " is not a binary trace file");
+
+            int version = buffer.getShort();
+            if (version > VERSION)
+                throw new SimulationDataException(file.getAbsolutePath() + " is in a later version ("
+                                                  + version + ") of the binary trace format than supported");
+
+            BinaryTraceFile header = new BinaryTraceFile();
+            header.encoding = buffer.get();
+            header.kind = buffer.get();
+            header.numValues = buffer.getInt();
+            header.startTime = buffer.getDouble();
+            header.timeStep = buffer.getDouble();
+            header.dataSourceName = readString(buffer);
+            header.variable = readString(buffer);
+            header.xUnit = readString(buffer);
+            header.yUnit = readString(buffer);
+            header.dataOffset = buffer.position();
+
+            if (header.encoding != ENCODING_FLOAT32 && header.encoding != ENCODING_DELTA_FLOAT64)
+                throw new SimulationDataException("Unknown encoding (" + header.encoding + ") in: " + file.getAbsolutePath());
+
+            return header;
+        }
+        catch (BufferUnderflowException ex)
+        {
+            throw new SimulationDataException("Binary trace file: " + file.getAbsolutePath() + " is truncated", ex);
+        }
+    }
+
+    /**
+     * Converts a single column text data file (as read by SimulationData) to a binary file, a block at a
+     * time, so the whole trace is never in memory. The binary file is written to a temporary file first
+     * and renamed when complete.
+     *
+     * @param scaleFactor The values are multiplied by this, to put them in neuroConstruct units
+     * @return the number of values written
+     */
+    public int convertTextFile(File textFile, File binaryFile, double scaleFactor) throws SimulationDataException
+    {
+        File tempFile = new File(binaryFile.getParentFile(), binaryFile.getName() + ".tmp");
+
+        String nextLine = null;
+        BufferedReader reader = null;
+        RandomAccessFile raf = null;
+        numValues = 0;
+
+        try
+        {
+            reader = new BufferedReader(new FileReader(textFile), BUFFER_SIZE);
+
+            raf = new RandomAccessFile(tempFile, "rw");
+            raf.setLength(0);
+            FileChannel channel = raf.getChannel();
+
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+            buffer.putInt(MAGIC_NUMBER);
+            buffer.putShort((short)VERSION);
+            buffer.put((byte)encoding);
+            buffer.put((byte)kind);
+            buffer.putInt(0);
+            buffer.putDouble(startTime);
+            buffer.putDouble(timeStep);
+            writeString(buffer, dataSourceName);
+            writeString(buffer, variable);
+            writeString(buffer, xUnit);
+            writeString(buffer, yUnit);
+
+            long previousBits = 0;
+
+            // Same lines taken as in SimulationData.readDataFileToArray()
+            while ( (nextLine = reader.readLine()) != null && nextLine.length()>0)
+            {
+                if (!nextLine.startsWith("//") && nextLine.trim().length()>0)
+                {
+                    double value = scaleFactor * Double.parseDouble(nextLine);
+
+                    if (buffer.remaining() < 10)
+                    {
+                        writeBuffer(buffer, channel);
+                    }
+                    if (encoding == ENCODING_FLOAT32)
+                    {
+                        buffer.putFloat((float)value);
+                    }
+                    else
+                    {
+                        long bits = Double.doubleToRawLongBits(value);
+                        writeVarLong(buffer, bits ^ previousBits);
+                        previousBits = bits;
+                    }
+                    numValues++;
+                }
+            }
+            writeBuffer(buffer, channel);
+
+            buffer.putInt(numValues);
+            buffer.flip();
+            channel.write(buffer, NUM_VALUES_POSITION);
+
+            close(raf);
+            raf = null;
+
+            if (binaryFile.exists()) binaryFile.delete();
+
+            if (!tempFile.renameTo(binaryFile))
+            {
+                tempFile.delete();
+                throw new SimulationDataException("Unable to rename "+tempFile.getAbsolutePath()+" to "+binaryFile.getAbsolutePath());
+            }
+
+            logger.logComment("Converted {} values from {} to {}", numValues, textFile, binaryFile);
+
+            return numValues;
+        }
+        catch (IOException ex)
+        {
+            throw new SimulationDataException("Error converting "+textFile.getAbsolutePath()+" to binary", ex);
+        }
+        catch (NumberFormatException ex)
+        {
+            throw new SimulationDataException("Error reading line: ("+nextLine+") from file: "+ textFile.getAbsolutePath(), ex);
+        }
+        finally
+        {
+            if (reader != null)
+            {
+                try
+                {
+                    reader.close();
+                }
+                catch (IOException ex)
+                {
+                    // ignore...
+                }
+            }
+            if (raf != null)
+            {
+                close(raf);
+                tempFile.delete();
+            }
+        }
+    }
+
+    private static void writeBuffer(ByteBuffer buffer, FileChannel channel) throws IOException
+    {
+        buffer.flip();
+        while (buffer.hasRemaining())
+        {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private static void writeVarLong(ByteBuffer buffer, long value)
+    {
+        while ((value & ~0x7FL) != 0)
+        {
+            buffer.put((byte)((value & 0x7F) | 0x80));
+            value = value >>> 7;
+        }
+        buffer.put((byte)value);
+    }
+
+    private static long readVarLong(ByteBuffer buffer)
+    {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do
+        {
+            b = buffer.get();
+            value = value | ((long)(b & 0x7F) << shift);
+            shift += 7;
+        }
+        while ((b & 0x80) != 0);
+
+        return value;
+    }
+
+    private static void writeString(ByteBuffer buffer, String string)
+    {
+        byte[] bytes = (string == null ? "" : string).getBytes(UTF8);
+        buffer.putShort((short)bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer)
+    {
+        byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(bytes);
+        return new String(bytes, UTF8);
+    }
+
+    /*
+     * Reads from the position in the file until the buffer is full or the end of the file is reached
+     */
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException
+    {
+        while (buffer.hasRemaining())
+        {
+            if (channel.read(buffer, position + buffer.position()) < 0) return;
+        }
+    }
+
+    private static void close(RandomAccessFile raf)
+    {
+        if (raf == null) return;
+        try
+        {
+            raf.close();
+        }
+        catch (IOException ex)
+        {
+            // ignore...
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return "BinaryTraceFile of "+numValues+" values ("+(kind == KIND_SPIKE_TIMES ? "spike times" : "continuous")
+            +", "+(encoding == ENCODING_FLOAT32 ? "float32" : "delta float64")+") for "+variable+" in "+dataSourceName;
+    }
+
+}
@@ -26,11 +26,19 @@
 
 package ucl.physiol.neuroconstruct.simulation;
 
+import java.io.File;
+import java.lang.ref.SoftReference;
+import java.util.Arrays;
+
 import ucl.physiol.neuroconstruct.project.SimPlot;
 import ucl.physiol.neuroconstruct.project.PostSynapticObject;
 
 /**
  * Class which stores info on one recorded set of data from a simulation, e.g. one voltage trace. Could do with a better name...
+ * The data points can be given when it's created, or read from the data file when first needed, in which case
+ * they are held in the shared TraceCache, and may be read again later if memory is short.
+ * Spike data is held as the list of spike times, and is only converted to a continuous trace when asked
+ * for through getDataPoints(). Most uses should get the spike times or single points instead.
  *
  * @author Padraig Gleeson
  *  
@@ -42,16 +50,29 @@ public class DataStore
 
     private double[] dataPoints;
 
+    /*
+     * If not null, the data points are read from this when needed, rather than held in dataPoints
+     */
+    private File dataFile = null;
+    private double scaleFactor = 1;
+
     private String cellGroupName = null;
     private int cellNumber = -1;
     private int segId = -1;
     private String variable = SimPlot.VOLTAGE;
 
+    /*
+     * References worked out once, as they're used for all look ups
+     */
+    private String cellRef = null;
+    private String cellSegRef = null;
+
     private String xUnit = "";
     private String yUnit = "";
 
     private double maxVal = -1* Double.MAX_VALUE;
     private double minVal = Double.MAX_VALUE;
+    private boolean maxMinKnown = false;
 
     /**
      * Duplication of data here...
@@ -67,6 +88,13 @@ public class DataStore
     private double endTime = 100;
     private double timeStep = 0.01;
 
+    /*
+     * For spike data, the indices of the points of the continuous trace with the spiking value, and
+     * the last continuous trace made
+     */
+    private int[] spikingPoints = null;
+    private SoftReference<double[]> continuousCache = null;
+
 
     public DataStore(double[] dataPoints,
                      String cellGroupName,
@@ -126,6 +154,65 @@ public class DataStore
         refreshMaxMin();
     }
 
+    /**
+     * Creates a DataStore whose data points will be read from the data file (and multiplied by
+     * scaleFactor) when first needed
+     */
+    DataStore(File dataFile,
+              double scaleFactor,
+              String cellGroupName,
+              int cellNumber,
+              int segId,
+              String variable,
+              String xUnit,
+              String yUnit,
+              PostSynapticObject pso)
+    {
+        this.dataFile = dataFile;
+        this.scaleFactor = scaleFactor;
+        this.cellGroupName = cellGroupName;
+        this.cellNumber = cellNumber;
+        this.segId = segId;
+        this.variable = variable;
+        this.xUnit = xUnit;
+        this.yUnit = yUnit;
+        this.pso = pso;
+
+        containsSpikeTimes = false;
+    }
+
+    /**
+     * For a DataStore created from a data file, sets the values to use when converting the spike
+     * times in the file to a continuous trace
+     */
+    void setSpikeTimeFileInfo(double nonSpikingVal,
+                              double spikingVal,
+                              double startTime,
+                              double endTime,
+                              double timeStep)
+    {
+        this.spikingVal = spikingVal;
+        this.nonSpikingVal = nonSpikingVal;
+        this.startTime = startTime;
+        this.endTime = endTime;
+        this.timeStep = timeStep;
+        containsSpikeTimes = true;
+        refreshMaxMin();
+    }
+
+    /**
+     * The file the data points are read from when needed, or null if they're held by this DataStore
+     */
+    File getDataFile()
+    {
+        return dataFile;
+    }
+
+    double getScaleFactor()
+    {
+        return scaleFactor;
+    }
+
     public boolean isSpikeTimes()
     {
         return containsSpikeTimes;
@@ -133,6 +220,7 @@ public class DataStore
 
     public void setDataPoints(double[] dataPoints)
     {
+        clearDataFile();
         this.dataPoints = dataPoints;
         containsSpikeTimes = false;
         refreshMaxMin();
@@ -145,6 +233,7 @@ public class DataStore
                               double endTime,
                               double timeStep)
     {
+        clearDataFile();
         this.dataPoints = spikeTimes;
         this.spikingVal = spikingVal;
         this.nonSpikingVal = nonSpikingVal;
@@ -156,7 +245,68 @@ public class DataStore
         refreshMaxMin();
     }
 
+    private synchronized void clearDataFile()
+    {
+        spikingPoints = null;
+        continuousCache = null;
+
+        if (dataFile != null)
+        {
+            TraceCache.getSharedCache().remove(this);
+            dataFile = null;
+        }
+    }
+
+    /**
+     * True if the data points are held, rather than needing to be read from the data file
+     */
+    public boolean isDataLoaded()
+    {
+        return dataFile == null || TraceCache.getSharedCache().get(this) != null;
+    }
+
+    /*
+     * The data points as held (so the spike times for spike data)
+     */
+    private double[] getRawData()
+    {
+        if (dataFile == null) return dataPoints;
+
+        TraceCache cache = TraceCache.getSharedCache();
+
+        double[] data = cache.get(this);
+        if (data != null) return data;
+
+        synchronized(this)
+        {
+            if (dataFile == null) return dataPoints;
+
+            data = cache.get(this);
+            if (data == null)
+            {
+                try
+                {
+                    data = SimulationData.readTraceFile(dataFile, scaleFactor);
+                }
+                catch (SimulationDataException ex)
+                {
+                    throw new IllegalStateException("Problem loading data for "+ this, ex);
+                }
+                cache.put(this, data);
+
+                if (!maxMinKnown) refreshMaxMin(data);
+            }
+        }
+        return data;
+    }
+
     private void refreshMaxMin()
+    {
+        if (containsSpikeTimes || dataFile == null)
+            refreshMaxMin(dataPoints);
+    }
+
+    private void refreshMaxMin(double[] data)
     {
         if (containsSpikeTimes)
         {
@@ -167,22 +317,27 @@ public class DataStore
         {
             maxVal = -1* Double.MAX_VALUE;
             minVal = Double.MAX_VALUE;
-            for (int i = 0; i < dataPoints.length; i++)
+            for (int i = 0; i < data.length; i++)
             {
-                if (dataPoints[i]>maxVal) maxVal = dataPoints[i];
-                if (dataPoints[i]<minVal) minVal = dataPoints[i];
+                if (data[i]>maxVal) maxVal = data[i];
+                if (data[i]<minVal) minVal = data[i];
             }
         }
+        maxMinKnown = true;
     }
 
     public String getCellRef()
     {
-        return SimulationData.getCellRef(cellGroupName, cellNumber);
+        if (cellRef == null)
+            cellRef = SimulationData.getCellRef(cellGroupName, cellNumber);
+        return cellRef;
     }
 
     public String getCellSegRef()
     {
-        return SimulationData.getCellSegRef(cellGroupName, cellNumber, segId);
+        if (cellSegRef == null)
+            cellSegRef = SimulationData.getCellSegRef(cellGroupName, cellNumber, segId);
+        return cellSegRef;
     }
 
     public String getCellGroupName()
@@ -211,25 +366,142 @@ public class DataStore
         return this.cellNumber;
     }
 
+    /**
+     * Gets all the data points. For spike data this is a continuous trace, with the spiking value at the
+     * time step of each spike, which is kept while memory allows. It shouldn't be altered.
+     */
     public double[] getDataPoints()
     {
         if (!containsSpikeTimes)
         {
-            return dataPoints;
+            return getRawData();
         }
-        else
+
+        synchronized(this)
         {
-            double[] continuous 
-                = SimulationData.convertSpikeTimesToContinuous(this.dataPoints, 
-                                                               this.startTime, 
-                                                               this.endTime, 
-                                                               this.timeStep, 
-                                                               this.nonSpikingVal,
-                                                               this.spikingVal);
+            double[] continuous = continuousCache == null ? null : continuousCache.get();
+
+            if (continuous == null)
+            {
+                continuous = SimulationData.convertSpikingStepsToContinuous(getSpikingPoints(),
+                                                                            0,
+                                                                            getNumberOfPoints(),
+                                                                            nonSpikingVal,
+                                                                            spikingVal);
+                continuousCache = new SoftReference<double[]>(continuous);
+            }
             return continuous;
         }
     }
 
+    /**
+     * Gets numPoints data points starting at firstPoint. For spike data only this part of the continuous
+     * trace is made.
+     */
+    public double[] getDataPoints(int firstPoint, int numPoints)
+    {
+        if (!containsSpikeTimes)
+        {
+            double[] points = new double[numPoints];
+            System.arraycopy(getRawData(), firstPoint, points, 0, numPoints);
+            return points;
+        }
+        return SimulationData.convertSpikingStepsToContinuous(getSpikingPoints(),
+                                                              firstPoint,
+                                                              numPoints,
+                                                              nonSpikingVal,
+                                                              spikingVal);
+    }
+
+    /**
+     * Opens a reader for the data points, to process them a block at a time. Traces in binary trace
+     * or text files which aren't already loaded are read straight from the file, and for spike data
+     * the continuous trace is made as it's read, so the whole trace needn't be in memory.
+     */
+    public TraceBlockReader openBlockReader() throws SimulationDataException
+    {
+        if (containsSpikeTimes)
+        {
+            return new TraceBlockReader.SpikingStepsReader(getSpikingPoints(),
+                                                           getNumberOfPoints(),
+                                                           nonSpikingVal,
+                                                           spikingVal);
+        }
+
+        File file = dataFile;
+
+        if (file != null && !isDataLoaded())
+        {
+            if (BinaryTraceFile.isBinaryTraceFile(file))
+                return BinaryTraceFile.openBlockReader(file, scaleFactor);
+
+            return new TraceBlockReader.TextFileReader(file, scaleFactor);
+        }
+        try
+        {
+            return new TraceBlockReader.ArrayReader(getRawData());
+        }
+        catch (IllegalStateException ex)
+        {
+            throw new SimulationDataException(ex.getMessage(), ex.getCause());
+        }
+    }
+
+    /**
+     * Gets a single data point, without making the whole continuous trace for spike data
+     */
+    public double getDataPoint(int index)
+    {
+        if (!containsSpikeTimes)
+        {
+            return getRawData()[index];
+        }
+        return Arrays.binarySearch(getSpikingPoints(), index) >= 0 ? spikingVal : nonSpikingVal;
+    }
+
+    public int getNumberOfPoints()
+    {
+        if (!containsSpikeTimes)
+        {
+            return getRawData().length;
+        }
+        return SimulationData.getNumberSpikeTracePoints(startTime, endTime, timeStep);
+    }
+
+    /**
+     * For spike data, gets the times of the spikes (which shouldn't be altered), otherwise null
+     */
+    public double[] getSpikeTimes()
+    {
+        if (!containsSpikeTimes) return null;
+        return getRawData();
+    }
+
+    /**
+     * For spike data, gets the indices of the points of the continuous trace which have the spiking value,
+     * otherwise null
+     */
+    public synchronized int[] getSpikingPoints()
+    {
+        if (!containsSpikeTimes) return null;
+
+        if (spikingPoints == null)
+        {
+            spikingPoints = SimulationData.getSpikingSteps(getRawData(), startTime, timeStep, getNumberOfPoints());
+        }
+        return spikingPoints;
+    }
+
+    public double getSpikingValue()
+    {
+        return spikingVal;
+    }
+
+    public double getNonSpikingValue()
+    {
+        return nonSpikingVal;
+    }
+
 
     public int getAssumedSegmentId()
     {
@@ -240,11 +512,13 @@ public class DataStore
 
     public double getMaxVal()
     {
+        if (!maxMinKnown) getRawData();
         return this.maxVal;
     }
 
     public double getMinVal()
     {
+        if (!maxMinKnown) getRawData();
         return this.minVal;
     }
 
@@ -277,7 +551,11 @@ public class DataStore
 
         info = info + ": (";
 
-        if (dataPoints.length==1) info = info + (float)dataPoints[0]+")";
+        double[] dataPoints = dataFile == null ? this.dataPoints : TraceCache.getSharedCache().get(this);
+
+        if (dataPoints == null) info = info + "to be loaded from " + dataFile.getName() + ")";
+
+        else if (dataPoints.length==1) info = info + (float)dataPoints[0]+")";
 
         else if(dataPoints.length == 2) info = info + (float) dataPoints[0] + ", " + (float) dataPoints[1] + ")";
 
@@ -0,0 +1,517 @@
+/**
+ *  neuroConstruct
+ *  Software for developing large scale 3D networks of biologically realistic neurons
+ * 
+ *  Copyright (c) 2009 Padraig Gleeson
+ *  UCL Department of Neuroscience, Physiology and Pharmacology
+ *
+ *  Development of this software was made possible with funding from the
+ *  Medical Research Council and the Wellcome Trust
+ *  
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *  
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+
+package ucl.physiol.neuroconstruct.simulation;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import javax.vecmath.*;
+
+import ucl.physiol.neuroconstruct.cell.*;
+import ucl.physiol.neuroconstruct.dataset.*;
+import ucl.physiol.neuroconstruct.project.*;
+import ucl.physiol.neuroconstruct.utils.*;
+
+/**
+ * Works out virtual field potential recordings at a number of electrode positions from the membrane
+ * potentials recorded in a simulation. The recording at each electrode is a weighted average of the
+ * potentials of all the recorded segments of the cells in the chosen cell groups, inverted, with the
+ * weight depending on the distance of the middle of the segment (placed using the cell's position in
+ * GeneratedCellPositions and its morphology) from the electrode. With no electrodes, a single recording
+ * is made from the soma potential of each cell (as used by SimulationData.getVoltageAtAllTimes()),
+ * which is the simple estimate of averaging the soma potentials & inverting.
+ *
+ * The traces are read a block of time steps at a time (see DataStore.openBlockReader()), with the
+ * segments shared out between the threads of a fork/join pool, and the results can be written to a
+ * file as they're calculated, so the traces of a large network needn't all be in memory at once.
+ *
+ * @author Padraig Gleeson
+ *
+ */
+
+public class FieldPotentialCalculator
+{
+    private static ClassLogger logger = new ClassLogger("FieldPotentialCalculator");
+
+    public static final int WEIGHT_UNIFORM = 0;
+    public static final int WEIGHT_INVERSE_DISTANCE = 1;
+    public static final int WEIGHT_INVERSE_SQUARE = 2;
+
+    private static final int DEFAULT_BLOCK_SIZE = 4096;
+    private static final int MIN_SOURCES_PER_TASK = 32;
+
+    private final Project project;
+    private final SimulationData simData;
+
+    private final ArrayList<String> cellGroups = new ArrayList<String>();
+    private final ArrayList<Point3f> electrodes = new ArrayList<Point3f>();
+
+    private int weighting = WEIGHT_INVERSE_DISTANCE;
+
+    /*
+     * Closer segments are weighted as if at this distance, so they don't swamp the others
+     */
+    private float minDistance = 10;
+
+    private int blockSize = DEFAULT_BLOCK_SIZE;
+
+
+    public FieldPotentialCalculator(Project project, SimulationData simData)
+    {
+        this.project = project;
+        this.simData = simData;
+    }
+
+    public void addCellGroup(String cellGroup)
+    {
+        cellGroups.add(cellGroup);
+    }
+
+    /**
+     * Adds an electrode at this position (in the same coordinates as the cell positions). If there are no
+     * electrodes, a single recording of the average of the soma potentials is calculated
+     */
+    public void addElectrode(Point3f position)
+    {
+        electrodes.add(new Point3f(position));
+    }
+
+    public int getNumberElectrodes()
+    {
+        return electrodes.size();
+    }
+
+    /**
+     * One of WEIGHT_UNIFORM, WEIGHT_INVERSE_DISTANCE or WEIGHT_INVERSE_SQUARE
+     */
+    public void setWeighting(int weighting)
+    {
+        this.weighting = weighting;
+    }
+
+    public int getWeighting()
+    {
+        return weighting;
+    }
+
+    public void setMinDistance(float minDistance)
+    {
+        this.minDistance = minDistance;
+    }
+
+    public float getMinDistance()
+    {
+        return minDistance;
+    }
+
+    /**
+     * The number of time steps read at a time from each trace
+     */
+    public void setBlockSize(int blockSize)
+    {
+        this.blockSize = Math.max(1, blockSize);
+    }
+
+
+    /**
+     * Gets called with the field potentials for each block of time steps, in order
+     */
+    public interface BlockHandler
+    {
+        /**
+         * @param values For each electrode, the values at time steps firstStep to firstStep+numSteps-1. The
+         * arrays are reused for the next block
+         */
+        public void handleBlock(int firstStep, int numSteps, double[][] values) throws IOException;
+    }
+
+
+    /**
+     * Calculates the recordings, giving one Data Set for each electrode
+     */
+    public DataSet[] calculate() throws SimulationDataException
+    {
+        final double[] times = simData.getAllTimes();
+
+        final DataSet[] dataSets = new DataSet[Math.max(1, electrodes.size())];
+
+        for (int e = 0; e < dataSets.length; e++)
+        {
+            String name = "Field potential of " + cellGroups + " in " + simData.getSimulationName();
+
+            if (!electrodes.isEmpty())
+                name = name + " at " + electrodes.get(e);
+
+            dataSets[e] = new DataSet(name, getDescription(), "ms", "", "Time", "Arbitrary units");
+        }
+
+        try
+        {
+            calculate(new BlockHandler()
+            {
+                public void handleBlock(int firstStep, int numSteps, double[][] values)
+                {
+                    for (int e = 0; e < values.length; e++)
+                    {
+                        for (int i = 0; i < numSteps; i++)
+                        {
+                            dataSets[e].addPoint(times[firstStep + i], values[e][i]);
+                        }
+                    }
+                }
+            });
+        }
+        catch (IOException ex)
+        {
+            throw new SimulationDataException("Problem calculating field potential", ex);
+        }
+        return dataSets;
+    }
+
+    /**
+     * Calculates the recordings, writing them to the file a block at a time, with a line for each time
+     * step holding the time and the values at each electrode, separated by tabs
+     */
+    public void calculate(File outputFile) throws SimulationDataException, IOException
+    {
+        final double[] times = simData.getAllTimes();
+
+        final BufferedWriter writer = new BufferedWriter(new FileWriter(outputFile), 65536);
+
+        try
+        {
+            writer.write("// " + getDescription() + "\n");
+
+            calculate(new BlockHandler()
+            {
+                public void handleBlock(int firstStep, int numSteps, double[][] values) throws IOException
+                {
+                    StringBuilder line = new StringBuilder();
+
+                    for (int i = 0; i < numSteps; i++)
+                    {
+                        line.setLength(0);
+                        line.append((float)times[firstStep + i]);
+
+                        for (double[] electrodeValues: values)
+                        {
+                            line.append('\t').append((float)electrodeValues[i]);
+                        }
+                        line.append('\n');
+                        writer.write(line.toString());
+                    }
+                }
+            });
+        }
+        finally
+        {
+            writer.close();
+        }
+        logger.logComment("Written field potential to: {}", outputFile);
+    }
+
+    private String getDescription()
+    {
+        String[] weightings = new String[]{"uniform", "1/distance", "1/distance^2"};
+
+        if (electrodes.isEmpty())
+            return "Average of recorded soma membrane potentials of " + cellGroups + ", inverted";
+
+        return "Weighted average (" + weightings[weighting] + ", min distance " + minDistance
+            + ") of recorded membrane potentials of " + cellGroups + ", inverted";
+    }
+
+    /**
+     * Calculates the recordings, passing them to the handler a block at a time
+     */
+    public void calculate(BlockHandler handler) throws SimulationDataException, IOException
+    {
+        long start = System.currentTimeMillis();
+
+        int numSteps = simData.getNumberTimeSteps();
+
+        ArrayList<DataStore> sources = new ArrayList<DataStore>();
+        ArrayList<Point3f> sourcePositions = new ArrayList<Point3f>();
+
+        findSources(sources, sourcePositions);
+
+        if (sources.isEmpty())
+            throw new SimulationDataException("No membrane potentials were recorded for the cells in " + cellGroups);
+
+        double[][] weights = getWeights(sourcePositions);
+        int numElectrodes = weights.length;
+
+        TraceBlockReader[] readers = new TraceBlockReader[sources.size()];
+
+        double[][] values = new double[numElectrodes][blockSize];
+
+        for (int firstStep = 0; firstStep < numSteps; firstStep += blockSize)
+        {
+            int numInBlock = Math.min(blockSize, numSteps - firstStep);
+
+            BlockTask task = new BlockTask(sources, readers, weights, 0, sources.size(), numInBlock);
+
+            double[][] totals;
+            try
+            {
+                totals = ThreadPools.getSharedForkJoinPool().invoke(task);
+            }
+            catch (RuntimeException ex)
+            {
+                // the exception may have been wrapped again when passed back from the worker thread
+                for (Throwable cause = ex.getCause(); cause != null; cause = cause.getCause())
+                {
+                    if (cause instanceof SimulationDataException)
+                        throw (SimulationDataException)cause;
+                }
+                throw ex;
+            }
+
+            for (int e = 0; e < numElectrodes; e++)
+            {
+                for (int i = 0; i < numInBlock; i++)
+                {
+                    values[e][i] = -1 * totals[e][i];
+                }
+            }
+            handler.handleBlock(firstStep, numInBlock, values);
+        }
+
+        logger.logComment("Field potential at {} electrodes from {} traces took {} ms",
+                          numElectrodes, sources.size(), System.currentTimeMillis() - start);
+    }
+
+    /*
+     * Finds the voltage (or spike) traces of the cells in the groups, and the positions of the middle
+     * of the segments they were recorded on. With no electrodes, just one trace is taken for each cell,
+     * from the soma
+     */
+    private void findSources(ArrayList<DataStore> sources, ArrayList<Point3f> sourcePositions)
+    {
+        for (String cellGroup: cellGroups)
+        {
+            Cell cell = project.cellManager.getCell(project.cellGroupsInfo.getCellType(cellGroup));
+            FlatMorphology morph = cell == null ? null : cell.getFlatMorphology();
+
+            Point3f segPoint = new Point3f();
+
+            for (PositionRecord pos: project.generatedCellPositions.getPositionRecords(cellGroup))
+            {
+                if (electrodes.isEmpty())
+                {
+                    DataStore somaData = getSomaData(simData.getDataStoresForCell(cellGroup, pos.cellNumber));
+
+                    if (somaData != null)
+                    {
+                        sources.add(somaData);
+                        sourcePositions.add(new Point3f(pos.x_pos, pos.y_pos, pos.z_pos));
+                    }
+                    continue;
+                }
+
+                for (DataStore ds: simData.getDataStoresForCell(cellGroup, pos.cellNumber))
+                {
+                    String var = ds.getVariable();
+
+                    if (ds.isSynapticMechData() ||
+                        !(var.equals(SimPlot.VOLTAGE) || var.indexOf(SimPlot.SPIKE) >= 0))
+                        continue;
+
+                    Point3f position = new Point3f(pos.x_pos, pos.y_pos, pos.z_pos);
+
+                    int index = morph == null ? -1 : morph.getIndexOfSegmentId(ds.getAssumedSegmentId());
+
+                    if (index >= 0)
+                    {
+                        position.add(morph.getPointAlong(index, 0.5f, segPoint));
+                    }
+                    else
+                    {
+                        logger.logComment("No segment {} in the cell of {}, so using the cell position",
+                                          ds.getAssumedSegmentId(), ds);
+                    }
+                    sources.add(ds);
+                    sourcePositions.add(position);
+                }
+            }
+        }
+        logger.logComment("Found {} traces in {}", sources.size(), cellGroups);
+    }
+
+    /*
+     * The voltage recorded on the soma (segment 0) of the cell, or the spikes recorded there if the
+     * voltage wasn't
+     */
+    private static DataStore getSomaData(List<DataStore> cellData)
+    {
+        DataStore spikeData = null;
+
+        for (DataStore ds: cellData)
+        {
+            if (ds.isSynapticMechData() || ds.getAssumedSegmentId() != 0)
+                continue;
+
+            String var = ds.getVariable();
+
+            if (var.equals(SimPlot.VOLTAGE))
+                return ds;
+
+            if (spikeData == null && var.indexOf(SimPlot.SPIKE) >= 0)
+                spikeData = ds;
+        }
+        return spikeData;
+    }
+
+    /*
+     * For each electrode, the weights of the sources, normalised to add up to 1
+     */
+    private double[][] getWeights(ArrayList<Point3f> sourcePositions)
+    {
+        int numSources = sourcePositions.size();
+
+        if (electrodes.isEmpty())
+        {
+            double[][] weights = new double[1][numSources];
+            Arrays.fill(weights[0], 1.0 / numSources);
+            return weights;
+        }
+
+        double[][] weights = new double[electrodes.size()][numSources];
+
+        for (int e = 0; e < electrodes.size(); e++)
+        {
+            double total = 0;
+
+            for (int s = 0; s < numSources; s++)
+            {
+                double distance = Math.max(minDistance, electrodes.get(e).distance(sourcePositions.get(s)));
+
+                if (weighting == WEIGHT_INVERSE_DISTANCE)
+                    weights[e][s] = 1 / distance;
+                else if (weighting == WEIGHT_INVERSE_SQUARE)
+                    weights[e][s] = 1 / (distance * distance);
+                else
+                    weights[e][s] = 1;
+
+                total += weights[e][s];
+            }
+            for (int s = 0; s < numSources; s++)
+            {
+                weights[e][s] = weights[e][s] / total;
+            }
+        }
+        return weights;
+    }
+
+    /*
+     * Reads the next block of the traces in the range and sums their weighted values for each
+     * electrode. A trace's reader is only used by the task with its range, and the blocks are
+     * done one after another, so each reader is used in order. Traces shorter than the others
+     * just stop contributing.
+     */
+    private static class BlockTask extends RecursiveTask<double[][]>
+    {
+        private final ArrayList<DataStore> sources;
+        private final TraceBlockReader[] readers;
+        private final double[][] weights;
+        private final int first;
+        private final int end;
+        private final int numInBlock;
+
+        BlockTask(ArrayList<DataStore> sources, TraceBlockReader[] readers, double[][] weights,
+                  int first, int end, int numInBlock)
+        {
+            this.sources = sources;
+            this.readers = readers;
+            this.weights = weights;
+            this.first = first;
+            this.end = end;
+            this.numInBlock = numInBlock;
+        }
+
+        @Override
+        protected double[][] compute()
+        {
+            if (end - first > MIN_SOURCES_PER_TASK)
+            {
+                int mid = (first + end) >>> 1;
+
+                BlockTask lowerHalf = new BlockTask(sources, readers, weights, first, mid, numInBlock);
+                BlockTask upperHalf = new BlockTask(sources, readers, weights, mid, end, numInBlock);
+
+                lowerHalf.fork();
+                double[][] totals = upperHalf.compute();
+                double[][] lowerTotals = lowerHalf.join();
+
+                for (int e = 0; e < totals.length; e++)
+                {
+                    for (int i = 0; i < numInBlock; i++)
+                    {
+                        totals[e][i] += lowerTotals[e][i];
+                    }
+                }
+                return totals;
+            }
+
+            double[][] totals = new double[weights.length][numInBlock];
+            double[] buffer = new double[numInBlock];
+
+            try
+            {
+                for (int s = first; s < end; s++)
+                {
+                    if (readers[s] == null) readers[s] = sources.get(s).openBlockReader();
+
+                    int numRead = readers[s].read(buffer, 0, numInBlock);
+
+                    for (int e = 0; e < weights.length; e++)
+                    {
+                        double weight = weights[e][s];
+                        double[] electrodeTotals = totals[e];
+
+                        for (int i = 0; i < numRead; i++)
+                        {
+                            electrodeTotals[i] += weight * buffer[i];
+                        }
+                    }
+                }
+            }
+            catch (SimulationDataException ex)
+            {
+                throw new RuntimeException(ex);
+            }
+            return totals;
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return "FieldPotentialCalculator for " + cellGroups + " at " + electrodes.size() + " electrodes";
+    }
+
+}
@@ -0,0 +1,698 @@
+/**
+ *  neuroConstruct
+ *  Software for developing large scale 3D networks of biologically realistic neurons
+ * 
+ *  Copyright (c) 2009 Padraig Gleeson
+ *  UCL Department of Neuroscience, Physiology and Pharmacology
+ *
+ *  Development of this software was made possible with funding from the
+ *  Medical Research Council and the Wellcome Trust
+ *  
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *  
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+
+package ucl.physiol.neuroconstruct.simulation;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import ucl.physiol.neuroconstruct.utils.*;
+
+/**
+ * Analysis of the spike times of a population of cells, e.g. all the cells in a cell group. The spike
+ * trains are held as sorted arrays of primitives, so counts of spikes in a time window are found by
+ * binary search (or by stepping along for increasing times) rather than by checking every spike.
+ * Correlograms between all pairs of trains are worked out in parallel on a shared fork/join pool.
+ * Immutable after creation, so can be shared between threads.
+ *
+ * @author Padraig Gleeson
+ *
+ */
+
+public class PopulationSpikeAnalyser
+{
+    private static ClassLogger logger = new ClassLogger("PopulationSpikeAnalyser");
+
+    /*
+     * Roughly the amount of work worth giving a thread of its own
+     */
+    private static final int MIN_PAIRS_PER_TASK = 2000;
+    private static final int MIN_TRAINS_PER_TASK = 64;
+
+    private final double[][] spikeTrains;
+
+    private final int totalNumSpikes;
+
+    /*
+     * All the spike times together, sorted. Made when first needed
+     */
+    private volatile double[] allSpikes = null;
+
+
+    /**
+     * @param spikeTrains The spike times of each cell. Trains which aren't in order are sorted
+     * (in a copy, the arrays passed in aren't changed)
+     */
+    public PopulationSpikeAnalyser(double[][] spikeTrains)
+    {
+        this.spikeTrains = new double[spikeTrains.length][];
+
+        int total = 0;
+
+        for (int i = 0; i < spikeTrains.length; i++)
+        {
+            double[] train = spikeTrains[i] == null ? new double[0] : spikeTrains[i];
+
+            if (!isSorted(train))
+            {
+                train = train.clone();
+                Arrays.sort(train);
+            }
+            this.spikeTrains[i] = train;
+            total += train.length;
+        }
+        totalNumSpikes = total;
+    }
+
+    public PopulationSpikeAnalyser(List<double[]> spikeTrains)
+    {
+        this(spikeTrains.toArray(new double[spikeTrains.size()][]));
+    }
+
+    private static boolean isSorted(double[] values)
+    {
+        for (int i = 1; i < values.length; i++)
+        {
+            if (values[i] < values[i - 1]) return false;
+        }
+        return true;
+    }
+
+    public int getNumTrains()
+    {
+        return spikeTrains.length;
+    }
+
+    public int getTotalNumSpikes()
+    {
+        return totalNumSpikes;
+    }
+
+    /**
+     * Gets the (sorted) spike times of one train. Note: not a copy, so shouldn't be changed
+     */
+    public double[] getSpikeTrain(int index)
+    {
+        return spikeTrains[index];
+    }
+
+    private double[] getAllSpikes()
+    {
+        if (allSpikes == null)
+        {
+            double[] all = new double[totalNumSpikes];
+            int next = 0;
+
+            for (double[] train: spikeTrains)
+            {
+                System.arraycopy(train, 0, all, next, train.length);
+                next += train.length;
+            }
+            Arrays.sort(all);
+            allSpikes = all;
+        }
+        return allSpikes;
+    }
+
+    /**
+     * Gets the index of the first value in the sorted array which is >= value (or the length of the
+     * array if there is none)
+     */
+    public static int getFirstIndexAtOrAfter(double[] sorted, double value)
+    {
+        int low = 0;
+        int high = sorted.length;
+
+        while (low < high)
+        {
+            int mid = (low + high) >>> 1;
+
+            if (sorted[mid] < value) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    /**
+     * Gets the index of the first value in the sorted array which is > value (or the length of the
+     * array if there is none)
+     */
+    public static int getFirstIndexAfter(double[] sorted, double value)
+    {
+        int low = 0;
+        int high = sorted.length;
+
+        while (low < high)
+        {
+            int mid = (low + high) >>> 1;
+
+            if (sorted[mid] <= value) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    /**
+     * Number of the spike times in the sorted array between from and to (inclusive)
+     */
+    public static int getNumSpikesBetween(double[] sortedSpikes, double from, double to)
+    {
+        if (to < from) return 0;
+
+        return getFirstIndexAfter(sortedSpikes, to) - getFirstIndexAtOrAfter(sortedSpikes, from);
+    }
+
+    /**
+     * Gets the number of spikes in all the trains which are at or after each of the times, and no more
+     * than windowSize after it
+     */
+    public int[] getSlidingWindowCounts(double[] times, double windowSize)
+    {
+        double[] spikes = getAllSpikes();
+        int[] counts = new int[times.length];
+
+        if (isSorted(times))
+        {
+            // Both ends of the window only move forward, so step along rather than search
+            int first = 0;
+            int end = 0;
+
+            for (int j = 0; j < times.length; j++)
+            {
+                double time = times[j];
+
+                while (first < spikes.length && spikes[first] < time) first++;
+
+                if (end < first) end = first;
+                while (end < spikes.length && spikes[end] <= time + windowSize) end++;
+
+                counts[j] = end - first;
+            }
+        }
+        else
+        {
+            for (int j = 0; j < times.length; j++)
+            {
+                counts[j] = getNumSpikesBetween(spikes, times[j], times[j] + windowSize);
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Gets the numbers of spikes in all the trains which are in each bin of binSize from startTime,
+     * i.e. a population histogram of the spiking. Spikes at exactly stopTime are included in the last bin
+     */
+    public int[] getPopulationHistogram(double startTime, double stopTime, double binSize)
+    {
+        int numBins = Math.max(1, (int)Math.ceil((stopTime - startTime) / binSize));
+
+        double[] spikes = getAllSpikes();
+        int[] counts = new int[numBins];
+
+        int first = getFirstIndexAtOrAfter(spikes, startTime);
+        int end = getFirstIndexAfter(spikes, stopTime);
+
+        for (int i = first; i < end; i++)
+        {
+            int bin = (int)((spikes[i] - startTime) / binSize);
+            counts[Math.min(bin, numBins - 1)]++;
+        }
+        return counts;
+    }
+
+    /**
+     * Gets the intervals between successive spike times in the sorted list, for the spikes at or after
+     * startTime and before stopTime, as SpikeAnalyser.getInterSpikeIntervals()
+     */
+    public static double[] getInterSpikeIntervals(double[] sortedSpikes, double startTime, double stopTime)
+    {
+        int first = getFirstIndexAtOrAfter(sortedSpikes, startTime);
+        int end = getFirstIndexAtOrAfter(sortedSpikes, stopTime);
+
+        if (end - first < 2) return new double[0];
+
+        double[] intervals = new double[end - first - 1];
+
+        for (int i = first + 1; i < end; i++)
+        {
+            intervals[i - first - 1] = sortedSpikes[i] - sortedSpikes[i - 1];
+        }
+        return intervals;
+    }
+
+    /**
+     * Gets the intervals between successive spikes of all of the trains together
+     */
+    public double[] getAllInterSpikeIntervals(double startTime, double stopTime)
+    {
+        double[][] intervals = new double[spikeTrains.length][];
+        int total = 0;
+
+        for (int i = 0; i < spikeTrains.length; i++)
+        {
+            intervals[i] = getInterSpikeIntervals(spikeTrains[i], startTime, stopTime);
+            total += intervals[i].length;
+        }
+
+        double[] all = new double[total];
+        int next = 0;
+
+        for (double[] trainIntervals: intervals)
+        {
+            System.arraycopy(trainIntervals, 0, all, next, trainIntervals.length);
+            next += trainIntervals.length;
+        }
+        return all;
+    }
+
+    /**
+     * Gets the mean of the values, or NaN if there are none
+     */
+    public static double getMean(double[] values)
+    {
+        double total = 0;
+
+        for (double value: values)
+        {
+            total += value;
+        }
+        return total / values.length;
+    }
+
+    /**
+     * Gets the (population) standard deviation of the values, or NaN if there are none
+     */
+    public static double getStandardDeviation(double[] values)
+    {
+        double mean = getMean(values);
+        double totalDevSqrd = 0;
+
+        for (double value: values)
+        {
+            double dev = value - mean;
+            totalDevSqrd += dev * dev;
+        }
+        return Math.sqrt(totalDevSqrd / values.length);
+    }
+
+    /**
+     * Gets the coefficient of variation (standard deviation/mean) of the interspike intervals of each
+     * train, or NaN for the trains with less than 2 intervals between startTime and stopTime
+     */
+    public double[] getCoefficientsOfVariation(double startTime, double stopTime)
+    {
+        double[] cvs = new double[spikeTrains.length];
+
+        for (int i = 0; i < spikeTrains.length; i++)
+        {
+            double[] intervals = getInterSpikeIntervals(spikeTrains[i], startTime, stopTime);
+
+            if (intervals.length < 2)
+                cvs[i] = Double.NaN;
+            else
+                cvs[i] = getStandardDeviation(intervals) / getMean(intervals);
+        }
+        return cvs;
+    }
+
+    /**
+     * Gets the average firing rate of each train between startTime and stopTime (inclusive). With
+     * times in ms, the rates are in Hz
+     */
+    public double[] getFiringRates(double startTime, double stopTime)
+    {
+        double[] rates = new double[spikeTrains.length];
+        double duration = stopTime - startTime;
+
+        for (int i = 0; i < spikeTrains.length; i++)
+        {
+            rates[i] = getNumSpikesBetween(spikeTrains[i], startTime, stopTime) / duration * 1000;
+        }
+        return rates;
+    }
+
+    /**
+     * Gets the numbers of the values in each of the numBins bins, with bin i holding the values at or
+     * after start + i*binSize and before start + (i+1)*binSize. NaN values and those outside the bins
+     * aren't counted
+     */
+    public static int[] getHistogram(double[] values, double start, double binSize, int numBins)
+    {
+        int[] counts = new int[numBins];
+
+        for (double value: values)
+        {
+            double loc = (value - start) / binSize;
+
+            if (!(loc >= 0) || loc >= numBins + 1) continue;
+
+            int bin = (int)loc;
+
+            // in case of rounding in the division, check against the edges themselves
+            if (bin > 0 && value < start + bin * binSize) bin--;
+            else if (bin < numBins && value >= start + (bin + 1) * binSize) bin++;
+
+            if (bin < numBins) counts[bin]++;
+        }
+        return counts;
+    }
+
+    /**
+     * Gets the number of the values which are at or above maxValue, e.g. to check whether a
+     * histogram covers all of them
+     */
+    public static int getNumAtOrAbove(double[] values, double maxValue)
+    {
+        int count = 0;
+
+        for (double value: values)
+        {
+            if (value >= maxValue) count++;
+        }
+        return count;
+    }
+
+    /**
+     * Gets the correlogram of the spikes of train 2 relative to those of train 1, with the same result as
+     * SpikeAnalyser.crossCorrelation(). The spike times in both should be in order.
+     */
+    public static float[] crossCorrelation(double[] spikes1,
+                                           double[] spikes2,
+                                           float binSize,
+                                           float window,
+                                           float pauseMin)
+    {
+        int binNum = (int)Math.ceil(window / binSize);
+
+        int[] counts = new int[binNum * 2 + 1];
+
+        int numRelevant = countCrossCorrelation(spikes1, spikes2, binSize, window, pauseMin, binNum, counts, null);
+
+        float[] correl = new float[counts.length];
+
+        for (int i = 0; i < correl.length; i++)
+        {
+            correl[i] = counts[i] / (float)numRelevant;
+        }
+        return correl;
+    }
+
+    /*
+     * Adds the offsets of the spikes in train 2 within the window of each relevant spike of train 1 (one
+     * not following the previous spike by less than pauseMin) to the counts, and their bins to hits,
+     * if that's not null. Returns the number of relevant spikes in train 1. As in the original version,
+     * spikes of train 1 after the last spike of train 2 which could be in a window aren't counted
+     * as relevant.
+     */
+    private static int countCrossCorrelation(double[] spikes1,
+                                             double[] spikes2,
+                                             float binSize,
+                                             float window,
+                                             float pauseMin,
+                                             int binNum,
+                                             int[] counts,
+                                             IntList hits)
+    {
+        int spike2Start = 0;
+        int numRelevant = 0;
+
+        for (int spike1Cnt = 0; spike1Cnt < spikes1.length; spike1Cnt++)
+        {
+            if (spike2Start >= spikes2.length) break;
+
+            double spike1 = spikes1[spike1Cnt];
+
+            if (spike1Cnt > 0 && (spike1 - spikes1[spike1Cnt - 1]) < pauseMin) continue;
+
+            numRelevant++;
+
+            while (spike2Start < spikes2.length && (spike1 - spikes2[spike2Start]) > window)
+            {
+                spike2Start++;
+            }
+
+            for (int spike2Cnt = spike2Start;
+                 spike2Cnt < spikes2.length && (spikes2[spike2Cnt] - spike1) <= window;
+                 spike2Cnt++)
+            {
+                int bin = (int)(Math.round((spikes2[spike2Cnt] - spike1) / binSize) + binNum);
+                counts[bin]++;
+
+                if (hits != null) hits.add(bin);
+            }
+        }
+        return numRelevant;
+    }
+
+    /**
+     * Gets the correlograms of each of the trains relative to the reference train (as
+     * SpikeAnalyser.crossCorrelation()), worked out in parallel
+     */
+    public float[][] getCrossCorrelograms(int referenceTrain,
+                                          float binSize,
+                                          float window,
+                                          float pauseMin)
+    {
+        float[][] correlograms = new float[spikeTrains.length][];
+
+        ThreadPools.getSharedForkJoinPool().invoke(new ReferenceCorrelogramTask(0, spikeTrains.length,
+                                                                                referenceTrain, binSize, window,
+                                                                                pauseMin, correlograms));
+        return correlograms;
+    }
+
+    /**
+     * Gets the average of the correlograms (as SpikeAnalyser.crossCorrelation()) of train j relative to
+     * train i, for all pairs of trains with i < j. Pairs where train i has no relevant spikes (so the
+     * correlogram isn't defined) aren't included. The pairs are shared out between the threads of a
+     * fork/join pool.
+     */
+    public float[] getMeanCrossCorrelogram(float binSize, float window, float pauseMin)
+    {
+        int binNum = (int)Math.ceil(window / binSize);
+
+        long start = System.currentTimeMillis();
+
+        CorrelogramTask task = new CorrelogramTask(0, spikeTrains.length, binSize, window, pauseMin, binNum);
+        CorrelogramSum sum = ThreadPools.getSharedForkJoinPool().invoke(task);
+
+        float[] mean = new float[binNum * 2 + 1];
+
+        for (int i = 0; i < mean.length; i++)
+        {
+            mean[i] = (float)(sum.totals[i] / sum.numPairs);
+        }
+
+        logger.logComment("Mean correlogram of {} pairs of {} trains took {} ms",
+                          sum.numPairs, spikeTrains.length, System.currentTimeMillis() - start);
+        return mean;
+    }
+
+    /*
+     * Sum of the normalised correlograms of a number of pairs
+     */
+    private static class CorrelogramSum
+    {
+        final double[] totals;
+        long numPairs = 0;
+
+        CorrelogramSum(int size)
+        {
+            totals = new double[size];
+        }
+
+        void add(CorrelogramSum other)
+        {
+            for (int i = 0; i < totals.length; i++)
+            {
+                totals[i] += other.totals[i];
+            }
+            numPairs += other.numPairs;
+        }
+    }
+
+    /*
+     * Growable list of ints, for the bins hit by a pair of trains
+     */
+    private static class IntList
+    {
+        int[] values = new int[64];
+        int size = 0;
+
+        void add(int value)
+        {
+            if (size == values.length) values = Arrays.copyOf(values, size * 2);
+            values[size++] = value;
+        }
+    }
+
+    /*
+     * Sums the correlograms of the pairs whose first train is in the range, splitting the range while
+     * it has too many pairs for one thread
+     */
+    private class CorrelogramTask extends RecursiveTask<CorrelogramSum>
+    {
+        private final int first;
+        private final int end;
+        private final float binSize;
+        private final float window;
+        private final float pauseMin;
+        private final int binNum;
+
+        CorrelogramTask(int first, int end, float binSize, float window, float pauseMin, int binNum)
+        {
+            this.first = first;
+            this.end = end;
+            this.binSize = binSize;
+            this.window = window;
+            this.pauseMin = pauseMin;
+            this.binNum = binNum;
+        }
+
+        /*
+         * Number of pairs (i, j) with i in the range and i < j
+         */
+        private long getNumPairs(int from, int to)
+        {
+            long rows = to - from;
+            return rows * (spikeTrains.length - 1) - rows * (from + to - 1) / 2;
+        }
+
+        @Override
+        protected CorrelogramSum compute()
+        {
+            if (end - first > 1 && getNumPairs(first, end) > MIN_PAIRS_PER_TASK)
+            {
+                // split so both halves have about the same number of pairs
+                long half = getNumPairs(first, end) / 2;
+                int low = first + 1;
+                int high = end - 1;
+
+                while (low < high)
+                {
+                    int mid = (low + high) >>> 1;
+
+                    if (getNumPairs(first, mid) < half) low = mid + 1;
+                    else high = mid;
+                }
+                int mid = low;
+
+                CorrelogramTask lowerHalf = new CorrelogramTask(first, mid, binSize, window, pauseMin, binNum);
+                CorrelogramTask upperHalf = new CorrelogramTask(mid, end, binSize, window, pauseMin, binNum);
+
+                lowerHalf.fork();
+                CorrelogramSum sum = upperHalf.compute();
+                sum.add(lowerHalf.join());
+                return sum;
+            }
+
+            CorrelogramSum sum = new CorrelogramSum(binNum * 2 + 1);
+
+            int[] counts = new int[binNum * 2 + 1];
+            IntList hits = new IntList();
+
+            for (int i = first; i < end; i++)
+            {
+                for (int j = i + 1; j < spikeTrains.length; j++)
+                {
+                    hits.size = 0;
+
+                    int numRelevant = countCrossCorrelation(spikeTrains[i], spikeTrains[j], binSize, window,
+                                                            pauseMin, binNum, counts, hits);
+                    if (numRelevant == 0) continue;
+
+                    // only the bins hit need adding & clearing
+                    for (int h = 0; h < hits.size; h++)
+                    {
+                        int bin = hits.values[h];
+
+                        if (counts[bin] > 0)
+                        {
+                            sum.totals[bin] += counts[bin] / (double)numRelevant;
+                            counts[bin] = 0;
+                        }
+                    }
+                    sum.numPairs++;
+                }
+            }
+            return sum;
+        }
+    }
+
+    /*
+     * Works out the correlograms relative to the reference train for the trains in the range
+     */
+    private class ReferenceCorrelogramTask extends RecursiveAction
+    {
+        private final int first;
+        private final int end;
+        private final int referenceTrain;
+        private final float binSize;
+        private final float window;
+        private final float pauseMin;
+        private final float[][] correlograms;
+
+        ReferenceCorrelogramTask(int first, int end, int referenceTrain,
+                                 float binSize, float window, float pauseMin, float[][] correlograms)
+        {
+            this.first = first;
+            this.end = end;
+            this.referenceTrain = referenceTrain;
+            this.binSize = binSize;
+            this.window = window;
+            this.pauseMin = pauseMin;
+            this.correlograms = correlograms;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (end - first > MIN_TRAINS_PER_TASK)
+            {
+                int mid = (first + end) >>> 1;
+
+                invokeAll(new ReferenceCorrelogramTask(first, mid, referenceTrain,
+                                                       binSize, window, pauseMin, correlograms),
+                          new ReferenceCorrelogramTask(mid, end, referenceTrain,
+                                                       binSize, window, pauseMin, correlograms));
+                return;
+            }
+            for (int i = first; i < end; i++)
+            {
+                correlograms[i] = crossCorrelation(spikeTrains[referenceTrain], spikeTrains[i],
+                                                   binSize, window, pauseMin);
+            }
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return "PopulationSpikeAnalyser of "+spikeTrains.length+" spike trains with "+totalNumSpikes+" spikes";
+    }
+
+}
@@ -0,0 +1,442 @@
+/**
+ *  neuroConstruct
+ *  Software for developing large scale 3D networks of biologically realistic neurons
+ * 
+ *  Copyright (c) 2009 Padraig Gleeson
+ *  UCL Department of Neuroscience, Physiology and Pharmacology
+ *
+ *  Development of this software was made possible with funding from the
+ *  Medical Research Council and the Wellcome Trust
+ *  
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *  
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+
+package ucl.physiol.neuroconstruct.simulation;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import ucl.physiol.neuroconstruct.hpc.mpi.RemoteLogin;
+import ucl.physiol.neuroconstruct.hpc.utils.*;
+import ucl.physiol.neuroconstruct.utils.*;
+
+/**
+ * A record of the simulation directories in a project's simulations folder, with the properties
+ * (from simulation.props etc.) of each, kept in a small index file in the folder. On each update only
+ * the modification times of the directories & their main files are checked (for many directories at
+ * once, on a pool of threads), and the properties are only read again for the simulations which
+ * have changed, so refreshing a folder with thousands of archived simulations is quick.
+ *
+ * @author Padraig Gleeson
+ *
+ */
+
+class SimulationCatalogue
+{
+    private static ClassLogger logger = new ClassLogger("SimulationCatalogue");
+
+    public static final String INDEX_FILE_NAME = ".simulations.index";
+
+    private static final int MAGIC_NUMBER = 0x4E435343; // NCSC
+    private static final int VERSION = 1;
+
+    private static final int NUM_THREADS = 8;
+
+    private static ExecutorService executor = null;
+
+    private final File simulationsDir;
+
+    /*
+     * By directory name
+     */
+    private final HashMap<String, Entry> entries = new HashMap<String, Entry>();
+
+    private boolean indexRead = false;
+
+
+    SimulationCatalogue(File simulationsDir)
+    {
+        this.simulationsDir = simulationsDir;
+    }
+
+    private static synchronized ExecutorService getExecutor()
+    {
+        if (executor == null)
+        {
+            executor = ThreadPools.newDaemonThreadPool("SimulationScan", NUM_THREADS);
+        }
+        return executor;
+    }
+
+
+    /**
+     * What's known about one simulation directory
+     */
+    static class Entry
+    {
+        String name;
+
+        long dirModified;
+        long summaryModified;
+        long simulatorPropsModified;
+        long timesModified;  // -1 if there's no times file
+        boolean pullRemoteScript;
+
+        /*
+         * null if there's no (readable) summary file
+         */
+        Properties props;
+
+        /*
+         * Not stored in the index
+         */
+        String dateModified = null;
+
+        boolean isValidSimulation()
+        {
+            return summaryModified >= 0 && (timesModified >= 0 || pullRemoteScript);
+        }
+
+        boolean isRemote()
+        {
+            return timesModified < 0;
+        }
+
+        boolean hasSameTimes(Entry other)
+        {
+            return dirModified == other.dirModified &&
+                   summaryModified == other.summaryModified &&
+                   simulatorPropsModified == other.simulatorPropsModified &&
+                   timesModified == other.timesModified &&
+                   pullRemoteScript == other.pullRemoteScript;
+        }
+
+        String getDateModified()
+        {
+            if (dateModified == null)
+            {
+                java.text.SimpleDateFormat formatter = new java.text.SimpleDateFormat("H:mm:ss (MMM d, yy)");
+                dateModified = formatter.format(new Date(Math.max(0, timesModified)));
+            }
+            return dateModified;
+        }
+
+        @Override
+        public String toString()
+        {
+            return "Entry for " + name + (isValidSimulation() ? "" : " (not a simulation)");
+        }
+    }
+
+
+    /**
+     * Checks the directories (in parallel) against what's recorded, reads the properties of any new
+     * or changed simulations, and saves the index if anything changed. Directories removed since the
+     * last update are dropped.
+     *
+     * @param checkRemote If true, the script to pull back the data of remote simulations is run for
+     * those without a times file
+     * @return the entries for the directories, in the order given, including any which aren't valid
+     * simulations
+     */
+    synchronized ArrayList<Entry> update(File[] dirs, final boolean checkRemote, final ProcessFeedback pf)
+    {
+        long start = System.currentTimeMillis();
+
+        if (!indexRead)
+        {
+            readIndex();
+            indexRead = true;
+        }
+
+        ArrayList<Future<Entry>> futures = new ArrayList<Future<Entry>>(dirs.length);
+
+        for (final File dir: dirs)
+        {
+            futures.add(getExecutor().submit(new Callable<Entry>()
+            {
+                public Entry call()
+                {
+                    return checkDirectory(dir, checkRemote, pf);
+                }
+            }));
+        }
+
+        ArrayList<Entry> current = new ArrayList<Entry>(dirs.length);
+        HashSet<String> names = new HashSet<String>();
+        int numRead = 0;
+
+        for (Future<Entry> future: futures)
+        {
+            Entry entry = null;
+            try
+            {
+                entry = future.get();
+            }
+            catch (InterruptedException ex)
+            {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            catch (ExecutionException ex)
+            {
+                logger.logError("Problem checking simulation directory", ex.getCause());
+            }
+            if (entry == null) continue;
+
+            Entry known = entries.get(entry.name);
+
+            if (known != null && known.hasSameTimes(entry))
+            {
+                entry = known;
+            }
+            else
+            {
+                if (entry.summaryModified >= 0)
+                {
+                    entry.props = SimulationsInfo.getSimulationProperties(new File(simulationsDir, entry.name));
+                    numRead++;
+                }
+                entries.put(entry.name, entry);
+            }
+            current.add(entry);
+            names.add(entry.name);
+        }
+
+        boolean removed = entries.keySet().retainAll(names);
+
+        if (numRead > 0 || removed)
+        {
+            writeIndex();
+        }
+
+        logger.logComment("Checked {} directories, read properties of {}, in {} ms",
+                          dirs.length, numRead, System.currentTimeMillis() - start);
+        return current;
+    }
+
+    /*
+     * Gets the modification times for the directory, running the remote pull script first if needed.
+     * Returns null if it isn't a directory
+     */
+    private Entry checkDirectory(File dir, boolean checkRemote, ProcessFeedback pf)
+    {
+        Entry entry = new Entry();
+        entry.name = dir.getName();
+        entry.dirModified = dir.lastModified();
+
+        if (entry.dirModified == 0 || !dir.isDirectory()) return null;
+
+        File timesFile = SimulationData.getTimesFile(dir);
+        File pullRemoteScript = new File(dir, RemoteLogin.remotePullScriptName);
+
+        entry.pullRemoteScript = pullRemoteScript.exists();
+
+        if (entry.pullRemoteScript && checkRemote && !timesFile.exists())
+        {
+            runPullScript(pullRemoteScript, pf);
+        }
+
+        entry.timesModified = getModified(timesFile);
+
+        File simSummaryFile = new File(dir, SimulationsInfo.simSummaryFileName);
+        entry.summaryModified = getModified(simSummaryFile);
+
+        if (entry.summaryModified < 0)
+        {
+            entry.summaryModified = getModified(new File(dir, SimulationsInfo.oldSimSummaryFileName));
+        }
+        entry.simulatorPropsModified = getModified(new File(dir, SimulationsInfo.simulatorPropsFileName));
+
+        return entry;
+    }
+
+    private static long getModified(File file)
+    {
+        long modified = file.lastModified();
+
+        if (modified == 0 && !file.exists()) return -1;
+        return modified;
+    }
+
+    private void runPullScript(File pullRemoteScript, ProcessFeedback pf)
+    {
+        try
+        {
+            String toRun = pullRemoteScript.getAbsolutePath();
+
+            if (GeneralUtils.isWindowsBasedPlatform())
+            {
+                String cygwinFriendlyFile = GeneralUtils.convertToCygwinPath(pullRemoteScript.getAbsolutePath());
+
+                toRun = "bash -c "+cygwinFriendlyFile; // Assumes cygwin installed...
+            }
+
+            String res = ProcessManager.runCommand(toRun, pf, 3000);
+            logger.logComment("Result of executing pullRemoteScript file: {}: {}", pullRemoteScript, res);
+        }
+        catch (Exception ex)
+        {
+            logger.logComment("Error running: {}: {}", pullRemoteScript, ex);
+        }
+    }
+
+    private File getIndexFile()
+    {
+        return new File(simulationsDir, INDEX_FILE_NAME);
+    }
+
+    private void readIndex()
+    {
+        File indexFile = getIndexFile();
+
+        if (!indexFile.exists()) return;
+
+        DataInputStream in = null;
+        try
+        {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile), 65536));
+
+            if (in.readInt() != MAGIC_NUMBER || in.readInt() != VERSION)
+            {
+                logger.logComment("Ignoring index in unknown format: {}", indexFile);
+                return;
+            }
+            int numEntries = in.readInt();
+
+            for (int i = 0; i < numEntries; i++)
+            {
+                Entry entry = new Entry();
+                entry.name = in.readUTF();
+                entry.dirModified = in.readLong();
+                entry.summaryModified = in.readLong();
+                entry.simulatorPropsModified = in.readLong();
+                entry.timesModified = in.readLong();
+                entry.pullRemoteScript = in.readBoolean();
+
+                int numProps = in.readInt();
+
+                if (numProps >= 0)
+                {
+                    entry.props = new Properties();
+
+                    for (int j = 0; j < numProps; j++)
+                    {
+                        String name = in.readUTF();
+                        entry.props.setProperty(name, in.readUTF());
+                    }
+                }
+                entries.put(entry.name, entry);
+            }
+            logger.logComment("Read {} entries from {}", numEntries, indexFile);
+        }
+        catch (IOException ex)
+        {
+            logger.logComment("Problem reading index: {}, so checking all simulations: {}", indexFile, ex);
+            entries.clear();
+        }
+        finally
+        {
+            close(in);
+        }
+    }
+
+    private void writeIndex()
+    {
+        File indexFile = getIndexFile();
+        File tempFile = new File(simulationsDir, INDEX_FILE_NAME + ".tmp");
+
+        DataOutputStream out = null;
+        try
+        {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile), 65536));
+
+            out.writeInt(MAGIC_NUMBER);
+            out.writeInt(VERSION);
+            out.writeInt(entries.size());
+
+            for (Entry entry: entries.values())
+            {
+                out.writeUTF(entry.name);
+                out.writeLong(entry.dirModified);
+                out.writeLong(entry.summaryModified);
+                out.writeLong(entry.simulatorPropsModified);
+                out.writeLong(entry.timesModified);
+                out.writeBoolean(entry.pullRemoteScript);
+
+                if (entry.props == null)
+                {
+                    out.writeInt(-1);
+                }
+                else
+                {
+                    Set<String> propNames = entry.props.stringPropertyNames();
+                    out.writeInt(propNames.size());
+
+                    for (String name: propNames)
+                    {
+                        out.writeUTF(name);
+                        out.writeUTF(entry.props.getProperty(name));
+                    }
+                }
+            }
+            out.close();
+            out = null;
+
+            if (indexFile.exists() && !indexFile.delete())
+            {
+                logger.logComment("Couldn't replace index: {}", indexFile);
+                tempFile.delete();
+                return;
+            }
+            if (!tempFile.renameTo(indexFile))
+            {
+                logger.logComment("Couldn't rename: {} to {}", tempFile, indexFile);
+            }
+        }
+        catch (IOException ex)
+        {
+            // the index just saves time, so the simulations dir may be read only...
+            logger.logComment("Problem writing index: {}: {}", indexFile, ex);
+            tempFile.delete();
+        }
+        finally
+        {
+            close(out);
+        }
+    }
+
+    private static void close(Closeable closeable)
+    {
+        if (closeable == null) return;
+        try
+        {
+            closeable.close();
+        }
+        catch (IOException ex)
+        {
+            // ignore...
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return "SimulationCatalogue of " + simulationsDir + " with " + entries.size() + " entries";
+    }
+
+}
@@ -41,7 +41,10 @@ import ucl.physiol.neuroconstruct.project.SimPlot;
 import ucl.physiol.neuroconstruct.project.PostSynapticObject;
 
 /**
- * Class which stores all the data from a simulation, including references to data files
+ * Class which stores all the data from a simulation, including references to data files.
+ * On initialise() the directory is indexed, but the traces in the text data files aren't read until
+ * they're first used (see DataStore). The values parsed from text files are also saved in binary form
+ * (see TraceFileCache), so they can be read much more quickly when the simulation is reopened.
  *
  * @author Padraig Gleeson
  *  
@@ -54,6 +57,12 @@ public class SimulationData
 
     private ArrayList<DataStore> dataSources = new ArrayList<DataStore>();
 
+    /*
+     * The DataStores for each cell group & cell number, in the order of dataSources
+     */
+    private HashMap<String, TreeMap<Integer, ArrayList<DataStore>>> dataSourcesByCell
+        = new HashMap<String, TreeMap<Integer, ArrayList<DataStore>>>();
+
     private ArrayList<String> allCellRefsCached = null;
     private ArrayList<String> allVoltCellRefsCached = null;
 
@@ -64,13 +73,19 @@ public class SimulationData
     public static final String POSITION_DATA_FILE = "CellPositions."+SimPlot.CONTINUOUS_DATA_EXT;
     public static final String NETCONN_DATA_FILE = "NetworkConnections."+SimPlot.CONTINUOUS_DATA_EXT;
     public static final String ELEC_INPUT_DATA_FILE = "ElectricalInputs."+SimPlot.CONTINUOUS_DATA_EXT;
+    public static final String NETWORK_SNAPSHOT_FILE = "Network.ncsnap";
 
     private boolean dataLoaded = false;
 
     private File dataDirectory = null;
     //private File timesDataFile = null;
 
-    private static int suggestedInitCapData = 100000;
+    private static volatile int suggestedInitCapData = 100000;
+
+    /*
+     * Time in ms since a data file was last changed after which it's taken as completely written
+     */
+    private static final long FILE_SETTLE_TIME = 500;
     private static int suggestedInitCapSpikes = 50;
 
     /**
@@ -145,9 +160,14 @@ public class SimulationData
 
     public void reset()
     {
+        for (DataStore ds: dataSources)
+        {
+            TraceCache.getSharedCache().remove(ds);
+        }
         this.allCellRefsCached = null;
         this.allVoltCellRefsCached = null;
         this.dataSources.clear();
+        this.dataSourcesByCell.clear();
         times = null;
         dataLoaded = false;
     }
@@ -178,22 +198,30 @@ public class SimulationData
                                                      unitSystem,
                                                      UnitConverter.NEUROCONSTRUCT_UNITS);
 
+        /*
+         * If the simulation may still be running, wait for the times file to stop growing. Only done
+         * if it's been changed recently, so opening a finished simulation doesn't wait
+         */
         long timeLen = getTimesFile().length();
-        logger.logComment("Time file "+getTimesFile().getAbsolutePath()+" has length "+ timeLen);
-        try {
-            Thread.sleep(500);
-            
-            while (getTimesFile().length() != timeLen) {
-                timeLen = getTimesFile().length();
-                logger.logComment("Time file "+getTimesFile().getAbsolutePath()+" has length "+ timeLen);
-                Thread.sleep(500);
+        if (System.currentTimeMillis() - getTimesFile().lastModified() < FILE_SETTLE_TIME)
+        {
+            try
+            {
+                do
+                {
+                    logger.logComment("Time file "+getTimesFile().getAbsolutePath()+" has length "+ timeLen);
+                    timeLen = getTimesFile().length();
+                    Thread.sleep(FILE_SETTLE_TIME);
+                }
+                while (getTimesFile().length() != timeLen);
+            }
+            catch (InterruptedException ex)
+            {
+                Thread.currentThread().interrupt();
             }
-        } catch (InterruptedException ex) {
-            //
         }
-        
 
-        times = readDataFileToArray(getTimesFile(), timeConversionFactor);
+        times = readTraceFile(getTimesFile(), timeConversionFactor);
         logger.logComment("There are "+times.length+" entries in the time file");
 
         double startTime = times[0];
@@ -211,6 +239,7 @@ public class SimulationData
                 if ( (name.endsWith("." + SimPlot.CONTINUOUS_DATA_EXT) || 
                     name.endsWith("." + SimPlot.CONTINUOUS_DATA_EXT+".txt") || /* TEMP for PSICS!!*/
                     name.endsWith("." + SimPlot.SPIKE_EXT) ||
+                    name.endsWith("." + SimPlot.BINARY_TRACE_EXT) ||
                     name.endsWith("." + SimPlot.H5_EXT))
                     && !name.equals(TIME_DATA_FILE_STD)
                     && !name.equals(TIME_DATA_FILE_PSICS)
@@ -237,10 +266,24 @@ public class SimulationData
 
         cellDataFiles = GeneralUtils.reorderAlphabetically(cellDataFiles, true);
 
+        // Where a text file has been converted to binary, only the binary file is used
+        HashSet<String> convertedTextFiles = new HashSet<String>();
+        for (File dataFile: cellDataFiles)
+        {
+            if (BinaryTraceFile.isBinaryTraceFile(dataFile))
+                convertedTextFiles.add(BinaryTraceFile.getTextFileName(dataFile));
+        }
+
         for (int fileIndex = 0; fileIndex < cellDataFiles.length; fileIndex++)
         {
             logger.logComment("-----   Looking at "+fileIndex+": "+cellDataFiles[fileIndex]);
 
+            if (convertedTextFiles.contains(cellDataFiles[fileIndex].getName()))
+            {
+                logger.logComment("-----   Using the binary version of "+cellDataFiles[fileIndex]);
+                continue;
+            }
+
             if (cellDataFiles[fileIndex].getName().indexOf("."+SimPlot.H5_EXT)>0)
             {
                 try
@@ -278,23 +321,33 @@ public class SimulationData
             }
             else
             {
+                // Binary files hold values already in neuroConstruct units, and are named after the text file
+                boolean binary = BinaryTraceFile.isBinaryTraceFile(cellDataFiles[fileIndex]);
+
+                String fileName = binary ? BinaryTraceFile.getTextFileName(cellDataFiles[fileIndex])
+                                         : cellDataFiles[fileIndex].getName();
 
                 String dataSourceName = null;
 
-                if (cellDataFiles[fileIndex].getName().indexOf("."+SimPlot.CONTINUOUS_DATA_EXT+".txt")>0)
+                if (fileName.indexOf("."+SimPlot.CONTINUOUS_DATA_EXT+".txt")>0)
                 {
-                    dataSourceName = cellDataFiles[fileIndex].getName().substring(0, cellDataFiles[fileIndex].getName().length()
-                                                                          - ("." + SimPlot.CONTINUOUS_DATA_EXT+".txt").length());
+                    dataSourceName = fileName.substring(0, fileName.length()
+                                                           - ("." + SimPlot.CONTINUOUS_DATA_EXT+".txt").length());
                 }
-                else if (cellDataFiles[fileIndex].getName().indexOf("."+SimPlot.CONTINUOUS_DATA_EXT)>0)
+                else if (fileName.indexOf("."+SimPlot.CONTINUOUS_DATA_EXT)>0)
                 {
-                    dataSourceName = cellDataFiles[fileIndex].getName().substring(0, cellDataFiles[fileIndex].getName().length()
-                                                                          - ("." + SimPlot.CONTINUOUS_DATA_EXT).length());
+                    dataSourceName = fileName.substring(0, fileName.length()
+                                                           - ("." + SimPlot.CONTINUOUS_DATA_EXT).length());
                 }
-                else if (cellDataFiles[fileIndex].getName().indexOf("."+SimPlot.SPIKE_EXT)>0)
+                else if (fileName.indexOf("."+SimPlot.SPIKE_EXT)>0)
                 {
-                    dataSourceName = cellDataFiles[fileIndex].getName().substring(0, cellDataFiles[fileIndex].getName().length()
-                                                                          - ("." + SimPlot.SPIKE_EXT).length());
+                    dataSourceName = fileName.substring(0, fileName.length()
+                                                           - ("." + SimPlot.SPIKE_EXT).length());
+                }
+                else
+                {
+                    logger.logComment("-----   Unrecognised data file: "+cellDataFiles[fileIndex]);
+                    continue;
                 }
 
                 logger.logComment("dataSourceName: "+dataSourceName);
@@ -331,7 +384,7 @@ public class SimulationData
                 {
                     onlySomaValues = false;
                 }
-                double conversionFactor = 1;
+                double conversionFactor = getConversionFactor(variable, unitSystem);
 
 
                 String xUnit = "";
@@ -340,47 +393,26 @@ public class SimulationData
 
                 if (variable.equals(SimPlot.VOLTAGE) || variable.contains(SimPlot.REV_POT))
                 {
-                    conversionFactor = UnitConverter.getVoltage(conversionFactor,
-                                                                        unitSystem,
-                                                                        UnitConverter.NEUROCONSTRUCT_UNITS);
-
                     yUnit = UnitConverter.voltageUnits[UnitConverter.NEUROCONSTRUCT_UNITS].getSymbol();
                 }
                 else if (variable.indexOf(SimPlot.SPIKE)>=0)
                 {
-                    conversionFactor = 1;
+                    // spike times, no units for the values
                 }
                 else if (variable.indexOf(SimPlot.CURR_DENS) >= 0)
                 {
-                    conversionFactor = UnitConverter.getCurrentDensity(conversionFactor,
-                                                                               unitSystem,
-                                                                               UnitConverter.NEUROCONSTRUCT_UNITS);
-
                     yUnit = UnitConverter.currentDensityUnits[UnitConverter.NEUROCONSTRUCT_UNITS].getSymbol();
                 }
                 else if (variable.indexOf(SimPlot.CONCENTRATION) >= 0)
                 {
-                    conversionFactor = UnitConverter.getConcentration(conversionFactor,
-                                                                              unitSystem,
-                                                                              UnitConverter.NEUROCONSTRUCT_UNITS);
-                    //System.out.println("Conc conv factor: "+ conversionFactor);
-
                     yUnit = UnitConverter.concentrationUnits[UnitConverter.NEUROCONSTRUCT_UNITS].getSymbol();
                 }
                 else if (variable.indexOf(SimPlot.COND_DENS) >= 0)
                 {
-                    conversionFactor = UnitConverter.getConductanceDensity(conversionFactor,
-                                                                                   unitSystem,
-                                                                                   UnitConverter.NEUROCONSTRUCT_UNITS);
-
                     yUnit = UnitConverter.conductanceDensityUnits[UnitConverter.NEUROCONSTRUCT_UNITS].getSymbol();
                 }
                 else if (variable.indexOf(SimPlot.SYN_COND) >= 0)
                 {
-                    conversionFactor = UnitConverter.getConductance(conversionFactor,
-                                                                                   unitSystem,
-                                                                                   UnitConverter.NEUROCONSTRUCT_UNITS);
-
                     yUnit = UnitConverter.conductanceUnits[UnitConverter.NEUROCONSTRUCT_UNITS].getSymbol();
                 }
 
@@ -389,10 +421,12 @@ public class SimulationData
                     xUnit =  "ms";
                 }
 
+                if (binary) conversionFactor = 1;
+
                 logger.logComment("yUnit: "+yUnit+", xUnit: "+xUnit+", conversionFactor: "+conversionFactor);
 
 
-                if (cellNum<0)  // probably from PyNN...
+                if (cellNum<0 && !binary)  // probably from PyNN...
                 {
                     double[][] dataArrays = read2dDataFileToArrays(cellDataFiles[fileIndex], conversionFactor);
 
@@ -411,21 +445,15 @@ public class SimulationData
                 }
                 else if (variable.indexOf(SimPlot.SPIKE)<0)
                 {
-                    double[] dataArray = readDataFileToArray(cellDataFiles[fileIndex], conversionFactor);
-                    DataStore ds = new DataStore(dataArray, cellGroup, cellNum, segId, variable, xUnit, yUnit, pso);
+                    DataStore ds = new DataStore(cellDataFiles[fileIndex], conversionFactor, cellGroup, cellNum, segId, variable, xUnit, yUnit, pso);
 
                     dataSources.add(ds);
 
                 }
                 else
                 {
-                    double[] spikeTimes = readDataFileToArray(cellDataFiles[fileIndex], timeConversionFactor);
-                    DataStore ds = new DataStore(spikeTimes,
-                                                 NON_SPIKING_VOLTAGE,
-                                                 SPIKING_VOLTAGE,
-                                                 startTime,
-                                                 endTime,
-                                                 timeStepToUse,
+                    DataStore ds = new DataStore(cellDataFiles[fileIndex],
+                                                 binary ? 1 : timeConversionFactor,
                                                  cellGroup,
                                                  cellNum,
                                                  segId,
@@ -434,6 +462,11 @@ public class SimulationData
                                                  yUnit,
                                                  pso);
 
+                    ds.setSpikeTimeFileInfo(NON_SPIKING_VOLTAGE,
+                                            SPIKING_VOLTAGE,
+                                            startTime,
+                                            endTime,
+                                            timeStepToUse);
 
                     dataSources.add(ds);
                 }
@@ -443,11 +476,16 @@ public class SimulationData
 
         //GeneralUtils.timeCheck("Finished reading voltages");
 
-        logger.logComment("There have been "+dataSources.size()+" data stores loaded:");
+        indexDataSources();
 
-        for (DataStore ds: dataSources)
+        logger.logComment("There have been "+dataSources.size()+" data stores found:");
+
+        if (logger.isLoggingComments())
         {
-            logger.logComment(ds.toString());
+            for (DataStore ds: dataSources)
+            {
+                logger.logComment(ds.toString());
+            }
         }
 
         dataLoaded = true;
@@ -458,6 +496,153 @@ public class SimulationData
         return dataLoaded;
     }
 
+    private void indexDataSources()
+    {
+        dataSourcesByCell.clear();
+
+        for (DataStore ds: dataSources)
+        {
+            TreeMap<Integer, ArrayList<DataStore>> cells = dataSourcesByCell.get(ds.getCellGroupName());
+            if (cells == null)
+            {
+                cells = new TreeMap<Integer, ArrayList<DataStore>>();
+                dataSourcesByCell.put(ds.getCellGroupName(), cells);
+            }
+            ArrayList<DataStore> cellData = cells.get(ds.getCellNumber());
+            if (cellData == null)
+            {
+                cellData = new ArrayList<DataStore>(4);
+                cells.put(ds.getCellNumber(), cellData);
+            }
+            cellData.add(ds);
+        }
+    }
+
+    /**
+     * Gets the DataStores for all the recorded variables & segments of the cell, in the order they were loaded
+     */
+    public List<DataStore> getDataStoresForCell(String cellGroupName, int cellNumber)
+    {
+        TreeMap<Integer, ArrayList<DataStore>> cells = dataSourcesByCell.get(cellGroupName);
+        if (cells == null) return Collections.emptyList();
+
+        ArrayList<DataStore> cellData = cells.get(cellNumber);
+        if (cellData == null) return Collections.emptyList();
+
+        return Collections.unmodifiableList(cellData);
+    }
+
+    /**
+     * Gets the DataStore for the variable recorded on the segment of the cell, or null if there isn't one.
+     * A segment id of -1 (i.e. not specified) is treated as the same as 0
+     */
+    public DataStore getDataStore(String cellGroupName, int cellNumber, int segId, String variable)
+    {
+        for (DataStore ds: getDataStoresForCell(cellGroupName, cellNumber))
+        {
+            if (ds.getAssumedSegmentId() == Math.max(segId, 0) &&
+                ds.getVariable().equals(variable))
+            {
+                return ds;
+            }
+        }
+        return null;
+    }
+
+    /*
+     * The DataStores which could match the cell, segment or cell item reference, found through the index,
+     * or all of them if the cell group & number can't be worked out from the reference
+     */
+    private List<DataStore> getCandidateDataStores(String ref)
+    {
+        String cellRef = getCellRef(ref);
+        int underscore = cellRef.lastIndexOf("_");
+
+        if (underscore > 0)
+        {
+            try
+            {
+                int cellNum = Integer.parseInt(cellRef.substring(underscore + 1));
+                return getDataStoresForCell(cellRef.substring(0, underscore), cellNum);
+            }
+            catch (NumberFormatException ex)
+            {
+                // not a standard reference...
+            }
+        }
+        return dataSources;
+    }
+
+    /**
+     * Gets the traces of the variable on the segment of each of the cells in the group which have it
+     * recorded, in order of cell number, as one contiguous matrix with a row per cell. Spike data is
+     * converted to a continuous trace. If a trace has fewer points than the time series of the simulation,
+     * the rest of its row is NaN.
+     *
+     * @param segId The segment id, -1 for the default (soma) segment
+     * @param incSpikeOrVoltage If true, spike data will be used when voltage was asked for, and vice versa
+     */
+    public TraceMatrix getTraceMatrix(String cellGroupName,
+                                      int segId,
+                                      String variable,
+                                      boolean incSpikeOrVoltage) throws SimulationDataException
+    {
+        if (!dataLoaded) throw new SimulationDataException("Data not yet loaded from files!");
+
+        TreeMap<Integer, ArrayList<DataStore>> cells = dataSourcesByCell.get(cellGroupName);
+
+        ArrayList<DataStore> rows = new ArrayList<DataStore>();
+
+        if (cells != null)
+        {
+            for (ArrayList<DataStore> cellData: cells.values())
+            {
+                for (DataStore ds: cellData)
+                {
+                    if (ds.getAssumedSegmentId() == Math.max(segId, 0) &&
+                        variablesMatch(variable, ds.getVariable(), incSpikeOrVoltage))
+                    {
+                        rows.add(ds);
+                        break;
+                    }
+                }
+            }
+        }
+
+        int numPoints = times.length;
+
+        if ((long)rows.size() * numPoints > Integer.MAX_VALUE)
+            throw new SimulationDataException("Too many points ("+rows.size()+" traces of "+numPoints
+                                              +") to put in one matrix for "+variable+" in "+cellGroupName);
+
+        int[] cellNumbers = new int[rows.size()];
+        double[] values = new double[rows.size() * numPoints];
+
+        for (int row = 0; row < rows.size(); row++)
+        {
+            DataStore ds = rows.get(row);
+            cellNumbers[row] = ds.getCellNumber();
+
+            double[] points = ds.getDataPoints();
+            int numToCopy = Math.min(points.length, numPoints);
+
+            System.arraycopy(points, 0, values, row * numPoints, numToCopy);
+
+            if (numToCopy < numPoints)
+                Arrays.fill(values, row * numPoints + numToCopy, (row + 1) * numPoints, Double.NaN);
+        }
+
+        return new TraceMatrix(cellGroupName, variable, cellNumbers, numPoints, values);
+    }
+
+    private static boolean variablesMatch(String variable, String dsVariable, boolean incSpikeOrVoltage)
+    {
+        return dsVariable.equals(variable) ||
+               (incSpikeOrVoltage &&
+                (variable.indexOf(SimPlot.SPIKE) >= 0 || variable.equals(SimPlot.VOLTAGE)) &&
+                (dsVariable.indexOf(SimPlot.SPIKE) >= 0 || dsVariable.equals(SimPlot.VOLTAGE)));
+    }
+
 /*
     public boolean dataOnlyForSoma()
     {
@@ -576,6 +761,37 @@ public class SimulationData
     }
 
 
+    /**
+     * Gets the times of all the spikes of the cell/segment. Where spike times were recorded, they're used
+     * directly, otherwise they're the times the voltage goes above the threshold
+     */
+    public double[] getSpikeTimes(String cellSegRef, float threshold)  throws SimulationDataException
+    {
+        if (!dataLoaded) throw new SimulationDataException("Data not yet loaded from files!");
+
+        for (DataStore ds: this.getDataForCellSegRef(cellSegRef, false))
+        {
+            String var = ds.getVariable();
+
+            if (var.equals(SimPlot.VOLTAGE) || var.indexOf(SimPlot.SPIKE)>=0)
+            {
+                DataStore volts = getDataAtAllTimes(cellSegRef, var, true);
+
+                if (volts.isSpikeTimes())
+                {
+                    return volts.getSpikeTimes();
+                }
+                return SpikeAnalyser.getSpikeTimes(volts.getDataPoints(),
+                                                   times,
+                                                   threshold,
+                                                   (float)times[0],
+                                                   (float)times[times.length-1]);
+            }
+        }
+        throw new SimulationDataException("Problem finding voltage or spike data in "+cellSegRef+"");
+    }
+
+
     public DataStore getDataAtAllTimes(String cellItemRef,
                                        String variable,
                                        boolean incSpikeOrVoltage)  throws SimulationDataException
@@ -584,12 +800,9 @@ public class SimulationData
 
         String cellSegRef = getCellSegRef(cellItemRef);
 
-        for (DataStore ds : dataSources)
+        for (DataStore ds : getCandidateDataStores(cellSegRef))
         {
-            if ( (ds.getVariable().equals(variable) ||
-                  (incSpikeOrVoltage &&
-                   (variable.indexOf(SimPlot.SPIKE) >= 0 || variable.equals(SimPlot.VOLTAGE)) &&
-                   (ds.getVariable().indexOf(SimPlot.SPIKE) >= 0 || ds.getVariable().equals(SimPlot.VOLTAGE))))
+            if (variablesMatch(variable, ds.getVariable(), incSpikeOrVoltage)
                  && cellSegRefsEqual(cellSegRef, ds.getCellSegRef()))
             {
                 return ds;
@@ -612,12 +825,6 @@ public class SimulationData
         
         String ref = "Plot of "+ variable+" in "+ cellItemRef+ " ("+this.getSimulationName()+")";
 
-        DataSet dataSet = new DataSet(ref, null,
-                                       "ms", 
-                                       SimPlot.getUnits(variable),
-                                       "Time",
-                                       SimPlot.getLegend(variable));
-
         String synInfo = "";
         if (dataStore.isSynapticMechData()) synInfo = " (synapse: " + dataStore.getPostSynapticObject().getSynRef() + ")";
 
@@ -630,17 +837,51 @@ public class SimulationData
 
         desc = desc + "\n\n" + SimulationsInfo.getSimProps(getSimulationDirectory(), false);
 
-        dataSet.setDescription(desc);
-        
-        double[] points = dataStore.getDataPoints();
-
-        for (int i = 0; i < times.length; i++)
+        if (dataStore.isSpikeTimes())
         {
-            dataSet.addPoint(times[i], points[i]);
-            //System.currentTimeMillis();
+            DataSet dataSet = new DataSet(ref, desc,
+                                           "ms",
+                                           SimPlot.getUnits(variable),
+                                           "Time",
+                                           SimPlot.getLegend(variable));
+
+            // Just the points either side of each spike are needed to draw the same trace
+            int[] spikingPoints = dataStore.getSpikingPoints();
+            int numPoints = Math.min(times.length, dataStore.getNumberOfPoints());
+            int lastAdded = -1;
+
+            for (int spikingPoint: spikingPoints)
+            {
+                if (spikingPoint >= numPoints) break;
+
+                for (int i = Math.max(lastAdded + 1, spikingPoint - 1); i <= spikingPoint + 1 && i < numPoints; i++)
+                {
+                    if (lastAdded < 0 && i > 0)
+                        dataSet.addPoint(times[0], dataStore.getNonSpikingValue());
+
+                    dataSet.addPoint(times[i], dataStore.getDataPoint(i));
+                    lastAdded = i;
+                }
+            }
+            if (lastAdded < numPoints - 1)
+            {
+                if (lastAdded < 0 && numPoints > 1)
+                    dataSet.addPoint(times[0], dataStore.getNonSpikingValue());
+
+                dataSet.addPoint(times[numPoints - 1], dataStore.getNonSpikingValue());
+            }
+            return dataSet;
         }
-        
-        return dataSet;
+
+        // the times & values are used in place, rather than copied
+        return new DataSet(ref, desc,
+                           "ms",
+                           SimPlot.getUnits(variable),
+                           "Time",
+                           SimPlot.getLegend(variable),
+                           times,
+                           dataStore.getDataPoints(),
+                           times.length);
         
     }
 
@@ -653,7 +894,84 @@ public class SimulationData
 
 
 
-    private double[] readDataFileToArray(File dataFile, double scaleFactor) throws SimulationDataException
+    /**
+     * Reads the values from a binary trace file, or from a single column text data file, using the binary
+     * copy in the TraceFileCache if it's up to date, and saving one if not
+     */
+    /**
+     * The factor the values of the variable saved by a simulation in the unit system are multiplied by
+     * to put them in neuroConstruct units
+     */
+    static double getConversionFactor(String variable, int unitSystem)
+    {
+        if (variable.equals(SimPlot.VOLTAGE) || variable.contains(SimPlot.REV_POT))
+        {
+            return UnitConverter.getVoltage(1, unitSystem, UnitConverter.NEUROCONSTRUCT_UNITS);
+        }
+        else if (variable.indexOf(SimPlot.SPIKE)>=0)
+        {
+            return 1;
+        }
+        else if (variable.indexOf(SimPlot.CURR_DENS) >= 0)
+        {
+            return UnitConverter.getCurrentDensity(1, unitSystem, UnitConverter.NEUROCONSTRUCT_UNITS);
+        }
+        else if (variable.indexOf(SimPlot.CONCENTRATION) >= 0)
+        {
+            return UnitConverter.getConcentration(1, unitSystem, UnitConverter.NEUROCONSTRUCT_UNITS);
+        }
+        else if (variable.indexOf(SimPlot.COND_DENS) >= 0)
+        {
+            return UnitConverter.getConductanceDensity(1, unitSystem, UnitConverter.NEUROCONSTRUCT_UNITS);
+        }
+        else if (variable.indexOf(SimPlot.SYN_COND) >= 0)
+        {
+            return UnitConverter.getConductance(1, unitSystem, UnitConverter.NEUROCONSTRUCT_UNITS);
+        }
+        return 1;
+    }
+
+    static double[] readTraceFile(File dataFile, double scaleFactor) throws SimulationDataException
+    {
+        double[] data = null;
+
+        if (BinaryTraceFile.isBinaryTraceFile(dataFile))
+            data = BinaryTraceFile.readValues(dataFile);
+        else
+            data = TraceFileCache.read(dataFile);
+
+        if (data == null)
+        {
+            long length = dataFile.length();
+            long modified = dataFile.lastModified();
+
+            data = readDataFileToArray(dataFile, 1);
+
+            // Not cached if the file may still be being written, as the values read may be incomplete
+            if (dataFile.length() == length &&
+                dataFile.lastModified() == modified &&
+                System.currentTimeMillis() - modified >= FILE_SETTLE_TIME)
+            {
+                TraceFileCache.write(dataFile, data, length, modified);
+            }
+            else
+            {
+                logger.logComment("Not caching the values of {}, as it has been changed recently", dataFile);
+            }
+        }
+
+        if (scaleFactor != 1)
+        {
+            for (int i = 0; i < data.length; i++)
+            {
+                data[i] = scaleFactor * data[i];
+            }
+        }
+        return data;
+    }
+
+
+    private static double[] readDataFileToArray(File dataFile, double scaleFactor) throws SimulationDataException
     {
         String nextLine = null;
         double[] data = null;
@@ -686,7 +1004,7 @@ public class SimulationData
                 }
             }
 
-            suggestedInitCapData = numDataPointsAdded; // for next time...
+            suggestedInitCapData = Math.max(16, numDataPointsAdded); // for next time...
 
             in.close();
             
@@ -910,45 +1228,153 @@ public class SimulationData
 
     public static double[] convertSpikeTimesToContinuous(double[] spikeTimes, double startTime, double endTime, double timeStep, double nonSpikingVal, double spikingVal)
     {
-        int numPoints = (int)(Math.floor(endTime-startTime)/timeStep)+1;
-        double[] data = new double[numPoints];
-        int spikeCount = 0;
+        int numPoints = getNumberSpikeTracePoints(startTime, endTime, timeStep);
+
+        logger.logComment("------------------------checking {} time points", numPoints);
 
+        int[] spikingSteps = getSpikingSteps(spikeTimes, startTime, timeStep, numPoints);
+
+        return convertSpikingStepsToContinuous(spikingSteps, 0, numPoints, nonSpikingVal, spikingVal);
+    }
+
+    /**
+     * The number of points in the continuous trace made from spike times
+     */
+    public static int getNumberSpikeTracePoints(double startTime, double endTime, double timeStep)
+    {
+        return (int)(Math.floor(endTime-startTime)/timeStep)+1;
+    }
+
+    /**
+     * Gets the indices of the points with the spiking value in the continuous trace made from the spike times,
+     * where point i is at startTime + i*timeStep. Each spike is at the first point at or after its time, except
+     * where that point immediately follows one which already had a spike (when spikes are closer than the time
+     * step). Takes time proportional to the number of spikes, not the number of points.
+     */
+    public static int[] getSpikingSteps(double[] spikeTimes, double startTime, double timeStep, int numPoints)
+    {
+        int[] steps = new int[spikeTimes.length];
+        int numSpiking = 0;
+
+        int nextStep = 0;
         boolean insideSpike = false;
 
-        logger.logComment("------------------------checking "+numPoints+" time points");
-        double time = startTime;
+        for (int spike = 0; spike < spikeTimes.length; spike++)
+        {
+            int step = Math.max(nextStep, getFirstStepAtOrAfter(spikeTimes[spike], startTime, timeStep, numPoints));
+
+            if (step >= numPoints) break;
+
+            if (step > nextStep) insideSpike = false; // there was a point without a spike before this
 
-        for (int i = 0; i < numPoints; i++)
+            if (!insideSpike)
+            {
+                steps[numSpiking++] = step;
+                insideSpike = true;
+            }
+            nextStep = step + 1;
+        }
+        return Arrays.copyOf(steps, numSpiking);
+    }
+
+    private static int getFirstStepAtOrAfter(double spikeTime, double startTime, double timeStep, int numPoints)
+    {
+        float spikeTimeF = (float)spikeTime;
+
+        double estimate = Math.ceil((spikeTime - startTime) / timeStep);
+        int step = (int)Math.max(0, Math.min(numPoints, estimate));
+
+        // times compared as floats, so check the points either side of the estimate
+        while (step > 0 && (float)(startTime + (step - 1) * timeStep) >= spikeTimeF)
+            step--;
+        while (step < numPoints && (float)(startTime + step * timeStep) < spikeTimeF)
+            step++;
+
+        return step;
+    }
+
+    /**
+     * Makes numPoints of the continuous trace, from firstPoint on, given the indices of the points with the spiking value
+     */
+    public static double[] convertSpikingStepsToContinuous(int[] spikingSteps, int firstPoint, int numPoints, double nonSpikingVal, double spikingVal)
+    {
+        double[] data = new double[numPoints];
+        Arrays.fill(data, nonSpikingVal);
+
+        int index = Arrays.binarySearch(spikingSteps, firstPoint);
+        if (index < 0) index = -index - 1;
+
+        for (; index < spikingSteps.length && spikingSteps[index] < firstPoint + numPoints; index++)
+        {
+            data[spikingSteps[index] - firstPoint] = spikingVal;
+        }
+        return data;
+    }
+
+
+
+    /**
+     * Converts the text data files of the simulation (apart from PyNN 2 column files) to binary trace
+     * files (see BinaryTraceFile), which will be used in preference to the text files from then on. The
+     * data will need to be initialised again after this.
+     *
+     * @param encoding BinaryTraceFile.ENCODING_FLOAT32 or BinaryTraceFile.ENCODING_DELTA_FLOAT64
+     * @param deleteTextFiles Whether to delete the text files once converted
+     * @return the number of files converted
+     */
+    public int convertToBinaryTraceFiles(int encoding, boolean deleteTextFiles) throws SimulationDataException
+    {
+        this.initialise();
+
+        double startTime = times[0];
+        double timeStep = times.length > 1 ? (times[times.length-1]-startTime)/(times.length-1) : 0;
+
+        int numConverted = 0;
+
+        for (DataStore ds: dataSources)
         {
-            float timeF = (float)time;
+            File textFile = ds.getDataFile();
+
+            if (textFile == null || BinaryTraceFile.isBinaryTraceFile(textFile)) continue;
 
-            if (spikeCount < spikeTimes.length && timeF >= (float)(spikeTimes[spikeCount]))
+            String dataSourceName = textFile.getName();
+
+            for (String ext: new String[]{"." + SimPlot.CONTINUOUS_DATA_EXT + ".txt",
+                                          "." + SimPlot.CONTINUOUS_DATA_EXT,
+                                          "." + SimPlot.SPIKE_EXT})
             {
-                if (!insideSpike)
+                if (dataSourceName.endsWith(ext))
                 {
-                    data[i] = spikingVal;
-                    logger.logComment("Spike time "+spikeTimes[spikeCount]+", spike# "+spikeCount+" found at "+ time +" ("+timeF+"), data# "+i);
-                    spikeCount++;
-                    insideSpike = true;
-                }
-                else
-                {
-                    data[i] = nonSpikingVal;
-                    spikeCount++;
+                    dataSourceName = dataSourceName.substring(0, dataSourceName.length() - ext.length());
+                    break;
                 }
             }
-            else
+
+            BinaryTraceFile binaryTrace
+                = new BinaryTraceFile(encoding,
+                                      ds.isSpikeTimes() ? BinaryTraceFile.KIND_SPIKE_TIMES : BinaryTraceFile.KIND_CONTINUOUS,
+                                      startTime,
+                                      timeStep,
+                                      dataSourceName,
+                                      ds.getVariable(),
+                                      ds.isSpikeTimes() ? "ms" : ds.getXUnit(),
+                                      ds.getYUnit());
+
+            binaryTrace.convertTextFile(textFile, BinaryTraceFile.getBinaryFileFor(textFile), ds.getScaleFactor());
+            numConverted++;
+
+            if (deleteTextFiles)
             {
-                data[i] = nonSpikingVal;
-                insideSpike = false;
+                textFile.delete();
+                TraceFileCache.getCacheFile(textFile).delete();
             }
-
-            time = time + timeStep;
         }
-        return data;
-    }
 
+        logger.logComment("Converted {} data files in {} to binary", numConverted, dataDirectory);
+
+        this.reset();
+        return numConverted;
+    }
 
 
     public String getDateModified()
@@ -1020,6 +1446,18 @@ public class SimulationData
                         + ELEC_INPUT_DATA_FILE);
 
     }
+
+
+    /**
+     * Binary snapshot of the generated network, quicker to load than the 3 files above
+     */
+    public File getNetworkSnapshotFile()
+    {
+        return new File(dataDirectory.getAbsolutePath()
+                        + System.getProperty("file.separator")
+                        + NETWORK_SNAPSHOT_FILE);
+
+    }
     
     public ArrayList<DataStore> getAllLoadedDataStores()
     {
@@ -1032,9 +1470,9 @@ public class SimulationData
 
         ArrayList<DataStore> vars = new ArrayList<DataStore>();
 
-        for (DataStore ds : dataSources)
+        for (DataStore ds : getCandidateDataStores(cellSegRef))
         {
-            logger.logComment("Checking getDataForCellSegRef: "+ds+" against "+ cellSegRef);
+            logger.logComment("Checking getDataForCellSegRef: {} against {}", ds, cellSegRef);
 
             if (cellSegRefsEqual(ds.getCellSegRef(), cellSegRef))
             {
@@ -1081,9 +1519,9 @@ public class SimulationData
 
         ArrayList<String> cellSegRefs = new ArrayList<String>();
 
-        for (DataStore ds : dataSources)
+        for (DataStore ds : getCandidateDataStores(cellRef))
         {
-            logger.logComment("Checking getCellSegRefsForCellRef: "+ds+" against "+ cellRef);
+            logger.logComment("Checking getCellSegRefsForCellRef: {} against {}", ds, cellRef);
 
             if (ds.getCellRef().equals(cellRef))
             {
@@ -1101,22 +1539,25 @@ public class SimulationData
         if (!dataLoaded) return null;
 
         ArrayList<String> cellItemRefs = new ArrayList<String> ();
-        Set<String> cgsToUse = cellsToUse.keySet();
+        HashSet<String> refsAdded = new HashSet<String>();
+
+        HashMap<String, HashSet<Integer>> cellSetsToUse = new HashMap<String, HashSet<Integer>>();
+        for (String cg: cellsToUse.keySet())
+        {
+            cellSetsToUse.put(cg, new HashSet<Integer>(cellsToUse.get(cg)));
+        }
 
         for (DataStore ds : dataSources)
         {
             String cg = ds.getCellGroupName();
-            logger.logComment("Checking getCellItemRefsForVar: " + ds + " against " + variable+" for: "+ cg);
+            logger.logComment("Checking getCellItemRefsForVar: {} against {} for: {}", ds, variable, cg);
+
+            HashSet<Integer> cells = cellSetsToUse.get(cg);
 
-            if (cgsToUse.contains(cg) &&
-                    (ds.getVariable().equals(variable) ||
-                    (incSpikeOrVoltage &&
-                 (variable.indexOf(SimPlot.SPIKE)>=0 || variable.equals(SimPlot.VOLTAGE))&&
-                 (ds.getVariable().indexOf(SimPlot.SPIKE)>=0 || ds.getVariable().equals(SimPlot.VOLTAGE)))))
+            if (cells != null && variablesMatch(variable, ds.getVariable(), incSpikeOrVoltage))
             {
                 String ref = ds.getCellSegRef();
-                ArrayList<Integer> cells = cellsToUse.get(cg);
-                
+
                 if(cells.contains(ds.getCellNumber()))
                 {
                     if (ds.getPostSynapticObject()!=null)
@@ -1124,7 +1565,7 @@ public class SimulationData
                         ref = ref +"."+ ds.getPostSynapticObject().getSynRef();
                     }
 
-                    if (!cellItemRefs.contains(ref))
+                    if (refsAdded.add(ref))
                         cellItemRefs.add(ref);
                 }
             }
@@ -0,0 +1,751 @@
+/**
+ *  neuroConstruct
+ *  Software for developing large scale 3D networks of biologically realistic neurons
+ * 
+ *  Copyright (c) 2009 Padraig Gleeson
+ *  UCL Department of Neuroscience, Physiology and Pharmacology
+ *
+ *  Development of this software was made possible with funding from the
+ *  Medical Research Council and the Wellcome Trust
+ *  
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *  
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+
+
+package ucl.physiol.neuroconstruct.simulation;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import ucl.physiol.neuroconstruct.project.GeneralProperties;
+import ucl.physiol.neuroconstruct.project.SimPlot;
+import ucl.physiol.neuroconstruct.utils.*;
+import ucl.physiol.neuroconstruct.utils.units.*;
+
+/**
+ * Exports all of the traces recorded in a simulation to one MATLAB (level 5) MAT file,
+ * simulation_data.mat, so they can be loaded into MATLAB/Octave or Igor Pro without each text
+ * data file being parsed there. Each data file becomes a double matrix of the shape load() would
+ * give for the file, named by getVariableName(). An index file, simulation_data.idx, gives the name,
+ * the byte offset of the values in the MAT file, and the number of rows & columns of each, one per
+ * line separated by tabs, for tools which read the values straight from the file. The loaders
+ * generated by MatlabOctave and IgorNeuroMatic use these files when they are present.
+ *
+ * The traces of each cell group are exported on a separate thread to a temporary part file, a block
+ * of values at a time, so the memory needed doesn't depend on the length of the traces. The parts
+ * are joined after the times when all are complete. Values are as in the text data files, i.e. in the
+ * units of the simulator, and traces only present as binary trace files (which hold neuroConstruct
+ * units) are converted back to those units, so all of the variables in the file are in one unit system.
+ *
+ * @author Padraig Gleeson
+ *
+ */
+
+public class SimulationDataExporter
+{
+    private static ClassLogger logger = new ClassLogger("SimulationDataExporter");
+
+    public static final String CONTAINER_FILENAME = "simulation_data.mat";
+    public static final String INDEX_FILENAME = "simulation_data.idx";
+
+    /*
+     * Longest variable name MATLAB allows
+     */
+    private static final int MAX_NAME_LENGTH = 63;
+
+    private static final int MAT_HEADER_TEXT_LENGTH = 116;
+
+    private static final int MI_INT8 = 1;
+    private static final int MI_INT32 = 5;
+    private static final int MI_UINT32 = 6;
+    private static final int MI_DOUBLE = 9;
+    private static final int MI_MATRIX = 14;
+    private static final int MX_DOUBLE_CLASS = 6;
+
+    private static final long MAX_ELEMENT_BYTES = 0xFFFFFFFFL;
+
+    private static final int BUFFER_SIZE = 65536;
+
+    /*
+     * Most values held at once when writing the columns of a multi column data file
+     */
+    private static final int MAX_BLOCK_VALUES = 1 << 20;
+
+    private static final int BLOCK_VALUES = 8192;
+
+    private static ExecutorService executor = null;
+
+
+    private SimulationDataExporter()
+    {
+    }
+
+    private static synchronized ExecutorService getExecutor()
+    {
+        if (executor == null)
+        {
+            executor = ThreadPools.newDaemonThreadPool("TraceExport", Runtime.getRuntime().availableProcessors());
+        }
+        return executor;
+    }
+
+    /**
+     * The name of the variable in the MAT file for the data file, e.g. CellGroup_0_3_na_m for
+     * CellGroup_0.3.na_m.dat and CellGroup_0_spike for CellGroup_0.spike. The extension of
+     * continuous data files is removed, other characters not allowed in MATLAB names are replaced
+     * by underscores, and names which are too long are shortened, with a hash of the
+     * file name added to keep them distinct.
+     */
+    public static String getVariableName(String fileName)
+    {
+        String name = fileName;
+
+        for (String ext: new String[]{"." + SimPlot.CONTINUOUS_DATA_EXT + ".txt",
+                                      "." + SimPlot.CONTINUOUS_DATA_EXT,
+                                      ".txt"})
+        {
+            if (name.endsWith(ext))
+            {
+                name = name.substring(0, name.length() - ext.length());
+                break;
+            }
+        }
+
+        StringBuilder sb = new StringBuilder(name.length() + 2);
+
+        for (int i = 0; i < name.length(); i++)
+        {
+            char c = name.charAt(i);
+
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_')
+                sb.append(c);
+            else
+                sb.append('_');
+        }
+
+        if (sb.length() == 0 || !Character.isLetter(sb.charAt(0)))
+        {
+            sb.insert(0, "v_");
+        }
+
+        if (sb.length() > MAX_NAME_LENGTH)
+        {
+            String hash = Integer.toHexString(fileName.hashCode());
+            sb.setLength(MAX_NAME_LENGTH - hash.length() - 1);
+            sb.append('_').append(hash);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Exports the times and all of the traces in the simulation directory to the MAT file, replacing
+     * any earlier export. HDF5 data files aren't included.
+     *
+     * @return the MAT file
+     */
+    public static File export(File simDir) throws SimulationDataException
+    {
+        long start = System.currentTimeMillis();
+
+        File timesFile = SimulationData.getTimesFile(simDir);
+
+        if (!timesFile.exists())
+            throw new SimulationDataException("No file of simulation times found in: " + simDir.getAbsolutePath());
+
+        TreeMap<String, ArrayList<File>> filesByCellGroup = getTraceFilesByCellGroup(simDir);
+
+        Properties props = SimulationsInfo.getSimulationProperties(simDir);
+        final int unitSystem = UnitConverter.getUnitSystemIndex(props.getProperty("Unit system"));
+
+        File containerFile = new File(simDir, CONTAINER_FILENAME);
+        File indexFile = new File(simDir, INDEX_FILENAME);
+        File tempFile = new File(simDir, CONTAINER_FILENAME + ".tmp");
+        File tempIndexFile = new File(simDir, INDEX_FILENAME + ".tmp");
+
+        ArrayList<File> partFiles = new ArrayList<File>();
+        ArrayList<Future<ArrayList<Variable>>> parts = new ArrayList<Future<ArrayList<Variable>>>();
+
+        HashSet<String> names = new HashSet<String>();
+        names.add(getVariableName(SimulationData.getStandardTimesFilename()));
+
+        for (ArrayList<File> files: filesByCellGroup.values())
+        {
+            for (Iterator<File> it = files.iterator(); it.hasNext(); )
+            {
+                String name = getVariableName(getTextFileName(it.next()));
+
+                if (!names.add(name))
+                {
+                    logger.logError("More than one data file would be exported as: " + name + ", so only the first is");
+                    it.remove();
+                }
+            }
+        }
+
+        RandomAccessFile raf = null;
+        try
+        {
+            for (final ArrayList<File> files: filesByCellGroup.values())
+            {
+                final File partFile = new File(simDir, CONTAINER_FILENAME + "." + partFiles.size() + ".tmp");
+                partFiles.add(partFile);
+
+                parts.add(getExecutor().submit(new Callable<ArrayList<Variable>>()
+                {
+                    public ArrayList<Variable> call() throws Exception
+                    {
+                        return exportPart(files, partFile, unitSystem);
+                    }
+                }));
+            }
+
+            raf = new RandomAccessFile(tempFile, "rw");
+            raf.setLength(0);
+            FileChannel channel = raf.getChannel();
+
+            MatWriter writer = new MatWriter(channel, unitSystem);
+            writer.writeHeader("MATLAB 5.0 MAT-file, Platform: Java, Created by: neuroConstruct v"
+                               + GeneralProperties.getVersionNumber() + " on: " + new Date()
+                               + ", from simulation: " + simDir.getName());
+
+            ArrayList<Variable> variables = new ArrayList<Variable>();
+            variables.add(writer.writeDataFile(timesFile, getVariableName(SimulationData.getStandardTimesFilename())));
+            writer.flush();
+
+            for (int i = 0; i < parts.size(); i++)
+            {
+                ArrayList<Variable> partVariables = parts.get(i).get();
+
+                long offset = channel.position();
+
+                FileInputStream in = new FileInputStream(partFiles.get(i));
+                try
+                {
+                    FileChannel partChannel = in.getChannel();
+                    long size = partChannel.size();
+                    long copied = 0;
+
+                    while (copied < size)
+                    {
+                        copied += partChannel.transferTo(copied, size - copied, channel);
+                    }
+                    channel.position(offset + size);
+                }
+                finally
+                {
+                    in.close();
+                }
+                partFiles.get(i).delete();
+
+                for (Variable variable: partVariables)
+                {
+                    variable.dataOffset += offset;
+                    variables.add(variable);
+                }
+            }
+            raf.close();
+            raf = null;
+
+            PrintWriter indexWriter = new PrintWriter(new BufferedWriter(new FileWriter(tempIndexFile)));
+            for (Variable variable: variables)
+            {
+                indexWriter.print(variable.name + "\t" + variable.dataOffset + "\t" + variable.rows + "\t" + variable.cols + "\n");
+            }
+            indexWriter.close();
+
+            containerFile.delete();
+            indexFile.delete();
+
+            if (!tempFile.renameTo(containerFile) || !tempIndexFile.renameTo(indexFile))
+                throw new SimulationDataException("Unable to create: " + containerFile.getAbsolutePath());
+
+            logger.logComment("Exported {} traces to {} in {} ms",
+                              variables.size(), containerFile, System.currentTimeMillis() - start);
+
+            return containerFile;
+        }
+        catch (IOException ex)
+        {
+            throw new SimulationDataException("Error exporting the traces of: " + simDir.getAbsolutePath(), ex);
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            throw new SimulationDataException("Export of the traces of: " + simDir.getAbsolutePath() + " interrupted", ex);
+        }
+        catch (ExecutionException ex)
+        {
+            if (ex.getCause() instanceof SimulationDataException)
+                throw (SimulationDataException)ex.getCause();
+
+            throw new SimulationDataException("Error exporting the traces of: " + simDir.getAbsolutePath(), ex.getCause());
+        }
+        finally
+        {
+            for (Future<ArrayList<Variable>> part: parts)
+            {
+                part.cancel(true);
+            }
+            if (raf != null)
+            {
+                try
+                {
+                    raf.close();
+                }
+                catch (IOException ex)
+                {
+                    logger.logError("Problem closing: " + tempFile, ex);
+                }
+            }
+            for (File partFile: partFiles)
+            {
+                partFile.delete();
+            }
+            tempFile.delete();
+            tempIndexFile.delete();
+        }
+    }
+
+    /*
+     * The same data files SimulationData uses (apart from HDF5 files), alphabetically in each cell group
+     */
+    private static TreeMap<String, ArrayList<File>> getTraceFilesByCellGroup(File simDir)
+    {
+        final String timesFileName = SimulationData.getTimesFile(simDir).getName();
+
+        File[] dataFiles = simDir.listFiles(new FilenameFilter()
+        {
+            public boolean accept(File dir, String name)
+            {
+                return (name.endsWith("." + SimPlot.CONTINUOUS_DATA_EXT) ||
+                        name.endsWith("." + SimPlot.CONTINUOUS_DATA_EXT + ".txt") ||
+                        name.endsWith("." + SimPlot.SPIKE_EXT) ||
+                        name.endsWith("." + SimPlot.BINARY_TRACE_EXT))
+                       && !name.equals(SimulationData.getStandardTimesFilename())
+                       && !name.equals(timesFileName)
+                       && !name.equals(SimulationData.POSITION_DATA_FILE)
+                       && !name.equals(SimulationData.NETCONN_DATA_FILE)
+                       && !name.equals(SimulationData.ELEC_INPUT_DATA_FILE)
+                       && name.indexOf("psics-out") < 0;
+            }
+        });
+
+        TreeMap<String, ArrayList<File>> filesByCellGroup = new TreeMap<String, ArrayList<File>>();
+
+        if (dataFiles == null) return filesByCellGroup;
+
+        Arrays.sort(dataFiles);
+
+        // Where a text file has been converted to binary, the text file is used
+        HashSet<String> fileNames = new HashSet<String>();
+        for (File dataFile: dataFiles)
+        {
+            fileNames.add(dataFile.getName());
+        }
+
+        for (File dataFile: dataFiles)
+        {
+            if (BinaryTraceFile.isBinaryTraceFile(dataFile) &&
+                fileNames.contains(BinaryTraceFile.getTextFileName(dataFile))) continue;
+
+            String cellRef = getTextFileName(dataFile);
+            if (cellRef.indexOf(".") > 0) cellRef = cellRef.substring(0, cellRef.indexOf("."));
+
+            String cellGroup = cellRef.lastIndexOf("_") > 0 ? cellRef.substring(0, cellRef.lastIndexOf("_")) : cellRef;
+
+            ArrayList<File> files = filesByCellGroup.get(cellGroup);
+            if (files == null)
+            {
+                files = new ArrayList<File>();
+                filesByCellGroup.put(cellGroup, files);
+            }
+            files.add(dataFile);
+        }
+        return filesByCellGroup;
+    }
+
+    private static String getTextFileName(File dataFile)
+    {
+        if (BinaryTraceFile.isBinaryTraceFile(dataFile))
+            return BinaryTraceFile.getTextFileName(dataFile);
+
+        return dataFile.getName();
+    }
+
+    private static ArrayList<Variable> exportPart(ArrayList<File> files, File partFile, int unitSystem)
+        throws IOException, SimulationDataException
+    {
+        ArrayList<Variable> variables = new ArrayList<Variable>();
+
+        RandomAccessFile raf = new RandomAccessFile(partFile, "rw");
+        try
+        {
+            raf.setLength(0);
+            MatWriter writer = new MatWriter(raf.getChannel(), unitSystem);
+
+            for (File file: files)
+            {
+                if (Thread.currentThread().isInterrupted()) return variables;
+
+                variables.add(writer.writeDataFile(file, getVariableName(getTextFileName(file))));
+            }
+            writer.flush();
+        }
+        finally
+        {
+            raf.close();
+        }
+        return variables;
+    }
+
+
+    /*
+     * Position of the values of a variable in the MAT file and their shape
+     */
+    private static class Variable
+    {
+        final String name;
+        long dataOffset;
+        long rows;
+        int cols;
+
+        Variable(String name, long dataOffset, long rows, int cols)
+        {
+            this.name = name;
+            this.dataOffset = dataOffset;
+            this.rows = rows;
+            this.cols = cols;
+        }
+    }
+
+
+    /**
+     * Writes the elements of a MAT file in order to a file channel. Little endian, as MATLAB and
+     * Octave on any platform will read that.
+     */
+    private static class MatWriter
+    {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+        /*
+         * Of the simulation, which binary trace files are converted back to
+         */
+        private final int unitSystem;
+
+        MatWriter(FileChannel channel, int unitSystem)
+        {
+            this.channel = channel;
+            this.unitSystem = unitSystem;
+        }
+
+        private long getPosition() throws IOException
+        {
+            return channel.position() + buffer.position();
+        }
+
+        void flush() throws IOException
+        {
+            buffer.flip();
+            while (buffer.hasRemaining())
+            {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        private void ensureSpace(int numBytes) throws IOException
+        {
+            if (buffer.remaining() < numBytes) flush();
+        }
+
+        void writeHeader(String text) throws IOException
+        {
+            byte[] textBytes = text.getBytes("US-ASCII");
+
+            for (int i = 0; i < MAT_HEADER_TEXT_LENGTH; i++)
+            {
+                buffer.put(i < textBytes.length ? textBytes[i] : (byte)' ');
+            }
+            buffer.putLong(0);                  // no subsystem data
+            buffer.putShort((short)0x0100);     // version
+            buffer.put((byte)'I');              // "MI", as written by a little endian machine
+            buffer.put((byte)'M');
+        }
+
+        /*
+         * Writes the tags, shape & name of a double matrix, leaving the values to be written after
+         */
+        private long startMatrix(String name, long rows, int cols) throws IOException, SimulationDataException
+        {
+            byte[] nameBytes = name.getBytes("US-ASCII");
+            long elementBytes = getElementBytes(name, rows * cols);
+
+            ensureSpace(128);
+            long start = getPosition();
+
+            buffer.putInt(MI_MATRIX);
+            buffer.putInt((int)elementBytes);
+
+            buffer.putInt(MI_UINT32);
+            buffer.putInt(8);
+            buffer.putInt(MX_DOUBLE_CLASS);
+            buffer.putInt(0);
+
+            buffer.putInt(MI_INT32);
+            buffer.putInt(8);
+            buffer.putInt((int)rows);
+            buffer.putInt(cols);
+
+            buffer.putInt(MI_INT8);
+            buffer.putInt(nameBytes.length);
+            buffer.put(nameBytes);
+            for (int i = nameBytes.length; i < padTo8(nameBytes.length); i++)
+            {
+                buffer.put((byte)0);
+            }
+
+            buffer.putInt(MI_DOUBLE);
+            buffer.putInt((int)(rows * cols * 8));
+
+            return start;
+        }
+
+        /*
+         * Fills in the number of rows, once all the values have been written
+         */
+        private void finishMatrix(long start, String name, long rows, int cols) throws IOException, SimulationDataException
+        {
+            flush();
+
+            ByteBuffer sizes = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+
+            sizes.putInt(0, (int)getElementBytes(name, rows * cols));
+            channel.write(sizes, start + 4);
+
+            sizes.clear();
+            sizes.putInt(0, (int)rows);
+            channel.write(sizes, start + 8 + 16 + 8);
+
+            sizes.clear();
+            sizes.putInt(0, (int)(rows * cols * 8));
+            channel.write(sizes, getDataOffset(start, name) - 4);
+        }
+
+        private long getElementBytes(String name, long numValues) throws SimulationDataException
+        {
+            long elementBytes = 16 + 16 + 8 + padTo8(name.length()) + 8 + numValues * 8;
+
+            if (elementBytes > MAX_ELEMENT_BYTES || numValues > Integer.MAX_VALUE)
+                throw new SimulationDataException("Too many values in: " + name + " (" + numValues + ") for a MAT file");
+
+            return elementBytes;
+        }
+
+        private long getDataOffset(long start, String name)
+        {
+            return start + 8 + 16 + 16 + 8 + padTo8(name.length()) + 8;
+        }
+
+        private int padTo8(int numBytes)
+        {
+            return (numBytes + 7) & ~7;
+        }
+
+        private void putDouble(double value) throws IOException
+        {
+            ensureSpace(8);
+            buffer.putDouble(value);
+        }
+
+        Variable writeDataFile(File file, String name) throws IOException, SimulationDataException
+        {
+            if (BinaryTraceFile.isBinaryTraceFile(file))
+                return writeBinaryTraceFile(file, name);
+
+            BufferedReader reader = new BufferedReader(new FileReader(file), BUFFER_SIZE);
+            String nextLine = null;
+            try
+            {
+                nextLine = readValueLine(reader);
+
+                int cols = nextLine == null ? 1 : splitValues(nextLine).length;
+
+                if (cols > 1)
+                {
+                    reader.close();
+                    return writeColumns(file, name, cols);
+                }
+
+                long start = startMatrix(name, 0, 1);
+                long rows = 0;
+
+                while (nextLine != null)
+                {
+                    putDouble(Double.parseDouble(nextLine.trim()));
+                    rows++;
+                    nextLine = readValueLine(reader);
+                }
+                finishMatrix(start, name, rows, 1);
+
+                return new Variable(name, getDataOffset(start, name), rows, 1);
+            }
+            catch (NumberFormatException ex)
+            {
+                throw new SimulationDataException("Error reading line: (" + nextLine + ") from file: " + file.getAbsolutePath(), ex);
+            }
+            finally
+            {
+                reader.close();
+            }
+        }
+
+        /*
+         * The file is read once to count the rows, then each block of rows is written to the columns
+         * in place, as MATLAB holds matrices column by column
+         */
+        private Variable writeColumns(File file, String name, int cols) throws IOException, SimulationDataException
+        {
+            long rows = 0;
+
+            BufferedReader reader = new BufferedReader(new FileReader(file), BUFFER_SIZE);
+            try
+            {
+                while (readValueLine(reader) != null) rows++;
+            }
+            finally
+            {
+                reader.close();
+            }
+
+            long start = startMatrix(name, rows, cols);
+            flush();
+
+            long dataOffset = getDataOffset(start, name);
+
+            int blockRows = Math.max(BLOCK_VALUES / 64, MAX_BLOCK_VALUES / cols);
+            ByteBuffer[] blocks = new ByteBuffer[cols];
+
+            for (int col = 0; col < cols; col++)
+            {
+                blocks[col] = ByteBuffer.allocate(blockRows * 8).order(ByteOrder.LITTLE_ENDIAN);
+            }
+
+            String nextLine = null;
+            reader = new BufferedReader(new FileReader(file), BUFFER_SIZE);
+            try
+            {
+                long blockStart = 0;
+                long row = 0;
+
+                while ((nextLine = readValueLine(reader)) != null && row < rows)
+                {
+                    String[] values = splitValues(nextLine);
+
+                    if (values.length != cols)
+                        throw new SimulationDataException("Line: (" + nextLine + ") in file: " + file.getAbsolutePath()
+                                                          + " doesn't have " + cols + " values, as the first line has");
+                    for (int col = 0; col < cols; col++)
+                    {
+                        blocks[col].putDouble(Double.parseDouble(values[col]));
+                    }
+                    row++;
+
+                    if (row - blockStart == blockRows)
+                    {
+                        writeBlocks(blocks, dataOffset, rows, blockStart);
+                        blockStart = row;
+                    }
+                }
+                writeBlocks(blocks, dataOffset, rows, blockStart);
+            }
+            catch (NumberFormatException ex)
+            {
+                throw new SimulationDataException("Error reading line: (" + nextLine + ") from file: " + file.getAbsolutePath(), ex);
+            }
+            finally
+            {
+                reader.close();
+            }
+
+            channel.position(dataOffset + rows * cols * 8);
+
+            return new Variable(name, dataOffset, rows, cols);
+        }
+
+        private void writeBlocks(ByteBuffer[] blocks, long dataOffset, long rows, long blockStart) throws IOException
+        {
+            for (int col = 0; col < blocks.length; col++)
+            {
+                blocks[col].flip();
+
+                long position = dataOffset + (col * rows + blockStart) * 8;
+
+                while (blocks[col].hasRemaining())
+                {
+                    position += channel.write(blocks[col], position);
+                }
+                blocks[col].clear();
+            }
+        }
+
+        private Variable writeBinaryTraceFile(File file, String name) throws IOException, SimulationDataException
+        {
+            String variable = BinaryTraceFile.readHeader(file).getVariable();
+            double scaleFactor = 1 / SimulationData.getConversionFactor(variable, unitSystem);
+
+            TraceBlockReader reader = BinaryTraceFile.openBlockReader(file, scaleFactor);
+
+            long rows = reader.getNumberOfPoints();
+            long start = startMatrix(name, rows, 1);
+
+            double[] block = new double[BLOCK_VALUES];
+            int num = 0;
+
+            while ((num = reader.read(block, 0, block.length)) > 0)
+            {
+                for (int i = 0; i < num; i++)
+                {
+                    putDouble(block[i]);
+                }
+            }
+            return new Variable(name, getDataOffset(start, name), rows, 1);
+        }
+
+        /*
+         * As in SimulationData, reading stops at the first empty line, and comment lines are skipped
+         */
+        private String readValueLine(BufferedReader reader) throws IOException
+        {
+            String nextLine = null;
+
+            while ((nextLine = reader.readLine()) != null && nextLine.length() > 0)
+            {
+                if (!nextLine.startsWith("//") && nextLine.trim().length() > 0) return nextLine;
+            }
+            return null;
+        }
+
+        private String[] splitValues(String line)
+        {
+            return line.trim().split("\\s+");
+        }
+    }
+
+}
@@ -73,7 +73,7 @@ public class SimulationsInfo extends AbstractTableModel implements TreeModel
 
     public static final String simSummaryFileName = "simulation.props";
 
-    private static String oldSimSummaryFileName = "sim_summary";
+    static final String oldSimSummaryFileName = "sim_summary";
 
     public static final String simulatorPropsFileName = "simulator.props";
 
@@ -83,6 +83,14 @@ public class SimulationsInfo extends AbstractTableModel implements TreeModel
 
     Vector<Properties> extraColumns = new Vector<Properties>();
 
+    /*
+     * What the catalogue knows about each of simDataObjs, and the entries the current ones were made from
+     */
+    private ArrayList<SimulationCatalogue.Entry> simEntries = new ArrayList<SimulationCatalogue.Entry>();
+    private HashMap<String, SimulationCatalogue.Entry> previousEntries = new HashMap<String, SimulationCatalogue.Entry>();
+
+    private SimulationCatalogue catalogue = null;
+
     File simulationsDir = null;
 
     ProcessFeedback pf = null;
@@ -134,10 +142,12 @@ public class SimulationsInfo extends AbstractTableModel implements TreeModel
     {
         String info = null;
 
-        SimNode(SimulationData sd)
+        private String[] cellGroupNames = null;
+
+        SimNode(SimulationData sd, String info)
         {
             super(sd);
-            info = sd.getSimFullInfo();
+            this.info = info;
         }
 
 
@@ -153,6 +163,8 @@ public class SimulationsInfo extends AbstractTableModel implements TreeModel
         private String cellGroupName = null;
         private String simRef = null;
 
+        private Integer[] cellIndices = null;
+
         CellGroupNode(String cgn, String simRef)
         {
             super(cgn);
@@ -274,22 +286,30 @@ public class SimulationsInfo extends AbstractTableModel implements TreeModel
         if (parent instanceof AllSimRoot)
         {
             SimulationData sd = simDataObjs.get(index);
-            SimNode sn = new SimNode(sd);
-            //sn.
+            SimulationCatalogue.Entry entry = simEntries.get(index);
+
+            // from the catalogue, rather than reading the properties again
+            String simulator = entry.props == null ? null : entry.props.getProperty("Simulator");
+            SimNode sn = new SimNode(sd, sd.getSimulationName() + " ("+simulator+"): recorded at "+ entry.getDateModified());
+
             return sn;
         }
         if (parent instanceof SimNode)
         {
-            SimulationData sd = (SimulationData)(((SimNode)parent).getUserObject());
+            SimNode simNode = (SimNode)parent;
+            SimulationData sd = (SimulationData)(simNode.getUserObject());
             try
             {
-                sd.initialise();
+                if (simNode.cellGroupNames == null)
+                {
+                    sd.initialise();
 
-                checkTreeMapForSim(sd);
+                    checkTreeMapForSim(sd);
 
-                TreeMap<String, TreeMap<Integer, ArrayList<DataStore>>> treeCG = dataInSims.get(sd.getSimulationName());
-                Vector v = new Vector(treeCG.keySet());
-                return new CellGroupNode((String)v.get(index), sd.getSimulationName());
+                    TreeMap<String, TreeMap<Integer, ArrayList<DataStore>>> treeCG = dataInSims.get(sd.getSimulationName());
+                    simNode.cellGroupNames = treeCG.keySet().toArray(new String[treeCG.size()]);
+                }
+                return new CellGroupNode(simNode.cellGroupNames[index], sd.getSimulationName());
             }
             catch (SimulationDataException ex)
             {
@@ -302,10 +322,13 @@ public class SimulationsInfo extends AbstractTableModel implements TreeModel
 
             try
             {
-                TreeMap<String, TreeMap<Integer, ArrayList<DataStore>>> treeCG = dataInSims.get(cellGroupNode.getSimRef());
-                TreeMap<Integer, ArrayList<DataStore>> treeIndex = treeCG.get(cellGroupNode.getCellGroupName());
-                Vector v = new Vector(treeIndex.keySet());
-                return new CellNode((Integer)v.get(index), cellGroupNode.getCellGroupName(), cellGroupNode.getSimRef());
+                if (cellGroupNode.cellIndices == null)
+                {
+                    TreeMap<String, TreeMap<Integer, ArrayList<DataStore>>> treeCG = dataInSims.get(cellGroupNode.getSimRef());
+                    TreeMap<Integer, ArrayList<DataStore>> treeIndex = treeCG.get(cellGroupNode.getCellGroupName());
+                    cellGroupNode.cellIndices = treeIndex.keySet().toArray(new Integer[treeIndex.size()]);
+                }
+                return new CellNode(cellGroupNode.cellIndices[index], cellGroupNode.getCellGroupName(), cellGroupNode.getSimRef());
             }
             catch (Exception ex)
             {
@@ -441,9 +464,19 @@ public class SimulationsInfo extends AbstractTableModel implements TreeModel
     {
         logger.logComment("Refreshing the contents of table model");
 
+        HashMap<String, SimulationData> previousSims = new HashMap<String, SimulationData>();
+
+        for (int i = 0; i < simDataObjs.size(); i++)
+        {
+            previousSims.put(simEntries.get(i).name, simDataObjs.get(i));
+        }
+
         allColumns.removeAllElements();
         simDataObjs.removeAllElements();
         extraColumns.removeAllElements();
+        simEntries.clear();
+
+        TreeMap<String, TreeMap<String, TreeMap<Integer, ArrayList<DataStore>>>> previousData = dataInSims;
 
         dataInSims
             = new TreeMap<String, TreeMap<String, TreeMap<Integer, ArrayList<DataStore>>>>();
@@ -453,178 +486,88 @@ public class SimulationsInfo extends AbstractTableModel implements TreeModel
 
         File[] childrenDirs = simulationsDir.listFiles();
 
+        if (childrenDirs==null) childrenDirs = new File[0];
 
-        // Quick reorder...
-        if (childrenDirs!=null && childrenDirs.length>1)
-        {
-
-            logger.logComment("There are " + childrenDirs.length + " files in dir: " +
+        logger.logComment("There are " + childrenDirs.length + " files in dir: " +
                           simulationsDir.getAbsolutePath());
-            if (listStyle.equals(listStyle.Date))
+
+        if (catalogue == null) catalogue = new SimulationCatalogue(simulationsDir);
+
+        ArrayList<SimulationCatalogue.Entry> entries = catalogue.update(childrenDirs, checkRemote, pf);
+
+        if (listStyle.equals(ListStyle.Date))
+        {
+            Collections.sort(entries, new Comparator<SimulationCatalogue.Entry>()
             {
-                for (int j = 1; j < childrenDirs.length; j++)
+                public int compare(SimulationCatalogue.Entry e1, SimulationCatalogue.Entry e2)
                 {
-                    for (int k = 0; k < j; k++)
-                    {
-                        if (childrenDirs[j].lastModified()<childrenDirs[k].lastModified())
-                        {
-                            File earlierFile = childrenDirs[j];
-                            File laterFile = childrenDirs[k];
-                            childrenDirs[j] = laterFile;
-                            childrenDirs[k] = earlierFile;
-                        }
-                    }
+                    return e1.dirModified < e2.dirModified ? -1 : (e1.dirModified > e2.dirModified ? 1 : 0);
                 }
-            }
-            else if (listStyle.equals(listStyle.Alphabetic))
-            {
-                childrenDirs = GeneralUtils.reorderAlphabetically(childrenDirs, true);
-            }
+            });
         }
-
-        int rowNumber = 0;
-
-        if (childrenDirs!=null)
+        else if (listStyle.equals(ListStyle.Alphabetic))
         {
-            for (int i = 0; i < childrenDirs.length; i++)
+            Collections.sort(entries, new Comparator<SimulationCatalogue.Entry>()
             {
-                if (childrenDirs[i].isDirectory())
+                public int compare(SimulationCatalogue.Entry e1, SimulationCatalogue.Entry e2)
                 {
-                    logger.logComment("Looking at directory: " + childrenDirs[i].getAbsolutePath());
-
-                    SimulationData simData = null;
-
-                    File timeFile = SimulationData.getTimesFile(childrenDirs[i]);
-
-                    File pullRemoteScript = new File(childrenDirs[i], RemoteLogin.remotePullScriptName);
-
-                    File simSummaryFile = new File(childrenDirs[i], simSummaryFileName);
-
-                    if (!simSummaryFile.exists())
-                    {
-                        logger.logComment("Trying for the legacy name...");
-                        simSummaryFile = new File(childrenDirs[i], oldSimSummaryFileName);
-                    }
-
-                    logger.logComment("Simulation summary file: " + simSummaryFile+", exists: "+ simSummaryFile.exists());
-
-                    if (pullRemoteScript.exists() && !timeFile.exists() && checkRemote)
-                    {
-
-                        try
-                        {
-                            String toRun = pullRemoteScript.getAbsolutePath();
-
-                            if (GeneralUtils.isWindowsBasedPlatform())
-                            {
-                                String cygwinFriendlyFile = GeneralUtils.convertToCygwinPath(pullRemoteScript.getAbsolutePath());
-
-                                toRun = "bash -c "+cygwinFriendlyFile; // Assumes cygwin installed...
-                            }
-
-                            String res = ProcessManager.runCommand(toRun, pf, 3000);
-                            logger.logComment("Result of executing pullRemoteScript file: " + pullRemoteScript+": "+ res);
-                        }
-                        catch (Exception ex)
-                        {
-                            logger.logComment("Error running: "+ pullRemoteScript+ex);
-                        }
-                    }
-
-                    try
-                    {
-                        if (simSummaryFile.exists() && timeFile.exists())
-                        {
-                            simData = new SimulationData(childrenDirs[i].getAbsoluteFile(), true);
-
-                            simDataObjs.add(simData);
-
-                            extraColumns.setSize(rowNumber + 1);
-
-                            Properties simProps = new Properties();
-
-                            try
-                            {
-                                logger.logComment("Row number: " + rowNumber);
-
-                                //FileInputStream fis = new FileInputStream(simSummaryFile);
-                                //simProps.load(fis);
-                                //fis.close();
-
-                                simProps = getSimulationProperties(simSummaryFile.getParentFile());
-                                logger.logComment("simProps at: " + simSummaryFile.getParentFile()+": "+simProps.keySet());
-
-
-                                extraColumns.setElementAt(simProps, rowNumber);
-                                logger.logComment("extraColumns: " + extraColumns);
-
-                                Enumeration simPropNames = simProps.propertyNames();
-                                while (simPropNames.hasMoreElements())
-                                {
-                                    String nextSimProp = (String) simPropNames.nextElement();
-                                    if (!allColumns.contains(nextSimProp))
-                                        allColumns.add(nextSimProp);
-                                }
-
-                                rowNumber++;
-
-                                logger.logComment("That's a valid simulation dir...");
-
-                            }
-                            catch (Exception ex)
-                            {
-                                logger.logError("Problem reading the sim summary from file: " + simSummaryFile, ex);
-                            }
-
-                        }
-                        else if (simSummaryFile.exists() && pullRemoteScript.exists())
-                        {
-
-                            simData = new SimulationData(childrenDirs[i].getAbsoluteFile(), false);
+                    return e1.name.compareToIgnoreCase(e2.name);
+                }
+            });
+        }
 
-                            simData.setDataAtRemoteLocation(true);
+        HashSet<String> columnNames = new HashSet<String>(allColumns);
 
-                            simDataObjs.add(simData);
+        for (SimulationCatalogue.Entry entry: entries)
+        {
+            if (!entry.isValidSimulation()) continue;
 
-                            extraColumns.setSize(rowNumber + 1);
+            SimulationData simData = previousSims.get(entry.name);
 
-                            logger.logComment("pullRemoteScript file: " + pullRemoteScript+", exists: "+ pullRemoteScript.exists());
-                            Properties simProps = new Properties();
-                            try
-                            {
-                                simProps = getSimulationProperties(simSummaryFile.getParentFile());
+            // Reused, along with the data stores already found, if the directory hasn't changed
+            if (simData != null && previousEntries.get(entry.name) == entry)
+            {
+                if (previousData.containsKey(entry.name))
+                    dataInSims.put(entry.name, previousData.get(entry.name));
+            }
+            else
+            {
+                try
+                {
+                    simData = new SimulationData(new File(simulationsDir, entry.name).getAbsoluteFile(), false);
 
-                                extraColumns.setElementAt(simProps, rowNumber);
-                                logger.logComment("extraColumns: " + extraColumns);
+                    if (entry.isRemote()) simData.setDataAtRemoteLocation(true);
+                }
+                catch (SimulationDataException ex1)
+                {
+                    logger.logComment("That's not a valid simulation dir: " + entry.name);
+                    continue;
+                }
+            }
 
-                                Enumeration simPropNames = simProps.propertyNames();
-                                while (simPropNames.hasMoreElements())
-                                {
-                                    String nextSimProp = (String) simPropNames.nextElement();
-                                    if (!allColumns.contains(nextSimProp))
-                                        allColumns.add(nextSimProp);
-                                }
+            simDataObjs.add(simData);
+            extraColumns.add(entry.props);
+            simEntries.add(entry);
 
+            if (entry.props != null)
+            {
+                for (String nextSimProp: entry.props.stringPropertyNames())
+                {
+                    if (columnNames.add(nextSimProp))
+                        allColumns.add(nextSimProp);
+                }
+            }
+        }
 
-                                rowNumber++;
+        previousEntries.clear();
 
-                                logger.logComment("That's a valid simulation dir...");
-                            }
-                            catch (Exception ex)
-                            {
-                                logger.logError("Problem reading the sim summary from file: " + simSummaryFile, ex);
-                            }
-                        }
+        for (SimulationCatalogue.Entry entry: simEntries)
+        {
+            previousEntries.put(entry.name, entry);
+        }
 
-                    }
-                    catch (SimulationDataException ex1)
-                    {
-                        logger.logComment("That's not a valid simulation dir...");
-                    }
+        logger.logComment("Found " + simDataObjs.size() + " simulations");
 
-                }
-            }
-        }
         this.fireTableStructureChanged();
 
     }
@@ -664,11 +607,13 @@ public class SimulationsInfo extends AbstractTableModel implements TreeModel
 
             case COL_NUM_DATE:
             {
-                if (sim.isDataAtRemoteLocation() && !sim.getTimesFile().exists())
+                SimulationCatalogue.Entry entry = simEntries.get(row);
+
+                if (sim.isDataAtRemoteLocation() && entry.isRemote())
                 {
                     return "Remote simulation";
                 }
-                return sim.getDateModified();
+                return entry.getDateModified();
             }
             default:
             {
@@ -864,7 +809,7 @@ public class SimulationsInfo extends AbstractTableModel implements TreeModel
         StringBuilder conns = new StringBuilder();
         for (String netConn: project.generatedNetworkConnections.getNamesNonEmptyNetConns())
         {
-            conns.append(netConn+" ("+project.generatedNetworkConnections.getSynapticConnections(netConn).size()+")  ");
+            conns.append(netConn+" ("+project.generatedNetworkConnections.getNumberSynapticConnections(netConn)+")  ");
         }
 
         props.setProperty("Net connections", conns.toString());
@@ -130,6 +130,48 @@ public class SpikeAnalyser
 
     }
 
+    /**
+     * Gets the spike times from the list which are between startTime and stopTime (inclusive)
+     */
+    public static double[] getSpikeTimes(double[] spikeTimes,
+                                         float startTime,
+                                         float stopTime)
+    {
+        int first = 0;
+        while (first < spikeTimes.length && spikeTimes[first] < startTime) first++;
+
+        int end = first;
+        while (end < spikeTimes.length && spikeTimes[end] <= stopTime) end++;
+
+        return Arrays.copyOfRange(spikeTimes, first, end);
+    }
+
+    /**
+     * Gets the intervals between successive spike times in the list, for the spikes at or after startTime
+     * and before stopTime
+     */
+    public static ArrayList<Double> getInterSpikeIntervals(double[] spikeTimes,
+                                                           float startTime,
+                                                           float stopTime)
+    {
+        ArrayList<Double> interSpikeIntervals = new ArrayList<Double>();
+
+        double previousSpike = Double.NaN;
+
+        for (double spikeTime: spikeTimes)
+        {
+            if (spikeTime >= startTime && spikeTime < stopTime)
+            {
+                if (!Double.isNaN(previousSpike))
+                {
+                    interSpikeIntervals.add(spikeTime - previousSpike);
+                }
+                previousSpike = spikeTime;
+            }
+        }
+        return interSpikeIntervals;
+    }
+
     public static ArrayList<Double> getInterSpikeIntervals(float[] voltages,
                                                 float[] times,
                                                 float threshold,
@@ -310,107 +352,24 @@ public class SpikeAnalyser
     }
 
 
+    /**
+     * Gets the correlogram of the spikes of train 2 relative to those of train 1, normalised by the number
+     * of spikes in train 1 which don't follow the previous one by less than pauseMin. The spike times in
+     * both should be in order. See PopulationSpikeAnalyser for correlograms of many trains
+     */
     public static float[] crossCorrelation(double[]  spikes1,
                                            double[]  spikes2,
                                            float binSize,
                                            float window,
                                            float pauseMin)
     {
+        logger.logComment("Correlating {} spikes with {}", spikes1.length, spikes2.length);
 
-        logger.logComment("spikes1 len: " + spikes1.length);
-        logger.logComment("spikes2 len: " + spikes2.length);
-
-
-        float[] correl = new float[ ( (int) Math.ceil(window / binSize) * 2) + 1];
-
-        int binNum = (int)Math.ceil(window/binSize);
-
-        logger.logComment("correl size: " + correl.length+", binNum: "+binNum);
-
-        int binCnt, spike1Cnt, spike2Cnt, spike2Start = 0;
-
-        int pSpike1Num = 0;
-
-        for (spike1Cnt = 0; spike1Cnt < spikes1.length; spike1Cnt++)
-        {
-            logger.logComment("-------------------------------------------------------------------");
-            logger.logComment("    Spike num of spikes1: " + spike1Cnt);
-            logger.logComment("    spikes1[spike1Cnt]: " + spikes1[spike1Cnt]);
-
-            spike2Cnt = spike2Start;
-
-            logger.logComment("spike2Cnt: " + spike2Cnt+", size: "+ spikes2.length);
-
-            if (spike2Cnt< spikes2.length)
-            {
-                logger.logComment("spikes2[spike2Cnt]: " + spikes2[spike2Cnt]);
-
-                if (spike1Cnt == 0 || ( (spikes1[spike1Cnt] - spikes1[spike1Cnt - 1]) >= pauseMin))
-                {
-                    logger.logComment("=======================     relevant");
-
-                    pSpike1Num++;
-
-                    logger.logComment("pSpike1Num: " + pSpike1Num);
-
-                    while ( (spike2Cnt < spikes2.length) && ( (spikes2[spike2Cnt] - spikes1[spike1Cnt]) <= window))
-                    {
-                        logger.logComment("---   in while, spike2Cnt: " + spike2Cnt);
-
-
-                        logger.logComment("(spikes2[spike2Cnt] - spikes1[spike1Cnt]): "
-                                          + (spikes2[spike2Cnt] - spikes1[spike1Cnt]));
-
-
-                        if ( (spike2Cnt < spikes2.length) && (spikes1[spike1Cnt] - spikes2[spike2Cnt]) <= window)
-                        {
-                            logger.logComment("in if");
-
-                            logger.logComment("spikes2[spike2Cnt]: " + spikes2[spike2Cnt]);
-
-                            logger.logComment("(spikes2[spike2Cnt] - spikes1[spike1Cnt]): "
-                                              + (spikes2[spike2Cnt] - spikes1[spike1Cnt]));
-
-                            binCnt = (int) (Math.round( (spikes2[spike2Cnt] - spikes1[spike1Cnt]) / binSize) + binNum);
-                            logger.logComment("binCnt; " + binCnt);
-                            correl[binCnt]++;
-                            logger.logComment("correl[binCnt]; " + correl[binCnt]);
-                        }
-                        else
-                        {
-                            spike2Start = spike2Cnt + 1;
-                            logger.logComment("in else.....spike2Start: " + spike2Start);
-                            logger.logComment("in else.....spikes2[spike2Cnt]: " + spikes2[spike2Cnt]);
-                        }
-                        spike2Cnt++;
-                        logger.logComment("---> spike2Cnt: " + spike2Cnt);
-                    }
-                }
-                else
-                {
-                    logger.logComment("irrelevant");
-
-                }
-            }
-            else
-            {
-                logger.logComment("All relevant spikes in 2 dealt with...");
-            }
-        }
-        //correl[0] *= 2;
-        //correl[2 * binNum] *= 2;
-
-        for (int i = 0; i < correl.length; i++)
-        {
-            correl[i] = correl[i]/(float)pSpike1Num;
-        }
-
-        logger.logComment(pSpike1Num + " relevant spikes in train 1.");
-
-        return correl;
+        return PopulationSpikeAnalyser.crossCorrelation(spikes1, spikes2, binSize, window, pauseMin);
     }
 
 
+
     public static DataSet getSlidingSpikeSynchrony(ArrayList<double[]> spikeSets,
                                                  double[] times,
                                                  float slideSize,
@@ -425,30 +384,18 @@ public class SpikeAnalyser
 
         cellGroupSync.setGraphFormat(PlotCanvas.USE_LINES_FOR_PLOT);
 
+        PopulationSpikeAnalyser population = new PopulationSpikeAnalyser(spikeSets);
+
+        int[] numSpikes = population.getSlidingWindowCounts(times, slideSize);
+
         for(int j=0;j<times.length;j++)
         {
             double time = times[j];
 
-            int numSpikes = 0;
-
             if(time>=startTime && time <=stopTime)
             {
-                for (int i = 0; i <  spikeSets.size(); i++)
-                {
-                    double[] spikes = spikeSets.get(i);
-
-                    for (int idx = 0; idx < spikes.length; idx++)
-                    {
-                        if ((spikes[idx]>=time) && (spikes[idx] <= time + slideSize))
-                        {
-                            numSpikes++;
-                        }
-                    }
-                }
-
-                cellGroupSync.addPoint(time, numSpikes);
+                cellGroupSync.addPoint(time, numSpikes[j]);
             }
-
         }
 
         return cellGroupSync;
@@ -0,0 +1,245 @@
+/**
+ *  neuroConstruct
+ *  Software for developing large scale 3D networks of biologically realistic neurons
+ * 
+ *  Copyright (c) 2009 Padraig Gleeson
+ *  UCL Department of Neuroscience, Physiology and Pharmacology
+ *
+ *  Development of this software was made possible with funding from the
+ *  Medical Research Council and the Wellcome Trust
+ *  
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *  
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+
+package ucl.physiol.neuroconstruct.simulation;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Reads the points of a recorded trace in order, a block at a time, so that long traces can be
+ * processed without all of them being in memory at once. Use DataStore.openBlockReader() to get one
+ * for a trace.
+ *
+ * @author Padraig Gleeson
+ *
+ */
+
+public abstract class TraceBlockReader
+{
+    protected int numPoints;
+    protected int nextPoint = 0;
+
+
+    protected TraceBlockReader(int numPoints)
+    {
+        this.numPoints = numPoints;
+    }
+
+    /**
+     * Reads the next points into the buffer, starting at offset
+     *
+     * @return the number of points read, which will be less than numToRead only at the end of the trace
+     */
+    public int read(double[] buffer, int offset, int numToRead) throws SimulationDataException
+    {
+        int num = Math.min(numToRead, numPoints - nextPoint);
+
+        if (num <= 0) return 0;
+
+        num = readPoints(buffer, offset, num);
+        nextPoint += num;
+
+        return num;
+    }
+
+    /*
+     * Reads the points nextPoint to nextPoint+num-1, or as many of them as there are
+     *
+     * @return the number of points read
+     */
+    protected abstract int readPoints(double[] buffer, int offset, int num) throws SimulationDataException;
+
+    /**
+     * The number of points in the trace. For a text data file this isn't known until the end has
+     * been read, and is Integer.MAX_VALUE before that
+     */
+    public int getNumberOfPoints()
+    {
+        return numPoints;
+    }
+
+    /**
+     * Index of the point which will be read next
+     */
+    public int getNextPoint()
+    {
+        return nextPoint;
+    }
+
+
+    /**
+     * Reads from points held in memory
+     */
+    static class ArrayReader extends TraceBlockReader
+    {
+        private final double[] points;
+
+        ArrayReader(double[] points)
+        {
+            super(points.length);
+            this.points = points;
+        }
+
+        protected int readPoints(double[] buffer, int offset, int num)
+        {
+            System.arraycopy(points, nextPoint, buffer, offset, num);
+            return num;
+        }
+    }
+
+    /**
+     * Makes the continuous trace for spike data as it's read, from the steps with the spiking value
+     */
+    static class SpikingStepsReader extends TraceBlockReader
+    {
+        private final int[] spikingSteps;
+        private final double nonSpikingVal;
+        private final double spikingVal;
+
+        private int nextSpike = 0;
+
+        SpikingStepsReader(int[] spikingSteps, int numPoints, double nonSpikingVal, double spikingVal)
+        {
+            super(numPoints);
+            this.spikingSteps = spikingSteps;
+            this.nonSpikingVal = nonSpikingVal;
+            this.spikingVal = spikingVal;
+        }
+
+        protected int readPoints(double[] buffer, int offset, int num)
+        {
+            Arrays.fill(buffer, offset, offset + num, nonSpikingVal);
+
+            int end = nextPoint + num;
+
+            while (nextSpike < spikingSteps.length && spikingSteps[nextSpike] < nextPoint) nextSpike++;
+
+            while (nextSpike < spikingSteps.length && spikingSteps[nextSpike] < end)
+            {
+                buffer[offset + spikingSteps[nextSpike] - nextPoint] = spikingVal;
+                nextSpike++;
+            }
+            return num;
+        }
+    }
+
+    /**
+     * Reads the values from a single column text data file as they're needed, taking the same lines
+     * as SimulationData (comments are skipped, and reading stops at the first empty line). The file
+     * is only open while a block is being read, with the position of the next line kept in between,
+     * so a reader can be kept for each of a large number of traces.
+     */
+    static class TextFileReader extends TraceBlockReader
+    {
+        private static final int BUFFER_SIZE = 8192;
+
+        private final File file;
+        private final double scaleFactor;
+
+        private long filePosition = 0;
+
+        TextFileReader(File file, double scaleFactor)
+        {
+            super(Integer.MAX_VALUE);
+            this.file = file;
+            this.scaleFactor = scaleFactor;
+        }
+
+        protected int readPoints(double[] buffer, int offset, int num) throws SimulationDataException
+        {
+            String nextLine = null;
+            int numRead = 0;
+
+            FileInputStream in = null;
+            try
+            {
+                in = new FileInputStream(file);
+                in.getChannel().position(filePosition);
+                InputStream stream = new BufferedInputStream(in, BUFFER_SIZE);
+
+                StringBuilder line = new StringBuilder();
+                boolean endOfData = false;
+
+                while (numRead < num && !endOfData)
+                {
+                    line.setLength(0);
+                    int b;
+
+                    while ((b = stream.read()) >= 0 && b != '\n')
+                    {
+                        filePosition++;
+                        if (b != '\r') line.append((char)b);
+                    }
+                    if (b < 0 && line.length() == 0)
+                    {
+                        endOfData = true;
+                        break;
+                    }
+                    if (b >= 0) filePosition++;
+
+                    nextLine = line.toString();
+
+                    if (nextLine.length() == 0)
+                    {
+                        endOfData = true;
+                    }
+                    else if (!nextLine.startsWith("//") && nextLine.trim().length() > 0)
+                    {
+                        buffer[offset + numRead] = scaleFactor * Double.parseDouble(nextLine);
+                        numRead++;
+                    }
+                }
+
+                if (endOfData) numPoints = nextPoint + numRead;
+
+                return numRead;
+            }
+            catch (IOException ex)
+            {
+                throw new SimulationDataException("Error reading from file: " + file.getAbsolutePath(), ex);
+            }
+            catch (NumberFormatException ex)
+            {
+                throw new SimulationDataException("Error reading line: (" + nextLine + ") from file: " + file.getAbsolutePath(), ex);
+            }
+            finally
+            {
+                if (in != null)
+                {
+                    try
+                    {
+                        in.close();
+                    }
+                    catch (IOException ex)
+                    {
+                        // ignore...
+                    }
+                }
+            }
+        }
+    }
+}
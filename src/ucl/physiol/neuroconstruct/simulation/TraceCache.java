@@ -0,0 +1,140 @@
+/**
+ *  neuroConstruct
+ *  Software for developing large scale 3D networks of biologically realistic neurons
+ * 
+ *  Copyright (c) 2009 Padraig Gleeson
+ *  UCL Department of Neuroscience, Physiology and Pharmacology
+ *
+ *  Development of this software was made possible with funding from the
+ *  Medical Research Council and the Wellcome Trust
+ *  
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *  
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+
+
+package ucl.physiol.neuroconstruct.simulation;
+
+import java.lang.ref.SoftReference;
+import java.util.*;
+
+import ucl.physiol.neuroconstruct.utils.*;
+
+/**
+ * Holds the data points of the DataStores which are loaded on first access, shared by all
+ * SimulationData objects. The most recently used traces are held on to, up to a limit on the
+ * total number of points. Traces pushed out of that are only softly referenced, so can be picked
+ * up again if the garbage collector hasn't needed the memory.
+ *
+ * @author Padraig Gleeson
+ *
+ */
+
+class TraceCache
+{
+    private static ClassLogger logger = new ClassLogger("TraceCache");
+
+    private static TraceCache sharedCache = null;
+
+    private final long maxPoints;
+    private long numPointsHeld = 0;
+
+    private final LinkedHashMap<DataStore, double[]> recentlyUsed
+        = new LinkedHashMap<DataStore, double[]>(64, 0.75f, true);
+
+    private final WeakHashMap<DataStore, SoftReference<double[]>> evicted
+        = new WeakHashMap<DataStore, SoftReference<double[]>>();
+
+
+    TraceCache(long maxPoints)
+    {
+        this.maxPoints = maxPoints;
+    }
+
+    /*
+     * Holds on to traces taking up to around an eighth of the max memory of the JVM
+     */
+    static synchronized TraceCache getSharedCache()
+    {
+        if (sharedCache == null)
+        {
+            long maxPoints = Math.max(1000000, Runtime.getRuntime().maxMemory() / 8 / 8);
+            sharedCache = new TraceCache(maxPoints);
+        }
+        return sharedCache;
+    }
+
+    /**
+     * Gets the data for the DataStore if it's still held, or null
+     */
+    synchronized double[] get(DataStore ds)
+    {
+        double[] data = recentlyUsed.get(ds);
+
+        if (data != null) return data;
+
+        SoftReference<double[]> ref = evicted.remove(ds);
+
+        if (ref != null)
+        {
+            data = ref.get();
+            if (data != null) put(ds, data);
+        }
+        return data;
+    }
+
+    synchronized void put(DataStore ds, double[] data)
+    {
+        double[] old = recentlyUsed.put(ds, data);
+
+        if (old != null) numPointsHeld -= old.length;
+        numPointsHeld += data.length;
+
+        Iterator<Map.Entry<DataStore, double[]>> entries = recentlyUsed.entrySet().iterator();
+
+        // always keep the newest, however big
+        while (numPointsHeld > maxPoints && recentlyUsed.size() > 1)
+        {
+            Map.Entry<DataStore, double[]> eldest = entries.next();
+
+            numPointsHeld -= eldest.getValue().length;
+            evicted.put(eldest.getKey(), new SoftReference<double[]>(eldest.getValue()));
+            entries.remove();
+
+            logger.logComment("Evicted data of {}, {} points still held", eldest.getKey(), numPointsHeld);
+        }
+    }
+
+    synchronized void remove(DataStore ds)
+    {
+        double[] old = recentlyUsed.remove(ds);
+
+        if (old != null) numPointsHeld -= old.length;
+        evicted.remove(ds);
+    }
+
+    synchronized long getNumPointsHeld()
+    {
+        return numPointsHeld;
+    }
+
+    @Override
+    public synchronized String toString()
+    {
+        return "TraceCache holding "+recentlyUsed.size()+" traces ("+numPointsHeld+" of max "+maxPoints
+            +" points), with "+evicted.size()+" softly referenced";
+    }
+
+}
@@ -0,0 +1,222 @@
+/**
+ *  neuroConstruct
+ *  Software for developing large scale 3D networks of biologically realistic neurons
+ * 
+ *  Copyright (c) 2009 Padraig Gleeson
+ *  UCL Department of Neuroscience, Physiology and Pharmacology
+ *
+ *  Development of this software was made possible with funding from the
+ *  Medical Research Council and the Wellcome Trust
+ *  
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *  
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+
+
+package ucl.physiol.neuroconstruct.simulation;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+
+import ucl.physiol.neuroconstruct.utils.*;
+
+/**
+ * Binary copies of the values parsed from the text data files of a simulation, so that reopening the
+ * simulation reads them straight into an array instead of parsing the text again. The copies
+ * are kept in a subdirectory of the simulation directory, and hold the values as they are in the text
+ * file (before any unit conversion), with the length and modification time of the text file, so a
+ * copy is ignored if the text file has been changed since. If the cache can't be written (e.g. the
+ * simulation directory is read only) the text file is just parsed each time. The files are read and
+ * written with plain channel reads and writes rather than being memory mapped, as a mapped file
+ * can't be renamed or deleted on Windows until the mapping is garbage collected.
+ *
+ * @author Padraig Gleeson
+ *
+ */
+
+class TraceFileCache
+{
+    private static ClassLogger logger = new ClassLogger("TraceFileCache");
+
+    public static final String CACHE_DIR_NAME = "traceCache";
+
+    private static final String CACHE_FILE_EXT = ".bin";
+
+    private static final int MAGIC_NUMBER = 0x4E435452; // NCTR
+    private static final int VERSION = 1;
+
+    /*
+     * magic number, version, text file length & modification time, number of values, padding
+     */
+    private static final int HEADER_SIZE = 32;
+
+
+    private TraceFileCache()
+    {
+    }
+
+    static File getCacheFile(File textFile)
+    {
+        File cacheDir = new File(textFile.getParentFile(), CACHE_DIR_NAME);
+        return new File(cacheDir, textFile.getName() + CACHE_FILE_EXT);
+    }
+
+    /**
+     * Gets the values saved for the text file, or null if there's no up to date copy
+     */
+    static double[] read(File textFile)
+    {
+        File cacheFile = getCacheFile(textFile);
+
+        if (!cacheFile.exists()) return null;
+
+        RandomAccessFile raf = null;
+        try
+        {
+            raf = new RandomAccessFile(cacheFile, "r");
+            FileChannel channel = raf.getChannel();
+
+            long size = channel.size();
+
+            if (size < HEADER_SIZE || size > Integer.MAX_VALUE) return null;
+
+            ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            readFully(channel, buffer);
+            buffer.flip();
+
+            int magic = buffer.getInt();
+            int version = buffer.getInt();
+            long textLength = buffer.getLong();
+            long textModified = buffer.getLong();
+            int numValues = buffer.getInt();
+
+            if (magic != MAGIC_NUMBER ||
+                version != VERSION ||
+                textLength != textFile.length() ||
+                textModified != textFile.lastModified() ||
+                size != HEADER_SIZE + (long)numValues * 8)
+            {
+                logger.logComment("Cached copy of {} is out of date", textFile);
+                return null;
+            }
+
+            ByteBuffer body = ByteBuffer.allocate(numValues * 8);
+            body.order(ByteOrder.LITTLE_ENDIAN);
+            readFully(channel, body);
+            body.flip();
+
+            double[] values = new double[numValues];
+            body.asDoubleBuffer().get(values);
+
+            logger.logComment("Read {} values for {} from {}", numValues, textFile, cacheFile);
+            return values;
+        }
+        catch (IOException ex)
+        {
+            logger.logError("Problem reading cached values from: " + cacheFile, ex);
+            return null;
+        }
+        finally
+        {
+            close(raf);
+        }
+    }
+
+    /**
+     * Saves the values parsed from the text file, which had the length and modification time given when
+     * it was read. Written to a temporary file first, so anything reading the cache at the same time
+     * never sees a half written copy
+     */
+    static void write(File textFile, double[] values, long textLength, long textModified)
+    {
+        File cacheFile = getCacheFile(textFile);
+        File cacheDir = cacheFile.getParentFile();
+
+        if (!cacheDir.exists() && !cacheDir.mkdir()) return;
+
+        File tempFile = new File(cacheDir, cacheFile.getName() + "." + Thread.currentThread().getId() + ".tmp");
+
+        RandomAccessFile raf = null;
+        try
+        {
+            raf = new RandomAccessFile(tempFile, "rw");
+            raf.setLength(0);
+            FileChannel channel = raf.getChannel();
+
+            ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + values.length * 8);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+            buffer.putInt(MAGIC_NUMBER);
+            buffer.putInt(VERSION);
+            buffer.putLong(textLength);
+            buffer.putLong(textModified);
+            buffer.putInt(values.length);
+
+            buffer.position(HEADER_SIZE);
+            buffer.asDoubleBuffer().put(values);
+            buffer.position(0);
+
+            while (buffer.hasRemaining())
+            {
+                channel.write(buffer);
+            }
+
+            close(raf);
+            raf = null;
+
+            if (cacheFile.exists()) cacheFile.delete();
+
+            if (!tempFile.renameTo(cacheFile))
+            {
+                tempFile.delete();
+            }
+            else
+            {
+                logger.logComment("Saved {} values for {} in {}", values.length, textFile, cacheFile);
+            }
+        }
+        catch (IOException ex)
+        {
+            logger.logComment("Not able to cache the values of {}: {}", textFile, ex.getMessage());
+            close(raf);
+            tempFile.delete();
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer) throws IOException
+    {
+        while (buffer.hasRemaining())
+        {
+            if (channel.read(buffer) < 0)
+                throw new EOFException("End of file reached with " + buffer.remaining() + " bytes still to read");
+        }
+    }
+
+    private static void close(RandomAccessFile raf)
+    {
+        if (raf == null) return;
+        try
+        {
+            raf.close();
+        }
+        catch (IOException ex)
+        {
+            // ignore...
+        }
+    }
+
+}
@@ -0,0 +1,120 @@
+/**
+ *  neuroConstruct
+ *  Software for developing large scale 3D networks of biologically realistic neurons
+ * 
+ *  Copyright (c) 2009 Padraig Gleeson
+ *  UCL Department of Neuroscience, Physiology and Pharmacology
+ *
+ *  Development of this software was made possible with funding from the
+ *  Medical Research Council and the Wellcome Trust
+ *  
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *  
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+
+
+package ucl.physiol.neuroconstruct.simulation;
+
+/**
+ * The traces of one variable for a number of cells, held in one contiguous array, one row per cell,
+ * with each row as long as the time series of the simulation. See SimulationData.getTraceMatrix()
+ *
+ * @author Padraig Gleeson
+ *
+ */
+
+public class TraceMatrix
+{
+    private final String cellGroupName;
+    private final String variable;
+
+    private final int[] cellNumbers;
+    private final int numPoints;
+
+    /*
+     * Row r is values[r*numPoints] to values[(r+1)*numPoints - 1]
+     */
+    private final double[] values;
+
+
+    TraceMatrix(String cellGroupName, String variable, int[] cellNumbers, int numPoints, double[] values)
+    {
+        this.cellGroupName = cellGroupName;
+        this.variable = variable;
+        this.cellNumbers = cellNumbers;
+        this.numPoints = numPoints;
+        this.values = values;
+    }
+
+    public String getCellGroupName()
+    {
+        return cellGroupName;
+    }
+
+    public String getVariable()
+    {
+        return variable;
+    }
+
+    public int getNumRows()
+    {
+        return cellNumbers.length;
+    }
+
+    public int getNumPoints()
+    {
+        return numPoints;
+    }
+
+    /**
+     * The number of the cell whose trace is in the row
+     */
+    public int getCellNumber(int row)
+    {
+        return cellNumbers[row];
+    }
+
+    public int[] getCellNumbers()
+    {
+        return cellNumbers.clone();
+    }
+
+    public double getValue(int row, int timeStep)
+    {
+        return values[row * numPoints + timeStep];
+    }
+
+    public double[] getRow(int row)
+    {
+        double[] rowValues = new double[numPoints];
+        System.arraycopy(values, row * numPoints, rowValues, 0, numPoints);
+        return rowValues;
+    }
+
+    /**
+     * The array holding all the rows, one after the other. Not a copy, so shouldn't be altered
+     */
+    public double[] getValues()
+    {
+        return values;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "TraceMatrix of "+variable+" in "+cellNumbers.length+" cells of "+cellGroupName+", "+numPoints+" points each";
+    }
+
+}
@@ -0,0 +1,200 @@
+/**
+ *  neuroConstruct
+ *  Software for developing large scale 3D networks of biologically realistic neurons
+ *
+ *  Copyright (c) 2009 Padraig Gleeson
+ *  UCL Department of Neuroscience, Physiology and Pharmacology
+ *
+ *  Development of this software was made possible with funding from the
+ *  Medical Research Council and the Wellcome Trust
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+
+package ucl.physiol.neuroconstruct.utils;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Writes lines to the log file on a separate thread, so logging doesn't wait for the disk.
+ * The queue of lines is bounded, and write() never waits for space: if lines are logged faster
+ * than they can be written for long enough, lines are dropped (and the number dropped noted in the
+ * file), and if the file can't be written at all, lines go to System.err instead. The file is
+ * flushed whenever the queue empties, and closed when the application exits.
+ *
+ * @author Padraig Gleeson
+ *
+ */
+
+class AsyncLogWriter
+{
+    private static final int MAX_QUEUED_LINES = 8192;
+
+    /*
+     * Compared by identity, so a logged line can't be mistaken for it
+     */
+    private static final String END_OF_LOG = new String("END_OF_LOG");
+
+    private final BlockingQueue<String> queue = new ArrayBlockingQueue<String>(MAX_QUEUED_LINES);
+
+    private final Writer writer;
+    private final Thread writerThread;
+
+    private volatile boolean closed = false;
+    private volatile boolean failed = false;
+
+    private final AtomicInteger droppedLines = new AtomicInteger(0);
+
+
+    AsyncLogWriter(File logFile) throws IOException
+    {
+        writer = new BufferedWriter(new FileWriter(logFile));
+
+        writerThread = new Thread("LogFileWriter")
+        {
+            @Override
+            public void run()
+            {
+                writeLines();
+            }
+        };
+        writerThread.setDaemon(true);
+        writerThread.start();
+
+        Runtime.getRuntime().addShutdownHook(new Thread("LogFileCloser")
+        {
+            @Override
+            public void run()
+            {
+                close();
+            }
+        });
+    }
+
+    /**
+     * Queues a line (without the line ending) to be written
+     */
+    void write(String line)
+    {
+        if (failed)
+        {
+            System.err.println(line);
+            return;
+        }
+        if (closed) return;
+
+        if (!queue.offer(line))
+        {
+            droppedLines.incrementAndGet();
+        }
+    }
+
+    private void writeLines()
+    {
+        ArrayList<String> lines = new ArrayList<String>();
+        boolean finished = false;
+
+        try
+        {
+            while (!finished)
+            {
+                lines.add(queue.take());
+                queue.drainTo(lines);
+
+                int dropped = droppedLines.getAndSet(0);
+                if (dropped > 0)
+                {
+                    writer.write("(" + dropped + " lines not logged, as they were logged faster than they could be written)\r\n");
+                }
+
+                for (String line: lines)
+                {
+                    if (line == END_OF_LOG)
+                    {
+                        finished = true;
+                        break;
+                    }
+                    writer.write(line);
+                    writer.write("\r\n");
+                }
+                lines.clear();
+
+                if (queue.isEmpty()) writer.flush();
+            }
+        }
+        catch (InterruptedException ex)
+        {
+            // finish...
+        }
+        catch (IOException ex)
+        {
+            failed = true;
+            System.err.println("Problem writing to log file: " + ex.getMessage() + ", logging to System.err instead");
+        }
+        finally
+        {
+            closed = true;
+
+            queue.drainTo(lines);
+            if (failed)
+            {
+                for (String line: lines)
+                {
+                    if (line != END_OF_LOG) System.err.println(line);
+                }
+            }
+            try
+            {
+                writer.close();
+            }
+            catch (IOException ex)
+            {
+                System.err.println("Problem closing log file: " + ex.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Writes any lines still queued, then closes the file
+     */
+    void close()
+    {
+        synchronized(this)
+        {
+            if (closed) return;
+            closed = true;
+        }
+
+        if (!writerThread.isAlive()) return;
+
+        try
+        {
+            // Waits a little for space, as the lines queued before it are still worth writing
+            if (queue.offer(END_OF_LOG, 5, TimeUnit.SECONDS))
+            {
+                writerThread.join(5000);
+            }
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
@@ -81,6 +81,78 @@ public class ClassLogger
     }
 
 
+    /**
+     * True if comments from this class will currently be printed or saved to file. Cheap,
+     * so can be checked before building comments in loops
+     */
+    public boolean isLoggingComments()
+    {
+        return (!silentMode || verboseMode) && logger.isLogging(verboseMode);
+    }
+
+    /**
+     * Logs a comment with each {} in the pattern replaced by the next argument. The comment
+     * is only built when comments from this class are being logged. A boolean argument has
+     * to be boxed with Boolean.valueOf(), or logComment(String, boolean) would be called instead
+     */
+    public void logComment(String pattern, Object arg)
+    {
+        if (isLoggingComments()) logComment(formatComment(pattern, new Object[]{arg}));
+    }
+
+    public void logComment(String pattern, Object arg1, Object arg2)
+    {
+        if (isLoggingComments()) logComment(formatComment(pattern, new Object[]{arg1, arg2}));
+    }
+
+    public void logComment(String pattern, Object arg1, Object arg2, Object arg3)
+    {
+        if (isLoggingComments()) logComment(formatComment(pattern, new Object[]{arg1, arg2, arg3}));
+    }
+
+    public void logComment(String pattern, Object arg1, Object arg2, Object arg3, Object... moreArgs)
+    {
+        if (isLoggingComments())
+        {
+            Object[] args = new Object[3 + moreArgs.length];
+            args[0] = arg1;
+            args[1] = arg2;
+            args[2] = arg3;
+            System.arraycopy(moreArgs, 0, args, 3, moreArgs.length);
+
+            logComment(formatComment(pattern, args));
+        }
+    }
+
+    /*
+     * Any arguments without a {} for them are left out
+     */
+    static String formatComment(String pattern, Object[] args)
+    {
+        StringBuilder sb = new StringBuilder(pattern.length() + 16 * args.length);
+
+        int start = 0;
+        int argIndex = 0;
+        int next;
+
+        while (argIndex < args.length && (next = pattern.indexOf("{}", start)) >= 0)
+        {
+            sb.append(pattern, start, next);
+
+            Object arg = args[argIndex++];
+
+            if (arg instanceof Object[])
+                sb.append(Arrays.deepToString((Object[])arg));
+            else
+                sb.append(arg);
+
+            start = next + 2;
+        }
+        sb.append(pattern, start, pattern.length());
+
+        return sb.toString();
+    }
+
     /**
      * Logs a comment to the console/logfile based on settings in GeneralProperties,
      * without anything before each line
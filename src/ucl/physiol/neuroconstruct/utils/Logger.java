@@ -42,7 +42,7 @@ public class Logger
     //private static boolean isInstantiated = false;
 
     private File myLogFile = null;
-    private FileWriter myLogFileWriter = null;
+    private AsyncLogWriter myLogFileWriter = null;
 
     private static Logger myLoggerInstance = null;
 
@@ -76,7 +76,7 @@ public class Logger
             try
             {
                 myLogFile = new File(myFilename);
-                myLogFileWriter = new FileWriter(this.myLogFile);
+                myLogFileWriter = new AsyncLogWriter(this.myLogFile);
                 this.log("Logger","Log file: "+ myLogFile.getAbsolutePath()+" created", false, false);
             }
             catch (IOException ex)
@@ -101,7 +101,6 @@ public class Logger
     {
             try
             {
-                myLogFileWriter.flush();
                 myLogFileWriter.close();
             }
             catch (Exception ex)
@@ -113,7 +112,7 @@ public class Logger
             }
     }
 
-    public static Logger getLogger()
+    public static synchronized Logger getLogger()
     {
         //System.out.println("Getting logger...");
         if (myLoggerInstance == null)
@@ -131,12 +130,19 @@ public class Logger
     }
 
 
-    protected void log(String className, String comment, boolean error, boolean forceConsoleOut)
+    /**
+     * True if a comment would currently be printed or saved to file
+     */
+    protected boolean isLogging(boolean forceConsoleOut)
     {
-        if (! (initialSaveToFileState ||
-               GeneralProperties.getLogFileSaveToFilePolicy() ||
+        return forceConsoleOut ||
                GeneralProperties.getLogFilePrintToScreenPolicy() ||
-               forceConsoleOut))
+               (initialSaveToFileState && GeneralProperties.getLogFileSaveToFilePolicy());
+    }
+
+    protected void log(String className, String comment, boolean error, boolean forceConsoleOut)
+    {
+        if (!isLogging(forceConsoleOut))
             return;
 
         if (comment.indexOf("\n") > 0)
@@ -169,10 +175,10 @@ public class Logger
             // Only log to file if the current setting says so (obviously)
             // and the initial setting was true (i.e. so we know the file was created...)
             if (GeneralProperties.getLogFileSaveToFilePolicy()
-                && initialSaveToFileState)
+                && initialSaveToFileState
+                && myLogFileWriter != null)
             {
-                myLogFileWriter.write(comment + "\r\n");
-                myLogFileWriter.flush();
+                myLogFileWriter.write(comment);
             }
         }
         catch (Exception ex)
@@ -0,0 +1,94 @@
+/**
+ *  neuroConstruct
+ *  Software for developing large scale 3D networks of biologically realistic neurons
+ *
+ *  Copyright (c) 2009 Padraig Gleeson
+ *  UCL Department of Neuroscience, Physiology and Pharmacology
+ *
+ *  Development of this software was made possible with funding from the
+ *  Medical Research Council and the Wellcome Trust
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+
+package ucl.physiol.neuroconstruct.utils;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * The thread pools used for background work. All of their threads are daemons, so unfinished
+ * work in them doesn't stop the application exiting.
+ *
+ * @author Padraig Gleeson
+ *
+ */
+
+public class ThreadPools
+{
+    private static ForkJoinPool forkJoinPool = null;
+
+
+    private ThreadPools()
+    {
+    }
+
+    /**
+     * A fork/join pool shared by the analyses of simulation data (and anything else which splits a
+     * calculation up into tasks), with a thread for each processor
+     */
+    public static synchronized ForkJoinPool getSharedForkJoinPool()
+    {
+        if (forkJoinPool == null)
+        {
+            // The worker threads of a ForkJoinPool are always daemons
+            forkJoinPool = new ForkJoinPool();
+        }
+        return forkJoinPool;
+    }
+
+    /**
+     * A pool with a fixed number of threads, named threadName-1, threadName-2, etc.
+     */
+    public static ExecutorService newDaemonThreadPool(String threadName, int numThreads)
+    {
+        return Executors.newFixedThreadPool(numThreads, getDaemonThreadFactory(threadName));
+    }
+
+    /**
+     * A pool which starts threads as needed, named threadName-1, threadName-2, etc.
+     */
+    public static ExecutorService newDaemonCachedThreadPool(String threadName)
+    {
+        return Executors.newCachedThreadPool(getDaemonThreadFactory(threadName));
+    }
+
+    private static ThreadFactory getDaemonThreadFactory(final String threadName)
+    {
+        final AtomicInteger threadCount = new AtomicInteger(0);
+
+        return new ThreadFactory()
+        {
+            public Thread newThread(Runnable r)
+            {
+                Thread thread = new Thread(r, threadName + "-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+}
@@ -110,6 +110,30 @@ public class SimpleXMLDocument extends SimpleXMLEntity
     }
 
 
+    /**
+     * Writes the same text as getXMLString() to the Writer, without all of it being held in memory.
+     * Any sequences in the elements are created as they're written.
+     */
+    @Override
+    public void writeXMLString(Writer out, String indent, boolean formatted) throws IOException
+    {
+        if (!formatted) out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        else out.write("<pre>&lt;?xml version=\"1.0\" encoding=\"UTF-8\"?&gt;<br>\n");
+
+        String endOfLine  = "\n";
+        if (formatted) endOfLine  = "<br>\n";
+
+        for (int i = 0; i < comments.size(); i++)
+        {
+            out.write(this.comments.get(i).getXMLString("", formatted)+endOfLine);
+        }
+
+        this.root.writeXMLString(out, indent, formatted);
+
+        if (formatted) out.write("</pre>");
+    }
+
+
     public String toString()
     {
         return "Document with root: "+root.getName();
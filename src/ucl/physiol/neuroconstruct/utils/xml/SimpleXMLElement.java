@@ -26,6 +26,7 @@
 
 package ucl.physiol.neuroconstruct.utils.xml;
 
+import java.io.*;
 import java.util.*;
 import ucl.physiol.neuroconstruct.utils.*;
 
@@ -116,6 +117,31 @@ public class SimpleXMLElement extends SimpleXMLEntity
         contents.add(childElement);
     }
 
+    /**
+     * Adds a sequence of entities, which are only created when this element is written
+     */
+    public void addSequence(SimpleXMLEntitySequence sequence)
+    {
+        clearCache();
+        contents.add(sequence);
+    }
+
+    /**
+     * Adds each of the entities (elements, comments or text) in order
+     */
+    public void addEntities(Iterable<SimpleXMLEntity> entities)
+    {
+        clearCache();
+        for (SimpleXMLEntity entity: entities)
+        {
+            if (entity instanceof SimpleXMLElement)
+            {
+                ((SimpleXMLElement)entity).setParent(this);
+            }
+            contents.add(entity);
+        }
+    }
+
     public void addComment(SimpleXMLComment comment)
     {
         clearCache();
@@ -671,13 +697,38 @@ public class SimpleXMLElement extends SimpleXMLEntity
 
 
     public String getXMLString(String indent, boolean formatted)
+    {
+        StringWriter out = new StringWriter();
+        try
+        {
+            writeElement(out, indent, formatted);
+        }
+        catch (IOException ex)
+        {
+            // not thrown by a StringWriter...
+        }
+
+        logger.logComment("XML string for: "+ this+": ("+out.toString()+")");
+        return out.toString();
+    }
+
+
+    @Override
+    public void writeXMLString(Writer out, String indent, boolean formatted) throws IOException
+    {
+        writeElement(out, indent, formatted);
+    }
+
+
+    /*
+     * Returns true if the element had any contents
+     */
+    private boolean writeElement(Writer out, String indent, boolean formatted) throws IOException
     {
 
         String endOfLine  = "\n";
         if (formatted) endOfLine  = "<br>\n";
 
-        StringBuffer fullXMLString = new StringBuffer();
-
         logger.logComment("Getting XML string for: "+ this);
 
         String realIndent = indent;
@@ -686,95 +737,135 @@ public class SimpleXMLElement extends SimpleXMLEntity
         String qualifiedName = name;
         if (this.nsPrefix!=null) qualifiedName = nsPrefix + ":" + name;
 
-        if (!formatted) fullXMLString.append(realIndent+"<"+qualifiedName);
+        if (!formatted) out.write(realIndent+"<"+qualifiedName);
         else
         {
             realIndent = GeneralUtils.replaceAllTokens(realIndent, " ", "&nbsp;");
-            fullXMLString.append(""+realIndent + "&lt;<span style=\"color:"+mainFormattingColour+";font-weight: bold\">" + qualifiedName+"</span>");
+            out.write(""+realIndent + "&lt;<span style=\"color:"+mainFormattingColour+";font-weight: bold\">" + qualifiedName+"</span>");
         }
 
         for (int i = 0; i < namespaces.size(); i++)
         {
-            fullXMLString.append(" "+ namespaces.get(i).getXMLString("", formatted));
+            out.write(" "+ namespaces.get(i).getXMLString("", formatted));
         }
 
         for (int i = 0; i < attributes.size(); i++)
         {
-            fullXMLString.append(" "+ attributes.get(i).getXMLString("", formatted));
+            out.write(" "+ attributes.get(i).getXMLString("", formatted));
         }
 
-        //String endOfLine  = "\n";
-        //if (formatted) endOfLine  = "<br>\n";
+        Iterator<SimpleXMLEntity> entities = getExpandedContents();
 
-        if (contents.size()==0)
+        if (!entities.hasNext())
         {
-            if (!formatted) fullXMLString.append("/>");
-            else  fullXMLString.append("/&gt;");
+            if (!formatted) out.write("/>");
+            else  out.write("/&gt;");
+
+            return false;
         }
-        else
-        {
 
-            if (!formatted) fullXMLString.append(">");
-            else  fullXMLString.append("&gt;");
+        if (!formatted) out.write(">");
+        else  out.write("&gt;");
 
-            for (int i = 0; i < contents.size(); i++)
-            {
-                if (contents.get(i) instanceof SimpleXMLElement)
-                {
-                    if (i==0)
-                    {
-                        fullXMLString.append(""+endOfLine);
-                    }
+        SimpleXMLEntity previous = null;
 
-                    if (i>0 && (contents.get(i-1) instanceof SimpleXMLContent))
-                    {
-                        fullXMLString.append(contents.get(i).getXMLString("", formatted));
-                    }
-                    else
-                    {
-                        fullXMLString.append(contents.get(i).getXMLString(realIndent
-                            + currIndent, formatted));
+        while (entities.hasNext())
+        {
+            SimpleXMLEntity entity = entities.next();
 
-                        if (((SimpleXMLElement)contents.get(i)).getContents().size()>0)
-                        {
-                            fullXMLString.append(""+endOfLine);
-                        }
-                        else
-                        {
-                            fullXMLString.append(""/*+endOfLine*/);
-                        }
-                    }
+            if (entity instanceof SimpleXMLElement)
+            {
+                SimpleXMLElement element = (SimpleXMLElement)entity;
 
-                }
-                else if (contents.get(i) instanceof SimpleXMLComment)
+                if (previous == null)
                 {
-                    //fullXMLString.append("comm:");
-                    //////if (i==0) fullXMLString.append(endOfLine);
-                    //////fullXMLString.append(contents.get(i).getXMLString(realIndent + currIndent, formatted)+endOfLine);
-                    fullXMLString.append(contents.get(i).getXMLString(realIndent + currIndent, formatted));
+                    out.write(endOfLine);
                 }
 
+                if (previous instanceof SimpleXMLContent)
+                {
+                    element.writeElement(out, "", formatted);
+                }
                 else
                 {
-                    fullXMLString.append(contents.get(i).getXMLString("", formatted));
+                    if (element.writeElement(out, realIndent + currIndent, formatted))
+                    {
+                        out.write(endOfLine);
+                    }
                 }
             }
-
-            if ((contents.get(contents.size()-1) instanceof SimpleXMLElement))
-                fullXMLString.append(realIndent);
-
-            if (!formatted)
+            else if (entity instanceof SimpleXMLComment)
             {
-                fullXMLString.append("</" + qualifiedName + ">");
+                entity.writeXMLString(out, realIndent + currIndent, formatted);
             }
             else
             {
-                fullXMLString.append("&lt;<span style=\"color:"+mainFormattingColour+";font-weight: bold\">/" + qualifiedName + "</span>&gt;");
+                entity.writeXMLString(out, "", formatted);
             }
+            previous = entity;
         }
 
-        logger.logComment("XML string for: "+ this+": ("+fullXMLString.toString()+")");
-        return fullXMLString.toString();
+        if (previous instanceof SimpleXMLElement)
+            out.write(realIndent);
+
+        if (!formatted)
+        {
+            out.write("</" + qualifiedName + ">");
+        }
+        else
+        {
+            out.write("&lt;<span style=\"color:"+mainFormattingColour+";font-weight: bold\">/" + qualifiedName + "</span>&gt;");
+        }
+        return true;
+    }
+
+    /*
+     * The contents, with the entities of any sequences in place of the sequences
+     */
+    private Iterator<SimpleXMLEntity> getExpandedContents()
+    {
+        return new Iterator<SimpleXMLEntity>()
+        {
+            private int nextContent = 0;
+            private Iterator<SimpleXMLEntity> sequence = null;
+
+            public boolean hasNext()
+            {
+                while (sequence == null || !sequence.hasNext())
+                {
+                    if (nextContent >= contents.size()) return false;
+
+                    SimpleXMLEntity entity = contents.get(nextContent);
+
+                    if (!(entity instanceof SimpleXMLEntitySequence)) return true;
+
+                    sequence = ((SimpleXMLEntitySequence)entity).iterator();
+                    nextContent++;
+                }
+                return true;
+            }
+
+            public SimpleXMLEntity next()
+            {
+                if (!hasNext()) throw new NoSuchElementException();
+
+                if (sequence != null && sequence.hasNext())
+                {
+                    SimpleXMLEntity entity = sequence.next();
+
+                    if (entity instanceof SimpleXMLElement)
+                        ((SimpleXMLElement)entity).setParent(SimpleXMLElement.this);
+
+                    return entity;
+                }
+                return contents.get(nextContent++);
+            }
+
+            public void remove()
+            {
+                throw new UnsupportedOperationException();
+            }
+        };
     }
 
 
@@ -26,6 +26,7 @@
 
 package ucl.physiol.neuroconstruct.utils.xml;
 
+import java.io.*;
 
 /**
  * Simple XML API. Note this is a very limited XML API, just enough to handle
@@ -44,6 +45,14 @@ public abstract class SimpleXMLEntity
 
     public abstract String getXMLString(String indent, boolean formatted);
 
+    /**
+     * Writes the same text as getXMLString() to the Writer
+     */
+    public void writeXMLString(Writer out, String indent, boolean formatted) throws IOException
+    {
+        out.write(getXMLString(indent, formatted));
+    }
+
     public abstract String toString();
 
 }
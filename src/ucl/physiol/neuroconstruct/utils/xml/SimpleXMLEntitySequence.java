@@ -0,0 +1,126 @@
+/**
+ *  neuroConstruct
+ *  Software for developing large scale 3D networks of biologically realistic neurons
+ * 
+ *  Copyright (c) 2009 Padraig Gleeson
+ *  UCL Department of Neuroscience, Physiology and Pharmacology
+ *
+ *  Development of this software was made possible with funding from the
+ *  Medical Research Council and the Wellcome Trust
+ *  
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *  
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+
+
+package ucl.physiol.neuroconstruct.utils.xml;
+
+import java.util.*;
+
+/**
+ * A run of entities (e.g. the connection elements of a projection, with the text between them)
+ * which are only created when the element containing them is written, one item at a time. Added
+ * to an element with SimpleXMLElement.addSequence(), it's written just as if its entities had been
+ * added to the element in order, so very large documents can be written with
+ * SimpleXMLDocument.writeXMLString() without the whole tree being held in memory. Alternatively
+ * SimpleXMLElement.addEntities() adds the entities themselves straight away.
+ *
+ * @author Padraig Gleeson
+ *  
+ */
+
+
+public abstract class SimpleXMLEntitySequence extends SimpleXMLEntity implements Iterable<SimpleXMLEntity>
+{
+    private final int numItems;
+
+
+    /**
+     * @param numItems The number of items, each of which can give any number of entities
+     */
+    public SimpleXMLEntitySequence(int numItems)
+    {
+        this.numItems = numItems;
+    }
+
+    /**
+     * Adds the entities for the item to the list, in the order they would be added to the element
+     */
+    protected abstract void addEntities(int itemIndex, ArrayList<SimpleXMLEntity> entities) throws Exception;
+
+
+    public int getNumItems()
+    {
+        return numItems;
+    }
+
+    public Iterator<SimpleXMLEntity> iterator()
+    {
+        return new Iterator<SimpleXMLEntity>()
+        {
+            private final ArrayList<SimpleXMLEntity> itemEntities = new ArrayList<SimpleXMLEntity>();
+            private int nextItem = 0;
+            private int nextEntity = 0;
+
+            public boolean hasNext()
+            {
+                while (nextEntity >= itemEntities.size() && nextItem < numItems)
+                {
+                    itemEntities.clear();
+                    nextEntity = 0;
+                    try
+                    {
+                        addEntities(nextItem++, itemEntities);
+                    }
+                    catch (Exception ex)
+                    {
+                        throw new IllegalStateException("Problem creating item "+(nextItem-1)+" of "+SimpleXMLEntitySequence.this, ex);
+                    }
+                }
+                return nextEntity < itemEntities.size();
+            }
+
+            public SimpleXMLEntity next()
+            {
+                if (!hasNext()) throw new NoSuchElementException();
+                return itemEntities.get(nextEntity++);
+            }
+
+            public void remove()
+            {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+
+    public String getXMLString(String indent, boolean formatted)
+    {
+        StringBuffer fullXMLString = new StringBuffer();
+
+        for (SimpleXMLEntity entity: this)
+        {
+            fullXMLString.append(entity.getXMLString(indent, formatted));
+        }
+        return fullXMLString.toString();
+    }
+
+
+    public String toString()
+    {
+        return "Sequence of "+numItems+" items";
+    }
+
+}